@@ -0,0 +1,56 @@
+/* Copyright (C) 2009 - 2022 National Aeronautics and Space Administration.
+   All Foreign Rights are Reserved to the U.S. Government.
+
+   This software is provided "as is" without any warranty of any kind, either expressed, implied, or statutory,
+   including, but not limited to, any warranty that the software will conform to specifications, any implied warranties
+   of merchantability, fitness for a particular purpose, and freedom from infringement, and any warranty that the
+   documentation will conform to the program, or any warranty that the software will be error free.
+
+   In no event shall NASA be liable for any damages, including, but not limited to direct, indirect, special or
+   consequential damages, arising out of, resulting from, or in any way connected with the software or its
+   documentation, whether or not based upon warranty, contract, tort or otherwise, and whether or not loss was sustained
+   from, or arose out of the results of, or use of, the software, documentation or services provided hereunder.
+
+   ITC Team
+   NASA IV&V
+   jstar-development-team@mail.nasa.gov
+*/
+
+#ifndef CRYPTOLIB_PERF_HISTOGRAM_H
+#define CRYPTOLIB_PERF_HISTOGRAM_H
+
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+#include <stdint.h>
+
+// HDR style log-linear latency histogram: values below 2 * PERF_HISTOGRAM_SUB_BUCKETS nanoseconds are recorded
+// exactly, larger values with 7 significant bits (< 1% relative error), up to PERF_HISTOGRAM_MAX_VALUE.
+#define PERF_HISTOGRAM_SUB_BUCKET_BITS 7
+#define PERF_HISTOGRAM_SUB_BUCKETS (1 << PERF_HISTOGRAM_SUB_BUCKET_BITS)
+#define PERF_HISTOGRAM_MAX_BITS 40
+#define PERF_HISTOGRAM_MAX_VALUE ((1ULL << PERF_HISTOGRAM_MAX_BITS) - 1)
+#define PERF_HISTOGRAM_BUCKETS ((PERF_HISTOGRAM_MAX_BITS - PERF_HISTOGRAM_SUB_BUCKET_BITS + 1) * PERF_HISTOGRAM_SUB_BUCKETS)
+
+    typedef struct
+    {
+        uint64_t count;
+        uint64_t min;
+        uint64_t max;
+        double total;
+        uint64_t counts[PERF_HISTOGRAM_BUCKETS];
+    } PerfHistogram_t;
+
+    void perf_histogram_init(PerfHistogram_t* histogram);
+    void perf_histogram_record(PerfHistogram_t* histogram, uint64_t value);
+    void perf_histogram_merge(PerfHistogram_t* dest, const PerfHistogram_t* src);
+    uint64_t perf_histogram_value_at_percentile(const PerfHistogram_t* histogram, double percentile);
+    double perf_histogram_mean(const PerfHistogram_t* histogram);
+
+#ifdef __cplusplus
+} /* Close scope of 'extern "C"' declaration which encloses file. */
+#endif
+
+#endif // CRYPTOLIB_PERF_HISTOGRAM_H
@@ -0,0 +1,137 @@
+/* Copyright (C) 2009 - 2022 National Aeronautics and Space Administration.
+   All Foreign Rights are Reserved to the U.S. Government.
+
+   This software is provided "as is" without any warranty of any kind, either expressed, implied, or statutory,
+   including, but not limited to, any warranty that the software will conform to specifications, any implied warranties
+   of merchantability, fitness for a particular purpose, and freedom from infringement, and any warranty that the
+   documentation will conform to the program, or any warranty that the software will be error free.
+
+   In no event shall NASA be liable for any damages, including, but not limited to direct, indirect, special or
+   consequential damages, arising out of, resulting from, or in any way connected with the software or its
+   documentation, whether or not based upon warranty, contract, tort or otherwise, and whether or not loss was sustained
+   from, or arose out of the results of, or use of, the software, documentation or services provided hereunder.
+
+   ITC Team
+   NASA IV&V
+   jstar-development-team@mail.nasa.gov
+*/
+
+#include "perf_histogram.h"
+
+#include <math.h>
+#include <string.h>
+
+/**
+ * @brief Function: perf_histogram_index
+ * Bucket of a value: values below 2 * PERF_HISTOGRAM_SUB_BUCKETS map to themselves, larger values keep their
+ * PERF_HISTOGRAM_SUB_BUCKET_BITS + 1 most significant bits.
+ **/
+static int perf_histogram_index(uint64_t value)
+{
+    if (value < 2 * PERF_HISTOGRAM_SUB_BUCKETS)
+    {
+        return (int)value;
+    }
+    int shift = (63 - __builtin_clzll(value)) - PERF_HISTOGRAM_SUB_BUCKET_BITS;
+    return shift * PERF_HISTOGRAM_SUB_BUCKETS + (int)(value >> shift);
+}
+
+/**
+ * @brief Function: perf_histogram_highest_equivalent
+ * Largest value recorded into a bucket
+ **/
+static uint64_t perf_histogram_highest_equivalent(int index)
+{
+    if (index < 2 * PERF_HISTOGRAM_SUB_BUCKETS)
+    {
+        return (uint64_t)index;
+    }
+    int shift = index / PERF_HISTOGRAM_SUB_BUCKETS - 1;
+    uint64_t sub_bucket = (uint64_t)(index - shift * PERF_HISTOGRAM_SUB_BUCKETS);
+    return ((sub_bucket + 1) << shift) - 1;
+}
+
+void perf_histogram_init(PerfHistogram_t *histogram)
+{
+    memset(histogram, 0, sizeof(PerfHistogram_t));
+    histogram->min = UINT64_MAX;
+}
+
+/**
+ * @brief Function: perf_histogram_record
+ * Records a value, values above PERF_HISTOGRAM_MAX_VALUE are clamped.
+ * @param histogram: PerfHistogram_t*
+ * @param value: uint64_t, usually a latency in nanoseconds
+ **/
+void perf_histogram_record(PerfHistogram_t *histogram, uint64_t value)
+{
+    if (value > PERF_HISTOGRAM_MAX_VALUE)
+    {
+        value = PERF_HISTOGRAM_MAX_VALUE;
+    }
+    histogram->counts[perf_histogram_index(value)]++;
+    histogram->count++;
+    histogram->total += (double)value;
+    if (value < histogram->min)
+        histogram->min = value;
+    if (value > histogram->max)
+        histogram->max = value;
+}
+
+/**
+ * @brief Function: perf_histogram_merge
+ * Adds all values of src to dest, used to combine the per thread histograms.
+ **/
+void perf_histogram_merge(PerfHistogram_t *dest, const PerfHistogram_t *src)
+{
+    for (int i = 0; i < PERF_HISTOGRAM_BUCKETS; i++)
+    {
+        dest->counts[i] += src->counts[i];
+    }
+    dest->count += src->count;
+    dest->total += src->total;
+    if (src->min < dest->min)
+        dest->min = src->min;
+    if (src->max > dest->max)
+        dest->max = src->max;
+}
+
+/**
+ * @brief Function: perf_histogram_value_at_percentile
+ * @param histogram: const PerfHistogram_t*
+ * @param percentile: double, 0.0 - 100.0
+ * @return the highest value equivalent to the value at the percentile (nearest rank), 0 if nothing was recorded
+ **/
+uint64_t perf_histogram_value_at_percentile(const PerfHistogram_t *histogram, double percentile)
+{
+    if (histogram->count == 0)
+    {
+        return 0;
+    }
+    if (percentile > 100.0)
+    {
+        percentile = 100.0;
+    }
+    uint64_t rank = (uint64_t)ceil((percentile / 100.0) * (double)histogram->count);
+    if (rank < 1)
+    {
+        rank = 1;
+    }
+
+    uint64_t seen = 0;
+    for (int i = 0; i < PERF_HISTOGRAM_BUCKETS; i++)
+    {
+        seen += histogram->counts[i];
+        if (seen >= rank)
+        {
+            uint64_t value = perf_histogram_highest_equivalent(i);
+            return (value > histogram->max) ? histogram->max : value;
+        }
+    }
+    return histogram->max;
+}
+
+double perf_histogram_mean(const PerfHistogram_t *histogram)
+{
+    return (histogram->count == 0) ? 0.0 : histogram->total / (double)histogram->count;
+}
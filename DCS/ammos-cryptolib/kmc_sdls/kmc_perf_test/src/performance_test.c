@@ -22,9 +22,12 @@
 
 #include "crypto.h"
 #include "shared_util.h"
+#include "perf_histogram.h"
 #include <stdio.h>
 #include <stdlib.h>
+#include <string.h>
 #include <getopt.h>
+#include <pthread.h>
 
 #include <time.h>
 #include <unistd.h>
@@ -118,6 +121,36 @@ static int has_segmentation_hdr_flag = 0;
 static int num_loops = 1000;
 static int apply_or_process = 0;
 
+// Multi-Threaded Run Parameters
+static int num_threads = 1;
+static int duration_seconds = 0;
+static char *frame_file = NULL;
+static char *json_output = NULL;
+static int local_flag = 0;
+static int scid_set = 0;
+
+// Frames sent round robin by the worker threads, from --frame_file or the single --frame
+static char **corpus_frames = NULL;
+static int *corpus_lengths = NULL;
+static int corpus_count = 0;
+static int corpus_max_length = 0;
+
+// CryptoLib keeps its SA and configuration state in globals, calls are serialized and the lock wait is measured
+static pthread_mutex_t cryptolib_mutex = PTHREAD_MUTEX_INITIALIZER;
+static int stop_run = 0;
+static uint64_t frames_claimed = 0;
+
+typedef struct
+{
+    pthread_t thread;
+    PerfHistogram_t latency; // Submission until the call returned, includes waiting for other threads
+    PerfHistogram_t service; // Time spent in the kmc_sdls call
+    uint64_t frames;
+    uint64_t errors;
+    uint64_t bytes;
+    int32_t first_error;
+} PerfWorker_t;
+
 static int cam_flag = 0;
 
 void test_information();
@@ -217,6 +250,274 @@ void Process_Security_Loop(char *data_b, int *data_l, int num_loops)
     }
 }
 
+// Function to load the frame corpus, one hex frame per line, blank lines and lines starting with # are skipped
+int Load_Frame_Corpus(const char *path)
+{
+    FILE *f = fopen(path, "r");
+    if (f == NULL)
+    {
+        printf("ERROR: Unable to open frame file %s\n", path);
+        return -1;
+    }
+
+    char *line = NULL;
+    size_t line_size = 0;
+    ssize_t read_length;
+    int line_number = 0;
+    while ((read_length = getline(&line, &line_size, f)) != -1)
+    {
+        line_number++;
+        char *hex = line;
+        while (*hex == ' ' || *hex == '\t')
+            hex++;
+        char *end = hex + strlen(hex);
+        while (end > hex && (end[-1] == '\n' || end[-1] == '\r' || end[-1] == ' ' || end[-1] == '\t'))
+            *--end = '\0';
+        if (*hex == '\0' || *hex == '#')
+            continue;
+
+        char *frame_bytes = NULL;
+        int frame_bytes_len = 0;
+        hex_conversion(hex, &frame_bytes, &frame_bytes_len);
+        if (frame_bytes_len <= 0 || frame_bytes_len * 2 != (int)strlen(hex) || frame_bytes_len > max_tc_frame_size)
+        {
+            printf("ERROR: Invalid frame on line %d of %s\n", line_number, path);
+            free(frame_bytes);
+            free(line);
+            fclose(f);
+            return -1;
+        }
+
+        corpus_frames = realloc(corpus_frames, (corpus_count + 1) * sizeof(char *));
+        corpus_lengths = realloc(corpus_lengths, (corpus_count + 1) * sizeof(int));
+        corpus_frames[corpus_count] = frame_bytes;
+        corpus_lengths[corpus_count] = frame_bytes_len;
+        corpus_count++;
+        if (frame_bytes_len > corpus_max_length)
+            corpus_max_length = frame_bytes_len;
+    }
+    free(line);
+    fclose(f);
+
+    if (corpus_count == 0)
+    {
+        printf("ERROR: No frames in %s\n", path);
+        return -1;
+    }
+    return corpus_count;
+}
+
+// Worker thread, sends corpus frames until num_loops frames were claimed by all workers or the duration elapsed
+void *Security_Worker(void *arg)
+{
+    PerfWorker_t *worker = (PerfWorker_t *)arg;
+    struct timespec begin, locked, end;
+    int32_t status = CRYPTO_LIB_SUCCESS;
+
+    char *frame_copy = malloc(corpus_max_length);
+    TC_t *processed_frame = malloc(sizeof(TC_t));
+
+    while (!__atomic_load_n(&stop_run, __ATOMIC_RELAXED))
+    {
+        uint64_t n = __atomic_fetch_add(&frames_claimed, 1, __ATOMIC_RELAXED);
+        if (duration_seconds == 0 && n >= (uint64_t)num_loops)
+            break;
+        int index = (int)(n % corpus_count);
+        uint8_t *enc_frame = NULL;
+        uint16_t enc_frame_len = 0;
+        int frame_l = corpus_lengths[index];
+        int out_len = 0;
+
+        if (apply_or_process == 0)
+        {
+            clock_gettime(CLOCK_MONOTONIC, &begin);
+            pthread_mutex_lock(&cryptolib_mutex);
+            clock_gettime(CLOCK_MONOTONIC, &locked);
+            status = apply_security_tc((uint8_t *)corpus_frames[index], (uint16_t)frame_l, &enc_frame, &enc_frame_len);
+            clock_gettime(CLOCK_MONOTONIC, &end);
+            pthread_mutex_unlock(&cryptolib_mutex);
+            out_len = enc_frame_len;
+            free(enc_frame);
+        }
+        else
+        {
+            // ProcessSecurity may modify its input, every call gets a fresh copy
+            memcpy(frame_copy, corpus_frames[index], frame_l);
+            memset(processed_frame, 0, sizeof(TC_t));
+            clock_gettime(CLOCK_MONOTONIC, &begin);
+            pthread_mutex_lock(&cryptolib_mutex);
+            clock_gettime(CLOCK_MONOTONIC, &locked);
+            status = process_security_tc(frame_copy, &frame_l, processed_frame);
+            clock_gettime(CLOCK_MONOTONIC, &end);
+            pthread_mutex_unlock(&cryptolib_mutex);
+            out_len = processed_frame->tc_pdu_len;
+        }
+
+        if (status != CRYPTO_LIB_SUCCESS)
+        {
+            if (worker->errors == 0)
+                worker->first_error = status;
+            worker->errors++;
+            continue;
+        }
+
+        uint64_t latency = (uint64_t)(end.tv_sec - begin.tv_sec) * 1000000000ULL + (end.tv_nsec - begin.tv_nsec);
+        uint64_t service = (uint64_t)(end.tv_sec - locked.tv_sec) * 1000000000ULL + (end.tv_nsec - locked.tv_nsec);
+        perf_histogram_record(&worker->latency, latency);
+        perf_histogram_record(&worker->service, service);
+        worker->frames++;
+        worker->bytes += out_len;
+    }
+
+    free(frame_copy);
+    free(processed_frame);
+    return NULL;
+}
+
+void Print_Histogram(const char *name, const PerfHistogram_t *histogram)
+{
+    printf("\t%s (us):\n", name);
+    printf("\t\tMin: %.3f\n", histogram->count ? histogram->min / 1000.0 : 0.0);
+    printf("\t\tMean: %.3f\n", perf_histogram_mean(histogram) / 1000.0);
+    printf("\t\tP50: %.3f\n", perf_histogram_value_at_percentile(histogram, 50.0) / 1000.0);
+    printf("\t\tP90: %.3f\n", perf_histogram_value_at_percentile(histogram, 90.0) / 1000.0);
+    printf("\t\tP99: %.3f\n", perf_histogram_value_at_percentile(histogram, 99.0) / 1000.0);
+    printf("\t\tP99.9: %.3f\n", perf_histogram_value_at_percentile(histogram, 99.9) / 1000.0);
+    printf("\t\tMax: %.3f\n", histogram->max / 1000.0);
+}
+
+void Write_Json_Histogram(FILE *out, const char *name, const PerfHistogram_t *histogram)
+{
+    fprintf(out, "\"%s\":{\"min\":%.3f,\"mean\":%.3f,\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"p999\":%.3f,\"max\":%.3f}",
+            name,
+            histogram->count ? histogram->min / 1000.0 : 0.0,
+            perf_histogram_mean(histogram) / 1000.0,
+            perf_histogram_value_at_percentile(histogram, 50.0) / 1000.0,
+            perf_histogram_value_at_percentile(histogram, 90.0) / 1000.0,
+            perf_histogram_value_at_percentile(histogram, 99.0) / 1000.0,
+            perf_histogram_value_at_percentile(histogram, 99.9) / 1000.0,
+            histogram->max / 1000.0);
+}
+
+// Function to write the run as a single JSON object, to a file or - for stdout
+int Write_Json_Results(const PerfHistogram_t *latency, const PerfHistogram_t *service, uint64_t frames, uint64_t errors,
+                       uint64_t bytes, int32_t first_error, double elapsed)
+{
+    FILE *out = (strcmp(json_output, "-") == 0) ? stdout : fopen(json_output, "w");
+    if (out == NULL)
+    {
+        printf("ERROR: Unable to open JSON output %s\n", json_output);
+        return -1;
+    }
+
+    char *error_name = (errors > 0) ? sdls_get_error_code_enum_string(first_error) : NULL;
+    fprintf(out, "{\"method\":\"%s\",", (apply_or_process == 0) ? "TC_APPLY" : "TC_PROCESS");
+    fprintf(out, "\"sadb_type\":\"%s\",", (sadb_type == SA_TYPE_MARIADB) ? "MARIADB" : "INMEMORY");
+    fprintf(out, "\"cryptography_type\":\"%s\",", (cryptography_type == CRYPTOGRAPHY_TYPE_KMCCRYPTO) ? "KMCCRYPTO" : "LIBGCRYPT");
+    fprintf(out, "\"tfvn\":%d,\"scid\":%d,\"vcid\":%d,", tfvn, scid, vcid);
+    fprintf(out, "\"threads\":%d,\"duration_s\":%d,\"numloops\":%d,\"corpus_frames\":%d,",
+            num_threads, duration_seconds, (duration_seconds > 0) ? 0 : num_loops, corpus_count);
+    fprintf(out, "\"frames\":%llu,\"errors\":%llu,", (unsigned long long)frames, (unsigned long long)errors);
+    if (error_name != NULL)
+        fprintf(out, "\"first_error\":\"%s\",", error_name);
+    else if (errors > 0)
+        fprintf(out, "\"first_error\":%d,", first_error);
+    fprintf(out, "\"elapsed_s\":%.6f,\"frames_per_s\":%.3f,\"kbps\":%.3f,", elapsed,
+            (elapsed > 0) ? frames / elapsed : 0.0, (elapsed > 0) ? ((bytes * 8) / elapsed) / 1024 : 0.0);
+    Write_Json_Histogram(out, "latency_us", latency);
+    fprintf(out, ",");
+    Write_Json_Histogram(out, "service_us", service);
+    fprintf(out, "}\n");
+
+    if (out != stdout)
+        fclose(out);
+    return 0;
+}
+
+// Function to run the worker threads and report the combined histograms
+int Run_Threaded_Test()
+{
+    struct timespec begin, end;
+    PerfWorker_t *workers = calloc(num_threads, sizeof(PerfWorker_t));
+    PerfHistogram_t *latency = malloc(sizeof(PerfHistogram_t));
+    PerfHistogram_t *service = malloc(sizeof(PerfHistogram_t));
+    uint64_t frames = 0;
+    uint64_t errors = 0;
+    uint64_t bytes = 0;
+    int32_t first_error = CRYPTO_LIB_SUCCESS;
+    int started = 0;
+
+    if (workers == NULL || latency == NULL || service == NULL)
+    {
+        printf("ERROR: Unable to allocate %d workers\n", num_threads);
+        return EXIT_FAILURE;
+    }
+    perf_histogram_init(latency);
+    perf_histogram_init(service);
+
+    printf("\nBeginning Performance test: %d thread(s), %d frame(s) in corpus, ", num_threads, corpus_count);
+    if (duration_seconds > 0)
+        printf("%d second(s)\n", duration_seconds);
+    else
+        printf("%d frame(s)\n", num_loops);
+
+    clock_gettime(CLOCK_MONOTONIC, &begin);
+    for (; started < num_threads; started++)
+    {
+        perf_histogram_init(&workers[started].latency);
+        perf_histogram_init(&workers[started].service);
+        if (pthread_create(&workers[started].thread, NULL, Security_Worker, &workers[started]) != 0)
+        {
+            printf("ERROR: Unable to start worker thread %d\n", started);
+            __atomic_store_n(&stop_run, 1, __ATOMIC_RELAXED);
+            break;
+        }
+    }
+    if (duration_seconds > 0 && started == num_threads)
+    {
+        sleep(duration_seconds);
+        __atomic_store_n(&stop_run, 1, __ATOMIC_RELAXED);
+    }
+    for (int i = 0; i < started; i++)
+    {
+        pthread_join(workers[i].thread, NULL);
+        perf_histogram_merge(latency, &workers[i].latency);
+        perf_histogram_merge(service, &workers[i].service);
+        frames += workers[i].frames;
+        bytes += workers[i].bytes;
+        if (workers[i].errors > 0 && errors == 0)
+            first_error = workers[i].first_error;
+        errors += workers[i].errors;
+    }
+    clock_gettime(CLOCK_MONOTONIC, &end);
+    double elapsed = (end.tv_sec - begin.tv_sec) + (end.tv_nsec - begin.tv_nsec) * 1e-9;
+
+    printf("\nPerformance Test Complete:\n");
+    test_information();
+    printf("\nPERFORMANCE DATA:\n");
+    printf("TC Method: %s\n", (apply_or_process == 0) ? "TC_APPLY" : "TC_PROCESS");
+    printf("\tThreads: %d\n", num_threads);
+    printf("\tNumber of Frames Sent: %llu\n", (unsigned long long)frames);
+    printf("\tNumber of Errors: %llu\n", (unsigned long long)errors);
+    if (errors > 0)
+        printf("\t\tFirst Error: %s (%d)\n", sdls_get_error_code_enum_string(first_error), first_error);
+    printf("\tTotal Time: %f\n", elapsed);
+    printf("\tFrames Per Second: %f\n", (elapsed > 0) ? frames / elapsed : 0.0);
+    printf("\tAvg Kbps: %f\n", (elapsed > 0) ? ((bytes * 8) / elapsed) / 1024 : 0.0);
+    Print_Histogram("Latency", latency);
+    Print_Histogram("CryptoLib Service Time", service);
+    printf("\n");
+
+    int rc = (errors > 0 || started != num_threads) ? EXIT_FAILURE : EXIT_SUCCESS;
+    if (json_output != NULL && Write_Json_Results(latency, service, frames, errors, bytes, first_error, elapsed) != 0)
+        rc = EXIT_FAILURE;
+
+    free(workers);
+    free(latency);
+    free(service);
+    return rc;
+}
+
 void help_message()
 {
     printf("Options:\n");
@@ -305,10 +606,20 @@ void help_message()
     printf("--tc_apply | (DEFAULT) Sets the testing to use TC_APPLY\n");
     printf("--tc_process | Sets testing to use TC_PROCESS\n");
 
+    printf("\nMULTI-THREADED RUN ARGS (any of these replaces the single loop with worker threads):\n");
+    printf("--threads | Sets the number of worker threads (1 DEFAULT), CryptoLib calls are serialized\n");
+    printf("--frame_file | Sets a file of frames sent round robin, one hex frame per line, # starts a comment\n");
+    printf("--duration | Sets the run duration in seconds, --numloops is ignored\n");
+    printf("--json | Writes the results as JSON to the given file, - for stdout\n");
+    printf("\nLOCAL PROFILE FLAG:\n");
+    printf("--local | Uses InMemory SAs and LIBGCRYPT, ignores SA state and needs no MariaDB or KMC Crypto Service.\n");
+    printf("          SCID defaults to 0x0003, the SCID of the CryptoLib InMemory SAs\n");
+
     printf("\nExample Command:\n\nperformance_test --frame \"202C0C6100ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0123456789ABCDEFF01C\" --sql_host \"atb-ocio-12a.jpl.nasa.gov\" --sql_username \"mcstest\" --sql_tls_ca \"/home/robbrown/jpl_certs/ammos-ca-bundle.crt\" --sql_mtls_cert \"/home/robbrown/jpl_certs/mcstest.crt\" --sql_mtls_key \"/home/robbrown/jpl_certs/mcstest.key\" --kmc_crypto_hostname \"asec-cmdenc-srv1.jpl.nasa.gov\"  --vcid 3 --tc_apply\n");
+    printf("\nperformance_test --local --frame_file frames.txt --vcid 0 --has_fecf_no --threads 4 --duration 30 --json results.json\n");
 
     printf("\n\nREQUIRED PARAMETERS:\n");
-    printf("--frame | Sets the perforance frame to be encrypted - REQUIRED\n");
+    printf("--frame | Sets the perforance frame to be encrypted - REQUIRED unless --frame_file is set\n");
 }
 
 // Function to print out final test setup information upon completion
@@ -425,8 +736,16 @@ void test_information()
     printf(KGRN "\tGVCID MAX TC FRAME SIZE:" RESET);
     printf(" %d\n", max_tc_frame_size);
 
-    printf(KRED "\nFRAME:\n" RESET);
-    printf(" %s\n\n", frame);
+    if (frame_file != NULL)
+    {
+        printf(KRED "\nFRAME FILE:\n" RESET);
+        printf(" %s (%d frames)\n\n", frame_file, corpus_count);
+    }
+    else
+    {
+        printf(KRED "\nFRAME:\n" RESET);
+        printf(" %s\n\n", frame);
+    }
 }
 
 int main(int argc, char **argv)
@@ -494,6 +813,9 @@ int main(int argc, char **argv)
                 {"cam_enabled", no_argument, &cam_flag, 1},
                 {"cam_disabled", no_argument, &cam_flag, 0},
 
+                // Flag Setting for the self contained InMemory / LIBGCRYPT profile
+                {"local", no_argument, &local_flag, 1},
+
                 {"vcid_bitmask", required_argument, 0, 'a'},
                 {"sql_host", required_argument, 0, 'b'},
                 {"sql_db", required_argument, 0, 'c'},
@@ -529,11 +851,15 @@ int main(int argc, char **argv)
                 {"cam_manager_uri", required_argument, 0, '7'},
                 {"cam_username", required_argument, 0, '8'},
                 {"cam_home", required_argument, 0, '9'},
+                {"threads", required_argument, 0, 'A'},
+                {"frame_file", required_argument, 0, 'B'},
+                {"duration", required_argument, 0, 'C'},
+                {"json", required_argument, 0, 'D'},
                 {0, 0, 0, 0}
 
             };
 
-        c = getopt_long(argc, argv, "a:b:c:d:e:f:g:h:i:j:k:l:m:n:o:p:q:r:s:t:u:v:w:x:y:z:1:2:3:4:5:6:7:8:9:", long_options, &option_index);
+        c = getopt_long(argc, argv, "a:b:c:d:e:f:g:h:i:j:k:l:m:n:o:p:q:r:s:t:u:v:w:x:y:z:1:2:3:4:5:6:7:8:9:A:B:C:D:", long_options, &option_index);
 
         if (c == -1)
             break;
@@ -642,6 +968,7 @@ int main(int argc, char **argv)
             break;
         case 'x':                                      // scid
             scid = (uint16_t)strtol(optarg, &temp, 0); // NOTE:  This requires the string to be in hex format
+            scid_set = 1;
             printf("scid set: %04x | %s\n", scid, optarg);
             break;
         case 'y': // vcid
@@ -689,6 +1016,32 @@ int main(int argc, char **argv)
             cam_home = strdup(optarg);
             printf("CAM Home set to: %s\n", cam_home);
             break;
+        case 'A':
+            num_threads = (int)atoi(optarg);
+            if (num_threads < 1)
+            {
+                printf("ERROR: --threads must be at least 1\n");
+                exit(EXIT_FAILURE);
+            }
+            printf("Number of threads changed to: %d\n", num_threads);
+            break;
+        case 'B':
+            frame_file = strdup(optarg);
+            printf("Frame file set to: %s\n", frame_file);
+            break;
+        case 'C':
+            duration_seconds = (int)atoi(optarg);
+            if (duration_seconds < 1)
+            {
+                printf("ERROR: --duration must be at least 1 second\n");
+                exit(EXIT_FAILURE);
+            }
+            printf("Duration changed to: %d seconds\n", duration_seconds);
+            break;
+        case 'D':
+            json_output = strdup(optarg);
+            printf("JSON output set to: %s\n", json_output);
+            break;
         case '?': // error
             printf("INVALID OPTION: %c\n", optopt);
             exit(0);
@@ -700,7 +1053,21 @@ int main(int argc, char **argv)
     }
 
     // Handle Flag Arguments if Set
-    if (sadb_type_flag)
+    // The SADB and cryptography flags hold the type itself, both types are non zero
+    if (local_flag)
+    {
+        printf("System Configured for: LOCAL PROFILE (InMemory SAs, LIBGCRYPT)\n");
+        sadb_type_flag = SA_TYPE_INMEMORY;
+        cryptography_type_flag = CRYPTOGRAPHY_TYPE_LIBGCRYPT;
+        // Only the CryptoLib default InMemory SA is operational after init
+        ignore_sa_state_flag = 1;
+        if (!scid_set)
+        {
+            scid = 0x0003;
+        }
+    }
+
+    if (sadb_type_flag == SA_TYPE_MARIADB)
     {
         printf("System Configured for: MariaDB\n");
         sadb_type = SA_TYPE_MARIADB;
@@ -708,9 +1075,10 @@ int main(int argc, char **argv)
     else
     {
         printf("System Configured for: Internal SA\n");
+        sadb_type = SA_TYPE_INMEMORY;
     }
 
-    if (cryptography_type_flag)
+    if (cryptography_type_flag == CRYPTOGRAPHY_TYPE_KMCCRYPTO)
     {
         printf("System Configured for: KMCCRYPTO\n");
         cryptography_type = CRYPTOGRAPHY_TYPE_KMCCRYPTO;
@@ -718,6 +1086,7 @@ int main(int argc, char **argv)
     else
     {
         printf("System Configured for: LIBGCRYPT\n");
+        cryptography_type = CRYPTOGRAPHY_TYPE_LIBGCRYPT;
     }
 
     if (create_fecf_flag)
@@ -866,8 +1235,14 @@ int main(int argc, char **argv)
     sdls_config_cryptolib(sadb_type, cryptography_type, create_fecf, process_sdls_pdus, has_pus_hdr,
                           ignore_sa_state, ignore_anti_replay, unique_sa_per_mapid,
                           check_fecf, vcid_bitmask, increment_nontransmitted_iv);
-    sdls_config_mariadb(mysql_hostname, mysql_database, mysql_port, mysql_require_secure_transport, mysql_tls_verify_server, mysql_tls_ca, mysql_tls_ca_path, mysql_mtls_cert, mysql_mtls_key, mysql_mtls_client_key_password, mysql_username, mysql_password);
-    sdls_config_kmc_crypto_service(protocol, kmc_crypto_hostname, kmc_crypto_port, kmc_crypto_app, kmc_tls_ca_bundle, kmc_tls_ca_path, kmc_ignore_ssl_hostname_validation, mtls_client_cert_path, mtls_client_cert_type, mtls_client_key_path, mtls_client_key_pass, mtls_issuer_cert);
+    if (sadb_type == SA_TYPE_MARIADB)
+    {
+        sdls_config_mariadb(mysql_hostname, mysql_database, mysql_port, mysql_require_secure_transport, mysql_tls_verify_server, mysql_tls_ca, mysql_tls_ca_path, mysql_mtls_cert, mysql_mtls_key, mysql_mtls_client_key_password, mysql_username, mysql_password);
+    }
+    if (cryptography_type == CRYPTOGRAPHY_TYPE_KMCCRYPTO)
+    {
+        sdls_config_kmc_crypto_service(protocol, kmc_crypto_hostname, kmc_crypto_port, kmc_crypto_app, kmc_tls_ca_bundle, kmc_tls_ca_path, kmc_ignore_ssl_hostname_validation, mtls_client_cert_path, mtls_client_cert_type, mtls_client_key_path, mtls_client_key_pass, mtls_issuer_cert);
+    }
     sdls_config_add_gvcid_managed_parameter(tfvn, scid, vcid, has_fecf, has_segmentation_hdr, max_tc_frame_size);
 
     if (cam_enabled)
@@ -875,7 +1250,43 @@ int main(int argc, char **argv)
         sdls_config_cam(cam_enabled, cam_cookie_path, cam_keytab_path, cam_login_method, cam_manager_uri, cam_username, cam_home);
     }
 
-    sdls_init();
+    int32_t init_status = sdls_init();
+    if (init_status != CRYPTO_LIB_SUCCESS)
+    {
+        printf("ERROR: CryptoLib initialization failed: %s (%d)\n", sdls_get_error_code_enum_string(init_status), init_status);
+        exit(EXIT_FAILURE);
+    }
+
+    if (num_threads > 1 || duration_seconds > 0 || frame_file != NULL || json_output != NULL)
+    {
+        if (frame_file != NULL)
+        {
+            if (Load_Frame_Corpus(frame_file) < 0)
+            {
+                sdls_shutdown();
+                exit(EXIT_FAILURE);
+            }
+        }
+        else if (frame != NULL)
+        {
+            corpus_frames = malloc(sizeof(char *));
+            corpus_lengths = malloc(sizeof(int));
+            hex_conversion(frame, &corpus_frames[0], &corpus_lengths[0]);
+            corpus_max_length = corpus_lengths[0];
+            corpus_count = 1;
+        }
+        else
+        {
+            help_message();
+            printf("\n\nERROR:\nA frame MUST be included using the --frame \"xxx\" or --frame_file command!\n\n\n");
+            sdls_shutdown();
+            exit(EXIT_FAILURE);
+        }
+
+        int rc = Run_Threaded_Test();
+        sdls_shutdown();
+        return rc;
+    }
 
     if (apply_or_process == 0)
     {
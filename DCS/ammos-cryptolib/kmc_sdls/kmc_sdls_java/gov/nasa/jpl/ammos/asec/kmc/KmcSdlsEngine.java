@@ -3,17 +3,37 @@ package gov.nasa.jpl.ammos.asec.kmc;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.IntSupplier;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
+// Apply and process security calls keep their frames in call-local structures, so the engine holds no per-call state.
+// CryptoLib keeps global state (configuration, in-memory SADB, crypto interface) and its backends share one MariaDB
+// connection and one KMC Crypto Service curl handle, so every call into CryptoLib holds CRYPTOLIB_LOCK. Threads using
+// the engine at once only overlap outside of CryptoLib: checks, copies and the conversion of results.
 public class KmcSdlsEngine
 {
+    // CryptoLib state is per process, shared by every engine
+    private static final Object CRYPTOLIB_LOCK = new Object();
+
     kmc_sdls kmcCInterface;
-    TC_t tc_ptr;
     int KMC_ENGINE_SUCCESS = 0;
     int engineStatus = KMC_ENGINE_SUCCESS;
+    // TC frame length is a 10 bit field of the frame length minus one
+    public static final int MAX_TC_FRAME_SIZE = 1024;
+    // Batch framing, see apply_security_tc_batch in kmc_sdls.i: frames and results are prefixed with their length,
+    // results also with their CryptoLib status
+    public static final int BATCH_LENGTH_SIZE = 2;
+    public static final int BATCH_STATUS_SIZE = 4;
+    public static final int MAX_BATCH_FRAMES = 4096;
+    // Compact processed frame, see process_security_tc_compact in kmc_sdls.i: a fixed header followed by the PDU
+    public static final int PROCESSED_HEADER_SIZE = 16;
+    private static final HexFormat HEX = HexFormat.of().withUpperCase();
     public KmcSdlsEngine()
     {
         System.loadLibrary("kmc_sdls_java");
@@ -177,6 +197,11 @@ public class KmcSdlsEngine
         }
 
         // gvcid managed parameters
+        this.configureGvcidManagedParametersFromProperties(props);
+    }
+
+    private void configureGvcidManagedParametersFromProperties(Properties props) throws Exception
+    {
         Set<String> keys = props.stringPropertyNames();
         String fecfManagedParamsPattern = "cryptolib\\.tc\\.(?<scid>\\d+)\\.(?<vcid>\\d+)\\.(?<tfvn>\\d+)\\.has_ecf";
         for (String key : keys)
@@ -292,9 +317,9 @@ public class KmcSdlsEngine
 
         vcid_bitmask = (short)vcidBitmask;
 
-        int status = this.kmcCInterface.sdls_config_cryptolib(sadb_type, cryptography_type, crypto_create_fecf, process_sdls_pdus,
+        int status = cryptoLib(() -> this.kmcCInterface.sdls_config_cryptolib(sadb_type, cryptography_type, crypto_create_fecf, process_sdls_pdus,
                 has_pus_hdr, ignore_sa_state, ignore_anti_replay, unique_sa_per_mapid, crypto_check_fecf, vcid_bitmask,
-                crypto_increment_nontransmitted_iv);
+                crypto_increment_nontransmitted_iv));
         this.engineStatus = status;
 
         if(status != KMC_ENGINE_SUCCESS)
@@ -320,7 +345,7 @@ public class KmcSdlsEngine
             has_segmentation_hdr = (short) TcSegmentHdrsPresent.TC_NO_SEGMENT_HDRS.swigValue();
         max_tc_frame_size = (short) maxTcFrameSize;
 
-        int status = this.kmcCInterface.sdls_config_add_gvcid_managed_parameter(tfvn, scid, vcid, has_fecf, has_segmentation_hdr, max_tc_frame_size);
+        int status = cryptoLib(() -> this.kmcCInterface.sdls_config_add_gvcid_managed_parameter(tfvn, scid, vcid, has_fecf, has_segmentation_hdr, max_tc_frame_size));
         this.engineStatus = status;
 
         if(status != KMC_ENGINE_SUCCESS)
@@ -328,6 +353,16 @@ public class KmcSdlsEngine
 
         return status;
     }
+    public int clearGvcidManagedParameters() throws Exception
+    {
+        int status = cryptoLib(() -> this.kmcCInterface.sdls_config_clear_gvcid_managed_parameters());
+        this.engineStatus = status;
+
+        if(status != KMC_ENGINE_SUCCESS)
+            throw new Exception("Unable to Clear CryptoLib GVCID Managed Parameters, Error Code: " + status + ", Error Message: " + this.kmcCInterface.sdls_get_error_code_enum_string(status));
+
+        return status;
+    }
     public int configureMariaDb(String mysqlHostname, String mysqlDatabase, int mysqlPort, boolean mysqlRequireSecureTransport, boolean mysqlTlsVerifyServer, String mysqlTlsCa, String mysqlTlsCapath, String mysqlMtlsCert, String mysqlMtlsKey,String mysqlMtlsClientKeyPassword, String mysqlUsername, String mysqlPassword)
             throws Exception
     {
@@ -342,7 +377,7 @@ public class KmcSdlsEngine
         else
             mysql_tls_verify_server = (short) 0;
 
-        int status = this.kmcCInterface.sdls_config_mariadb(mysqlHostname, mysqlDatabase, mysql_port,mysql_require_secure_transport, mysql_tls_verify_server,mysqlTlsCa, mysqlTlsCapath, mysqlMtlsCert,mysqlMtlsKey,mysqlMtlsClientKeyPassword, mysqlUsername, mysqlPassword);
+        int status = cryptoLib(() -> this.kmcCInterface.sdls_config_mariadb(mysqlHostname, mysqlDatabase, mysql_port,mysql_require_secure_transport, mysql_tls_verify_server,mysqlTlsCa, mysqlTlsCapath, mysqlMtlsCert,mysqlMtlsKey,mysqlMtlsClientKeyPassword, mysqlUsername, mysqlPassword));
         this.engineStatus = status;
 
         if(status != KMC_ENGINE_SUCCESS)
@@ -364,9 +399,9 @@ public class KmcSdlsEngine
         else
             kmc_ignore_ssl_hostname_validation = (short) 0;
 
-        int status = this.kmcCInterface.sdls_config_kmc_crypto_service(protocol, kmcCryptoHostname, kmc_crypto_port,
+        int status = cryptoLib(() -> this.kmcCInterface.sdls_config_kmc_crypto_service(protocol, kmcCryptoHostname, kmc_crypto_port,
                 kmcCryptoApp, kmcTlsCaBundle, kmcTlsCaPath, kmc_ignore_ssl_hostname_validation, mtlsClientCertPath,
-                mtlsClientCertType, mtlsClientKeyPath,mtlsClientKeyPass, mtlsIssuerCert);
+                mtlsClientCertType, mtlsClientKeyPath,mtlsClientKeyPass, mtlsIssuerCert));
         this.engineStatus = status;
 
         if(status != KMC_ENGINE_SUCCESS)
@@ -404,8 +439,8 @@ public class KmcSdlsEngine
                 break;
         }
 
-        int status = this.kmcCInterface.sdls_config_cam(cam_enabled, cookieFilePath, keytabFilePath,
-                                                         login_method, accessManagerUri, username, camHome);
+        int status = cryptoLib(() -> this.kmcCInterface.sdls_config_cam(cam_enabled, cookieFilePath, keytabFilePath,
+                                                         login_method, accessManagerUri, username, camHome));
         this.engineStatus = status;
 
         if(status != KMC_ENGINE_SUCCESS)
@@ -416,7 +451,7 @@ public class KmcSdlsEngine
     
     public int init() throws Exception
     {
-        int status = this.kmcCInterface.sdls_init();
+        int status = cryptoLib(() -> this.kmcCInterface.sdls_init());
         this.engineStatus = status;
 
         if(status != KMC_ENGINE_SUCCESS)
@@ -426,7 +461,45 @@ public class KmcSdlsEngine
     }
     public void shutdown()
     {
-        this.kmcCInterface.sdls_shutdown();
+        cryptoLib(() -> this.kmcCInterface.sdls_shutdown());
+    }
+    // Replace the CryptoLib configuration, including the GVCID managed parameters, without a new engine: sdls_shutdown
+    // frees the current configuration, which is then rebuilt from the properties and initialized. No other call into
+    // CryptoLib may run meanwhile.
+    public int reconfigure(Properties props) throws Exception
+    {
+        synchronized (CRYPTOLIB_LOCK)
+        {
+            this.kmcCInterface.sdls_shutdown();
+
+            //Configure KmcSdlsEngine via Properties loading function.
+            this.configureKmcSdlsEngineFromProperties(props);
+
+            // Init the KmcSdlsEngine after configuration.
+            return this.init();
+        }
+    }
+
+    // Replace only the GVCID managed parameters, for changes to nothing else: the table is emptied and rebuilt from
+    // the properties without sdls_shutdown and sdls_init, so the SADB and crypto service connections stay open. No
+    // other call into CryptoLib may run meanwhile.
+    public int reconfigureGvcids(Properties props) throws Exception
+    {
+        synchronized (CRYPTOLIB_LOCK)
+        {
+            int status = this.clearGvcidManagedParameters();
+            this.configureGvcidManagedParametersFromProperties(props);
+            return status;
+        }
+    }
+
+    // Runs a call into CryptoLib while no other thread is in CryptoLib
+    private static int cryptoLib(IntSupplier call)
+    {
+        synchronized (CRYPTOLIB_LOCK)
+        {
+            return call.getAsInt();
+        }
     }
 
     public String applySecurity(String unencryptedFrameHexbytesString) throws Exception
@@ -435,18 +508,46 @@ public class KmcSdlsEngine
     }
     public String applySecurity(String unencryptedFrameHexbytesString, String camCookies) throws Exception
     {
-        int bytes_len = unencryptedFrameHexbytesString.length()/2 + unencryptedFrameHexbytesString.length()%2;
-        SWIGTYPE_p_unsigned_short len_encrypted_frame = this.kmcCInterface.create_uint16t_ptr(0);
+        return HEX.formatHex(this.applySecurity(hexToBytes(unencryptedFrameHexbytesString),camCookies));
+    }
 
-        SWIGTYPE_p_unsigned_char unencrypted_frame = this.kmcCInterface.hexstring_to_bytearray(unencryptedFrameHexbytesString,unencryptedFrameHexbytesString.length());
-        SWIGTYPE_p_p_unsigned_char encrypted_frame = this.kmcCInterface.create_bytearray_pp();
-        int status = this.kmcCInterface.apply_security_tc_cam(unencrypted_frame, bytes_len,encrypted_frame,len_encrypted_frame,camCookies);
-        if(status != KMC_ENGINE_SUCCESS)
-            throw new Exception("Unable to Apply Security on TC Frame, Error Code: " + status + ", Error Message: " + this.kmcCInterface.sdls_get_error_code_enum_string(status));
+    public byte[] applySecurity(byte[] unencryptedFrame) throws Exception
+    {
+        return this.applySecurity(unencryptedFrame,null);
+    }
+    public byte[] applySecurity(byte[] unencryptedFrame, String camCookies) throws Exception
+    {
+        checkFrameLength(unencryptedFrame.length);
+        byte[] encrypted_frame = new byte[MAX_TC_FRAME_SIZE];
+        int[] len_encrypted_frame = new int[1];
 
-        String encrypted_frame_hexstring = this.kmcCInterface.bytearray_pp_to_hexstring(encrypted_frame,this.kmcCInterface.deref_uint16t_ptr(len_encrypted_frame));
+        int status = cryptoLib(() -> this.kmcCInterface.apply_security_tc_bytes(unencryptedFrame,encrypted_frame,len_encrypted_frame,camCookies));
+        checkApplied(status,len_encrypted_frame[0],encrypted_frame.length);
 
-        return encrypted_frame_hexstring;
+        return Arrays.copyOf(encrypted_frame,len_encrypted_frame[0]);
+    }
+
+    // Applies security to the frame between the position and limit of unencryptedFrame, writing the result at the
+    // position of encryptedFrame. Both buffers must be direct, they are read and written in place.
+    public int applySecurity(ByteBuffer unencryptedFrame, ByteBuffer encryptedFrame) throws Exception
+    {
+        return this.applySecurity(unencryptedFrame,encryptedFrame,null);
+    }
+    public int applySecurity(ByteBuffer unencryptedFrame, ByteBuffer encryptedFrame, String camCookies) throws Exception
+    {
+        checkDirect(unencryptedFrame);
+        checkDirect(encryptedFrame);
+        checkFrameLength(unencryptedFrame.remaining());
+        int[] len_encrypted_frame = new int[1];
+
+        ByteBuffer in = unencryptedFrame.slice();
+        ByteBuffer out = encryptedFrame.slice();
+        int status = cryptoLib(() -> this.kmcCInterface.apply_security_tc_buffer(in,out,len_encrypted_frame,camCookies));
+        checkApplied(status,len_encrypted_frame[0],encryptedFrame.remaining());
+
+        unencryptedFrame.position(unencryptedFrame.limit());
+        encryptedFrame.position(encryptedFrame.position() + len_encrypted_frame[0]);
+        return len_encrypted_frame[0];
     }
 
     public SDLS_TC_TransferFrame processSecurity(String encryptedFrameHexbytesString) throws Exception
@@ -455,73 +556,77 @@ public class KmcSdlsEngine
     }
     public SDLS_TC_TransferFrame processSecurity(String encryptedFrameHexbytesString, String camCookies) throws Exception
     {
-        int bytes_len = encryptedFrameHexbytesString.length()/2 + encryptedFrameHexbytesString.length()%2;
-        SWIGTYPE_p_int len_encrypted_frame = this.kmcCInterface.create_int_ptr(bytes_len);
-        SWIGTYPE_p_unsigned_char encrypted_frame = this.kmcCInterface.hexstring_to_bytearray(encryptedFrameHexbytesString,encryptedFrameHexbytesString.length());
-        this.tc_ptr = new TC_t();
+        return processSecurity(hexToBytes(encryptedFrameHexbytesString),camCookies);
+    }
 
-        int status = this.kmcCInterface.process_security_tc_uint8t(encrypted_frame,len_encrypted_frame,this.tc_ptr,camCookies);
-        if(status != KMC_ENGINE_SUCCESS)
-            throw new Exception("Unable to Process Security on TC Frame, Error Code: " + status + ", Error Message: " + this.kmcCInterface.sdls_get_error_code_enum_string(status));
+    public SDLS_TC_TransferFrame processSecurity(byte[] encryptedFrame) throws Exception
+    {
+        return processSecurity(encryptedFrame,null);
+    }
+    public SDLS_TC_TransferFrame processSecurity(byte[] encryptedFrame, String camCookies) throws Exception
+    {
+        checkFrameLength(encryptedFrame.length);
+        TC_t tc_ptr = new TC_t();
+
+        int status = cryptoLib(() -> this.kmcCInterface.process_security_tc_bytes(encryptedFrame,tc_ptr,camCookies));
+        checkProcessed(status);
+
+        return toTransferFrame(tc_ptr);
+    }
 
+    // Processes security on the frame between the position and limit of encryptedFrame, which must be direct.
+    public SDLS_TC_TransferFrame processSecurity(ByteBuffer encryptedFrame) throws Exception
+    {
+        return processSecurity(encryptedFrame,null);
+    }
+    public SDLS_TC_TransferFrame processSecurity(ByteBuffer encryptedFrame, String camCookies) throws Exception
+    {
+        checkDirect(encryptedFrame);
+        checkFrameLength(encryptedFrame.remaining());
+        TC_t tc_ptr = new TC_t();
+
+        ByteBuffer in = encryptedFrame.slice();
+        int status = cryptoLib(() -> this.kmcCInterface.process_security_tc_buffer(in,tc_ptr,camCookies));
+        checkProcessed(status);
+
+        encryptedFrame.position(encryptedFrame.limit());
+        return toTransferFrame(tc_ptr);
+    }
+
+    private SDLS_TC_TransferFrame toTransferFrame(TC_t tc_ptr)
+    {
         SDLS_TC_TransferFrame sdlsTCFrame = new SDLS_TC_TransferFrame();
         // Parse Primary Header
-        sdlsTCFrame.tfvn = this.tc_ptr.getTc_header().getTfvn();
-        sdlsTCFrame.bypass = this.tc_ptr.getTc_header().getBypass();
-        sdlsTCFrame.cc = this.tc_ptr.getTc_header().getCc();
-        sdlsTCFrame.spare = this.tc_ptr.getTc_header().getSpare();
-        sdlsTCFrame.scid = this.tc_ptr.getTc_header().getScid();
-        sdlsTCFrame.vcid = this.tc_ptr.getTc_header().getVcid();
-        sdlsTCFrame.fl = this.tc_ptr.getTc_header().getFl();
-        sdlsTCFrame.fsn = this.tc_ptr.getTc_header().getFsn();
-
-        //sdlsTCFrame.tfvn = this.kmcCInterface.get_tfvn(this.tc_ptr);
-        //sdlsTCFrame.bypass = this.kmcCInterface.get_bypass(this.tc_ptr);
-        //sdlsTCFrame.cc = this.kmcCInterface.get_cc(this.tc_ptr);
-        //sdlsTCFrame.spare = this.kmcCInterface.get_spare(this.tc_ptr);
-        //sdlsTCFrame.scid = this.kmcCInterface.get_scid(this.tc_ptr);
-        //sdlsTCFrame.vcid = this.kmcCInterface.get_vcid(this.tc_ptr);
-        //sdlsTCFrame.fl = this.kmcCInterface.get_fl(this.tc_ptr);
-        //sdlsTCFrame.fsn = this.kmcCInterface.get_fsn(this.tc_ptr);
+        sdlsTCFrame.tfvn = tc_ptr.getTc_header().getTfvn();
+        sdlsTCFrame.bypass = tc_ptr.getTc_header().getBypass();
+        sdlsTCFrame.cc = tc_ptr.getTc_header().getCc();
+        sdlsTCFrame.spare = tc_ptr.getTc_header().getSpare();
+        sdlsTCFrame.scid = tc_ptr.getTc_header().getScid();
+        sdlsTCFrame.vcid = tc_ptr.getTc_header().getVcid();
+        sdlsTCFrame.fl = tc_ptr.getTc_header().getFl();
+        sdlsTCFrame.fsn = tc_ptr.getTc_header().getFsn();
+
         // Parse Security Headear
-        sdlsTCFrame.sh = this.tc_ptr.getTc_sec_header().getSh();
-        sdlsTCFrame.spi = this.tc_ptr.getTc_sec_header().getSpi();
-        sdlsTCFrame.iv_field_len = this.tc_ptr.getTc_sec_header().getIv_field_len();
-        SWIGTYPE_p_unsigned_char iv_ptr = this.tc_ptr.getTc_sec_header().getIv();
+        sdlsTCFrame.sh = tc_ptr.getTc_sec_header().getSh();
+        sdlsTCFrame.spi = tc_ptr.getTc_sec_header().getSpi();
+        sdlsTCFrame.iv_field_len = tc_ptr.getTc_sec_header().getIv_field_len();
+        SWIGTYPE_p_unsigned_char iv_ptr = tc_ptr.getTc_sec_header().getIv();
         sdlsTCFrame.iv = this.kmcCInterface.bytearray_to_hexstring(iv_ptr,sdlsTCFrame.iv_field_len);
-        sdlsTCFrame.sn_field_len = this.tc_ptr.getTc_sec_header().getSn_field_len();
-        SWIGTYPE_p_unsigned_char sn_ptr = this.tc_ptr.getTc_sec_header().getSn();
+        sdlsTCFrame.sn_field_len = tc_ptr.getTc_sec_header().getSn_field_len();
+        SWIGTYPE_p_unsigned_char sn_ptr = tc_ptr.getTc_sec_header().getSn();
         sdlsTCFrame.sn = this.kmcCInterface.bytearray_to_hexstring(sn_ptr,sdlsTCFrame.sn_field_len);
-        sdlsTCFrame.pad_field_len = this.tc_ptr.getTc_sec_header().getPad_field_len();
-        SWIGTYPE_p_unsigned_char pad_ptr =this.tc_ptr.getTc_sec_header().getPad();
+        sdlsTCFrame.pad_field_len = tc_ptr.getTc_sec_header().getPad_field_len();
+        SWIGTYPE_p_unsigned_char pad_ptr = tc_ptr.getTc_sec_header().getPad();
         sdlsTCFrame.pad = this.kmcCInterface.bytearray_to_hexstring(pad_ptr,sdlsTCFrame.pad_field_len);
-//        sdlsTCFrame.sh = this.kmcCInterface.get_sh(this.tc_ptr);
-//        sdlsTCFrame.spi = this.kmcCInterface.get_spi(this.tc_ptr);
-//        sdlsTCFrame.iv_field_len = this.kmcCInterface.get_iv_field_len(this.tc_ptr);
-//        SWIGTYPE_p_unsigned_char iv_ptr = this.kmcCInterface.get_iv_ptr(this.tc_ptr);
-//        sdlsTCFrame.iv = this.kmcCInterface.bytearray_to_hexstring(iv_ptr,sdlsTCFrame.iv_field_len);
-//        sdlsTCFrame.sn_field_len = this.kmcCInterface.get_sn_field_len(this.tc_ptr);
-//        SWIGTYPE_p_unsigned_char sn_ptr = this.kmcCInterface.get_sn_ptr(this.tc_ptr);
-//        sdlsTCFrame.sn = this.kmcCInterface.bytearray_to_hexstring(sn_ptr,sdlsTCFrame.sn_field_len);
-//        sdlsTCFrame.pad_field_len = this.kmcCInterface.get_pad_field_len(this.tc_ptr);
-//        SWIGTYPE_p_unsigned_char pad_ptr = this.kmcCInterface.get_pad_ptr(this.tc_ptr);
-//        sdlsTCFrame.pad = this.kmcCInterface.bytearray_to_hexstring(pad_ptr,sdlsTCFrame.pad_field_len);
         // Parse Frame Data
-        sdlsTCFrame.tc_pdu_len = this.tc_ptr.getTc_pdu_len();
-        SWIGTYPE_p_unsigned_char pdu_ptr = this.tc_ptr.getTc_pdu();
+        sdlsTCFrame.tc_pdu_len = tc_ptr.getTc_pdu_len();
+        SWIGTYPE_p_unsigned_char pdu_ptr = tc_ptr.getTc_pdu();
         sdlsTCFrame.tc_pdu = this.kmcCInterface.bytearray_to_hexstring(pdu_ptr,sdlsTCFrame.tc_pdu_len);
-//        sdlsTCFrame.tc_pdu_len = this.kmcCInterface.get_tc_pdu_len(this.tc_ptr);
-//        SWIGTYPE_p_unsigned_char pdu_ptr = this.kmcCInterface.get_pdu_ptr(this.tc_ptr);
-//        sdlsTCFrame.tc_pdu = this.kmcCInterface.bytearray_to_hexstring(pdu_ptr,sdlsTCFrame.tc_pdu_len);
         // Parse Security Trailer Fields
-        sdlsTCFrame.mac_field_len = this.tc_ptr.getTc_sec_trailer().getMac_field_len();
-        SWIGTYPE_p_unsigned_char mac_ptr = this.tc_ptr.getTc_sec_trailer().getMac();
+        sdlsTCFrame.mac_field_len = tc_ptr.getTc_sec_trailer().getMac_field_len();
+        SWIGTYPE_p_unsigned_char mac_ptr = tc_ptr.getTc_sec_trailer().getMac();
         sdlsTCFrame.mac = this.kmcCInterface.bytearray_to_hexstring(mac_ptr,sdlsTCFrame.mac_field_len);
-        sdlsTCFrame.fecf = this.tc_ptr.getTc_sec_trailer().getFecf();
-//        sdlsTCFrame.mac_field_len = this.kmcCInterface.get_mac_field_len(this.tc_ptr);
-//        SWIGTYPE_p_unsigned_char mac_ptr = this.kmcCInterface.get_mac_ptr(this.tc_ptr);
-//        sdlsTCFrame.mac = this.kmcCInterface.bytearray_to_hexstring(mac_ptr,sdlsTCFrame.mac_field_len);
-//        sdlsTCFrame.fecf = this.kmcCInterface.get_fecf(this.tc_ptr);
+        sdlsTCFrame.fecf = tc_ptr.getTc_sec_trailer().getFecf();
 
         return sdlsTCFrame;
     }
@@ -531,17 +636,132 @@ public class KmcSdlsEngine
     }
     public String processSecurityReturnDataOnly(String encryptedFrameHexbytesString, String camCookies) throws Exception
     {
-        int bytes_len = encryptedFrameHexbytesString.length()/2 + encryptedFrameHexbytesString.length()%2;
-        SWIGTYPE_p_int len_encrypted_frame = this.kmcCInterface.create_int_ptr(bytes_len);
-        SWIGTYPE_p_unsigned_char encrypted_frame = this.kmcCInterface.hexstring_to_bytearray(encryptedFrameHexbytesString,encryptedFrameHexbytesString.length());
-        this.tc_ptr = new TC_t();
+        return HEX.formatHex(processSecurityReturnDataOnly(hexToBytes(encryptedFrameHexbytesString), camCookies));
+    }
+    public byte[] processSecurityReturnDataOnly(byte[] encryptedFrame) throws Exception
+    {
+        return processSecurityReturnDataOnly(encryptedFrame, null);
+    }
+    public byte[] processSecurityReturnDataOnly(byte[] encryptedFrame, String camCookies) throws Exception
+    {
+        checkFrameLength(encryptedFrame.length);
+        TC_t tc_ptr = new TC_t();
+
+        int status = cryptoLib(() -> this.kmcCInterface.process_security_tc_bytes(encryptedFrame,tc_ptr,camCookies));
+        checkProcessed(status);
+
+        byte[] pdu = new byte[(int)tc_ptr.getTc_pdu_len()];
+        this.kmcCInterface.get_tc_pdu_bytes(tc_ptr,pdu);
+        return pdu;
+    }
+
+    // Processes security on a frame and returns the compact processed frame: PROCESSED_HEADER_SIZE bytes of
+    // big-endian header fields (tfvn, bypass, cc, vcid, scid:2, fl:2, fsn, sh, spi:2, fecf:2, tc_pdu_len:2) followed
+    // by the PDU, filled in one native copy instead of one getter call per field.
+    public byte[] processSecurityCompact(byte[] encryptedFrame) throws Exception
+    {
+        return processSecurityCompact(encryptedFrame, null);
+    }
+    public byte[] processSecurityCompact(byte[] encryptedFrame, String camCookies) throws Exception
+    {
+        checkFrameLength(encryptedFrame.length);
+        byte[] processed = new byte[PROCESSED_HEADER_SIZE + MAX_TC_FRAME_SIZE];
+        int[] len_processed = new int[1];
+
+        int status = cryptoLib(() -> this.kmcCInterface.process_security_tc_compact(encryptedFrame,processed,len_processed,camCookies));
+        checkProcessed(status);
+        if(len_processed[0] > processed.length)
+            throw new Exception("Unable to Process Security on TC Frame, the " + len_processed[0] + " byte processed frame does not fit in " + processed.length + " bytes");
+
+        return Arrays.copyOf(processed,len_processed[0]);
+    }
+
+    // Applies security to each frame of a batch in one call into CryptoLib. A frame that fails does not stop the
+    // frames after it, its result has its CryptoLib status and error name.
+    public byte[] applySecurityBatch(byte[] frames) throws Exception
+    {
+        return applySecurityBatch(frames, null);
+    }
+    public byte[] applySecurityBatch(byte[] frames, String camCookies) throws Exception
+    {
+        byte[] results = new byte[batchResultsSize(frames)];
+        int[] len_results = new int[1];
+
+        int count = cryptoLib(() -> this.kmcCInterface.apply_security_tc_batch(frames,results,len_results,camCookies));
+        if(count < 0)
+            throw new Exception("Unable to Apply Security on TC Frame Batch, the frames or their results are not framed correctly");
+
+        return Arrays.copyOf(results,len_results[0]);
+    }
+
+    // Processes security on each frame of a batch in one call into CryptoLib, the result of a frame is its PDU.
+    public byte[] processSecurityBatch(byte[] frames) throws Exception
+    {
+        return processSecurityBatch(frames, null);
+    }
+    public byte[] processSecurityBatch(byte[] frames, String camCookies) throws Exception
+    {
+        byte[] results = new byte[batchResultsSize(frames)];
+        int[] len_results = new int[1];
+
+        int count = cryptoLib(() -> this.kmcCInterface.process_security_tc_batch(frames,results,len_results,camCookies));
+        if(count < 0)
+            throw new Exception("Unable to Process Security on TC Frame Batch, the frames or their results are not framed correctly");
 
-        int status = this.kmcCInterface.process_security_tc_uint8t(encrypted_frame,len_encrypted_frame,this.tc_ptr, camCookies);
+        return Arrays.copyOf(results,len_results[0]);
+    }
+
+    // Checks the framing of a batch, and returns the size of its results with room for a full frame per frame
+    private static int batchResultsSize(byte[] frames)
+    {
+        int count = 0;
+        for(int pos = 0; pos < frames.length; count++)
+        {
+            if(count == MAX_BATCH_FRAMES)
+                throw new IllegalArgumentException("TC Frame Batch has more than " + MAX_BATCH_FRAMES + " frames");
+            if(pos + BATCH_LENGTH_SIZE > frames.length)
+                throw new IllegalArgumentException("TC Frame Batch is truncated in the length of frame " + count);
+            int length = ((frames[pos] & 0xFF) << 8) | (frames[pos + 1] & 0xFF);
+            checkFrameLength(length);
+            pos += BATCH_LENGTH_SIZE + length;
+            if(pos > frames.length)
+                throw new IllegalArgumentException("TC Frame Batch is truncated in frame " + count);
+        }
+        return count * (BATCH_STATUS_SIZE + BATCH_LENGTH_SIZE + MAX_TC_FRAME_SIZE);
+    }
+
+    private void checkApplied(int status, int len_encrypted_frame, int capacity) throws Exception
+    {
         if(status != KMC_ENGINE_SUCCESS)
-            throw new Exception("Unable to Process Security on TC Frame, Error Code: " + status + ", Error Message: " + this.kmcCInterface.sdls_get_error_code_enum_string(status));
+            throw new KmcSdlsEngineException("Unable to Apply Security on TC Frame, Error Code: " + status + ", Error Message: " + this.kmcCInterface.sdls_get_error_code_enum_string(status), status);
+        if(len_encrypted_frame > capacity)
+            throw new Exception("Unable to Apply Security on TC Frame, the " + len_encrypted_frame + " byte applied frame does not fit in " + capacity + " bytes");
+    }
 
-        return this.kmcCInterface.bytearray_to_hexstring(this.tc_ptr.getTc_pdu(),this.tc_ptr.getTc_pdu_len());
+    private void checkProcessed(int status) throws Exception
+    {
+        if(status != KMC_ENGINE_SUCCESS)
+            throw new KmcSdlsEngineException("Unable to Process Security on TC Frame, Error Code: " + status + ", Error Message: " + this.kmcCInterface.sdls_get_error_code_enum_string(status), status);
     }
 
-}
+    private static void checkFrameLength(int length)
+    {
+        if(length > MAX_TC_FRAME_SIZE)
+            throw new IllegalArgumentException("TC Frame of " + length + " bytes is longer than the maximum of " + MAX_TC_FRAME_SIZE + " bytes");
+    }
+
+    private static void checkDirect(ByteBuffer buffer)
+    {
+        if(!buffer.isDirect())
+            throw new IllegalArgumentException("TC Frame buffers must be direct, use ByteBuffer.allocateDirect()");
+    }
+
+    private static byte[] hexToBytes(String hexbytesString)
+    {
+        // An odd trailing digit is the low nibble of the last byte, as with the CryptoLib hex parser
+        if(hexbytesString.length() % 2 != 0)
+            hexbytesString = hexbytesString.substring(0, hexbytesString.length() - 1) + "0" + hexbytesString.charAt(hexbytesString.length() - 1);
+        return HexFormat.of().parseHex(hexbytesString);
+    }
 
+}
@@ -0,0 +1,19 @@
+package gov.nasa.jpl.ammos.asec.kmc;
+
+// A frame that CryptoLib failed to apply or process security on, with the CryptoLib status of the failure.
+public class KmcSdlsEngineException extends Exception
+{
+    private final int status;
+
+    public KmcSdlsEngineException(String message, int status)
+    {
+        super(message);
+        this.status = status;
+    }
+
+    // CryptoLib status, see KmcSdlsEngine.getCryptoLibErrorCodeEnum
+    public int getStatus()
+    {
+        return this.status;
+    }
+}
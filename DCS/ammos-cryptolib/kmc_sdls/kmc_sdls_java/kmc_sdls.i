@@ -11,8 +11,52 @@
 // Need typemaps for char* and uint8_t* http://www.swig.org/Doc3.0/SWIGDocumentation.html#Java_typemaps
 // http://www.swig.org/Doc3.0/SWIGDocumentation.html#Typemaps
 
+%include typemaps.i
+%apply int *OUTPUT { int *out_len };
+%ignore apply_security_tc_into;
+%ignore batch_put_result;
+%ignore process_security_tc_copy;
+
+// Frames passed as Java byte[], without conversion to and from hex strings. The elements are released without being
+// copied back for input frames, and copied back for output frames. GetPrimitiveArrayCritical is not used, as CryptoLib
+// may block on the KMC Crypto Service or the SADB while holding the frame.
+%typemap(jni)    (const uint8_t* in_bytes, int in_bytes_len), (uint8_t* out_bytes, int out_bytes_size) "jbyteArray"
+%typemap(jtype)  (const uint8_t* in_bytes, int in_bytes_len), (uint8_t* out_bytes, int out_bytes_size) "byte[]"
+%typemap(jstype) (const uint8_t* in_bytes, int in_bytes_len), (uint8_t* out_bytes, int out_bytes_size) "byte[]"
+%typemap(javain) (const uint8_t* in_bytes, int in_bytes_len), (uint8_t* out_bytes, int out_bytes_size) "$javainput"
+%typemap(in)     (const uint8_t* in_bytes, int in_bytes_len), (uint8_t* out_bytes, int out_bytes_size) {
+    if (!$input) {
+        SWIG_JavaThrowException(jenv, SWIG_JavaNullPointerException, "null frame array");
+        return $null;
+    }
+    $1 = (uint8_t*)JCALL2(GetByteArrayElements, jenv, $input, NULL);
+    $2 = (int)JCALL1(GetArrayLength, jenv, $input);
+}
+%typemap(freearg) (const uint8_t* in_bytes, int in_bytes_len) {
+    JCALL3(ReleaseByteArrayElements, jenv, $input, (jbyte*)$1, JNI_ABORT);
+}
+%typemap(freearg) (uint8_t* out_bytes, int out_bytes_size) {
+    JCALL3(ReleaseByteArrayElements, jenv, $input, (jbyte*)$1, 0);
+}
+
+// Frames passed as direct java.nio.ByteBuffer, read and written in place. The whole capacity of the buffer is the
+// frame, callers pass a slice of the buffer between its position and limit.
+%typemap(jni)    (const uint8_t* in_buffer, int in_buffer_len), (uint8_t* out_buffer, int out_buffer_size) "jobject"
+%typemap(jtype)  (const uint8_t* in_buffer, int in_buffer_len), (uint8_t* out_buffer, int out_buffer_size) "java.nio.ByteBuffer"
+%typemap(jstype) (const uint8_t* in_buffer, int in_buffer_len), (uint8_t* out_buffer, int out_buffer_size) "java.nio.ByteBuffer"
+%typemap(javain) (const uint8_t* in_buffer, int in_buffer_len), (uint8_t* out_buffer, int out_buffer_size) "$javainput"
+%typemap(in)     (const uint8_t* in_buffer, int in_buffer_len), (uint8_t* out_buffer, int out_buffer_size) {
+    $1 = $input ? (uint8_t*)JCALL1(GetDirectBufferAddress, jenv, $input) : NULL;
+    if (!$1) {
+        SWIG_JavaThrowException(jenv, SWIG_JavaIllegalArgumentException, "frame buffer is not a direct buffer");
+        return $null;
+    }
+    $2 = (int)JCALL1(GetDirectBufferCapacity, jenv, $input);
+}
+
 %inline %{
 
+    #include <string.h>
     #include "kmc_sdls.h"
     #include "crypto_structs.h"
     #include "crypto_config_structs.h"
@@ -23,6 +67,7 @@
                                        char* mysql_mtls_key,
                                        char* mysql_mtls_client_key_password, char* mysql_username, char* mysql_password);
     extern int32_t sdls_config_add_gvcid_managed_parameter(uint8_t tfvn, uint16_t scid, uint8_t vcid, uint8_t has_fecf, uint8_t has_segmentation_hdr, uint16_t max_tc_frame_size);
+    extern int32_t sdls_config_clear_gvcid_managed_parameters(void);
     extern int32_t sdls_config_kmc_crypto_service(char* protocol, char* kmc_crypto_hostname, uint16_t kmc_crypto_port,
                                                   char* kmc_crypto_app, char* kmc_tls_ca_bundle, char* kmc_tls_ca_path,
                                                   uint8_t kmc_ignore_ssl_hostname_validation, char* mtls_client_cert_path,
@@ -41,6 +86,7 @@
     extern int32_t process_security_tc (char* sdls_transfer_frame, int* length, TC_t* tc_sdls_processed_frame);
     extern int32_t apply_security_tc_cam (const uint8_t* p_in_frame, const uint16_t in_frame_length, uint8_t **pp_enc_frame, uint16_t *p_enc_frame_len,char* cam_cookies);
     extern int32_t process_security_tc_cam (char* sdls_transfer_frame, int* length, TC_t* tc_sdls_processed_frame, char* cam_cookies);
+    extern int32_t apply_security_tc_cam_into (const uint8_t* p_in_frame, const uint16_t in_frame_length, uint8_t* p_out_frame, const uint16_t out_frame_size, uint16_t *p_out_frame_len, char* cam_cookies);
 
     extern char* sdls_get_error_code_enum_string(int32_t crypto_error_code);
 
@@ -57,6 +103,197 @@
         return status;
     }
 
+    //******************************************************************************************************************
+    // Binary frame entry points, see the byte[] and ByteBuffer typemaps
+    int32_t apply_security_tc_into(const uint8_t* p_in_frame, int in_frame_len, uint8_t* p_out_frame, int out_frame_size, int* out_len, char* cam_cookies){
+        // Frame lengths are checked by KmcSdlsEngine, TC frames are at most 1024 bytes
+        uint16_t len = 0;
+        int32_t status = apply_security_tc_cam_into(p_in_frame, (uint16_t)in_frame_len, p_out_frame,
+                                                    out_frame_size > UINT16_MAX ? UINT16_MAX : (uint16_t)out_frame_size,
+                                                    &len, cam_cookies);
+        *out_len = len;
+        return status;
+    }
+    int32_t apply_security_tc_bytes(const uint8_t* in_bytes, int in_bytes_len, uint8_t* out_bytes, int out_bytes_size, int* out_len, char* cam_cookies){
+        return apply_security_tc_into(in_bytes, in_bytes_len, out_bytes, out_bytes_size, out_len, cam_cookies);
+    }
+    int32_t apply_security_tc_buffer(const uint8_t* in_buffer, int in_buffer_len, uint8_t* out_buffer, int out_buffer_size, int* out_len, char* cam_cookies){
+        return apply_security_tc_into(in_buffer, in_buffer_len, out_buffer, out_buffer_size, out_len, cam_cookies);
+    }
+    int32_t process_security_tc_copy(const uint8_t* in_frame, int in_frame_len, TC_t* tc_sdls_processed_frame, char* cam_cookies){
+        // CryptoLib may modify the frame it processes, it is given a copy so the caller's array or buffer is only read.
+        // CryptoLib copies what it needs into the processed frame, the copy is freed on return
+        char* tmp_bytearray = malloc(in_frame_len > 0 ? in_frame_len : 1);
+        if (tmp_bytearray == NULL)
+            return CRYPTO_LIB_ERROR;
+        memcpy(tmp_bytearray, in_frame, in_frame_len);
+        int length = in_frame_len;
+        int32_t status = process_security_tc_cam(tmp_bytearray, &length, tc_sdls_processed_frame, cam_cookies);
+        free(tmp_bytearray);
+        return status;
+    }
+    int32_t process_security_tc_bytes(const uint8_t* in_bytes, int in_bytes_len, TC_t* tc_sdls_processed_frame, char* cam_cookies){
+        return process_security_tc_copy(in_bytes, in_bytes_len, tc_sdls_processed_frame, cam_cookies);
+    }
+    int32_t process_security_tc_buffer(const uint8_t* in_buffer, int in_buffer_len, TC_t* tc_sdls_processed_frame, char* cam_cookies){
+        return process_security_tc_copy(in_buffer, in_buffer_len, tc_sdls_processed_frame, cam_cookies);
+    }
+    int get_tc_pdu_bytes(TC_t* tc, uint8_t* out_bytes, int out_bytes_size){
+        int len = (int)tc->tc_pdu_len;
+        memcpy(out_bytes, tc->tc_pdu, len < out_bytes_size ? len : out_bytes_size);
+        return len;
+    }
+
+    //******************************************************************************************************************
+    // Compact processed frame, a fixed header of big-endian fields followed by the PDU, copied out of the processed
+    // frame at once rather than field by field through the TC_t getters:
+    //   0 tfvn, 1 bypass, 2 cc, 3 vcid, 4-5 scid, 6-7 fl, 8 fsn, 9 sh, 10-11 spi, 12-13 fecf, 14-15 tc_pdu_len, 16 PDU
+    // Return the CryptoLib status. On success out_len is the length of the header and PDU, which are only written
+    // if they fit in the output.
+    int32_t process_security_tc_compact(const uint8_t* in_bytes, int in_bytes_len, uint8_t* out_bytes, int out_bytes_size, int* out_len, char* cam_cookies){
+        TC_t* tc = calloc(1, sizeof(TC_t));
+        *out_len = 0;
+        if (tc == NULL)
+            return CRYPTO_LIB_ERROR;
+        int32_t status = process_security_tc_copy(in_bytes, in_bytes_len, tc, cam_cookies);
+        if (status == CRYPTO_LIB_SUCCESS)
+        {
+            int pdu_len = (int)tc->tc_pdu_len;
+            *out_len = 16 + pdu_len;
+            if (*out_len <= out_bytes_size)
+            {
+                uint8_t* p = out_bytes;
+                p[0] = (uint8_t)tc->tc_header.tfvn;
+                p[1] = (uint8_t)tc->tc_header.bypass;
+                p[2] = (uint8_t)tc->tc_header.cc;
+                p[3] = (uint8_t)tc->tc_header.vcid;
+                p[4] = (uint8_t)(tc->tc_header.scid >> 8);
+                p[5] = (uint8_t)tc->tc_header.scid;
+                p[6] = (uint8_t)(tc->tc_header.fl >> 8);
+                p[7] = (uint8_t)tc->tc_header.fl;
+                p[8] = (uint8_t)tc->tc_header.fsn;
+                p[9] = (uint8_t)tc->tc_sec_header.sh;
+                p[10] = (uint8_t)(tc->tc_sec_header.spi >> 8);
+                p[11] = (uint8_t)tc->tc_sec_header.spi;
+                p[12] = (uint8_t)(tc->tc_sec_trailer.fecf >> 8);
+                p[13] = (uint8_t)tc->tc_sec_trailer.fecf;
+                p[14] = (uint8_t)(pdu_len >> 8);
+                p[15] = (uint8_t)pdu_len;
+                memcpy(p + 16, tc->tc_pdu, pdu_len);
+            }
+        }
+        free(tc);
+        return status;
+    }
+
+    //******************************************************************************************************************
+    // Batch entry points. Input frames are each prefixed with their length, as an unsigned big-endian 16 bit integer.
+    // For each input frame, the output holds its CryptoLib status as a big-endian 32 bit integer, followed by the
+    // applied frame or the processed PDU on success, or the CryptoLib error name on failure, prefixed with its length
+    // like the input frames. A frame that fails does not stop the frames after it.
+    // Return the number of frames in the batch, or -1 if the input framing is invalid or the output does not fit.
+    int batch_put_result(uint8_t* out_bytes, int out_bytes_size, int* pos, int32_t status, const uint8_t* data, int len){
+        if (*pos + 6 + len > out_bytes_size)
+            return -1;
+        uint8_t* p = out_bytes + *pos;
+        p[0] = (uint8_t)((uint32_t)status >> 24);
+        p[1] = (uint8_t)((uint32_t)status >> 16);
+        p[2] = (uint8_t)((uint32_t)status >> 8);
+        p[3] = (uint8_t)status;
+        p[4] = (uint8_t)(len >> 8);
+        p[5] = (uint8_t)len;
+        if (len > 0)
+            memcpy(p + 6, data, len);
+        *pos += 6 + len;
+        return 0;
+    }
+    int32_t apply_security_tc_batch(const uint8_t* in_bytes, int in_bytes_len, uint8_t* out_bytes, int out_bytes_size, int* out_len, char* cam_cookies){
+        // Applied frames are at most UINT16_MAX bytes, their length is a uint16_t
+        uint8_t* enc_frame = malloc(UINT16_MAX);
+        int in_pos = 0;
+        int frames = 0;
+        *out_len = 0;
+        if (enc_frame == NULL)
+            return -1;
+        while (in_pos < in_bytes_len)
+        {
+            if (in_pos + 2 > in_bytes_len)
+            {
+                frames = -1;
+                break;
+            }
+            int frame_len = (in_bytes[in_pos] << 8) | in_bytes[in_pos + 1];
+            in_pos += 2;
+            if (in_pos + frame_len > in_bytes_len)
+            {
+                frames = -1;
+                break;
+            }
+            uint16_t enc_frame_len = 0;
+            int32_t status = apply_security_tc_cam_into(in_bytes + in_pos, (uint16_t)frame_len, enc_frame,
+                                                        UINT16_MAX, &enc_frame_len, cam_cookies);
+            in_pos += frame_len;
+            int put;
+            if (status != CRYPTO_LIB_SUCCESS)
+            {
+                char* error = sdls_get_error_code_enum_string(status);
+                put = batch_put_result(out_bytes, out_bytes_size, out_len, status, (uint8_t*)error, error == NULL ? 0 : (int)strlen(error));
+            }
+            else
+                put = batch_put_result(out_bytes, out_bytes_size, out_len, status, enc_frame, enc_frame_len);
+            if (put != 0)
+            {
+                frames = -1;
+                break;
+            }
+            frames++;
+        }
+        free(enc_frame);
+        return frames;
+    }
+    int32_t process_security_tc_batch(const uint8_t* in_bytes, int in_bytes_len, uint8_t* out_bytes, int out_bytes_size, int* out_len, char* cam_cookies){
+        TC_t* tc = malloc(sizeof(TC_t));
+        int in_pos = 0;
+        int frames = 0;
+        *out_len = 0;
+        if (tc == NULL)
+            return -1;
+        while (in_pos < in_bytes_len)
+        {
+            if (in_pos + 2 > in_bytes_len)
+            {
+                frames = -1;
+                break;
+            }
+            int frame_len = (in_bytes[in_pos] << 8) | in_bytes[in_pos + 1];
+            in_pos += 2;
+            if (in_pos + frame_len > in_bytes_len)
+            {
+                frames = -1;
+                break;
+            }
+            memset(tc, 0, sizeof(TC_t));
+            int32_t status = process_security_tc_copy(in_bytes + in_pos, frame_len, tc, cam_cookies);
+            in_pos += frame_len;
+            int put;
+            if (status != CRYPTO_LIB_SUCCESS)
+            {
+                char* error = sdls_get_error_code_enum_string(status);
+                put = batch_put_result(out_bytes, out_bytes_size, out_len, status, (uint8_t*)error, error == NULL ? 0 : (int)strlen(error));
+            }
+            else
+                put = batch_put_result(out_bytes, out_bytes_size, out_len, status, tc->tc_pdu, (int)tc->tc_pdu_len);
+            if (put != 0)
+            {
+                frames = -1;
+                break;
+            }
+            frames++;
+        }
+        free(tc);
+        return frames;
+    }
+
     //******************************************************************************************************************
     // Glue functions to handle conversions between non-primitive C and Java types
 
@@ -4,6 +4,11 @@ Test KmcSdlsJNI bindings.
 
 import gov.nasa.jpl.ammos.asec.kmc.SDLS_TC_TransferFrame;
 import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Properties;
 import static org.junit.Assert.*;
 
 import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
@@ -77,6 +82,139 @@ public class KmcSdlsJavaTest
         kmcEngine.shutdown();
     }
 
+    @Test
+    public void testApplySecurityTcBytes() throws Exception
+    {
+        KmcSdlsEngine kmcEngine = setupKmcSdlsEngineForUnitTestInmemoryLibgcrypt();
+        byte[] result;
+        try{
+            result = kmcEngine.applySecurity(hexStringToByteArray("20030015000080d2c70008197f0b00310000b1fe3128"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            kmcEngine.shutdown();
+            throw e;
+        }
+        kmcEngine.shutdown();
+        assertArrayEquals(hexStringToByteArray("2003001700000001000080D2C70008197F0B00310000BB80"),result);
+    }
+
+    @Test
+    public void testApplySecurityTcDirectBuffer() throws Exception
+    {
+        KmcSdlsEngine kmcEngine = setupKmcSdlsEngineForUnitTestInmemoryLibgcrypt();
+        ByteBuffer in = ByteBuffer.allocateDirect(64);
+        ByteBuffer out = ByteBuffer.allocateDirect(KmcSdlsEngine.MAX_TC_FRAME_SIZE);
+        in.put(hexStringToByteArray("20030015000080d2c70008197f0b00310000b1fe3128")).flip();
+        int len;
+        try{
+            len = kmcEngine.applySecurity(in,out);
+        } catch (Exception e) {
+            e.printStackTrace();
+            kmcEngine.shutdown();
+            throw e;
+        }
+        kmcEngine.shutdown();
+        assertEquals(24,len);
+        assertEquals(24,out.position());
+        assertFalse(in.hasRemaining());
+        byte[] result = new byte[len];
+        out.flip().get(result);
+        assertArrayEquals(hexStringToByteArray("2003001700000001000080D2C70008197F0B00310000BB80"),result);
+    }
+
+    @Test
+    public void testProcessSecurityTcBytes() throws Exception
+    {
+        KmcSdlsEngine kmcEngine = setupKmcSdlsEngineForUnitTestInmemoryLibgcrypt();
+        try{
+            SDLS_TC_TransferFrame sdlsTcFrame = kmcEngine.processSecurity(hexStringToByteArray("2003001700000001000080D2C70008197F0B00310000BB80"));
+            assertEquals("80D2C70008197F0B00310000",sdlsTcFrame.tc_pdu);
+            assertEquals(12,sdlsTcFrame.tc_pdu_len);
+            assertEquals(1,sdlsTcFrame.spi);
+            assertEquals(0xBB80,sdlsTcFrame.fecf);
+        } catch (Exception e){
+            e.printStackTrace();
+            kmcEngine.shutdown();
+            throw e;
+        }
+        kmcEngine.shutdown();
+    }
+
+    @Test
+    public void testProcessSecurityTcCompact() throws Exception
+    {
+        KmcSdlsEngine kmcEngine = setupKmcSdlsEngineForUnitTestInmemoryLibgcrypt();
+        try{
+            byte[] processed = kmcEngine.processSecurityCompact(hexStringToByteArray("2003001700000001000080D2C70008197F0B00310000BB80"));
+            assertEquals(KmcSdlsEngine.PROCESSED_HEADER_SIZE + 12,processed.length);
+            ByteBuffer header = ByteBuffer.wrap(processed);
+            assertEquals(0x0003,header.getShort(4));
+            assertEquals(1,header.getShort(10));
+            assertEquals((short)0xBB80,header.getShort(12));
+            assertEquals(12,header.getShort(14));
+            assertEquals("[80D2C70008197F0B00310000]",byteArrayToHexString(java.util.Arrays.copyOfRange(processed,KmcSdlsEngine.PROCESSED_HEADER_SIZE,processed.length)));
+        } catch (Exception e){
+            e.printStackTrace();
+            kmcEngine.shutdown();
+            throw e;
+        }
+        kmcEngine.shutdown();
+    }
+
+    @Test
+    public void testApplySecurityTcBatch() throws Exception
+    {
+        KmcSdlsEngine kmcEngine = setupKmcSdlsEngineForUnitTestInmemoryLibgcrypt();
+        try{
+            // two length prefixed frames, the second too short to be a TC frame
+            byte[] results = kmcEngine.applySecurityBatch(hexStringToByteArray("0016" + "20030015000080d2c70008197f0b00310000b1fe3128" + "00022003"));
+            ByteBuffer buffer = ByteBuffer.wrap(results);
+            assertEquals(0,buffer.getInt());
+            byte[] frame = new byte[buffer.getShort()];
+            buffer.get(frame);
+            assertEquals("[2003001700000001000080D2C70008197F0B00310000BB80]",byteArrayToHexString(frame));
+            assertNotEquals(0,buffer.getInt());
+            buffer.position(buffer.position() + buffer.getShort());
+            assertFalse(buffer.hasRemaining());
+        } catch (Exception e){
+            e.printStackTrace();
+            kmcEngine.shutdown();
+            throw e;
+        }
+        kmcEngine.shutdown();
+    }
+
+    @Test
+    public void testReconfigure() throws Exception
+    {
+        KmcSdlsEngine kmcEngine = new KmcSdlsEngine("kmc_sdls_java_local_unit_tests.properties");
+        try{
+            Properties props = new Properties();
+            try (InputStream input = new FileInputStream("kmc_sdls_java_local_unit_tests.properties")) {
+                props.load(input);
+            }
+            // VCID 0 is no longer managed
+            props.stringPropertyNames().stream().filter(key -> key.startsWith("cryptolib.tc.3.0.0.")).forEach(props::remove);
+            kmcEngine.reconfigure(props);
+            try {
+                kmcEngine.applySecurity("20030015000080d2c70008197f0b00310000b1fe3128");
+                fail("Expected VCID 0 to be unmanaged");
+            } catch (Exception e) {
+                // expected
+            }
+
+            props.setProperty("cryptolib.tc.3.0.0.has_segmentation_header","true");
+            props.setProperty("cryptolib.tc.3.0.0.has_ecf","true");
+            kmcEngine.reconfigure(props);
+            assertEquals("2003001700000001000080D2C70008197F0B00310000BB80",kmcEngine.applySecurity("20030015000080d2c70008197f0b00310000b1fe3128"));
+        } catch (Exception e){
+            e.printStackTrace();
+            kmcEngine.shutdown();
+            throw e;
+        }
+        kmcEngine.shutdown();
+    }
+
     public static byte[] hexStringToByteArray(String s) {
         int len = s.length();
         byte[] data = new byte[len / 2];
@@ -613,6 +613,7 @@ extern int32_t sdls_config_mariadb(char* mysql_hostname, char* mysql_database, u
                                    char* mysql_mtls_client_key_password, char* mysql_username, char* mysql_password);
 
 extern int32_t sdls_config_add_gvcid_managed_parameter(uint8_t tfvn, uint16_t scid, uint8_t vcid, uint8_t has_fecf, uint8_t has_segmentation_hdr, uint16_t max_tc_frame_size);
+extern int32_t sdls_config_clear_gvcid_managed_parameters(void);
 
 extern int32_t sdls_config_kmc_crypto_service(char* protocol, char* kmc_crypto_hostname, uint16_t kmc_crypto_port,
                                               char* kmc_crypto_app, char* kmc_tls_ca_bundle, char* kmc_tls_ca_path,
@@ -25,6 +25,7 @@ extern int32_t sdls_config_mariadb(char* mysql_hostname, char* mysql_database, u
                                    char* mysql_mtls_key,
                                    char* mysql_mtls_client_key_password, char* mysql_username, char* mysql_password);
 extern int32_t sdls_config_add_gvcid_managed_parameter(uint8_t tfvn, uint16_t scid, uint8_t vcid, uint8_t has_fecf, uint8_t has_segmentation_hdr, uint16_t max_tc_frame_size);
+extern int32_t sdls_config_clear_gvcid_managed_parameters(void);
 extern int32_t sdls_config_kmc_crypto_service(char* protocol, char* kmc_crypto_hostname, uint16_t kmc_crypto_port,
                                               char* kmc_crypto_app, char* kmc_tls_ca_bundle, char* kmc_tls_ca_path,
                                               uint8_t kmc_ignore_ssl_hostname_validation, char* mtls_client_cert_path,
@@ -42,6 +43,7 @@ extern int32_t apply_security_tc (const uint8_t* p_in_frame, const uint16_t in_f
 extern int32_t process_security_tc (char* sdls_transfer_frame, int* length, TC_t* tc_sdls_processed_frame);
 extern int32_t apply_security_tc_cam (const uint8_t* p_in_frame, const uint16_t in_frame_length, uint8_t **pp_enc_frame, uint16_t *p_enc_frame_len,char* cam_cookies);
 extern int32_t process_security_tc_cam (char* sdls_transfer_frame, int* length, TC_t* tc_sdls_processed_frame, char* cam_cookies);
+extern int32_t apply_security_tc_cam_into (const uint8_t* p_in_frame, const uint16_t in_frame_length, uint8_t* p_out_frame, const uint16_t out_frame_size, uint16_t *p_out_frame_len, char* cam_cookies);
 
 extern char* sdls_get_error_code_enum_string(int32_t crypto_error_code);
 
@@ -14,8 +14,13 @@
 
 #include "kmc_sdls.h"
 #include <crypto.h>
+#include <stdlib.h>
+#include <string.h>
 
 extern CryptoConfig_t crypto_config;
+extern GvcidManagedParameters_t gvcid_managed_parameters_array[];
+extern GvcidManagedParameters_t gvcid_null_struct;
+extern int gvcid_counter;
 
 int32_t sdls_init(void)
 {
@@ -47,6 +52,21 @@ int32_t process_security_tc_cam (char* sdls_transfer_frame, int* length, TC_t* t
 {
     return Crypto_TC_ProcessSecurity_Cam(sdls_transfer_frame, length, tc_sdls_processed_frame, cam_cookies);
 }
+int32_t apply_security_tc_cam_into (const uint8_t* p_in_frame, const uint16_t in_frame_length, uint8_t* p_out_frame, const uint16_t out_frame_size, uint16_t *p_out_frame_len, char* cam_cookies)
+{
+    // Copies the frame applied by CryptoLib into the caller's buffer, so callers do not have to free it
+    uint8_t* p_enc_frame = NULL;
+    uint16_t enc_frame_len = 0;
+    int32_t status = Crypto_TC_ApplySecurity_Cam(p_in_frame, in_frame_length, &p_enc_frame, &enc_frame_len, cam_cookies);
+    if (status == CRYPTO_LIB_SUCCESS && p_enc_frame != NULL)
+    {
+        memcpy(p_out_frame, p_enc_frame, enc_frame_len < out_frame_size ? enc_frame_len : out_frame_size);
+    }
+    free(p_enc_frame);
+    // The full length is reported when the buffer is too small, the caller checks it against the buffer size
+    *p_out_frame_len = status == CRYPTO_LIB_SUCCESS ? enc_frame_len : 0;
+    return status;
+}
 
 int32_t sdls_config_cryptolib(uint8_t sadb_type, uint8_t cryptography_type, uint8_t crypto_create_fecf, uint8_t process_sdls_pdus, uint8_t has_pus_hdr, uint8_t ignore_sa_state, uint8_t ignore_anti_replay, uint8_t unique_sa_per_mapid, uint8_t crypto_check_fecf, uint8_t vcid_bitmask, uint8_t crypto_increment_nontransmitted_iv)
 {
@@ -66,6 +86,17 @@ int32_t sdls_config_add_gvcid_managed_parameter(uint8_t tfvn, uint16_t scid, uin
     GvcidManagedParameters_t TC_UT_Managed_Parameters = {tfvn, scid, vcid, has_fecf, AOS_FHEC_NA, AOS_IZ_NA, 0, has_segmentation_hdr, max_tc_frame_size, TC_OCF_NA, 1};
     return Crypto_Config_Add_Gvcid_Managed_Parameters(TC_UT_Managed_Parameters);
 }
+int32_t sdls_config_clear_gvcid_managed_parameters(void)
+{
+    // Empties the table filled by Crypto_Config_Add_Gvcid_Managed_Parameters as Crypto_Shutdown does, without shutting
+    // down the SADB and crypto interfaces, so a new table can be added to the initialized library
+    for (int i = 0; i < gvcid_counter; i++)
+    {
+        gvcid_managed_parameters_array[i] = gvcid_null_struct;
+    }
+    gvcid_counter = 0;
+    return CRYPTO_LIB_SUCCESS;
+}
 int32_t sdls_config_kmc_crypto_service(char* protocol, char* kmc_crypto_hostname, uint16_t kmc_crypto_port,
                                        char* kmc_crypto_app, char* kmc_tls_ca_bundle, char* kmc_tls_ca_path,
                                        uint8_t kmc_ignore_ssl_hostname_validation, char* mtls_client_cert_path,
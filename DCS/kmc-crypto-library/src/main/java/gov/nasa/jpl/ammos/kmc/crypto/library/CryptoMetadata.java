@@ -14,9 +14,12 @@ import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
  * The ASEC KMC CryptoMetadata class.  This is the top-level metadata class which contains
  * attributes applied to all KMC cryptography APIs.  Its subclasses contain attributes
  * specific to the particular APIs.
+ * <p>
+ * The metadata objects are created by the library, the attributes are read-only to the users.
+ * </p>
  *
  */
-class CryptoMetadata {
+public class CryptoMetadata {
     static final String METADATA_TYPE_ATTR = "metadataType";
     static final String CRYPTO_ALGORITHM_ATTR = "cryptoAlgorithm";
     static final String KEY_REF_ATTR = "keyRef";
@@ -66,7 +69,7 @@ class CryptoMetadata {
      * Returns the metadata type.
      * @return the metadata type.
      */
-    String getMetadataType() {
+    public String getMetadataType() {
         return getValue(METADATA_TYPE_ATTR);
     }
 
@@ -74,7 +77,7 @@ class CryptoMetadata {
      * Returns the cryptographic algorithm in the metadata.
      * @return the cryptographic algorithm in the metadata.
      */
-    String getCryptoAlgorithm() {
+    public String getCryptoAlgorithm() {
         return getValue(CRYPTO_ALGORITHM_ATTR);
     }
 
@@ -82,7 +85,7 @@ class CryptoMetadata {
      * Returns the keyRef of the key in the metadata.
      * @return the keyRef of the key in the metadata.
      */
-    String getKeyRef() {
+    public String getKeyRef() {
         return getValue(KEY_REF_ATTR);
     }
 
@@ -90,7 +93,7 @@ class CryptoMetadata {
      * Returns the MAC length for ICV or Tag length for AE in the metadata.
      * @return the MAC or Tag length in the metadata.
      */
-    int getMacLength() {
+    public int getMacLength() {
         String macLength = getValue(MAC_LENGTH_ATTR);
         if (macLength == null || macLength.isEmpty()) {
             // -1 means no truncation, i.e. create full MAC length
@@ -112,16 +115,23 @@ class CryptoMetadata {
      */
     void parseMetadata(final String metadata) throws KmcCryptoException {
         this.metadata = new HashMap<String, String>();
-        String[] pairs = metadata.split(ATTRIBUTE_DELIMITER);
-        for (int i = 0; i < pairs.length; i++) {
-            String pair = pairs[i];
-            String[] attributeValue = pair.split(ATTRIBUTE_VALUE_DELIMITER);
-            if (attributeValue.length != 2) {
+        // scan the delimiters directly, the metadata is parsed for every decryption and verification
+        int start = 0;
+        int length = metadata.length();
+        while (start < length) {
+            int end = metadata.indexOf(ATTRIBUTE_DELIMITER, start);
+            if (end == -1) {
+                end = length;
+            }
+            int separator = metadata.indexOf(ATTRIBUTE_VALUE_DELIMITER, start);
+            int nextSeparator = separator == -1 ? -1 : metadata.indexOf(ATTRIBUTE_VALUE_DELIMITER, separator + 1);
+            if (separator <= start || separator >= end - 1 || (nextSeparator != -1 && nextSeparator < end)) {
                 String message = "Invalid metadata: " + metadata;
                 logger.error(message);
                 throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, message, null);
             }
-            this.metadata.put(attributeValue[0], attributeValue[1]);
+            this.metadata.put(metadata.substring(start, separator), metadata.substring(separator + 1, end));
+            start = end + 1;
         }
         checkMetadataAttributes();
     }
@@ -11,6 +11,9 @@ import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.interfaces.RSAKey;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
@@ -35,6 +38,8 @@ public class DecrypterLibrary implements Decrypter {
     private static final int BUFFER_SIZE = 1024;    // buffer size for reading input stream
     private static final int TRIPLE_DES_PARITY_BITS = 24;
     private static final int DEFAULT_GCM_TAG_LENGTH = 16 * BYTE_SIZE;   // GCM tag length 16 bytes in bits
+    private static final int MAX_CACHED_KEYS = 16;
+    private static final String ATTRIBUTE_DELIMITER = ",";
 
     private final KmcCryptoManager cryptoManager;
 
@@ -43,6 +48,17 @@ public class DecrypterLibrary implements Decrypter {
     private Cipher dcipher;
     private String keyPass;
 
+    // the last key instance checked against the metadata, by keyRef, algorithm and key length, in access order.
+    // Only used to skip the check of the same key instance, the key is always retrieved from the key client.
+    private final Map<String, Key> validatedKeys = new LinkedHashMap<String, Key>(MAX_CACHED_KEYS, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Key> eldest) {
+            return size() > MAX_CACHED_KEYS;
+        }
+    };
+    private final Map<String, Cipher> ciphers = new HashMap<String, Cipher>();
+
     private static final Logger logger = LoggerFactory.getLogger(DecrypterLibrary.class);
     private static final Logger audit = LoggerFactory.getLogger("AUDIT");
 
@@ -98,6 +114,92 @@ public class DecrypterLibrary implements Decrypter {
      */
     @Override
     public final void decrypt(final InputStream is, final OutputStream os, final String metadata) throws KmcCryptoException {
+        checkStreams(is, os);
+        if (metadata == null) {
+            String msg = "Null metadata.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+        decrypt(is, os, EncryptionMetadata.valueOf(metadata));
+    }
+
+    /**
+     * Decrypts the encrypted data that starts with a {@link MetadataEnvelope}, i.e. the output of
+     * {@link EncrypterLibrary#encryptWithEnvelope(InputStream, int, String, OutputStream)}.
+     *
+     * @param is input stream of the envelope and the encrypted data.  The input stream will be closed upon completion.
+     * @param os output stream for the decrypted data.  The output stream will be closed upon completion.
+     * @return The metadata in the envelope.
+     * @throws KmcCryptoException if the envelope is invalid or any error occurs during decryption.
+     */
+    public final EncryptionMetadata decryptEnvelope(final InputStream is, final OutputStream os)
+            throws KmcCryptoException {
+        checkStreams(is, os);
+        EncryptionMetadata md = MetadataEnvelope.read(is);
+        decrypt(is, os, md);
+        return md;
+    }
+
+    /**
+     * Decrypts the encrypted data read from the input stream with the resulting decrypted data written to
+     * the output stream, using the metadata object returned from encryption instead of its string representation.
+     *
+     * @param is input stream of the encrypted data.  The input stream will be closed upon completion.
+     * @param os output stream for the decrypted data.  The output stream will be closed upon completion.
+     * @param md The metadata of the encrypted data.
+     * @throws KmcCryptoException if any error occurs during decryption.
+     */
+    public final void decrypt(final InputStream is, final OutputStream os, final EncryptionMetadata md)
+            throws KmcCryptoException {
+        checkStreams(is, os);
+        if (md == null) {
+            String msg = "Null metadata.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+
+        String keyRef = md.getKeyRef();
+        String keyAlgorithm = md.getCryptoAlgorithm();
+        int keyLength = md.getKeyLength();
+        Key key = getValidatedKey(keyRef, keyAlgorithm, keyLength);
+
+        String transformation = md.getTransformation();
+        logger.info("Decrypter: keyRef = " + keyRef + ", algorithm = " + keyAlgorithm + String.valueOf(keyLength)
+                    + ", transformation = " + transformation);
+
+        dcipher = getCipher(transformation, keyAlgorithm);
+
+        if ("AES".equals(keyAlgorithm) || "DESede".equals(keyAlgorithm)) {
+            if (transformation.contains("/GCM/")) {
+                initGCMcipher(dcipher, key, md.getInitialVector(), md.getMacLength());
+            } else {
+                initSymmetricCipher(dcipher, key, md.getInitialVector());
+            }
+        } else if ("RSA".equals(keyAlgorithm)) {
+            initRSAcipher(dcipher, key);
+        } else {
+            String msg = "Unsupported encryption algorithm: " + keyAlgorithm;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, null);
+        }
+
+        int encryptOffset = md.getEncryptOffset();
+        if (encryptOffset > 0) {
+            processAad(is, os, encryptOffset);
+        }
+        int totalBytes = processDecryption(is, os, encryptOffset);
+        logger.info("decrypt() total number of bytes decrypted = {}", totalBytes);
+
+        if (encryptOffset > 0) {
+            audit.info("DecrypterLibrary: User decrypted {} bytes of data using {}, key length {}, and {} bytes of AAD",
+                    totalBytes, transformation, keyLength, encryptOffset);
+        } else {
+            audit.info("DecrypterLibrary: User decrypted {} bytes of data using {}, key length {}",
+                    totalBytes, transformation, keyLength);
+        }
+    }
+
+    private void checkStreams(final InputStream is, final OutputStream os) throws KmcCryptoException {
         if (is == null) {
             String msg = "Null input stream.";
             logger.error(msg);
@@ -108,16 +210,16 @@ public class DecrypterLibrary implements Decrypter {
             logger.error(msg);
             throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
         }
-        if (metadata == null) {
-            String msg = "Null metadata.";
-            logger.error(msg);
-            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
-        }
-
-        EncryptionMetadata md = new EncryptionMetadata();
-        md.parseMetadata(metadata);
-        String keyRef = md.getKeyRef();
+    }
 
+    /**
+     * Returns the key of the keyRef after checking its algorithm and length against the metadata.
+     * The key is retrieved for every decryption so that a changed or reloaded key is used, but the check is
+     * skipped when the key client returns the same key instance that was checked for the metadata.
+     * @throws KmcCryptoException if the key cannot be retrieved or does not match the metadata.
+     */
+    private Key getValidatedKey(final String keyRef, final String keyAlgorithm, final int keyLength)
+            throws KmcCryptoException {
         Key key;
         try {
             if (keyClient == null) {
@@ -135,13 +237,16 @@ public class DecrypterLibrary implements Decrypter {
             }
             throw e;
         }
-        String keyAlgorithm = md.getCryptoAlgorithm();
+        String cacheKey = keyRef + ATTRIBUTE_DELIMITER + keyAlgorithm + ATTRIBUTE_DELIMITER + keyLength;
+        if (validatedKeys.get(cacheKey) == key) {
+            logger.debug("Key {} has been checked against the metadata.", keyRef);
+            return key;
+        }
         if (!keyAlgorithm.equals(key.getAlgorithm())) {
-            String msg = "Key algorithm (" + key.getAlgorithm() + ") does not match metadata cryptoAlgorithm (" + md.getCryptoAlgorithm() + ")";
+            String msg = "Key algorithm (" + key.getAlgorithm() + ") does not match metadata cryptoAlgorithm (" + keyAlgorithm + ")";
             logger.error(msg);
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, null);
         }
-        int keyLength = md.getKeyLength();
         int keySize;
         if (key instanceof RSAKey) {
             keySize = ((RSAKey) key).getModulus().bitLength();
@@ -156,11 +261,16 @@ public class DecrypterLibrary implements Decrypter {
             logger.error(msg);
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, null);
         }
+        validatedKeys.put(cacheKey, key);
+        return key;
+    }
 
-        String transformation = md.getTransformation();
-        logger.info("Decrypter: keyRef = " + keyRef + ", algorithm = " + keyAlgorithm + String.valueOf(keyLength)
-                    + ", transformation = " + transformation);
-
+    /**
+     * Returns the cipher of the transformation from the algorithm provider.  The cipher is created once
+     * for each transformation and provider, and initialized for every decryption.
+     * @throws KmcCryptoException if the transformation or provider is invalid.
+     */
+    private Cipher getCipher(final String transformation, final String keyAlgorithm) throws KmcCryptoException {
         String provider = cryptoManager.getAlgorithmProvider(keyAlgorithm);
         if (provider != null) {
             try {
@@ -175,12 +285,17 @@ public class DecrypterLibrary implements Decrypter {
             }
         }
 
+        String cacheKey = transformation + ATTRIBUTE_DELIMITER + provider;
+        Cipher cipher = ciphers.get(cacheKey);
+        if (cipher != null) {
+            return cipher;
+        }
         try {
             if (provider == null) {
-                dcipher = Cipher.getInstance(transformation);
+                cipher = Cipher.getInstance(transformation);
             } else {
                 logger.debug("Provider {} is used for {} decryption.", provider, keyAlgorithm);
-                dcipher = Cipher.getInstance(transformation, provider);
+                cipher = Cipher.getInstance(transformation, provider);
             }
         } catch (NoSuchProviderException e) {
             String msg = "Invalid crypto algorithm provider " + provider + " for transformtion " + transformation;
@@ -208,35 +323,8 @@ public class DecrypterLibrary implements Decrypter {
             logger.error(msg + ": " + t);
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_MISC_ERROR, msg, t);
         }
-
-        if ("AES".equals(keyAlgorithm) || "DESede".equals(keyAlgorithm)) {
-            if (transformation.contains("/GCM/")) {
-                initGCMcipher(dcipher, key, md.getInitialVector(), md.getMacLength());
-            } else {
-                initSymmetricCipher(dcipher, key, md.getInitialVector());
-            }
-        } else if ("RSA".equals(keyAlgorithm)) {
-            initRSAcipher(dcipher, key);
-        } else {
-            String msg = "Unsupported encryption algorithm: " + keyAlgorithm;
-            logger.error(msg);
-            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, null);
-        }
-
-        int encryptOffset = md.getEncryptOffset();
-        if (encryptOffset > 0) {
-            processAad(is, os, encryptOffset);
-        }
-        int totalBytes = processDecryption(is, os, encryptOffset);
-        logger.info("decrypt() total number of bytes decrypted = {}", totalBytes);
-
-        if (encryptOffset > 0) {
-            audit.info("DecrypterLibrary: User decrypted {} bytes of data using {}, key length {}, and {} bytes of AAD",
-                    totalBytes, transformation, keyLength, encryptOffset);
-        } else {
-            audit.info("DecrypterLibrary: User decrypted {} bytes of data using {}, key length {}",
-                    totalBytes, transformation, keyLength);
-        }
+        ciphers.put(cacheKey, cipher);
+        return cipher;
     }
 
     private final void processAad(final InputStream inputStream, final OutputStream outputStream,
@@ -396,8 +484,9 @@ public class DecrypterLibrary implements Decrypter {
             String msg = "Decrypter that uses keystore does not retrieve keys.";
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_MISC_ERROR, msg, null);
         }
-        // get the key and cache it
+        // get the key and cache it, the refreshed key is checked again at the next decryption
         keyClient.getKmcKey(keyRef);
+        validatedKeys.keySet().removeIf(cacheKey -> cacheKey.startsWith(keyRef + ATTRIBUTE_DELIMITER));
         logger.info("User loaded crypto key {} from keystore/KMS", keyRef);
         audit.info("DecrypterLibrary: User loaded crypto key {} from keystore/KMS", keyRef);
     }
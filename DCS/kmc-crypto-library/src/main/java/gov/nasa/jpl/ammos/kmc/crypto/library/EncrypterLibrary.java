@@ -4,6 +4,12 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -13,9 +19,12 @@ import java.security.SecureRandom;
 import java.security.interfaces.RSAKey;
 import java.util.Base64;
 
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.CipherOutputStream;
+import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 
@@ -42,6 +51,7 @@ import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
 public class EncrypterLibrary implements Encrypter {
     private static final int BYTE_SIZE = 8;
     private static final int BUFFER_SIZE = 1024;    // buffer size for reading input stream
+    private static final int FILE_BUFFER_SIZE = 1024 * 1024;    // chunk size for encrypting mapped files
     private static final int AES_BLOCK_SIZE = 16;   // AES block size is always 128 bits
     private static final int TRIPLE_DES_BLOCK_SIZE = 8;
     private static final int TRIPLE_DES_PARITY_BITS = 24;
@@ -383,6 +393,60 @@ public class EncrypterLibrary implements Encrypter {
     @Override
     public final String encrypt(final InputStream inputStream, final int encryptOffset,
             final String iv, final OutputStream outputStream) throws KmcCryptoException {
+        return encryptWithMetadata(inputStream, encryptOffset, iv, outputStream).toString();
+    }
+
+    /**
+     * Encrypts the data read from the input stream with the resulting encrypted data written to the output stream,
+     * and returns the metadata as an object instead of its string representation.  The metadata can be passed
+     * to {@link DecrypterLibrary#decrypt(InputStream, OutputStream, EncryptionMetadata)} without parsing.
+     *
+     * @param inputStream input stream of the data to be encrypted.  The inputStream will be closed upon completion.
+     * @param encryptOffset The data before the offset is not encrypted, only for AES-GCM.
+     * @param iv The initial vector, or null to generate a random one.
+     * @param outputStream output stream for the encrypted data.  The outputStream will be closed upon completion.
+     * @return The metadata of the encrypted data.
+     * @throws KmcCryptoException if any error occurs during encryption.
+     */
+    public final EncryptionMetadata encryptWithMetadata(final InputStream inputStream, final int encryptOffset,
+            final String iv, final OutputStream outputStream) throws KmcCryptoException {
+        checkStreams(inputStream, outputStream);
+        checkEncryptOffset(encryptOffset);
+        initCipher(iv);
+
+        int totalEncrypted = processStream(inputStream, outputStream, encryptOffset);
+        return createMetadata(totalEncrypted, encryptOffset);
+    }
+
+    /**
+     * Encrypts the data read from the input stream and writes the {@link MetadataEnvelope} of the metadata
+     * followed by the encrypted data to the output stream.  The output can be decrypted with
+     * {@link DecrypterLibrary#decryptEnvelope(InputStream, OutputStream)} without a separate metadata string.
+     *
+     * @param inputStream input stream of the data to be encrypted.  The inputStream will be closed upon completion.
+     * @param encryptOffset The data before the offset is not encrypted, only for AES-GCM.
+     * @param iv The initial vector, or null to generate a random one.
+     * @param outputStream output stream for the envelope and the encrypted data.
+     *          The outputStream will be closed upon completion.
+     * @return The metadata in the envelope.
+     * @throws KmcCryptoException if any error occurs during encryption.
+     */
+    public final EncryptionMetadata encryptWithEnvelope(final InputStream inputStream, final int encryptOffset,
+            final String iv, final OutputStream outputStream) throws KmcCryptoException {
+        checkStreams(inputStream, outputStream);
+        checkEncryptOffset(encryptOffset);
+        initCipher(iv);
+
+        // the IV is known once the cipher is initialized, so the envelope precedes the encrypted data
+        EncryptionMetadata metadata = buildMetadata(encryptOffset);
+        MetadataEnvelope.write(metadata, outputStream);
+        int totalEncrypted = processStream(inputStream, outputStream, encryptOffset);
+        auditEncryption(totalEncrypted, encryptOffset);
+        return metadata;
+    }
+
+    private void checkStreams(final InputStream inputStream, final OutputStream outputStream)
+            throws KmcCryptoException {
         if (inputStream == null) {
             String msg = "Null input stream.";
             logger.error(msg);
@@ -393,6 +457,122 @@ public class EncrypterLibrary implements Encrypter {
             logger.error(msg);
             throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
         }
+    }
+
+    private int processStream(final InputStream inputStream, final OutputStream outputStream,
+            final int encryptOffset) throws KmcCryptoException {
+        if (encryptOffset > 0) {
+            processAad(inputStream, outputStream, encryptOffset);
+        }
+        int totalEncrypted = processEncryption(inputStream, outputStream, encryptOffset);
+        logger.info("encrypt() total number of bytes encrypted = {}", totalEncrypted);
+        return totalEncrypted;
+    }
+
+    /**
+     * Encrypts the input file with the resulting encrypted data written to the output file.
+     * The input file is memory mapped and the encrypted data is written through a {@link FileChannel},
+     * which avoids the stream copies of {@link #encrypt(InputStream, OutputStream)} for large files.
+     *
+     * @param inputFile The file to be encrypted.
+     * @param outputFile The file for the encrypted data.  It is created or truncated if it exists,
+     *          and is deleted if the encryption fails.
+     * @param fsync true to force the encrypted data to the storage device before returning.
+     * @return String containing the metadata to be used for decrypting the encrypted data.
+     * @throws KmcCryptoException if any error occurs during encryption.
+     */
+    public final String encrypt(final Path inputFile, final Path outputFile, final boolean fsync)
+            throws KmcCryptoException {
+        return encrypt(inputFile, 0, null, outputFile, fsync);
+    }
+
+    /**
+     * Encrypts the input file with the resulting encrypted data written to the output file.
+     * This method allows specifying the encryption offset for authenticated encryption, and the IV for encryption.
+     *
+     * @param inputFile The file to be encrypted.
+     * @param encryptOffset The byte from which encryption is applied.
+     *          Only used for authenticated encryption.
+     * @param iv URL-safe Base64 encoded String for the initial vector in encryption.
+     *          Input null for randomly generated IV.
+     * @param outputFile The file for the encrypted data.  It is created or truncated if it exists,
+     *          and is deleted if the encryption fails.
+     * @param fsync true to force the encrypted data to the storage device before returning.
+     * @return String containing the metadata to be used for decrypting the encrypted data.
+     * @throws KmcCryptoException if any error occurs during encryption.
+     */
+    public final String encrypt(final Path inputFile, final int encryptOffset, final String iv,
+            final Path outputFile, final boolean fsync) throws KmcCryptoException {
+        if (inputFile == null) {
+            String msg = "Null input file.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+        if (outputFile == null) {
+            String msg = "Null output file.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+        checkEncryptOffset(encryptOffset);
+        initCipher(iv);
+
+        int totalEncrypted;
+        boolean success = false;
+        try (FileChannel in = FileChannel.open(inputFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            if (size < encryptOffset) {
+                String msg = "Input file has " + size + " bytes, less than the encryptOffset " + encryptOffset;
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+            }
+            if (size == 0) {
+                String msg = "Input file for encryption cannot be empty.";
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+            }
+            if (size - encryptOffset > KmcCryptoManager.MAX_CRYPTO_SIZE) {
+                String msg = "Input file exceeds maximum size of " + KmcCryptoManager.MAX_CRYPTO_SIZE + " bytes.";
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+            }
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (encryptOffset > 0) {
+                // process the Additional Associated Data (AAD)
+                ByteBuffer aad = data.duplicate();
+                aad.limit(encryptOffset);
+                ecipher.updateAAD(aad.duplicate());
+                writeFully(out, aad);
+                data.position(encryptOffset);
+                logger.debug("encrypt() Finished processing {} bytes of AAD", encryptOffset);
+            }
+            totalEncrypted = processEncryption(data, out);
+            if (fsync) {
+                out.force(true);
+            }
+            success = true;
+        } catch (IOException e) {
+            audit.info("EncrypterLibrary: Failed to encrypt file {} using {} with key length {}",
+                inputFile, transformation, keyLength);
+            String msg = "Exception on encrypting data in file " + inputFile + ": " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, e);
+        } finally {
+            if (!success) {
+                deleteFile(outputFile);
+            }
+        }
+        logger.info("encrypt() total number of bytes encrypted from file {} = {}", inputFile, totalEncrypted);
+
+        return createMetadata(totalEncrypted, encryptOffset).toString();
+    }
+
+    /**
+     * Checks the encryptOffset against the maximum size and the cipher transformation.
+     * @throws KmcCryptoException if the encryptOffset is invalid.
+     */
+    private void checkEncryptOffset(final int encryptOffset) throws KmcCryptoException {
         if (encryptOffset < 0 || encryptOffset > KmcCryptoManager.MAX_CRYPTO_SIZE) {
             String msg = "encryptOffset less than 0 or exceeds maximum size of " + KmcCryptoManager.MAX_CRYPTO_SIZE + " bytes.";
             logger.error(msg);
@@ -403,7 +583,13 @@ public class EncrypterLibrary implements Encrypter {
             logger.error(msg);
             throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
         }
+    }
 
+    /**
+     * Initializes the cipher for the algorithm of the key.
+     * @throws KmcCryptoException if error occurs during initialization.
+     */
+    private void initCipher(final String iv) throws KmcCryptoException {
         String algorithm = key.getAlgorithm();
         if ("AES".equals(algorithm)) {
             if (transformation.contains("/GCM/")) {
@@ -421,13 +607,19 @@ public class EncrypterLibrary implements Encrypter {
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, null);
         }
         logger.debug("Cipher initialized for encryption algorithm: " + algorithm);
+    }
 
-        if (encryptOffset > 0) {
-            processAad(inputStream, outputStream, encryptOffset);
-        }
-        int totalEncrypted = processEncryption(inputStream, outputStream, encryptOffset);
-        logger.info("encrypt() total number of bytes encrypted = {}", totalEncrypted);
+    /**
+     * Audits the completed encryption and returns its metadata.
+     */
+    private EncryptionMetadata createMetadata(final int totalEncrypted, final int encryptOffset) {
+        auditEncryption(totalEncrypted, encryptOffset);
+        EncryptionMetadata metadata = buildMetadata(encryptOffset);
+        logger.info("encrypt() metadata: " + metadata);
+        return metadata;
+    }
 
+    private void auditEncryption(final int totalEncrypted, final int encryptOffset) {
         if (encryptOffset > 0) {
             audit.info("EncrypterLibrary: User encrypted {} bytes of data using {} with key length {}, and AAD of {} bytes",
                     totalEncrypted, transformation, keyLength, encryptOffset);
@@ -435,12 +627,16 @@ public class EncrypterLibrary implements Encrypter {
             audit.info("EncrypterLibrary: User encrypted {} bytes of data using {} with key length {}",
                 totalEncrypted, transformation, keyLength);
         }
+    }
 
+    /**
+     * Returns the metadata of the initialized cipher.
+     */
+    private EncryptionMetadata buildMetadata(final int encryptOffset) {
         EncryptionMetadata metadata = new EncryptionMetadata(keyRef, keyAlgorithm);
         metadata.addEncryptionAttributes(keyLength, transformation, encryptOffset,
                 ecipher.getIV(), cryptoManager.getMacLength());
-        logger.info("encrypt() metadata: " + metadata);
-        return metadata.toString();
+        return metadata;
     }
 
     private final void processAad(final InputStream inputStream, final OutputStream outputStream,
@@ -539,6 +735,64 @@ public class EncrypterLibrary implements Encrypter {
         return totalBytes;
     }
 
+    private final int processEncryption(final ByteBuffer data, final FileChannel out)
+            throws KmcCryptoException, IOException {
+        int totalBytes = data.remaining();
+        ByteBuffer outBuffer = ByteBuffer.allocateDirect(ecipher.getOutputSize(FILE_BUFFER_SIZE));
+        try {
+            while (data.hasRemaining()) {
+                ByteBuffer chunk = data.duplicate();
+                chunk.limit(chunk.position() + Math.min(FILE_BUFFER_SIZE, chunk.remaining()));
+                outBuffer = ensureCapacity(outBuffer, ecipher.getOutputSize(chunk.remaining()));
+                ecipher.update(chunk, outBuffer);
+                data.position(chunk.position());
+                outBuffer.flip();
+                writeFully(out, outBuffer);
+                outBuffer.clear();
+            }
+            outBuffer = ensureCapacity(outBuffer, ecipher.getOutputSize(0));
+            ecipher.doFinal(ByteBuffer.allocate(0), outBuffer);
+            outBuffer.flip();
+            writeFully(out, outBuffer);
+            logger.debug("processEncryption() encrypted {} bytes of data", totalBytes);
+        } catch (IllegalBlockSizeException | ArrayIndexOutOfBoundsException e) {
+            // input data larger than allowed (e.g. encrypting too much data with RSA keys)
+            audit.info("EncrypterLibrary: Failed to encrypt data using {} with key length {}",
+                transformation, keyLength);
+            String msg = "Exception on encrypting data in file: " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, e);
+        } catch (ShortBufferException | BadPaddingException e) {
+            audit.info("EncrypterLibrary: Failed to encrypt data using {} with key length {}",
+                transformation, keyLength);
+            String msg = "Exception on encrypting data in file: " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, e);
+        }
+        return totalBytes;
+    }
+
+    private static ByteBuffer ensureCapacity(final ByteBuffer buffer, final int size) {
+        if (buffer.capacity() >= size) {
+            return buffer;
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void deleteFile(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.error("Failed to delete the incomplete output file {}: {}", file, e);
+        }
+    }
+
     private void closeStream(final Closeable stream) {
         try {
             if (stream != null) {
@@ -9,11 +9,13 @@ import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
 import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
 
 /**
- * This is a subclass of CryptoMetadata for Encryption.
+ * This is a subclass of CryptoMetadata for Encryption.  It is returned by
+ * {@link EncrypterLibrary#encryptWithMetadata} and accepted by {@link DecrypterLibrary}
+ * so that the metadata does not need to be converted to and from its string representation.
  *
  *
  */
-class EncryptionMetadata extends CryptoMetadata {
+public class EncryptionMetadata extends CryptoMetadata {
 
     static final String KEY_LENGTH_ATTR = "keyLength";
     static final String TRANSFORMATION_ATTR = "cipherTransformation";
@@ -67,7 +69,7 @@ class EncryptionMetadata extends CryptoMetadata {
      * Returns the length of the key (number of bits) in the metadata.
      * @return the length of the key (number of bits) in the metadata.
      */
-    int getKeyLength() {
+    public int getKeyLength() {
         try {
             return Integer.parseInt(getValue(KEY_LENGTH_ATTR));
         } catch (NumberFormatException e) {
@@ -79,7 +81,7 @@ class EncryptionMetadata extends CryptoMetadata {
      * Returns the cipher transformation in the metadata.
      * @return The cipher transformation in the metadata.
      */
-    String getTransformation() {
+    public String getTransformation() {
         return getValue(TRANSFORMATION_ATTR);
     }
 
@@ -88,7 +90,7 @@ class EncryptionMetadata extends CryptoMetadata {
      * @return The encrypt offset in the metadata or 0 if not exist.
      * @exception KmcCryptoException if encrypt offset is not an integer.
      */
-    int getEncryptOffset() throws KmcCryptoException {
+    public int getEncryptOffset() throws KmcCryptoException {
         String encryptOffset = getValue(ENCRYPT_OFFSET_ATTR);
         if (encryptOffset == null) {
             return 0;
@@ -107,7 +109,7 @@ class EncryptionMetadata extends CryptoMetadata {
      * @return The initial vector in the metadata.
      * @exception KmcCryptoException if initial vector is invalid.
      */
-    byte[] getInitialVector() throws KmcCryptoException {
+    public byte[] getInitialVector() throws KmcCryptoException {
         String iv = getValue(INITIAL_VECTOR_ATTR);
         try {
             byte[] ivBytes = Base64.getUrlDecoder().decode(iv);
@@ -119,6 +121,24 @@ class EncryptionMetadata extends CryptoMetadata {
         }
     }
 
+    /**
+     * Returns the EncryptionMetadata of the string representation of the metadata.
+     *
+     * @param metadata The string representation of the metadata returned from encryption.
+     * @return The EncryptionMetadata.
+     * @throws KmcCryptoException if the metadata is invalid.
+     */
+    public static EncryptionMetadata valueOf(final String metadata) throws KmcCryptoException {
+        if (metadata == null) {
+            String msg = "Null metadata.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+        EncryptionMetadata md = new EncryptionMetadata();
+        md.parseMetadata(metadata);
+        return md;
+    }
+
     /**
      * {@inheritDoc}
      */
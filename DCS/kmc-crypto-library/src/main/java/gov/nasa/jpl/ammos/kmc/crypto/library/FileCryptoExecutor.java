@@ -0,0 +1,128 @@
+package gov.nasa.jpl.ammos.kmc.crypto.library;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
+
+/**
+ * The FileCryptoExecutor encrypts files and creates ICVs of files concurrently on a fixed number of threads.
+ * Each thread keeps its own {@link EncrypterLibrary} and {@link IcvCreatorLibrary} per keyRef
+ * because they are not thread-safe, so the key is only retrieved once per thread.
+ * <p>
+ * The result of each file is returned as a {@link Future} of its metadata.  A failure of one file
+ * does not affect the other files; its KmcCryptoException is the cause of the ExecutionException
+ * thrown by {@link Future#get()}.
+ * </p>
+ *
+ */
+public class FileCryptoExecutor implements Closeable {
+    private final KmcCryptoManager cryptoManager;
+    private final ExecutorService executor;
+
+    private final ThreadLocal<Map<String, EncrypterLibrary>> encrypters =
+            ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<String, IcvCreatorLibrary>> icvCreators =
+            ThreadLocal.withInitial(HashMap::new);
+
+    private static final Logger logger = LoggerFactory.getLogger(FileCryptoExecutor.class);
+
+    /**
+     * Constructor of the FileCryptoExecutor.  The keys are retrieved from the keystore or KMS
+     * configured in the KmcCryptoManager.
+     *
+     * @param cryptoManager The KmcCryptoManager for accessing the configuration parameters.
+     * @param nThreads The maximum number of files processed concurrently.
+     * @throws KmcCryptoException if nThreads is less than 1.
+     */
+    public FileCryptoExecutor(final KmcCryptoManager cryptoManager, final int nThreads) throws KmcCryptoException {
+        if (nThreads < 1) {
+            String msg = "Number of threads must be at least 1: " + nThreads;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+        this.cryptoManager = cryptoManager;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread thread = new Thread(r, "kmc-file-crypto-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("FileCryptoExecutor created with {} threads", nThreads);
+    }
+
+    /**
+     * Encrypts the input files with the key of keyRef.
+     *
+     * @param keyRef A string for identifying the key, i.e. the name of the key.
+     * @param files Map of the input files to their output files.
+     * @param fsync true to force the encrypted data of each file to the storage device.
+     * @return Map of the input files to the futures of their encryption metadata, in the order of the files map.
+     */
+    public Map<Path, Future<String>> encryptFiles(final String keyRef, final Map<Path, Path> files,
+            final boolean fsync) {
+        Map<Path, Future<String>> results = new LinkedHashMap<Path, Future<String>>();
+        for (Map.Entry<Path, Path> file : files.entrySet()) {
+            results.put(file.getKey(), executor.submit(
+                    () -> getEncrypter(keyRef).encrypt(file.getKey(), file.getValue(), fsync)));
+        }
+        return results;
+    }
+
+    /**
+     * Creates the ICVs of the input files with the key of keyRef.
+     *
+     * @param keyRef A string for identifying the key, or "null" for Message Digest.
+     * @param files The input files.
+     * @return Map of the input files to the futures of their integrity metadata, in the order of the files list.
+     */
+    public Map<Path, Future<String>> createIntegrityCheckValues(final String keyRef, final List<Path> files) {
+        Map<Path, Future<String>> results = new LinkedHashMap<Path, Future<String>>();
+        for (Path file : files) {
+            results.put(file, executor.submit(() -> getIcvCreator(keyRef).createIntegrityCheckValue(file)));
+        }
+        return results;
+    }
+
+    private EncrypterLibrary getEncrypter(final String keyRef) throws KmcCryptoException {
+        Map<String, EncrypterLibrary> threadEncrypters = encrypters.get();
+        EncrypterLibrary encrypter = threadEncrypters.get(keyRef);
+        if (encrypter == null) {
+            encrypter = new EncrypterLibrary(cryptoManager, keyRef);
+            threadEncrypters.put(keyRef, encrypter);
+        }
+        return encrypter;
+    }
+
+    private IcvCreatorLibrary getIcvCreator(final String keyRef) throws KmcCryptoException {
+        Map<String, IcvCreatorLibrary> threadCreators = icvCreators.get();
+        IcvCreatorLibrary creator = threadCreators.get(keyRef);
+        if (creator == null) {
+            creator = new IcvCreatorLibrary(cryptoManager, keyRef);
+            threadCreators.put(keyRef, creator);
+        }
+        return creator;
+    }
+
+    /**
+     * Stops accepting files.  Files already submitted are still processed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+}
@@ -3,6 +3,10 @@ package gov.nasa.jpl.ammos.kmc.crypto.library;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.MessageDigest;
@@ -29,7 +33,6 @@ import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
  *
  */
 public class IcvCreatorLibrary implements IcvCreator {
-    private static final int BUFFER_SIZE = 1024;
     private static final int BYTE_SIZE = 8;
 
     // Message Digest for integrity check
@@ -38,6 +41,7 @@ public class IcvCreatorLibrary implements IcvCreator {
     private Mac macIcv;
     // Digital Signature for integrity check
     private Signature dsIcv;
+    private PrivateKey signingKey;
 
     private final KmcCryptoManager cryptoManager;
     private KeyServiceClient keyClient;
@@ -443,6 +447,7 @@ public class IcvCreatorLibrary implements IcvCreator {
             logger.error(msg + ": " + e);
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, e);
         }
+        signingKey = privateKey;
         try {
             signature.initSign(privateKey);
         } catch (InvalidKeyException e) {
@@ -462,7 +467,7 @@ public class IcvCreatorLibrary implements IcvCreator {
         }
 
         byte[] icvBytes;
-        byte[] data = new byte[BUFFER_SIZE];
+        boolean completed = false;
         try {
             // Not to accept empty input so that it's consistent with Encrypter.
             if (inputStream.available() == 0) {
@@ -470,36 +475,73 @@ public class IcvCreatorLibrary implements IcvCreator {
                 logger.error(msg);
                 throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
             }
-            int totalBytes = 0;
-            while (true) {
-                if (totalBytes > KmcCryptoManager.MAX_CRYPTO_SIZE) {
-                    String msg = "Inupt stream exceeds maximum size of " + KmcCryptoManager.MAX_CRYPTO_SIZE + " bytes.";
-                    logger.error(msg);
-                    throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
-                }
-                int nData = inputStream.read(data);
-                if (nData == -1) {
-                    break;
-                }
-                logger.trace("createIntegrityCheckValue() read " + nData + " bytes.");
-                if (mdIcv != null) {
-                    mdIcv.update(data, 0, nData);
-                } else if (macIcv != null) {
-                    macIcv.update(data, 0, nData);
-                } else {
-                    dsIcv.update(data, 0, nData);
-                }
-                totalBytes = totalBytes + nData;
-            }
+            long totalBytes = PipelinedStreamReader.process(inputStream, this::updateIcv);
             logger.info("createIntegrityCheckValue() total number of bytes in data = " + totalBytes);
+            icvBytes = completeIcv();
+            completed = true;
+            audit.info("IcvCreatorLibrary: User created ICV for " + totalBytes + " bytes of data using algorithm " + algorithm);
+        } catch (SignatureException e) {
+            audit.info("IcvCreatorLibrary: User failed to create ICV using algorithm " + algorithm);
+            String msg = "Exception in generating signature: " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, e);
+        } catch (IOException e) {
+            audit.info("IcvCreatorLibrary: User failed to create ICV using algorithm " + algorithm);
+            String msg = "Exception in reading the input stream: " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, e);
+        } finally {
+            closeStream(inputStream);
+            if (!completed) {
+                resetIcv();
+            }
+        }
+
+        return createMetadata(icvBytes);
+    }
+
+    /**
+     * Returns the integrity metadata for the data in the input file.  The input file is memory mapped
+     * and processed without copying it through an input stream.
+     *
+     * @param inputFile The file of the data for integrity check.
+     * @return String of the integrity metadata.
+     * @throws KmcCryptoException if error in reading the input file.
+     */
+    public final String createIntegrityCheckValue(final Path inputFile) throws KmcCryptoException {
+        if (inputFile == null) {
+            String msg = "Null input file.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+
+        byte[] icvBytes;
+        boolean completed = false;
+        try (FileChannel in = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            long size = in.size();
+            // Not to accept empty input so that it's consistent with Encrypter.
+            if (size == 0) {
+                String msg = "Input file cannot be empty.";
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+            }
+            if (size > KmcCryptoManager.MAX_CRYPTO_SIZE) {
+                String msg = "Input file exceeds maximum size of " + KmcCryptoManager.MAX_CRYPTO_SIZE + " bytes.";
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+            }
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
             if (mdIcv != null) {
-                icvBytes = mdIcv.digest();
+                mdIcv.update(data);
             } else if (macIcv != null) {
-                icvBytes = macIcv.doFinal();
+                macIcv.update(data);
             } else {
-                icvBytes = dsIcv.sign();
+                dsIcv.update(data);
             }
-            audit.info("IcvCreatorLibrary: User created ICV for " + totalBytes + " bytes of data using algorithm " + algorithm);
+            logger.info("createIntegrityCheckValue() total number of bytes in file {} = {}", inputFile, size);
+            icvBytes = completeIcv();
+            completed = true;
+            audit.info("IcvCreatorLibrary: User created ICV for " + size + " bytes of data using algorithm " + algorithm);
         } catch (SignatureException e) {
             audit.info("IcvCreatorLibrary: User failed to create ICV using algorithm " + algorithm);
             String msg = "Exception in generating signature: " + e;
@@ -507,13 +549,75 @@ public class IcvCreatorLibrary implements IcvCreator {
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, e);
         } catch (IOException e) {
             audit.info("IcvCreatorLibrary: User failed to create ICV using algorithm " + algorithm);
-            String msg = "Exception in reading the input stream: " + e;
+            String msg = "Exception in reading the input file " + inputFile + ": " + e;
             logger.error(msg);
             throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, msg, e);
         } finally {
-            closeStream(inputStream);
+            // a read error of the mapped file leaves partial input in the digest, MAC, or signature
+            if (!completed) {
+                resetIcv();
+            }
         }
 
+        return createMetadata(icvBytes);
+    }
+
+    /**
+     * Updates the digest, MAC, or signature with the data.
+     * @param data The data.
+     * @param length The number of bytes in data.
+     * @throws SignatureException if error in updating the signature.
+     */
+    private void updateIcv(final byte[] data, final int length) throws SignatureException {
+        if (mdIcv != null) {
+            mdIcv.update(data, 0, length);
+        } else if (macIcv != null) {
+            macIcv.update(data, 0, length);
+        } else {
+            dsIcv.update(data, 0, length);
+        }
+    }
+
+    /**
+     * Discards the data of a failed ICV creation so that this IcvCreator can be used again.
+     */
+    private void resetIcv() {
+        if (mdIcv != null) {
+            mdIcv.reset();
+        } else if (macIcv != null) {
+            macIcv.reset();
+        } else if (dsIcv != null) {
+            try {
+                dsIcv.initSign(signingKey);
+            } catch (InvalidKeyException e) {
+                // the key has been used to initialize the signature
+                logger.error("Failed to reset the Signature: " + e);
+            }
+        }
+    }
+
+    /**
+     * Completes the digest, MAC, or signature of the processed data.
+     * @return The full-length ICV.
+     * @throws SignatureException if error in generating the signature.
+     */
+    private byte[] completeIcv() throws SignatureException {
+        if (mdIcv != null) {
+            return mdIcv.digest();
+        } else if (macIcv != null) {
+            return macIcv.doFinal();
+        } else {
+            return dsIcv.sign();
+        }
+    }
+
+    /**
+     * Truncates the ICV to the requested MAC length and returns the integrity metadata string.
+     * @param icvBytes The full-length ICV.
+     * @return String of the integrity metadata.
+     * @throws KmcCryptoException if the requested MAC length is longer than the ICV.
+     */
+    private String createMetadata(final byte[] icvBytes) throws KmcCryptoException {
         int macLength = cryptoManager.getMacLength();
         if (macLength > icvBytes.length * 8) {
             String error = "Requested MAC length (" + macLength
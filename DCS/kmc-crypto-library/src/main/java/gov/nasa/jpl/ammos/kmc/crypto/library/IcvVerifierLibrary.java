@@ -11,6 +11,8 @@ import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +29,7 @@ import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManagerException;
  *
  */
 public class IcvVerifierLibrary implements IcvVerifier {
-    private static final int BUFFER_SIZE = 1024;    // buffer size for reading input stream
+    private static final String ATTRIBUTE_DELIMITER = ",";
 
     private final KmcCryptoManager cryptoManager;
     private String keystoreLocation;
@@ -36,6 +38,8 @@ public class IcvVerifierLibrary implements IcvVerifier {
     private String keyPass;
 
     private KeyServiceClient keyClient;
+    // IcvCreators for generating the ICV to be verified, by keyRef and algorithm
+    private final Map<String, IcvCreator> icvCreators = new HashMap<String, IcvCreator>();
 
     private static final Logger logger = LoggerFactory.getLogger(IcvVerifierLibrary.class);
     private static final Logger audit = LoggerFactory.getLogger("AUDIT");
@@ -176,14 +180,18 @@ public class IcvVerifierLibrary implements IcvVerifier {
      */
     private byte[] generateICV(final InputStream inputStream, final IntegrityCheckMetadata metadata)
             throws KmcCryptoException {
-        IcvCreator icvCreator;
-
-        if (keystoreLocation == null) {
-            icvCreator = new IcvCreatorLibrary(cryptoManager, metadata, true);
-        } else {
-            icvCreator = new IcvCreatorLibrary(cryptoManager,
-                    keystoreLocation, keystorePass, keystoreType, keyPass,
-                    metadata, true);
+        // the MAC or Message Digest of the IcvCreator is reset after each use and can be reused for the same key
+        String creatorKey = metadata.getKeyRef() + ATTRIBUTE_DELIMITER + metadata.getCryptoAlgorithm();
+        IcvCreator icvCreator = icvCreators.get(creatorKey);
+        if (icvCreator == null) {
+            if (keystoreLocation == null) {
+                icvCreator = new IcvCreatorLibrary(cryptoManager, metadata, true);
+            } else {
+                icvCreator = new IcvCreatorLibrary(cryptoManager,
+                        keystoreLocation, keystorePass, keystoreType, keyPass,
+                        metadata, true);
+            }
+            icvCreators.put(creatorKey, icvCreator);
         }
 
         String metadataString = icvCreator.createIntegrityCheckValue(inputStream);
@@ -252,22 +260,9 @@ public class IcvVerifierLibrary implements IcvVerifier {
 
         Signature digitalSignature = createDigitalSignature(publicKey, algorithm, provider);
 
-        int totalBytes = 0;
-        byte[] data = new byte[BUFFER_SIZE];
         try {
-            while (true) {
-                if (totalBytes > KmcCryptoManager.MAX_CRYPTO_SIZE) {
-                    String msg = "Inupt stream exceeds maximum size of " + KmcCryptoManager.MAX_CRYPTO_SIZE + " bytes.";
-                    logger.error(msg);
-                    throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
-                }
-                int nData = is.read(data);
-                if (nData == -1) {
-                    break;
-                }
-                digitalSignature.update(data, 0, nData);
-                totalBytes = totalBytes + nData;
-            }
+            long totalBytes = PipelinedStreamReader.process(is,
+                    (data, length) -> digitalSignature.update(data, 0, length));
             byte[] sigBytes = metadata.getIntegrityCheckValue();
             boolean result = digitalSignature.verify(sigBytes);
             if (result) {
@@ -87,7 +87,7 @@ class IntegrityCheckMetadata extends CryptoMetadata {
     }
 
     @Override
-    String getKeyRef() {
+    public String getKeyRef() {
         return getValue(KEY_REF_ATTR);
     }
 
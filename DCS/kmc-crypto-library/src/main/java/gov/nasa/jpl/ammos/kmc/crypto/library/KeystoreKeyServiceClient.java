@@ -1,23 +1,13 @@
 package gov.nasa.jpl.ammos.kmc.crypto.library;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.Key;
-import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
-import java.security.Provider;
 import java.security.PublicKey;
-import java.security.Security;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateException;
 
-import org.bouncycastle.jcajce.provider.BouncyCastleFipsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +16,8 @@ import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
 
 /**
  * The KeystoreKeyServiceClient retrieves keys from the keystore.
+ * The keystores are shared through the {@link KeystoreRegistry}, so creating a client for a keystore
+ * that is already loaded does not read the keystore file.
  *
  *
  */
@@ -38,8 +30,7 @@ public class KeystoreKeyServiceClient implements KeyServiceClient {
 
     private final String keystoreLocation;
     private final String keystorePass;
-    private KeyStore keystore;
-    private InputStream keystoreStream;
+    private final String registryKey;
 
     private static final Logger logger = LoggerFactory.getLogger(KeystoreKeyServiceClient.class);
 
@@ -61,62 +52,9 @@ public class KeystoreKeyServiceClient implements KeyServiceClient {
             this.keystorePass = keystorePass;
         }
 
-        try {
-            keystoreStream = new FileInputStream(keystoreLocation);
-            logger.debug("Load keystore " + keystoreLocation);
-        } catch (FileNotFoundException e) {
-            keystoreStream = getClass().getResourceAsStream(keystoreLocation);
-            if (keystoreStream == null) {
-                String msg = "Failed to open keystore from " + keystoreLocation + " and from CLASSPATH: " + e;
-                logger.error(msg);
-                throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
-            }
-            logger.info("Load keystore " + keystoreLocation + " from CLASSPATH");
-        }
-        try {
-            if (KEYSTORE_TYPE_BCFKS.equals(keystoreType)) {
-                Provider provider = new BouncyCastleFipsProvider();
-                Security.addProvider(provider);
-                keystore = KeyStore.getInstance(keystoreType, provider.getName());
-                logger.debug("Opened keystore of type {} with provider {}", keystoreType, provider.getName());
-            } else if (KEYSTORE_TYPE_PKCS12.equals(keystoreType) ||
-                       KEYSTORE_TYPE_JCEKS.equals(keystoreType) ||
-                       KEYSTORE_TYPE_JKS.equals(keystoreType)) {
-                keystore = KeyStore.getInstance(keystoreType);
-                logger.debug("Opened {} keystore", keystoreType);
-            } else {
-                String msg = "Unsupported keystore type: " + keystoreType + ", support only BCFKS, PKCS12, and JKS keystores";
-                logger.error(msg);
-                throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, null);
-            }
-            keystore.load(keystoreStream, this.keystorePass.toCharArray());
-        } catch (KeyStoreException e) {
-            String msg = "Exception in getting instance of keystore of type: " + keystoreType + ": " + e;
-            logger.error(msg);
-            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
-        } catch (NoSuchProviderException e) {
-            String msg = "Exception in creating BCFIPS provider: " + e;
-            logger.error(msg);
-            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
-        } catch (NoSuchAlgorithmException e) {
-            String msg = "Exception in loading " + keystoreLocation + ": " + e;
-            logger.error(msg);
-            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
-        } catch (CertificateException e) {
-            String msg = "Exception in loading " + keystoreLocation + ": " + e;
-            logger.error(msg);
-            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
-        } catch (IOException e) {
-            String msg = "Exception in loading " + keystoreLocation + ": " + e;
-            logger.error(msg);
-            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
-        } finally {
-            try {
-                keystoreStream.close();
-            } catch (IOException e) {
-                logger.error("Exception in closing keystore {}: {}", keystoreLocation, e);
-            }
-        }
+        // the keystore is loaded once for all the clients and reloaded when the keystore file changes
+        KeystoreRegistry.getSnapshot(keystoreLocation, keystoreType, this.keystorePass);
+        registryKey = KeystoreRegistry.registryKey(keystoreLocation, keystoreType, this.keystorePass);
     }
 
     /**
@@ -172,6 +110,28 @@ public class KeystoreKeyServiceClient implements KeyServiceClient {
         return key;
     }
 
+    /**
+     * Returns true if the keystore has the key, without retrieving it.
+     * @param keyRef The keyRef (also known as alias) of the key.
+     * @return true if the key exists in the keystore.
+     */
+    final boolean containsKey(final String keyRef) {
+        try {
+            return KeystoreRegistry.getSnapshot(registryKey).containsAlias(keyRef);
+        } catch (KeyStoreException e) {
+            logger.error("Exception in checking key {} in keystore {}: {}", keyRef, keystoreLocation, e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the current snapshot of the keystore, a different snapshot after the keystore is reloaded.
+     * @return The current snapshot of the keystore.
+     */
+    final KeystoreRegistry.Snapshot getSnapshot() {
+        return KeystoreRegistry.getSnapshot(registryKey);
+    }
+
     /**
      * Retrieves a key from the keystore with the specified keyRef and keyPass.
      * @param keyRef The keyRef (also known as alias) of the key.
@@ -181,6 +141,7 @@ public class KeystoreKeyServiceClient implements KeyServiceClient {
      */
     private Key getKeyFromKeystore(final String keyRef, final String keyPass)
                 throws KmcCryptoException {
+        KeystoreRegistry.Snapshot keystore = KeystoreRegistry.getSnapshot(registryKey);
         try {
             if (!keystore.containsAlias(keyRef)) {
                 String msg = "Cryptographic key " + keyRef + " does not exist in keystore: " + keystoreLocation;
@@ -195,9 +156,9 @@ public class KeystoreKeyServiceClient implements KeyServiceClient {
         try {
             Key key = null;
             if (keyPass == null) {
-                key = keystore.getKey(keyRef, keystorePass.toCharArray());
+                key = keystore.getKey(keyRef, keystorePass);
             } else {
-                key = keystore.getKey(keyRef, keyPass.toCharArray());
+                key = keystore.getKey(keyRef, keyPass);
             }
             // BCFKS returns null when key is not found
             if (key == null) {
@@ -233,7 +194,7 @@ public class KeystoreKeyServiceClient implements KeyServiceClient {
             throws KmcCryptoException {
         Certificate cert = null;
         try {
-            cert = keystore.getCertificate(keyRef);
+            cert = KeystoreRegistry.getSnapshot(registryKey).getCertificate(keyRef);
         } catch (KeyStoreException e) {
             String msg = "Can't find public key for " + keyRef + ": " + e;
             logger.error(msg);
@@ -0,0 +1,368 @@
+package gov.nasa.jpl.ammos.kmc.crypto.library;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Provider;
+import java.security.Security;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bouncycastle.jcajce.provider.BouncyCastleFipsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
+
+/**
+ * The process-wide registry of the loaded keystores, keyed by the keystore location, type, and password.
+ * Each keystore is loaded once and shared by all the {@link KeystoreKeyServiceClient}s, and its keys are
+ * cached after they are first retrieved.
+ * <p>
+ * A keystore file is watched for changes.  When its content changes, the keystore is loaded again and
+ * replaces the previous {@link Snapshot} at once, so a lookup sees either the old or the new keystore.
+ * If the changed file fails to load, the previous snapshot is kept.  Keystores loaded from the CLASSPATH
+ * are not watched.
+ * </p>
+ *
+ */
+final class KeystoreRegistry {
+    private static final String REGISTRY_KEY_DELIMITER = ",";
+
+    private static final Map<String, Snapshot> SNAPSHOTS = new ConcurrentHashMap<String, Snapshot>();
+    private static final Map<String, WatchedFile> WATCHED_FILES = new ConcurrentHashMap<String, WatchedFile>();
+    private static final Map<Path, WatchKey> WATCHED_DIRS = new ConcurrentHashMap<Path, WatchKey>();
+    private static WatchService watchService;
+
+    private static final Logger logger = LoggerFactory.getLogger(KeystoreRegistry.class);
+
+    private KeystoreRegistry() {
+    }
+
+    /** A keystore file to be loaded again when it changes. */
+    private static final class WatchedFile {
+        private final Path file;
+        private final String location;
+        private final String type;
+        private final String password;
+
+        WatchedFile(final Path file, final String location, final String type, final String password) {
+            this.file = file;
+            this.location = location;
+            this.type = type;
+            this.password = password;
+        }
+    }
+
+    /**
+     * A loaded keystore and the keys retrieved from it.
+     */
+    static final class Snapshot {
+        private final KeyStore keystore;
+        private final Path file;
+        private final byte[] contentHash;
+        private final Map<String, Key> keys = new ConcurrentHashMap<String, Key>();
+        private final Map<String, Certificate> certificates = new ConcurrentHashMap<String, Certificate>();
+
+        private Snapshot(final KeyStore keystore, final Path file, final byte[] contentHash) {
+            this.keystore = keystore;
+            this.file = file;
+            this.contentHash = contentHash;
+        }
+
+        boolean containsAlias(final String alias) throws KeyStoreException {
+            return keystore.containsAlias(alias);
+        }
+
+        /**
+         * Returns the key of the alias, unwrapping it only on the first retrieval with the password.
+         * @return The key, or null if the keystore has no key of the alias.
+         */
+        Key getKey(final String alias, final String password)
+                throws KeyStoreException, NoSuchAlgorithmException, UnrecoverableKeyException {
+            String cacheKey = alias + REGISTRY_KEY_DELIMITER + digest(password);
+            Key key = keys.get(cacheKey);
+            if (key == null) {
+                key = keystore.getKey(alias, password.toCharArray());
+                if (key != null) {
+                    keys.put(cacheKey, key);
+                }
+            }
+            return key;
+        }
+
+        Certificate getCertificate(final String alias) throws KeyStoreException {
+            Certificate cert = certificates.get(alias);
+            if (cert == null) {
+                cert = keystore.getCertificate(alias);
+                if (cert != null) {
+                    certificates.put(alias, cert);
+                }
+            }
+            return cert;
+        }
+    }
+
+    /**
+     * Returns the registry key of the keystore.  The password is included as its digest so that
+     * a keystore is never shared with a client that has not supplied its password.
+     */
+    static String registryKey(final String location, final String type, final String password) {
+        return location + REGISTRY_KEY_DELIMITER + type + REGISTRY_KEY_DELIMITER + digest(password);
+    }
+
+    /**
+     * Returns the current snapshot of the keystore, loading it if it is not in the registry.
+     *
+     * @param location The path to the keystore file, or its location in the CLASSPATH.
+     * @param type The keystore type.
+     * @param password The password of the keystore.
+     * @return The current snapshot of the keystore.
+     * @throws KmcCryptoException if error in loading the keystore.
+     */
+    static Snapshot getSnapshot(final String location, final String type, final String password)
+            throws KmcCryptoException {
+        String registryKey = registryKey(location, type, password);
+        Snapshot snapshot = SNAPSHOTS.get(registryKey);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (KeystoreRegistry.class) {
+            snapshot = SNAPSHOTS.get(registryKey);
+            if (snapshot == null) {
+                snapshot = load(location, type, password);
+                SNAPSHOTS.put(registryKey, snapshot);
+                if (snapshot.file != null) {
+                    watch(snapshot.file, registryKey, location, type, password);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the current snapshot of a keystore already in the registry.
+     */
+    static Snapshot getSnapshot(final String registryKey) {
+        return SNAPSHOTS.get(registryKey);
+    }
+
+    private static Snapshot load(final String location, final String type, final String password)
+            throws KmcCryptoException {
+        Path file = null;
+        InputStream stream;
+        try {
+            stream = new FileInputStream(location);
+            file = Paths.get(location).toAbsolutePath();
+            logger.debug("Load keystore " + location);
+        } catch (FileNotFoundException e) {
+            stream = KeystoreRegistry.class.getResourceAsStream(location);
+            if (stream == null) {
+                String msg = "Failed to open keystore from " + location + " and from CLASSPATH: " + e;
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
+            }
+            logger.info("Load keystore " + location + " from CLASSPATH");
+        }
+        byte[] content;
+        try {
+            content = readAll(stream);
+        } catch (IOException e) {
+            String msg = "Exception in loading " + location + ": " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
+        }
+        KeyStore keystore = loadKeystore(location, type, password, content);
+        return new Snapshot(keystore, file, sha256(content));
+    }
+
+    private static KeyStore loadKeystore(final String location, final String type, final String password,
+            final byte[] content) throws KmcCryptoException {
+        try {
+            KeyStore keystore;
+            if (KeystoreKeyServiceClient.KEYSTORE_TYPE_BCFKS.equals(type)) {
+                Provider provider = getFipsProvider();
+                keystore = KeyStore.getInstance(type, provider.getName());
+                logger.debug("Opened keystore of type {} with provider {}", type, provider.getName());
+            } else if (KeystoreKeyServiceClient.KEYSTORE_TYPE_PKCS12.equals(type) ||
+                       KeystoreKeyServiceClient.KEYSTORE_TYPE_JCEKS.equals(type) ||
+                       KeystoreKeyServiceClient.KEYSTORE_TYPE_JKS.equals(type)) {
+                keystore = KeyStore.getInstance(type);
+                logger.debug("Opened {} keystore", type);
+            } else {
+                String msg = "Unsupported keystore type: " + type + ", support only BCFKS, PKCS12, and JKS keystores";
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, null);
+            }
+            keystore.load(new ByteArrayInputStream(content), password.toCharArray());
+            return keystore;
+        } catch (KeyStoreException e) {
+            String msg = "Exception in getting instance of keystore of type: " + type + ": " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
+        } catch (NoSuchProviderException e) {
+            String msg = "Exception in creating BCFIPS provider: " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
+        } catch (NoSuchAlgorithmException e) {
+            String msg = "Exception in loading " + location + ": " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
+        } catch (CertificateException e) {
+            String msg = "Exception in loading " + location + ": " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
+        } catch (IOException e) {
+            String msg = "Exception in loading " + location + ": " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, e);
+        }
+    }
+
+    /**
+     * Returns the registered BCFIPS provider, registering it if it is not registered yet.
+     */
+    private static synchronized Provider getFipsProvider() {
+        Provider provider = new BouncyCastleFipsProvider();
+        Provider registered = Security.getProvider(provider.getName());
+        if (registered != null) {
+            return registered;
+        }
+        Security.addProvider(provider);
+        return provider;
+    }
+
+    /**
+     * Loads the keystore file again if its content has changed and replaces the snapshot.
+     */
+    private static void reload(final String registryKey, final WatchedFile watched) {
+        Snapshot current = SNAPSHOTS.get(registryKey);
+        if (current == null) {
+            return;
+        }
+        String location = watched.location;
+        try {
+            byte[] content = Files.readAllBytes(watched.file);
+            byte[] contentHash = sha256(content);
+            if (MessageDigest.isEqual(contentHash, current.contentHash)) {
+                logger.debug("Keystore {} is modified but its content is unchanged.", location);
+                return;
+            }
+            KeyStore keystore = loadKeystore(location, watched.type, watched.password, content);
+            SNAPSHOTS.put(registryKey, new Snapshot(keystore, watched.file, contentHash));
+            logger.info("Reloaded keystore {}", location);
+        } catch (IOException e) {
+            logger.error("Exception in reloading keystore {}, the previous keystore is used: {}", location, e);
+        } catch (KmcCryptoException e) {
+            logger.error("Failed to reload keystore {}, the previous keystore is used: {}", location, e);
+        }
+    }
+
+    /**
+     * Watches the directory of the keystore file for changes of the file.
+     */
+    private static void watch(final Path file, final String registryKey, final String location,
+            final String type, final String password) {
+        Path dir = file.getParent();
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watcher = new Thread(KeystoreRegistry::processEvents, "kmc-keystore-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            if (!WATCHED_DIRS.containsKey(dir)) {
+                // a keystore replaced by renaming another file appears as created
+                WatchKey watchKey = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+                WATCHED_DIRS.put(dir, watchKey);
+            }
+            WATCHED_FILES.put(registryKey, new WatchedFile(file, location, type, password));
+            logger.debug("Watching keystore {} for changes", file);
+        } catch (IOException e) {
+            logger.warn("Keystore {} is not watched, changes will not be loaded: {}", file, e);
+        }
+    }
+
+    private static void processEvents() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException e) {
+                logger.debug("Keystore watcher interrupted.");
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) watchKey.watchable();
+            Set<Path> changed = new HashSet<Path>();
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                    changed.add(dir.resolve((Path) event.context()));
+                }
+            }
+            watchKey.reset();
+            for (Map.Entry<String, WatchedFile> entry : WATCHED_FILES.entrySet()) {
+                WatchedFile watched = entry.getValue();
+                if (changed.contains(watched.file)) {
+                    reload(entry.getKey(), watched);
+                }
+            }
+        }
+    }
+
+    private static byte[] readAll(final InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int nData;
+            while ((nData = stream.read(buffer)) != -1) {
+                bos.write(buffer, 0, nData);
+            }
+            return bos.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static String digest(final String value) {
+        return Base64.getUrlEncoder().encodeToString(sha256(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] sha256(final byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required in every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
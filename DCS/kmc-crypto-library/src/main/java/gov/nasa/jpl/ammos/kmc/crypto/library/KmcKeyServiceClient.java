@@ -1,6 +1,8 @@
 package gov.nasa.jpl.ammos.kmc.crypto.library;
 
 import java.security.Key;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,16 +14,50 @@ import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
 /**
  * The KmcKeyServiceClient retrieves keys from either the keystore or KMS.
  * If a key exists in both, the key from the keystore will be returned.
- *
+ * <p>
+ * The client remembers the source and the Java key returned for each keyRef and key usage,
+ * so a repeated lookup of the same key is a map lookup.  A key taken from KMS for one usage that
+ * the keystore key does not allow is still taken from the keystore for the other usages.
+ * A Java key is remembered for {@link #RESOLVED_KEY_TTL_MILLIS}, and everything remembered is
+ * discarded when the keystore is reloaded.
+ * A keyRef found in neither source is remembered for {@link #MISSING_KEY_TTL_MILLIS} so that
+ * repeated lookups of it fail fast.  {@link #getKmcKey(String)} discards what is remembered of the keyRef.
+ * </p>
  *
  */
 public class KmcKeyServiceClient implements KeyServiceClient {
 
     public static final String NO_KEY_SOURCE_ERROR_MSG = "Neither keystore nor KMS is defined in kmc-crypto.cfg";
+    public static final long MISSING_KEY_TTL_MILLIS = 10000;
+    public static final long RESOLVED_KEY_TTL_MILLIS = 60000;
+
+    private static final String KEY_USAGE_DELIMITER = ",";
+
+    private enum KeySource { KEYSTORE, KMS }
+
+    /** A Java key and the time it is no longer used. */
+    private static final class ResolvedKey {
+        private final Key key;
+        private final long expiration;
+
+        ResolvedKey(final Key key, final long expiration) {
+            this.key = key;
+            this.expiration = expiration;
+        }
+    }
 
     private KmipKeyServiceClient kmipKeyClient = null;
     private KeystoreKeyServiceClient keystoreKeyClient = null;
 
+    // key sources by keyRef and key usage
+    private final Map<String, KeySource> keySources = new ConcurrentHashMap<String, KeySource>();
+    // Java keys by keyRef and key usage, the key state and usage have been checked
+    private final Map<String, ResolvedKey> resolvedKeys = new ConcurrentHashMap<String, ResolvedKey>();
+    // expiration time of the keyRefs not found in keystore and KMS
+    private final Map<String, Long> missingKeys = new ConcurrentHashMap<String, Long>();
+    // the keystore snapshot the remembered keys were resolved from
+    private volatile KeystoreRegistry.Snapshot keystoreSnapshot;
+
     private static final Logger logger = LoggerFactory.getLogger(KmcKeyServiceClient.class);
 
     /**
@@ -55,6 +91,7 @@ public class KmcKeyServiceClient implements KeyServiceClient {
      */
     @Override
     public final KmcKey getKmcKey(final String keyRef) throws KmcCryptoException {
+        forgetKey(keyRef);
         KmcCryptoException ex = null;
 
         // try to get the key from keystore first
@@ -100,41 +137,141 @@ public class KmcKeyServiceClient implements KeyServiceClient {
     @Override
     public final Key getCryptoKey(final String keyRef, final int keyUsage)
             throws KmcCryptoException {
-        KmcCryptoException ex = null;
+        checkKeystoreReload();
+        String resolvedKeyRef = keyRef + KEY_USAGE_DELIMITER + keyUsage;
+        ResolvedKey resolved = resolvedKeys.get(resolvedKeyRef);
+        if (resolved != null) {
+            if (System.currentTimeMillis() < resolved.expiration) {
+                return resolved.key;
+            }
+            // the source of the key usage is kept, the key is retrieved again from it
+            resolvedKeys.remove(resolvedKeyRef);
+        }
+        checkMissingKey(keyRef);
 
-        // try to get the key from keystore first
-        if (keystoreKeyClient != null) {
+        KeySource source = keySources.get(resolvedKeyRef);
+        if (source == null) {
+            source = findKeySource(keyRef);
+        }
+        Key key;
+        if (source == KeySource.KEYSTORE) {
             try {
-                return keystoreKeyClient.getCryptoKey(keyRef, keyUsage);
+                key = keystoreKeyClient.getCryptoKey(keyRef, keyUsage);
             } catch (KmcCryptoException e) {
                 if (kmipKeyClient == null) {
                     throw e;
                 }
+                // the keystore key is not usable, e.g. wrong key usage, try KMS
+                source = KeySource.KMS;
+                key = getKmsKey(keyRef, keyUsage);
             }
+        } else {
+            key = getKmsKey(keyRef, keyUsage);
         }
-        if (kmipKeyClient != null) {
-            try {
-                return kmipKeyClient.getCryptoKey(keyRef, keyUsage);
-            } catch (KmcCryptoException e) {
-                if (keystoreKeyClient == null) {
-                    throw e;
-                } else {
-                    ex = e;
-                }
+        keySources.put(resolvedKeyRef, source);
+        resolvedKeys.put(resolvedKeyRef, new ResolvedKey(key, System.currentTimeMillis() + RESOLVED_KEY_TTL_MILLIS));
+        return key;
+    }
+
+    private Key getKmsKey(final String keyRef, final int keyUsage) throws KmcCryptoException {
+        try {
+            return kmipKeyClient.getCryptoKey(keyRef, keyUsage);
+        } catch (KmcCryptoException e) {
+            rememberMissingKey(keyRef, e);
+            if (keystoreKeyClient != null) {
+                throw keyNotFound(keyRef, e);
             }
+            throw e;
         }
+    }
 
-        String msg = "Cryptographic key \"" + keyRef + "\" does not exist in keystore or KMS";
-        if (ex != null) {
-            // kmipKeyClient throws exception if key state is not acceptable for the crypto operation.
-            // In this case the error message should not be "does not exist".
-            String error = ex.getMessage();
-            if (error.contains("key state")) {
-                msg = error;
+    /**
+     * Discards everything remembered if the keystore has been reloaded since the keys were resolved.
+     */
+    private void checkKeystoreReload() {
+        if (keystoreKeyClient == null) {
+            return;
+        }
+        KeystoreRegistry.Snapshot current = keystoreKeyClient.getSnapshot();
+        if (current != keystoreSnapshot) {
+            if (keystoreSnapshot != null) {
+                logger.info("Keystore reloaded, discard the resolved keys.");
             }
+            keySources.clear();
+            resolvedKeys.clear();
+            missingKeys.clear();
+            keystoreSnapshot = current;
+        }
+    }
+
+    /**
+     * Returns the source of the key, keystore if it has the key, otherwise KMS if configured.
+     * @throws KmcCryptoException if the key does not exist in keystore and KMS is not configured.
+     */
+    private KeySource findKeySource(final String keyRef) throws KmcCryptoException {
+        if (keystoreKeyClient != null && keystoreKeyClient.containsKey(keyRef)) {
+            return KeySource.KEYSTORE;
+        }
+        if (kmipKeyClient != null) {
+            return KeySource.KMS;
+        }
+        // only keystore is configured, let it report the missing key
+        missingKeys.put(keyRef, System.currentTimeMillis() + MISSING_KEY_TTL_MILLIS);
+        return KeySource.KEYSTORE;
+    }
+
+    /**
+     * Throws the exception of a missing key if the keyRef was not found recently.
+     * @throws KmcCryptoException if the keyRef was not found within the TTL.
+     */
+    private void checkMissingKey(final String keyRef) throws KmcCryptoException {
+        Long expiration = missingKeys.get(keyRef);
+        if (expiration == null) {
+            return;
+        }
+        if (System.currentTimeMillis() < expiration) {
+            String msg = "Cryptographic key \"" + keyRef + "\" does not exist in keystore or KMS";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, null);
+        }
+        missingKeys.remove(keyRef);
+    }
+
+    /**
+     * Remembers the keyRef as missing if KMS failed to find it.  A key that exists but is in
+     * the wrong state, or a failure to connect to KMS, is not remembered.
+     */
+    private void rememberMissingKey(final String keyRef, final KmcCryptoException ex) {
+        String error = ex.getMessage();
+        if (ex.getErrorCode() == KmcCryptoErrorCode.CRYPTO_KEY_ERROR
+                && (error == null || !error.contains("key state"))) {
+            missingKeys.put(keyRef, System.currentTimeMillis() + MISSING_KEY_TTL_MILLIS);
+        }
+    }
+
+    /**
+     * Returns the exception for a key that is not in keystore and KMS.
+     */
+    private KmcCryptoException keyNotFound(final String keyRef, final KmcCryptoException ex) {
+        String msg = "Cryptographic key \"" + keyRef + "\" does not exist in keystore or KMS";
+        // kmipKeyClient throws exception if key state is not acceptable for the crypto operation.
+        // In this case the error message should not be "does not exist".
+        String error = ex.getMessage();
+        if (error != null && error.contains("key state")) {
+            msg = error;
         }
         logger.error(msg);
-        throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, ex);
+        return new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, msg, ex);
+    }
+
+    /**
+     * Discards the remembered sources, Java keys, and missing state of the keyRef for all key usages.
+     */
+    private void forgetKey(final String keyRef) {
+        String prefix = keyRef + KEY_USAGE_DELIMITER;
+        keySources.keySet().removeIf(resolvedKeyRef -> resolvedKeyRef.startsWith(prefix));
+        resolvedKeys.keySet().removeIf(resolvedKeyRef -> resolvedKeyRef.startsWith(prefix));
+        missingKeys.remove(keyRef);
     }
 
     /**
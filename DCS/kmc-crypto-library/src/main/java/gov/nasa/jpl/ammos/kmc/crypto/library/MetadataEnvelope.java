@@ -0,0 +1,155 @@
+package gov.nasa.jpl.ammos.kmc.crypto.library;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
+
+/**
+ * The MetadataEnvelope is a compact binary encoding of the {@link EncryptionMetadata} that is written
+ * in front of the encrypted data, so that the encrypted data is self-describing and the metadata
+ * does not need to be stored separately.  The envelope has the layout:
+ * <pre>
+ *   magic "KMCE" (4 bytes), version (1 byte),
+ *   keyRef, cryptoAlgorithm (modified UTF-8 with 2-byte length),
+ *   keyLength (4 bytes),
+ *   cipherTransformation (modified UTF-8 with 2-byte length),
+ *   encryptOffset (4 bytes), macLength (4 bytes, -1 if not specified),
+ *   initialVector length (2 bytes, 0 if none), initialVector
+ * </pre>
+ * All integers are big-endian.
+ *
+ */
+public final class MetadataEnvelope {
+    static final byte[] MAGIC = new byte[] {'K', 'M', 'C', 'E'};
+    static final byte VERSION = 1;
+    private static final int MAX_IV_LENGTH = 256;
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataEnvelope.class);
+
+    private MetadataEnvelope() {
+    }
+
+    /**
+     * Returns the envelope of the metadata.
+     *
+     * @param metadata The metadata of the encrypted data.
+     * @return The bytes of the envelope.
+     * @throws KmcCryptoException if the metadata is null or cannot be encoded.
+     */
+    public static byte[] toBytes(final EncryptionMetadata metadata) throws KmcCryptoException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        write(metadata, bos);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Writes the envelope of the metadata to the output stream.  The output stream is not closed.
+     *
+     * @param metadata The metadata of the encrypted data.
+     * @param outputStream The output stream to write the envelope.
+     * @throws KmcCryptoException if the metadata is null or error in writing the output stream.
+     */
+    public static void write(final EncryptionMetadata metadata, final OutputStream outputStream)
+            throws KmcCryptoException {
+        if (metadata == null) {
+            String msg = "Null metadata.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+        byte[] iv = new byte[0];
+        if (metadata.getValue(EncryptionMetadata.INITIAL_VECTOR_ATTR) != null) {
+            iv = metadata.getInitialVector();
+        }
+        try {
+            DataOutputStream dos = new DataOutputStream(outputStream);
+            dos.write(MAGIC);
+            dos.writeByte(VERSION);
+            dos.writeUTF(metadata.getKeyRef());
+            dos.writeUTF(metadata.getCryptoAlgorithm());
+            dos.writeInt(metadata.getKeyLength());
+            dos.writeUTF(metadata.getTransformation());
+            dos.writeInt(metadata.getEncryptOffset());
+            dos.writeInt(metadata.getMacLength());
+            dos.writeShort(iv.length);
+            dos.write(iv);
+            dos.flush();
+        } catch (IOException e) {
+            String msg = "Exception in writing metadata envelope: " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, msg, e);
+        }
+    }
+
+    /**
+     * Reads the envelope from the input stream.  The input stream is positioned at the encrypted data
+     * that follows the envelope.
+     *
+     * @param inputStream The input stream that starts with the envelope.
+     * @return The metadata in the envelope.
+     * @throws KmcCryptoException if the envelope is invalid or error in reading the input stream.
+     */
+    public static EncryptionMetadata read(final InputStream inputStream) throws KmcCryptoException {
+        if (inputStream == null) {
+            String msg = "Null input stream.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+        }
+        try {
+            DataInputStream dis = new DataInputStream(inputStream);
+            byte[] magic = new byte[MAGIC.length];
+            dis.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                String msg = "Input stream does not start with a metadata envelope.";
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, msg, null);
+            }
+            byte version = dis.readByte();
+            if (version != VERSION) {
+                String msg = "Unsupported metadata envelope version: " + version;
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, msg, null);
+            }
+            String keyRef = dis.readUTF();
+            String cryptoAlgorithm = dis.readUTF();
+            int keyLength = dis.readInt();
+            String transformation = dis.readUTF();
+            int encryptOffset = dis.readInt();
+            int macLength = dis.readInt();
+            int ivLength = dis.readUnsignedShort();
+            if (ivLength > MAX_IV_LENGTH) {
+                String msg = "Invalid initial vector length in metadata envelope: " + ivLength;
+                logger.error(msg);
+                throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, msg, null);
+            }
+            byte[] iv = null;
+            if (ivLength > 0) {
+                iv = new byte[ivLength];
+                dis.readFully(iv);
+            }
+
+            EncryptionMetadata metadata = new EncryptionMetadata(keyRef, cryptoAlgorithm);
+            metadata.addEncryptionAttributes(keyLength, transformation, encryptOffset, iv, macLength);
+            return metadata;
+        } catch (EOFException e) {
+            String msg = "Input stream ends within the metadata envelope.";
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, msg, e);
+        } catch (IOException e) {
+            String msg = "Exception in reading metadata envelope: " + e;
+            logger.error(msg);
+            throw new KmcCryptoException(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, msg, e);
+        }
+    }
+
+}
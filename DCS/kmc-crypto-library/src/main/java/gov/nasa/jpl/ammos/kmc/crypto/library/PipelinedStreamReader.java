@@ -0,0 +1,263 @@
+package gov.nasa.jpl.ammos.kmc.crypto.library;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
+
+/**
+ * Reads an input stream for the ICV creation and verification.  After the first chunk, the stream is read
+ * on a separate thread into pooled buffers so that reading the next chunk overlaps with hashing the current one.
+ * Input that fits in the first chunk is processed on the calling thread only.
+ * <p>
+ * When the processing fails, the reader is stopped and waited for before returning, so it no longer reads the
+ * input stream once the caller closes it, and its buffers are returned to the pool.  A read in progress cannot be
+ * interrupted, so stopping waits for at most the chunk being read.
+ * </p>
+ *
+ */
+final class PipelinedStreamReader {
+    static final int CHUNK_SIZE = 256 * 1024;
+    private static final int PIPELINE_DEPTH = 2;    // chunks being read while one is hashed
+    private static final int MAX_POOLED_BUFFERS = 16;
+    private static final long STOP_POLL_MILLIS = 10;
+
+    private static final ConcurrentLinkedQueue<byte[]> BUFFER_POOL = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger READER_COUNT = new AtomicInteger();
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "kmc-stream-reader-" + READER_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedStreamReader.class);
+
+    /**
+     * Consumer of the chunks of the input stream, in the order they are read.
+     */
+    interface ChunkConsumer {
+        void update(byte[] data, int length) throws SignatureException;
+    }
+
+    /** A filled buffer, the end of the stream (null data), or a read error. */
+    private static final class Chunk {
+        private final byte[] data;
+        private final int length;
+        private final IOException error;
+
+        Chunk(final byte[] data, final int length, final IOException error) {
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    private static final Chunk END = new Chunk(null, 0, null);
+
+    private PipelinedStreamReader() {
+    }
+
+    /**
+     * Reads the input stream to the end, passing each chunk to the consumer.  The input stream is not closed.
+     *
+     * @param inputStream The input stream to be read.
+     * @param consumer The consumer of the chunks.
+     * @return The total number of bytes read.
+     * @throws IOException if error in reading the input stream.
+     * @throws SignatureException if the consumer fails to update the signature.
+     * @throws KmcCryptoException if the input stream exceeds the maximum crypto size.
+     */
+    static long process(final InputStream inputStream, final ChunkConsumer consumer)
+            throws IOException, SignatureException, KmcCryptoException {
+        byte[] first = borrowBuffer();
+        int nData = readFully(inputStream, first);
+        if (nData < first.length) {
+            if (nData > 0) {
+                consumer.update(first, nData);
+            }
+            releaseBuffer(first);
+            return nData;
+        }
+
+        BlockingQueue<byte[]> free = new ArrayBlockingQueue<byte[]>(PIPELINE_DEPTH + 1);
+        BlockingQueue<Chunk> filled = new ArrayBlockingQueue<Chunk>(PIPELINE_DEPTH + 1);
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            free.add(borrowBuffer());
+        }
+        AtomicBoolean stopped = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        READERS.execute(() -> readChunks(inputStream, free, filled, stopped, done));
+
+        boolean completed = false;
+        long totalBytes = nData;
+        // the buffer being consumed, it is back in free otherwise
+        byte[] held = first;
+        try {
+            consumer.update(first, nData);
+            free.add(first);
+            held = null;
+            while (true) {
+                Chunk chunk = filled.take();
+                if (chunk.error != null) {
+                    throw chunk.error;
+                }
+                if (chunk == END) {
+                    break;
+                }
+                held = chunk.data;
+                totalBytes = totalBytes + chunk.length;
+                if (totalBytes > KmcCryptoManager.MAX_CRYPTO_SIZE) {
+                    String msg = "Inupt stream exceeds maximum size of " + KmcCryptoManager.MAX_CRYPTO_SIZE + " bytes.";
+                    logger.error(msg);
+                    throw new KmcCryptoException(KmcCryptoErrorCode.INVALID_INPUT_VALUE, msg, null);
+                }
+                consumer.update(chunk.data, chunk.length);
+                free.add(chunk.data);
+                held = null;
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted in reading the input stream", e);
+        } finally {
+            if (!completed) {
+                if (held != null) {
+                    free.add(held);
+                }
+                stopReader(stopped, done, free, filled);
+            }
+            // the reader has finished, all the buffers are back
+            byte[] buffer;
+            while ((buffer = free.poll()) != null) {
+                releaseBuffer(buffer);
+            }
+        }
+        return totalBytes;
+    }
+
+    /**
+     * Stops the reader after the chunk it is reading and waits for it to finish, taking back the buffers it filled.
+     * An interrupted caller does not wait, the reader then stops on its own after its current read and its buffers
+     * are left to the garbage collector.
+     */
+    private static void stopReader(final AtomicBoolean stopped, final CountDownLatch done,
+            final BlockingQueue<byte[]> free, final BlockingQueue<Chunk> filled) {
+        stopped.set(true);
+        try {
+            do {
+                // unblocks a reader waiting for room in filled or for a free buffer
+                Chunk chunk;
+                while ((chunk = filled.poll()) != null) {
+                    if (chunk.data != null) {
+                        free.add(chunk.data);
+                    }
+                }
+            } while (!done.await(STOP_POLL_MILLIS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted in stopping the stream reader.");
+        }
+    }
+
+    private static void readChunks(final InputStream inputStream, final BlockingQueue<byte[]> free,
+            final BlockingQueue<Chunk> filled, final AtomicBoolean stopped, final CountDownLatch done) {
+        try {
+            while (true) {
+                byte[] buffer = null;
+                while (buffer == null) {
+                    if (stopped.get()) {
+                        return;
+                    }
+                    buffer = free.poll(STOP_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (stopped.get()) {
+                    free.add(buffer);
+                    return;
+                }
+                int nData;
+                try {
+                    nData = readFully(inputStream, buffer);
+                } catch (IOException e) {
+                    free.add(buffer);
+                    deliver(filled, new Chunk(null, 0, e), stopped);
+                    return;
+                }
+                if (nData == 0 || !deliver(filled, new Chunk(buffer, nData, null), stopped)) {
+                    free.add(buffer);
+                }
+                if (nData < buffer.length) {
+                    deliver(filled, END, stopped);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("Stream reader interrupted.");
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Puts the chunk in the filled queue unless the reader is stopped while the queue is full.
+     * @return true if the chunk is queued.
+     */
+    private static boolean deliver(final BlockingQueue<Chunk> filled, final Chunk chunk, final AtomicBoolean stopped)
+            throws InterruptedException {
+        while (!filled.offer(chunk, STOP_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (stopped.get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills the buffer from the input stream.
+     * @return The number of bytes read, less than the buffer size only at the end of the stream.
+     */
+    private static int readFully(final InputStream inputStream, final byte[] buffer) throws IOException {
+        int totalBytes = 0;
+        while (totalBytes < buffer.length) {
+            int nData = inputStream.read(buffer, totalBytes, buffer.length - totalBytes);
+            if (nData == -1) {
+                break;
+            }
+            totalBytes = totalBytes + nData;
+        }
+        return totalBytes;
+    }
+
+    private static byte[] borrowBuffer() {
+        byte[] buffer = BUFFER_POOL.poll();
+        if (buffer == null) {
+            buffer = new byte[CHUNK_SIZE];
+        }
+        return buffer;
+    }
+
+    private static void releaseBuffer(final byte[] buffer) {
+        // size() is not exact under contention, the pool may briefly exceed the limit
+        if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) {
+            // do not keep the data of the previous stream in the pool
+            Arrays.fill(buffer, (byte) 0);
+            BUFFER_POOL.offer(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package gov.nasa.jpl.ammos.kmc.crypto.library.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import gov.nasa.jpl.ammos.kmc.crypto.Decrypter;
+import gov.nasa.jpl.ammos.kmc.crypto.IcvCreator;
+import gov.nasa.jpl.ammos.kmc.crypto.IcvVerifier;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManagerException;
+import gov.nasa.jpl.ammos.kmc.crypto.library.EncrypterLibrary;
+import gov.nasa.jpl.ammos.kmc.crypto.library.FileCryptoExecutor;
+import gov.nasa.jpl.ammos.kmc.crypto.library.IcvCreatorLibrary;
+
+/**
+ * Unit tests for the file-based encryption and ICV APIs.
+ *
+ */
+public class FileCryptoTest {
+    private static final String KEYNAME_HEAD = "kmc/test/";
+    private static final String KEYREF_AES256 = KEYNAME_HEAD + "AES256";
+    private static final String KEYREF_HMAC = KEYNAME_HEAD + "HmacSHA256";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static KmcCryptoManager cryptoManager;
+    private static Path tmpDir;
+    private static Random random;
+
+    @BeforeClass
+    public static void setUp() throws KmcCryptoManagerException, IOException {
+        cryptoManager = new KmcCryptoManager(null);
+        tmpDir = Files.createTempDirectory("kmc-file-crypto");
+        random = new Random();
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(tmpDir);
+    }
+
+    private Path createInputFile(final String name, final int size) throws IOException {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return Files.write(tmpDir.resolve(name), data);
+    }
+
+    private byte[] decrypt(final Path encryptedFile, final String metadata)
+            throws KmcCryptoManagerException, KmcCryptoException, IOException {
+        ByteArrayOutputStream dos = new ByteArrayOutputStream();
+        Decrypter decrypter = cryptoManager.createDecrypter();
+        decrypter.decrypt(Files.newInputStream(encryptedFile), dos, metadata);
+        return dos.toByteArray();
+    }
+
+    @Test
+    public final void testEncryptFile() throws KmcCryptoManagerException, KmcCryptoException, IOException {
+        // larger than the chunk size so that several updates are needed
+        Path input = createInputFile("encrypt-input", 3 * 1024 * 1024 + 7);
+        Path output = tmpDir.resolve("encrypt-output");
+
+        EncrypterLibrary encrypter = new EncrypterLibrary(cryptoManager, KEYREF_AES256);
+        String metadata = encrypter.encrypt(input, output, true);
+        assertArrayEquals(Files.readAllBytes(input), decrypt(output, metadata));
+    }
+
+    @Test
+    public final void testEncryptFileWithOffset()
+            throws KmcCryptoManagerException, KmcCryptoException, IOException {
+        KmcCryptoManager gcmManager = new KmcCryptoManager(null);
+        gcmManager.setCipherTransformation(GCM_TRANSFORMATION);
+        int encryptOffset = 100;
+        Path input = createInputFile("offset-input", 5000);
+        Path output = tmpDir.resolve("offset-output");
+
+        EncrypterLibrary encrypter = new EncrypterLibrary(gcmManager, KEYREF_AES256);
+        String metadata = encrypter.encrypt(input, encryptOffset, null, output, false);
+
+        byte[] data = Files.readAllBytes(input);
+        byte[] encrypted = Files.readAllBytes(output);
+        for (int i = 0; i < encryptOffset; i++) {
+            assertEquals(data[i], encrypted[i]);
+        }
+        ByteArrayOutputStream dos = new ByteArrayOutputStream();
+        Decrypter decrypter = gcmManager.createDecrypter();
+        decrypter.decrypt(new ByteArrayInputStream(encrypted), dos, metadata);
+        assertArrayEquals(data, dos.toByteArray());
+    }
+
+    @Test
+    public final void testEncryptEmptyFile() throws KmcCryptoException, IOException {
+        Path input = Files.write(tmpDir.resolve("empty-input"), new byte[0]);
+        Path output = tmpDir.resolve("empty-output");
+
+        EncrypterLibrary encrypter = new EncrypterLibrary(cryptoManager, KEYREF_AES256);
+        try {
+            encrypter.encrypt(input, output, false);
+            fail("Expected KmcCryptoException not received.");
+        } catch (KmcCryptoException e) {
+            assertEquals(KmcCryptoErrorCode.INVALID_INPUT_VALUE, e.getErrorCode());
+        }
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    public final void testIcvOfFile() throws KmcCryptoManagerException, KmcCryptoException, IOException {
+        Path input = createInputFile("icv-input", 2 * 1024 * 1024);
+
+        IcvCreatorLibrary creator = new IcvCreatorLibrary(cryptoManager, KEYREF_HMAC);
+        String metadata = creator.createIntegrityCheckValue(input);
+
+        // same ICV as the stream API
+        IcvCreator streamCreator = cryptoManager.createIcvCreator(KEYREF_HMAC);
+        InputStream is = Files.newInputStream(input);
+        assertEquals(metadata, streamCreator.createIntegrityCheckValue(is));
+
+        IcvVerifier verifier = cryptoManager.createIcvVerifier();
+        assertTrue(verifier.verifyIntegrityCheckValue(Files.newInputStream(input), metadata));
+    }
+
+    @Test
+    public final void testFileCryptoExecutor()
+            throws KmcCryptoManagerException, KmcCryptoException, IOException, InterruptedException, ExecutionException {
+        Map<Path, Path> files = new LinkedHashMap<Path, Path>();
+        List<Path> inputs = new ArrayList<Path>();
+        for (int i = 0; i < 8; i++) {
+            Path input = createInputFile("bulk-input-" + i, 10000 + i);
+            files.put(input, tmpDir.resolve("bulk-output-" + i));
+            inputs.add(input);
+        }
+        Path missing = tmpDir.resolve("bulk-missing");
+        inputs.add(missing);
+
+        try (FileCryptoExecutor executor = new FileCryptoExecutor(cryptoManager, 3)) {
+            Map<Path, Future<String>> encrypted = executor.encryptFiles(KEYREF_AES256, files, false);
+            for (Map.Entry<Path, Future<String>> result : encrypted.entrySet()) {
+                byte[] decrypted = decrypt(files.get(result.getKey()), result.getValue().get());
+                assertArrayEquals(Files.readAllBytes(result.getKey()), decrypted);
+            }
+
+            Map<Path, Future<String>> icvs = executor.createIntegrityCheckValues(KEYREF_HMAC, inputs);
+            IcvVerifier verifier = cryptoManager.createIcvVerifier();
+            for (Path input : files.keySet()) {
+                assertTrue(verifier.verifyIntegrityCheckValue(Files.newInputStream(input), icvs.get(input).get()));
+            }
+            try {
+                icvs.get(missing).get();
+                fail("Expected ExecutionException not received.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof KmcCryptoException);
+            }
+        }
+    }
+
+    @Test
+    public final void testFileCryptoExecutorThreads() {
+        try {
+            new FileCryptoExecutor(cryptoManager, 0);
+            fail("Expected KmcCryptoException not received.");
+        } catch (KmcCryptoException e) {
+            assertEquals(KmcCryptoErrorCode.INVALID_INPUT_VALUE, e.getErrorCode());
+        }
+    }
+
+}
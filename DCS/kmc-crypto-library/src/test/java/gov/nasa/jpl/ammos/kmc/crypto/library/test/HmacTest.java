@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.Security;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.jcajce.provider.BouncyCastleFipsProvider;
 import org.junit.BeforeClass;
@@ -162,6 +163,90 @@ public class HmacTest {
         assertEquals(metadata1, metadata3);
     }
 
+    @Test
+    public final void testReuseAfterReadError()
+            throws KmcCryptoManagerException, KmcCryptoException, IOException {
+        // larger than the read chunk so that the stream is read on the reader thread
+        byte[] data = new byte[1000000];
+        new Random().nextBytes(data);
+        InputStream errorStream = new InputStream() {
+            private int count = 0;
+            @Override
+            public int read() throws IOException {
+                if (count++ > data.length / 2) {
+                    throw new IOException("Simulated read error");
+                }
+                return data[count - 1] & 0xFF;
+            }
+            @Override
+            public int available() {
+                return data.length - count;
+            }
+        };
+
+        IcvCreator creator = cryptoManager.createIcvCreator(DEFAULT_KEYREF);
+        try {
+            creator.createIntegrityCheckValue(errorStream);
+            fail("Expected KmcCryptoException not received.");
+        } catch (KmcCryptoException e) {
+            assertEquals(KmcCryptoErrorCode.CRYPTO_ALGORITHM_ERROR, e.getErrorCode());
+        }
+
+        // the partial data of the failed stream is not included in the next ICV
+        String metadata = creator.createIntegrityCheckValue(new ByteArrayInputStream(data));
+        IcvCreator newCreator = cryptoManager.createIcvCreator(DEFAULT_KEYREF);
+        assertEquals(metadata, newCreator.createIntegrityCheckValue(new ByteArrayInputStream(data)));
+
+        // repeated verification with the same verifier
+        IcvVerifier verifier = cryptoManager.createIcvVerifier();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(verifier.verifyIntegrityCheckValue(new ByteArrayInputStream(data), metadata));
+        }
+        data[0] = (byte) (data[0] + 1);
+        assertFalse(verifier.verifyIntegrityCheckValue(new ByteArrayInputStream(data), metadata));
+    }
+
+    @Test
+    public final void testNoReadAfterOversizedStream()
+            throws KmcCryptoManagerException, KmcCryptoException, IOException, InterruptedException {
+        // endless slow stream, the ICV fails once the maximum crypto size is exceeded
+        AtomicLong reads = new AtomicLong();
+        InputStream endlessStream = new InputStream() {
+            @Override
+            public int read() {
+                reads.incrementAndGet();
+                return 0;
+            }
+            @Override
+            public int read(final byte[] b, final int off, final int len) {
+                reads.incrementAndGet();
+                // like a blocking read, not ended by an interrupt
+                long end = System.nanoTime() + 100000;
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                return Math.min(len, 8192);
+            }
+            @Override
+            public int available() {
+                return 8192;
+            }
+        };
+
+        IcvCreator creator = cryptoManager.createIcvCreator(DEFAULT_KEYREF);
+        try {
+            creator.createIntegrityCheckValue(endlessStream);
+            fail("Expected KmcCryptoException not received.");
+        } catch (KmcCryptoException e) {
+            assertEquals(KmcCryptoErrorCode.INVALID_INPUT_VALUE, e.getErrorCode());
+        }
+        // the reader thread has stopped reading the stream
+        long count = reads.get();
+        assertTrue(count > 0);
+        Thread.sleep(200);
+        assertEquals(count, reads.get());
+    }
+
     @Test
     public final void testDifferentData()
             throws KmcCryptoManagerException, KmcCryptoException, IOException {
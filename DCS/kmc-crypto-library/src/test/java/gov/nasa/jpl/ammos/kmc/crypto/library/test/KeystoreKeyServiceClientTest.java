@@ -2,11 +2,17 @@ package gov.nasa.jpl.ammos.kmc.crypto.library.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.Key;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Security;
@@ -180,4 +186,53 @@ public class KeystoreKeyServiceClientTest {
         }
     }
 
+    @Test
+    public final void testSharedKeystore() throws KmcCryptoException {
+        KeystoreKeyServiceClient keystore1 = new KeystoreKeyServiceClient(
+                SYMMETRIC_KEYSTORE, KEYSTORE_PASS, SYMMETRIC_TYPE);
+        KeystoreKeyServiceClient keystore2 = new KeystoreKeyServiceClient(
+                SYMMETRIC_KEYSTORE, KEYSTORE_PASS, SYMMETRIC_TYPE);
+        Key key1 = keystore1.getCryptoKey(SYMMETRIC_KEYREF, KEYSTORE_KEYPASS,
+                KeyServiceClient.USAGE_MASK_SYMMETRIC_CRYPTO);
+        Key key2 = keystore2.getCryptoKey(SYMMETRIC_KEYREF, KEYSTORE_KEYPASS,
+                KeyServiceClient.USAGE_MASK_SYMMETRIC_CRYPTO);
+        assertSame(key1, key2);
+    }
+
+    @Test
+    public final void testReloadKeystore() throws KmcCryptoException, IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("kmc-keystore");
+        Path keystoreFile = dir.resolve("reload-keys.jck");
+        Files.copy(Paths.get(SYMMETRIC_KEYSTORE), keystoreFile);
+        try {
+            KeystoreKeyServiceClient localKeystore = new KeystoreKeyServiceClient(
+                    keystoreFile.toString(), KEYSTORE_PASS, SYMMETRIC_TYPE);
+            assertNotNull(localKeystore.getCryptoKey(SYMMETRIC_KEYREF, KEYSTORE_KEYPASS,
+                    KeyServiceClient.USAGE_MASK_SYMMETRIC_CRYPTO));
+
+            // replace the keystore with the asymmetric keys, JCEKS loads a JKS keystore
+            Files.copy(Paths.get(ASYMMETRIC_KEYSTORE), keystoreFile, StandardCopyOption.REPLACE_EXISTING);
+            Key key = null;
+            for (int i = 0; i < 100 && key == null; i++) {
+                try {
+                    key = localKeystore.getCryptoKey(ASYMMETRIC_KEYREF, KEYSTORE_KEYPASS,
+                            KeyServiceClient.USAGE_MASK_ENCRYPT);
+                } catch (KmcCryptoException e) {
+                    Thread.sleep(100);
+                }
+            }
+            assertTrue(key instanceof PublicKey);
+            try {
+                localKeystore.getCryptoKey(SYMMETRIC_KEYREF, KEYSTORE_KEYPASS,
+                        KeyServiceClient.USAGE_MASK_SYMMETRIC_CRYPTO);
+                fail("Expected KmcCryptoException not received.");
+            } catch (KmcCryptoException e) {
+                assertEquals(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, e.getErrorCode());
+            }
+        } finally {
+            Files.delete(keystoreFile);
+            Files.delete(dir);
+        }
+    }
+
 }
@@ -0,0 +1,128 @@
+package gov.nasa.jpl.ammos.kmc.crypto.library.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+import org.bouncycastle.jcajce.provider.BouncyCastleFipsProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManagerException;
+import gov.nasa.jpl.ammos.kmc.crypto.library.KeyServiceClient;
+import gov.nasa.jpl.ammos.kmc.crypto.library.KeystoreKeyServiceClient;
+import gov.nasa.jpl.ammos.kmc.crypto.library.KmcKeyServiceClient;
+
+/**
+ * Unit tests for the keys resolved by the KmcKeyServiceClient from the configured keystore.
+ *
+ */
+public class KmcKeyServiceClientTest {
+    private static final String SYMMETRIC_KEYREF = "kmc/test/AES256";
+    private static final String ASYMMETRIC_KEYREF = "kmc/test/RSA2048";
+    private static final String MISSING_KEYREF = "kmc/test/nonExistKey";
+    private static final String KEYSTORE_PASS = "kmcstorepass";
+
+    private static KmcCryptoManager cryptoManager;
+
+    @BeforeClass
+    public static void setUp() throws KmcCryptoManagerException {
+        cryptoManager = new KmcCryptoManager(null);
+    }
+
+    @Test
+    public final void testResolvedKey() throws KmcCryptoException {
+        KmcKeyServiceClient keyClient = new KmcKeyServiceClient(cryptoManager);
+        Key key = keyClient.getCryptoKey(SYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT);
+        assertNotNull(key);
+        assertSame(key, keyClient.getCryptoKey(SYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT));
+
+        // loading the key discards the resolved key
+        keyClient.getKmcKey(SYMMETRIC_KEYREF);
+        Key reloaded = keyClient.getCryptoKey(SYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT);
+        assertEquals(key, reloaded);
+    }
+
+    @Test
+    public final void testResolvedKeyUsage() throws KmcCryptoException {
+        KmcKeyServiceClient keyClient = new KmcKeyServiceClient(cryptoManager);
+        Key publicKey = keyClient.getCryptoKey(ASYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT);
+        Key privateKey = keyClient.getCryptoKey(ASYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_DECRYPT);
+        assertTrue(publicKey instanceof PublicKey);
+        assertTrue(privateKey instanceof PrivateKey);
+        assertSame(publicKey, keyClient.getCryptoKey(ASYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT));
+        assertSame(privateKey, keyClient.getCryptoKey(ASYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_DECRYPT));
+    }
+
+    @Test
+    public final void testMissingKey() throws KmcCryptoException {
+        KmcKeyServiceClient keyClient = new KmcKeyServiceClient(cryptoManager);
+        for (int i = 0; i < 2; i++) {
+            try {
+                keyClient.getCryptoKey(MISSING_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT);
+                fail("Expected KmcCryptoException not received.");
+            } catch (KmcCryptoException e) {
+                assertEquals(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, e.getErrorCode());
+            }
+        }
+    }
+
+    @Test
+    public final void testKeystoreReload() throws KmcCryptoException, KmcCryptoManagerException,
+            IOException, InterruptedException, GeneralSecurityException {
+        ClassLoader loader = KmcKeyServiceClientTest.class.getClassLoader();
+        Path dir = Files.createTempDirectory("kmc-keystore");
+        Path keystoreFile = dir.resolve("client-keys.bcfks");
+        Files.copy(Paths.get(loader.getResource("kmc-all-keys.bcfks").getFile()), keystoreFile);
+        try {
+            KmcCryptoManager manager = new KmcCryptoManager(null);
+            manager.setCryptoKeystoreLocation(keystoreFile.toString());
+            KmcKeyServiceClient keyClient = new KmcKeyServiceClient(manager);
+            assertNotNull(keyClient.getCryptoKey(SYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT));
+
+            // the resolved key is discarded when an empty keystore is loaded
+            Path emptyFile = dir.resolve("empty-keys.bcfks");
+            KeyStore empty = KeyStore.getInstance(KeystoreKeyServiceClient.KEYSTORE_TYPE_BCFKS,
+                    new BouncyCastleFipsProvider());
+            empty.load(null, null);
+            try (OutputStream os = Files.newOutputStream(emptyFile)) {
+                empty.store(os, KEYSTORE_PASS.toCharArray());
+            }
+            Files.move(emptyFile, keystoreFile, StandardCopyOption.REPLACE_EXISTING);
+            Key key = null;
+            for (int i = 0; i < 100; i++) {
+                try {
+                    key = keyClient.getCryptoKey(SYMMETRIC_KEYREF, KeyServiceClient.USAGE_MASK_ENCRYPT);
+                    Thread.sleep(100);
+                } catch (KmcCryptoException e) {
+                    assertEquals(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, e.getErrorCode());
+                    key = null;
+                    break;
+                }
+            }
+            assertNull(key);
+        } finally {
+            Files.delete(keystoreFile);
+            Files.delete(dir);
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package gov.nasa.jpl.ammos.kmc.crypto.library.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoException.KmcCryptoErrorCode;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManager;
+import gov.nasa.jpl.ammos.kmc.crypto.KmcCryptoManagerException;
+import gov.nasa.jpl.ammos.kmc.crypto.library.DecrypterLibrary;
+import gov.nasa.jpl.ammos.kmc.crypto.library.EncrypterLibrary;
+import gov.nasa.jpl.ammos.kmc.crypto.library.EncryptionMetadata;
+import gov.nasa.jpl.ammos.kmc.crypto.library.KeystoreKeyServiceClient;
+import gov.nasa.jpl.ammos.kmc.crypto.library.MetadataEnvelope;
+
+/**
+ * Unit tests for the typed encryption metadata and the metadata envelope.
+ *
+ */
+public class MetadataEnvelopeTest {
+    private static final String KEYNAME_HEAD = "kmc/test/";
+    private static final String KEYREF_AES256 = KEYNAME_HEAD + "AES256";
+    private static final String KEYREF_AES128 = KEYNAME_HEAD + "AES128";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEYSTORE_PASS = "kmcstorepass";
+    private static final String KEYSTORE_KEYPASS = "kmckeypass";
+
+    private static KmcCryptoManager cryptoManager;
+    private static Random random;
+
+    @BeforeClass
+    public static void setUp() throws KmcCryptoManagerException {
+        cryptoManager = new KmcCryptoManager(null);
+        random = new Random();
+    }
+
+    private byte[] randomBytes(final int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public final void testTypedMetadata() throws KmcCryptoException {
+        byte[] data = randomBytes(1000);
+        ByteArrayOutputStream eos = new ByteArrayOutputStream();
+        EncrypterLibrary encrypter = new EncrypterLibrary(cryptoManager, KEYREF_AES256);
+        EncryptionMetadata metadata = encrypter.encryptWithMetadata(new ByteArrayInputStream(data), 0, null, eos);
+        assertEquals(KEYREF_AES256, metadata.getKeyRef());
+        assertEquals("AES", metadata.getCryptoAlgorithm());
+        assertEquals(256, metadata.getKeyLength());
+        assertEquals(0, metadata.getEncryptOffset());
+
+        // the string representation parses to the same metadata
+        EncryptionMetadata parsed = EncryptionMetadata.valueOf(metadata.toString());
+        assertEquals(metadata.getTransformation(), parsed.getTransformation());
+        assertArrayEquals(metadata.getInitialVector(), parsed.getInitialVector());
+
+        ByteArrayOutputStream dos = new ByteArrayOutputStream();
+        DecrypterLibrary decrypter = new DecrypterLibrary(cryptoManager);
+        decrypter.decrypt(new ByteArrayInputStream(eos.toByteArray()), dos, metadata);
+        assertArrayEquals(data, dos.toByteArray());
+    }
+
+    @Test
+    public final void testEnvelope() throws KmcCryptoException {
+        byte[] data = randomBytes(5000);
+        ByteArrayOutputStream eos = new ByteArrayOutputStream();
+        EncrypterLibrary encrypter = new EncrypterLibrary(cryptoManager, KEYREF_AES256);
+        EncryptionMetadata metadata = encrypter.encryptWithEnvelope(new ByteArrayInputStream(data), 0, null, eos);
+        byte[] encrypted = eos.toByteArray();
+        byte[] envelope = MetadataEnvelope.toBytes(metadata);
+        for (int i = 0; i < envelope.length; i++) {
+            assertEquals(envelope[i], encrypted[i]);
+        }
+
+        ByteArrayOutputStream dos = new ByteArrayOutputStream();
+        DecrypterLibrary decrypter = new DecrypterLibrary(cryptoManager);
+        EncryptionMetadata decoded = decrypter.decryptEnvelope(new ByteArrayInputStream(encrypted), dos);
+        assertArrayEquals(data, dos.toByteArray());
+        assertEquals(metadata.getKeyRef(), decoded.getKeyRef());
+        assertArrayEquals(metadata.getInitialVector(), decoded.getInitialVector());
+    }
+
+    @Test
+    public final void testEnvelopeWithOffset() throws KmcCryptoManagerException, KmcCryptoException {
+        KmcCryptoManager gcmManager = new KmcCryptoManager(null);
+        gcmManager.setCipherTransformation(GCM_TRANSFORMATION);
+        byte[] data = randomBytes(3000);
+        int encryptOffset = 64;
+
+        ByteArrayOutputStream eos = new ByteArrayOutputStream();
+        EncrypterLibrary encrypter = new EncrypterLibrary(gcmManager, KEYREF_AES128);
+        EncryptionMetadata metadata = encrypter.encryptWithEnvelope(
+                new ByteArrayInputStream(data), encryptOffset, null, eos);
+        assertEquals(encryptOffset, metadata.getEncryptOffset());
+
+        ByteArrayOutputStream dos = new ByteArrayOutputStream();
+        DecrypterLibrary decrypter = new DecrypterLibrary(gcmManager);
+        EncryptionMetadata decoded = decrypter.decryptEnvelope(new ByteArrayInputStream(eos.toByteArray()), dos);
+        assertArrayEquals(data, dos.toByteArray());
+        assertEquals(metadata.getMacLength(), decoded.getMacLength());
+    }
+
+    @Test
+    public final void testInvalidEnvelope() throws KmcCryptoException {
+        DecrypterLibrary decrypter = new DecrypterLibrary(cryptoManager);
+        try {
+            decrypter.decryptEnvelope(new ByteArrayInputStream(randomBytes(100)), new ByteArrayOutputStream());
+            fail("Expected KmcCryptoException not received.");
+        } catch (KmcCryptoException e) {
+            assertEquals(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, e.getErrorCode());
+        }
+
+        // truncated envelope
+        byte[] data = randomBytes(100);
+        ByteArrayOutputStream eos = new ByteArrayOutputStream();
+        EncrypterLibrary encrypter = new EncrypterLibrary(cryptoManager, KEYREF_AES256);
+        EncryptionMetadata metadata = encrypter.encryptWithEnvelope(new ByteArrayInputStream(data), 0, null, eos);
+        byte[] envelope = MetadataEnvelope.toBytes(metadata);
+        byte[] truncated = new byte[envelope.length - 1];
+        System.arraycopy(envelope, 0, truncated, 0, truncated.length);
+        try {
+            MetadataEnvelope.read(new ByteArrayInputStream(truncated));
+            fail("Expected KmcCryptoException not received.");
+        } catch (KmcCryptoException e) {
+            assertEquals(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public final void testInvalidMetadataString() {
+        String[] invalid = new String[] {
+            "", "metadataType", "metadataType:", ":EncryptionMetadata",
+            "metadataType:EncryptionMetadata,,keyRef:kmc/test/AES256",
+            "metadataType:Encryption:Metadata",
+        };
+        for (String metadata : invalid) {
+            try {
+                EncryptionMetadata.valueOf(metadata);
+                fail("Expected KmcCryptoException not received for " + metadata);
+            } catch (KmcCryptoException e) {
+                assertEquals(KmcCryptoErrorCode.CRYPTO_METADATA_ERROR, e.getErrorCode());
+            }
+        }
+    }
+
+    @Test
+    public final void testRepeatedDecryption() throws KmcCryptoException {
+        // the key and cipher are reused across records of the same key
+        EncrypterLibrary encrypter = new EncrypterLibrary(cryptoManager, KEYREF_AES256);
+        DecrypterLibrary decrypter = new DecrypterLibrary(cryptoManager);
+        for (int i = 0; i < 20; i++) {
+            byte[] data = randomBytes(100 + i);
+            ByteArrayOutputStream eos = new ByteArrayOutputStream();
+            String metadata = encrypter.encrypt(new ByteArrayInputStream(data), eos);
+            ByteArrayOutputStream dos = new ByteArrayOutputStream();
+            decrypter.decrypt(new ByteArrayInputStream(eos.toByteArray()), dos, metadata);
+            assertArrayEquals(data, dos.toByteArray());
+        }
+
+        // key length in the metadata is still checked for a cached key
+        ByteArrayOutputStream eos = new ByteArrayOutputStream();
+        String metadata = encrypter.encrypt(new ByteArrayInputStream(randomBytes(100)), eos);
+        String badMetadata = metadata.replace("keyLength:256", "keyLength:128");
+        try {
+            decrypter.decrypt(new ByteArrayInputStream(eos.toByteArray()), new ByteArrayOutputStream(), badMetadata);
+            fail("Expected KmcCryptoException not received.");
+        } catch (KmcCryptoException e) {
+            assertEquals(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public final void testDecryptionAfterKeystoreReload()
+            throws KmcCryptoException, IOException, InterruptedException {
+        ClassLoader loader = MetadataEnvelopeTest.class.getClassLoader();
+        Path dir = Files.createTempDirectory("kmc-keystore");
+        Path keystoreFile = dir.resolve("decrypt-keys.jck");
+        Files.copy(Paths.get(loader.getResource("symmetric-keys.jck").getFile()), keystoreFile);
+        try {
+            EncrypterLibrary encrypter = new EncrypterLibrary(cryptoManager, keystoreFile.toString(), KEYSTORE_PASS,
+                    KeystoreKeyServiceClient.KEYSTORE_TYPE_JCEKS, KEYREF_AES128, KEYSTORE_KEYPASS);
+            DecrypterLibrary decrypter = new DecrypterLibrary(cryptoManager, keystoreFile.toString(), KEYSTORE_PASS,
+                    KeystoreKeyServiceClient.KEYSTORE_TYPE_JCEKS, KEYSTORE_KEYPASS);
+            byte[] data = randomBytes(100);
+            ByteArrayOutputStream eos = new ByteArrayOutputStream();
+            String metadata = encrypter.encrypt(new ByteArrayInputStream(data), eos);
+            ByteArrayOutputStream dos = new ByteArrayOutputStream();
+            decrypter.decrypt(new ByteArrayInputStream(eos.toByteArray()), dos, metadata);
+            assertArrayEquals(data, dos.toByteArray());
+
+            // the key checked for the previous decryption is not used once it is removed from the keystore
+            Files.copy(Paths.get(loader.getResource("asymmetric-keys.jks").getFile()), keystoreFile,
+                    StandardCopyOption.REPLACE_EXISTING);
+            KmcCryptoException error = null;
+            for (int i = 0; i < 100 && error == null; i++) {
+                try {
+                    decrypter.decrypt(new ByteArrayInputStream(eos.toByteArray()), new ByteArrayOutputStream(), metadata);
+                    Thread.sleep(100);
+                } catch (KmcCryptoException e) {
+                    error = e;
+                }
+            }
+            assertNotNull(error);
+            assertEquals(KmcCryptoErrorCode.CRYPTO_KEY_ERROR, error.getErrorCode());
+        } finally {
+            Files.delete(keystoreFile);
+            Files.delete(dir);
+        }
+    }
+
+}
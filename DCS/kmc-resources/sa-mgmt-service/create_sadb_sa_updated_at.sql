@@ -0,0 +1,18 @@
+-- Optional last update time of each SA for the KMC SA management CLI and service.
+-- SA management keeps an in-process index of the operational SAs. When the SA tables have this column, the index only
+-- reloads after another writer has changed a table; without it, the index reloads once per poll interval.
+-- Run the TM and AOS statements only if those tables exist.
+
+USE sadb;
+
+ALTER TABLE security_associations
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+    ADD INDEX IF NOT EXISTS sa_updated_at (updated_at);
+
+ALTER TABLE security_associations_tm
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+    ADD INDEX IF NOT EXISTS sa_updated_at (updated_at);
+
+ALTER TABLE security_associations_aos
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+    ADD INDEX IF NOT EXISTS sa_updated_at (updated_at);
@@ -0,0 +1,45 @@
+-- Optional version of each SA for the KMC SA management CLI and service.
+-- The version is incremented by every write of the ARSN or IV, by SA management and, through the triggers below, by
+-- other writers such as CryptoLib. Compare-and-set and increment of the ARSN and IV are conditional on the ARSN or IV
+-- value itself and, when the SA tables have this column, on the version, so a value written back to what was read is
+-- still seen as a concurrent write.
+-- Run the TM and AOS statements only if those tables exist.
+
+USE sadb;
+
+ALTER TABLE security_associations
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE security_associations_tm
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE security_associations_aos
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+DELIMITER //
+
+CREATE OR REPLACE TRIGGER security_associations_version
+    BEFORE UPDATE ON security_associations FOR EACH ROW
+BEGIN
+    IF NOT (NEW.arsn <=> OLD.arsn) OR NOT (NEW.iv <=> OLD.iv) THEN
+        SET NEW.version = OLD.version + 1;
+    END IF;
+END//
+
+CREATE OR REPLACE TRIGGER security_associations_tm_version
+    BEFORE UPDATE ON security_associations_tm FOR EACH ROW
+BEGIN
+    IF NOT (NEW.arsn <=> OLD.arsn) OR NOT (NEW.iv <=> OLD.iv) THEN
+        SET NEW.version = OLD.version + 1;
+    END IF;
+END//
+
+CREATE OR REPLACE TRIGGER security_associations_aos_version
+    BEFORE UPDATE ON security_associations_aos FOR EACH ROW
+BEGIN
+    IF NOT (NEW.arsn <=> OLD.arsn) OR NOT (NEW.iv <=> OLD.iv) THEN
+        SET NEW.version = OLD.version + 1;
+    END IF;
+END//
+
+DELIMITER ;
@@ -0,0 +1,13 @@
+-- Optional SPI allocation counters for the KMC SA management CLI and service.
+-- When this table exists, SPIs allocated for new SAs are reserved in blocks per frame type and SCID and are unique
+-- across all running instances. Without it, SPIs are allocated from the highest SPI in use.
+
+USE sadb;
+
+CREATE TABLE IF NOT EXISTS spi_allocation
+(
+    frame_type VARCHAR(8) NOT NULL, -- TC, TM or AOS
+    scid       SMALLINT   NOT NULL,
+    next_spi   INT        NOT NULL, -- first SPI of the next block to reserve
+    PRIMARY KEY (frame_type, scid)
+);
@@ -1,6 +1,8 @@
 package gov.nasa.jpl.ammos.asec.kmc.cli;
 
+import gov.nasa.jpl.ammos.asec.kmc.cli.crud.SaBatch;
 import gov.nasa.jpl.ammos.asec.kmc.cli.crud.SaCreate;
+import gov.nasa.jpl.ammos.asec.kmc.cli.crud.SaDaemon;
 import gov.nasa.jpl.ammos.asec.kmc.cli.crud.SaDelete;
 import gov.nasa.jpl.ammos.asec.kmc.cli.crud.SaExpire;
 import gov.nasa.jpl.ammos.asec.kmc.cli.crud.SaKey;
@@ -13,6 +15,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
+import java.io.PrintWriter;
+import java.nio.file.Path;
+
 /**
  * Main CLI launcher class
  */
@@ -23,7 +28,9 @@ import picocli.CommandLine;
         SaKey.class,
         SaStart.class,
         SaStop.class,
-        SaExpire.class}, description = "KMC Security Association Management CLI", mixinStandardHelpOptions = true,
+        SaExpire.class,
+        SaBatch.class,
+        SaDaemon.class}, description = "KMC Security Association Management CLI", mixinStandardHelpOptions = true,
         versionProvider = Version.class)
 public class Main {
 
@@ -35,10 +42,27 @@ public class Main {
      * @param args args
      */
     public static void main(String... args) {
-        int exit =
-                new CommandLine(new Main()).setExecutionExceptionHandler(new PrintExceptionMessageHandler()).execute(args);
+        String socket = System.getenv(SaDaemon.ENV_SOCKET);
+        if (socket != null && args.length > 0 && SaDaemon.isForwarded(args[0])) {
+            // served by a running daemon if there is one, without starting a DAO in this process
+            Integer exit = SaDaemon.forward(Path.of(socket), args, new PrintWriter(System.out, true),
+                    new PrintWriter(System.err, true));
+            if (exit != null) {
+                System.exit(exit);
+            }
+        }
+        int exit = commandLine().execute(args);
         System.exit(exit);
     }
+
+    /**
+     * Create a command line for the CLI commands
+     *
+     * @return command line
+     */
+    public static CommandLine commandLine() {
+        return new CommandLine(new Main()).setExecutionExceptionHandler(new PrintExceptionMessageHandler());
+    }
 }
 
 /**
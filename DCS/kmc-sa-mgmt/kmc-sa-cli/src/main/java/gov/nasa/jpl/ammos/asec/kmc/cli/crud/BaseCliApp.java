@@ -2,8 +2,11 @@ package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
 
 import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaBulkResult;
 import gov.nasa.jpl.ammos.asec.kmc.sadb.DaoFactory;
+import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
 import gov.nasa.jpl.ammos.asec.kmc.sadb.config.Config;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
@@ -12,7 +15,12 @@ import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Scanner;
 import java.util.concurrent.Callable;
 
 /**
@@ -43,6 +51,11 @@ abstract class BaseCliApp implements Callable<Integer> {
      */
     protected static final Logger LOG = LoggerFactory.getLogger(BaseCliApp.class);
 
+    /**
+     * DAO shared by the commands run on the current thread by the batch runner or the daemon
+     */
+    private static final ThreadLocal<IKmcDao> SHARED_DAO = new ThreadLocal<>();
+
     /**
      * CLI spec
      */
@@ -104,15 +117,97 @@ abstract class BaseCliApp implements Callable<Integer> {
         LOG.warn(message);
     }
 
+    /**
+     * Ask for confirmation of an operation on each SA, unless silent. SAs that do not exist are not asked about and
+     * are left to the operation to report.
+     *
+     * @param dao    KMC DAO
+     * @param ids    spi + scid of each SA
+     * @param silent skip confirmation
+     * @param action operation description, e.g. "deleting"
+     * @return confirmed SAs
+     * @throws KmcException exception
+     */
+    protected List<SpiScid> confirm(IKmcDao dao, List<SpiScid> ids, boolean silent, String action) throws
+                                                                                                  KmcException {
+        if (silent) {
+            return ids;
+        }
+        if (SHARED_DAO.get() != null) {
+            throwEx("Cannot ask for confirmation of commands run in batch or by the daemon, use -y");
+        }
+        List<SpiScid> confirmed = new ArrayList<>();
+        Scanner       scanner   = new Scanner(System.in);
+        for (SpiScid id : ids) {
+            if (dao.getSa(id, frameType) != null) {
+                console(String.format("%s is %s SA %d/%d, do you wish to continue? y/n", System.getProperty(
+                        "user.name"), action, id.getSpi(), id.getScid()));
+                if (!confirmed(scanner)) {
+                    console(String.format("Skipping %d/%d", id.getSpi(), id.getScid()));
+                    continue;
+                }
+            }
+            confirmed.add(id);
+        }
+        return confirmed;
+    }
+
+    private boolean confirmed(Scanner scanner) {
+        while (scanner.hasNext()) {
+            String confirm = scanner.next();
+            if (confirm.equals("y")) {
+                return true;
+            } else if (confirm.equals("n")) {
+                return false;
+            }
+            warn("Unrecognized input");
+        }
+        return false;
+    }
+
+    /**
+     * Report the result of a bulk operation, one line per SA
+     *
+     * @param result bulk operation result
+     * @param done   operation description, e.g. "deleted"
+     * @return exit code, 1 if the operation was not applied to every SA
+     */
+    protected int report(SaBulkResult result, String done) {
+        for (SaBulkResult.Item item : result.getItems()) {
+            SpiScid id = item.getId();
+            if (item.isSuccess()) {
+                console(String.format("%s %s SA %d/%d", System.getProperty("user.name"), done, id.getSpi(),
+                        id.getScid()));
+            } else {
+                warn(String.format("%s, skipping SA %d/%d", item.getMessage(), id.getSpi(), id.getScid()));
+            }
+        }
+        return result.hasErrors() ? 1 : 0;
+    }
+
     /**
      * Get a KMC DAO using either the configured authentication, or provided credentials
      *
      * @return KMC DAO
      */
     public IKmcDao getDao() {
+        return getDao(KmcDao.SPI_BLOCK_SIZE);
+    }
+
+    /**
+     * Get a KMC DAO using either the configured authentication, or provided credentials
+     *
+     * @param spiBlockSize number of SPIs reserved at a time, larger for long-lived DAOs
+     * @return KMC DAO
+     */
+    public IKmcDao getDao(int spiBlockSize) {
+        IKmcDao shared = SHARED_DAO.get();
+        if (shared != null) {
+            return unclosable(shared);
+        }
         try {
             Config  cfg = new Config(DEFAULT_KMC_HOME + "/etc", "kmc-sa-mgmt.properties");
-            IKmcDao dao = DaoFactory.getDao(cfg);
+            IKmcDao dao = DaoFactory.getDao(cfg, spiBlockSize);
             dao.init();
             return dao;
         } catch (Exception e) {
@@ -122,6 +217,34 @@ abstract class BaseCliApp implements Callable<Integer> {
         }
     }
 
+    /**
+     * Share a DAO between the commands run on the current thread, instead of each command creating its own. Commands
+     * do not close the shared DAO.
+     *
+     * @param dao KMC DAO, null to stop sharing
+     */
+    static void shareDao(IKmcDao dao) {
+        if (dao == null) {
+            SHARED_DAO.remove();
+        } else {
+            SHARED_DAO.set(dao);
+        }
+    }
+
+    private static IKmcDao unclosable(IKmcDao dao) {
+        return (IKmcDao) Proxy.newProxyInstance(IKmcDao.class.getClassLoader(), new Class<?>[]{IKmcDao.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(dao, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
     /**
      * Convert a Hex string to a byte array
      *
@@ -151,7 +151,7 @@ public abstract class BaseCreateUpdate extends BaseCliApp {
      */
     static class BulkArgs {
         @CommandLine.Option(names = "--file", required = true)
-        String file;
+        File file;
     }
 
     @Override
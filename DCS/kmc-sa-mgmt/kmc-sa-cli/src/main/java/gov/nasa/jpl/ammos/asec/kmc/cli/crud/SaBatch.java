@@ -0,0 +1,165 @@
+package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.cli.Main;
+import gov.nasa.jpl.ammos.asec.kmc.cli.misc.Version;
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Run many commands over one DAO
+ */
+@CommandLine.Command(name = "batch", description = "Run commands read from a file or stdin, one per line, over a " +
+        "single database connection pool. Lines are split into arguments like a shell would, blank lines and lines " +
+        "starting with '#' are ignored.", mixinStandardHelpOptions = true, versionProvider = Version.class)
+public class SaBatch extends BaseCliApp {
+
+    /**
+     * Commands that cannot be run from a batch or by the daemon
+     */
+    static final Set<String> NOT_BATCHED = Set.of("batch", "daemon");
+
+    @CommandLine.Option(names = "--file", description = "file of commands, stdin if not set")
+    private Path file;
+
+    @CommandLine.Option(names = "--fail-fast", description = "stop at the first command that fails")
+    private boolean failFast;
+
+    @CommandLine.Option(names = "--echo", description = "print each command before running it")
+    private boolean echo;
+
+    @Override
+    public Integer call() throws Exception {
+        int run    = 0;
+        int failed = 0;
+        try (BufferedReader reader = file != null ? Files.newBufferedReader(file) :
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+             IKmcDao dao = getDao()) {
+            shareDao(dao);
+            String line;
+            int    lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                List<String> args;
+                try {
+                    args = split(line);
+                } catch (IllegalArgumentException e) {
+                    args = null;
+                    error(String.format("line %d: %s", lineNumber, e.getMessage()));
+                }
+                if (args != null && args.isEmpty()) {
+                    continue;
+                }
+                run++;
+                int exit = args == null ? 1 : execute(args, lineNumber);
+                if (exit != 0) {
+                    failed++;
+                    if (failFast) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            shareDao(null);
+        }
+        if (failed > 0) {
+            warn(String.format("%d of %d command(s) failed", failed, run));
+            return 1;
+        }
+        return 0;
+    }
+
+    private int execute(List<String> args, int lineNumber) {
+        if (NOT_BATCHED.contains(args.get(0))) {
+            error(String.format("line %d: %s cannot be run from a batch", lineNumber, args.get(0)));
+            return 1;
+        }
+        if (echo) {
+            console(String.join(" ", args));
+        }
+        CommandLine commands = Main.commandLine()
+                .setOut(spec.commandLine().getOut())
+                .setErr(spec.commandLine().getErr());
+        int exit = commands.execute(args.toArray(new String[0]));
+        if (exit != 0) {
+            error(String.format("line %d: exit %d", lineNumber, exit));
+        }
+        return exit;
+    }
+
+    /**
+     * Split a command line into arguments. Arguments are separated by whitespace, and may be quoted with single
+     * quotes, taken literally, or with double quotes, where a backslash escapes the next character. Outside quotes,
+     * a backslash escapes the next character.
+     *
+     * @param line command line
+     * @return arguments, empty for a blank line or a comment
+     * @throws IllegalArgumentException if a quote is not closed
+     */
+    static List<String> split(String line) {
+        List<String> args = new ArrayList<>();
+        if (line.isBlank() || line.trim().startsWith("#")) {
+            return args;
+        }
+        StringBuilder arg   = new StringBuilder();
+        boolean       inArg = false;
+        char          quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '\\' && i + 1 < line.length() && (quote == 0 || line.charAt(i + 1) == '"'
+                    || line.charAt(i + 1) == '\\')) {
+                arg.append(line.charAt(++i));
+                inArg = true;
+            } else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArg) {
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                arg.append(c);
+                inArg = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        if (inArg) {
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    /**
+     * Main
+     *
+     * @param args args
+     */
+    public static void main(String... args) {
+        int exit = new CommandLine(new SaBatch()).execute(args);
+        System.exit(exit);
+    }
+}
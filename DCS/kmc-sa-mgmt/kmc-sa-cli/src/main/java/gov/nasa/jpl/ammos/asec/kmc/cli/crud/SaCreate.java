@@ -3,21 +3,22 @@ package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
 import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnFactory;
-import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnValidator;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaImportResult;
 import gov.nasa.jpl.ammos.asec.kmc.cli.crud.opts.OptionalOptions;
 import gov.nasa.jpl.ammos.asec.kmc.cli.crud.opts.SaCreateSingle;
 import gov.nasa.jpl.ammos.asec.kmc.cli.misc.Version;
 import gov.nasa.jpl.ammos.asec.kmc.format.SaCsvInput;
 import picocli.CommandLine;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Create a Security Assocation
@@ -55,28 +56,28 @@ public class SaCreate extends BaseCreateUpdate {
         if (!file.exists()) {
             throwEx(String.format("File does not exist: %s", file));
         }
-        try (Reader reader = new FileReader(file)) {
-            List<ISecAssn> sas = input.parseCsv(reader, frameType);
-            try (IKmcDao dao = getDao(); IDbSession session = dao.newSession()) {
-                for (ISecAssn sa : sas) {
-                    try {
-                        session.beginTransaction();
-                        SecAssnValidator.validate(sa);
-                        console(String.format("%s creating SA %d/%d", user, sa.getSpi(), sa.getScid()));
-                        dao.createSa(session, sa);
-                        console(String.format("%s created SA %d/%d", user, sa.getSpi(), sa.getScid()));
-                    } catch (KmcException e) {
-                        console(String.format("SA %d/%d creation FAILED", sa.getSpi(), sa.getScid()));
-                        error(e.getMessage());
-                    } finally {
-                        session.commit();
-                    }
+        SaImportResult result = new SaImportResult();
+        try (Reader reader = new BufferedReader(new FileReader(file)); IKmcDao dao = getDao();
+             Stream<SaImportResult.Row> sas = input.streamCsv(reader, frameType, result)) {
+            console(String.format("%s creating SAs from %s", user, file));
+            dao.createSas(sas.iterator(), false, result);
+            for (SaImportResult.RowError e : result.getErrors()) {
+                if (e.getId() != null) {
+                    console(String.format("SA %d/%d creation FAILED", e.getId().getSpi(), e.getId().getScid()));
+                } else {
+                    console(String.format("Record %d creation FAILED", e.getRow()));
                 }
-            } catch (KmcException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new KmcException(e);
+                error(e.getMessage());
             }
+            console(String.format("%s created %d SAs", user, result.getCreated()));
+        } catch (KmcException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new KmcException(e);
+        }
+        if (result.hasErrors()) {
+            throw new KmcException(String.format("%d SA(s) from %s could not be created", result.getErrors().size(),
+                    file));
         }
     }
 
@@ -154,7 +155,7 @@ public class SaCreate extends BaseCreateUpdate {
             } else if (args.bulk != null) {
                 this.mode = Mode.BULK;
                 if (args.bulk.file != null) {
-                    file = new File(args.bulk.file);
+                    file = args.bulk.file;
                     if (!file.exists()) {
                         throwEx(String.format("File does not exist: %s", args.bulk.file));
                     }
@@ -0,0 +1,296 @@
+package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.cli.Main;
+import gov.nasa.jpl.ammos.asec.kmc.cli.misc.Version;
+import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
+import picocli.CommandLine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serve CLI invocations from a long running process over a Unix domain socket, so that they do not each start a DAO
+ */
+@CommandLine.Command(name = "daemon", description = "Serve CLI invocations over a Unix domain socket, over a single " +
+        "database connection pool. Invocations with the " + SaDaemon.ENV_SOCKET + " environment variable set to the " +
+        "socket are run by the daemon.", mixinStandardHelpOptions = true, versionProvider = Version.class)
+public class SaDaemon extends BaseCliApp {
+
+    /**
+     * Environment variable of the daemon socket used by CLI invocations
+     */
+    public static final String ENV_SOCKET = "KMC_SA_MGMT_SOCKET";
+
+    private static final byte EXIT  = 0;
+    private static final byte OUT   = 1;
+    private static final byte ERR   = 2;
+    private static final int  CHUNK = 8192;
+
+    private static final Set<PosixFilePermission> PRIVATE_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    @CommandLine.Option(names = "--socket", required = true, description = "socket path, in a directory only the " +
+            "user running the daemon may access. The directory is created if missing")
+    private Path socket;
+
+    @CommandLine.Option(names = "--threads", defaultValue = "4", description = "maximum number of invocations run " +
+            "at once, 4 by default")
+    private int threads;
+
+    private volatile ServerSocketChannel server;
+
+    @Override
+    public Integer call() throws Exception {
+        if (threads < 1) {
+            throwEx("--threads must be at least 1");
+        }
+        checkDirectory(socket.toAbsolutePath().getParent());
+        if (Files.exists(socket)) {
+            if (forward(socket, new String[]{"--version"}, new PrintWriter(Writer.nullWriter()),
+                    new PrintWriter(Writer.nullWriter())) != null) {
+                throwEx(String.format("A daemon is already listening on %s", socket));
+            }
+            // left behind by a daemon that did not shut down
+            Files.delete(socket);
+        }
+        ExecutorService pool     = Executors.newFixedThreadPool(threads);
+        Thread          shutdown = new Thread(() -> {
+            try {
+                stop();
+                Files.deleteIfExists(socket);
+            } catch (IOException e) {
+                LOG.warn("Error removing daemon socket {}: {}", socket, e.getMessage());
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        try (IKmcDao dao = getDao(KmcDao.SERVICE_SPI_BLOCK_SIZE); ServerSocketChannel channel =
+                ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server = channel;
+            channel.bind(UnixDomainSocketAddress.of(socket));
+            // the directory already keeps others out, the socket itself is restricted as well
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+            console(String.format("Listening on %s", socket));
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = channel.accept();
+                } catch (ClosedChannelException e) {
+                    break;
+                }
+                pool.execute(() -> serve(dao, client));
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            Files.deleteIfExists(socket);
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdown);
+            } catch (IllegalStateException e) {
+                // already shutting down
+            }
+        }
+        console(String.format("Stopped listening on %s", socket));
+        return 0;
+    }
+
+    /**
+     * Check that only the current user may access the socket directory, creating it if missing. The socket is bound
+     * with the permissions of the process umask before they can be restricted, the directory keeps other users from
+     * connecting in the meantime.
+     *
+     * @param dir socket directory
+     * @throws IOException if the directory could not be created or read
+     */
+    private void checkDirectory(Path dir) throws IOException {
+        if (!dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            throwEx(String.format("Cannot restrict access to %s, the file system has no POSIX permissions", dir));
+        }
+        if (Files.notExists(dir)) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+        }
+        PosixFileAttributes attributes = Files.readAttributes(dir, PosixFileAttributes.class);
+        UserPrincipal       user       = dir.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attributes.owner().equals(user) || !PRIVATE_DIRECTORY.containsAll(attributes.permissions())) {
+            throwEx(String.format("The socket directory %s must be owned by %s and not accessible by others, e.g. " +
+                    "with mode 0700", dir, user.getName()));
+        }
+    }
+
+    /**
+     * Stop accepting invocations. Invocations in progress are completed.
+     *
+     * @throws IOException if the socket could not be closed
+     */
+    void stop() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private void serve(IKmcDao dao, SocketChannel client) {
+        try (client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+            Path     cwd  = Path.of(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            int exit;
+            if (args.length > 0 && !isForwarded(args[0])) {
+                new FrameWriter(out, ERR).write(String.format("%s cannot be run by the daemon%n", args[0]));
+                exit = 1;
+            } else {
+                exit = run(dao, cwd, args, new PrintWriter(new FrameWriter(out, OUT), true),
+                        new PrintWriter(new FrameWriter(out, ERR), true));
+            }
+            synchronized (out) {
+                out.writeByte(EXIT);
+                out.writeInt(exit);
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOG.warn("Error serving daemon client: {}", e.getMessage());
+        }
+    }
+
+    private static int run(IKmcDao dao, Path cwd, String[] args, PrintWriter out, PrintWriter err) {
+        shareDao(dao);
+        try {
+            CommandLine commands = Main.commandLine().setOut(out).setErr(err);
+            // relative paths are relative to the directory of the invocation, not of the daemon
+            commands.registerConverter(Path.class, s -> cwd.resolve(s));
+            commands.registerConverter(File.class, s -> cwd.resolve(s).toFile());
+            return commands.execute(args);
+        } finally {
+            shareDao(null);
+            out.flush();
+            err.flush();
+        }
+    }
+
+    /**
+     * Check if an invocation of a command may be forwarded to the daemon
+     *
+     * @param command command name
+     * @return true if the command may be run by the daemon
+     */
+    public static boolean isForwarded(String command) {
+        return !SaBatch.NOT_BATCHED.contains(command);
+    }
+
+    /**
+     * Run a CLI invocation by the daemon listening on a socket
+     *
+     * @param socket daemon socket
+     * @param args   CLI arguments
+     * @param out    output
+     * @param err    error output
+     * @return exit code, or null if no daemon is listening on the socket
+     */
+    public static Integer forward(Path socket, String[] args, PrintWriter out, PrintWriter err) {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            LOG.debug("No daemon listening on {}: {}", socket, e.getMessage());
+            return null;
+        }
+        try (channel;
+             DataOutputStream request = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel)));
+             DataInputStream response = new DataInputStream(new BufferedInputStream(
+                     Channels.newInputStream(channel)))) {
+            request.writeUTF(Path.of("").toAbsolutePath().toString());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            while (true) {
+                byte type = response.readByte();
+                if (type == EXIT) {
+                    return response.readInt();
+                }
+                (type == OUT ? out : err).print(response.readUTF());
+                (type == OUT ? out : err).flush();
+            }
+        } catch (EOFException e) {
+            err.println("The daemon closed the connection before the command completed");
+            return 1;
+        } catch (IOException e) {
+            err.println(String.format("Error communicating with the daemon: %s", e.getMessage()));
+            return 1;
+        }
+    }
+
+    /**
+     * Writes text to a client as frames of one type
+     */
+    private static class FrameWriter extends Writer {
+        private final DataOutputStream out;
+        private final byte             type;
+
+        FrameWriter(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            // output and error frames of one invocation share the stream
+            synchronized (out) {
+                for (int i = off; i < off + len; i += CHUNK) {
+                    out.writeByte(type);
+                    out.writeUTF(new String(cbuf, i, Math.min(CHUNK, off + len - i)));
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Main
+     *
+     * @param args args
+     */
+    public static void main(String... args) {
+        int exit = new CommandLine(new SaDaemon()).execute(args);
+        System.exit(exit);
+    }
+}
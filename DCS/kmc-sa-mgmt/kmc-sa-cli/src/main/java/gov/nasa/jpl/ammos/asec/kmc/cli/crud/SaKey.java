@@ -1,16 +1,16 @@
 package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
 
 import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
-import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnValidator;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.cli.crud.opts.SaIds;
 import gov.nasa.jpl.ammos.asec.kmc.cli.misc.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
-import java.util.Scanner;
+import java.util.List;
 
 /**
  * Re/key a security association
@@ -21,11 +21,8 @@ public class SaKey extends BaseCliApp {
 
     private static Logger LOG = LoggerFactory.getLogger(SaExpire.class);
 
-    @CommandLine.Option(names = "--spi", required = true, description = "security parameter index")
-    private int spi;
-
-    @CommandLine.Option(names = "--scid", required = true, description = "spacecraft id")
-    private short scid;
+    @CommandLine.Mixin
+    private SaIds saIds;
 
     @CommandLine.ArgGroup(exclusive = false)
     private OptionalArgs optionalArgs;
@@ -63,50 +60,15 @@ public class SaKey extends BaseCliApp {
                 checkAuthParams();
             }
         }
+        List<SpiScid> ids = saIds.getIds(spec.commandLine());
         try (IKmcDao dao = getDao()) {
-            ISecAssn sa = dao.getSa(new SpiScid(spi, scid), frameType);
-            if (sa == null) {
-                throwEx(String.format("Error keying SA, %d/%d does not exist", spi, scid));
-            }
-            boolean skip = false;
-            if (optionalArgs != null && optionalArgs.silent == null) {
-                console(String.format("%s updating keys on SA %s/%s, do you wish to continue? y/n", System.getProperty(
-                        "user.name"), spi, scid));
-                Scanner scanner = new Scanner(System.in);
-                while (true) {
-                    try {
-                        String confirm = scanner.next();
-                        if (confirm.equals("y")) {
-                            break;
-                        } else if (confirm.equals("n")) {
-                            console(String.format("Skipping %d/%d", spi, scid));
-                            skip = true;
-                            break;
-                        }
-                    } catch (Exception e) {
-                        warn("Unrecognized input");
-                    }
-                }
-            }
-            if (!skip) {
-                if (updateAuth) {
-                    sa.setAkid(optionalArgs.akid);
-                    sa.setAcs(acsBytes);
-                    sa.setAcsLen((short) 1);
-                }
-                if (updateEnc) {
-                    sa.setEkid(optionalArgs.ekid);
-                    sa.setEcs(ecsBytes);
-                    sa.setEcsLen((short) 1);
-                }
-                dao.updateSa(sa);
-                console(String.format("%s updated keys on SA %s/%s", System.getProperty("user.name"),
-                        sa.getId().getSpi()
-                        , sa.getId().getScid()));
+            ids = confirm(dao, ids, optionalArgs.silent != null, "updating keys on");
+            if (ids.isEmpty()) {
+                return 0;
             }
+            return report(dao.rekeySas(ids, updateEnc ? optionalArgs.ekid : null, ecsBytes, (short) 1, updateAuth ?
+                    optionalArgs.akid : null, acsBytes, (short) 1, frameType, saIds.getMode()), "updated keys on");
         }
-
-        return 0;
     }
 
     private void checkAuthParams() throws KmcException {
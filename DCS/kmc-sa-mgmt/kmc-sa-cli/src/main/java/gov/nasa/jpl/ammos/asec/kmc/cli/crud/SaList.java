@@ -2,15 +2,16 @@ package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
 
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaQuery;
 import gov.nasa.jpl.ammos.asec.kmc.cli.misc.Version;
 import gov.nasa.jpl.ammos.asec.kmc.format.IOutput;
 import gov.nasa.jpl.ammos.asec.kmc.format.SaCsvOutput;
 import gov.nasa.jpl.ammos.asec.kmc.format.SaJsonOutput;
 import gov.nasa.jpl.ammos.asec.kmc.format.SaMysqlOutput;
+import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
 import picocli.CommandLine;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * List Security Assocations
@@ -48,25 +49,18 @@ public class SaList extends BaseCliApp {
     @Override
     public Integer call() throws Exception {
         try (IKmcDao dao = getDao()) {
-            List<ISecAssn> sas = null;
-            if (filter != null) {
-                if (filter.activeOnly) {
-                    sas = dao.getSas(frameType).stream().filter(secAssn -> secAssn.getSaState() == 3).collect(Collectors.toList());
-                } else if (filter.inactiveOnly) {
-                    sas = dao.getSas(frameType).stream().filter(secAssn -> secAssn.getSaState() != 3).collect(Collectors.toList());
-                }
-            } else {
-                sas = dao.getSas(frameType);
-            }
-            if (spi != null && sas != null) {
-                sas = sas.stream().filter(secAssn -> secAssn.getSpi().equals(spi)).toList();
+            SaQuery query = new SaQuery().setType(frameType).setScid(scid).setSpiRange(spi, spi);
+            if (filter != null && filter.activeOnly) {
+                query.setSaState(KmcDao.SA_OPERATIONAL);
             }
-            if (scid != null && sas != null) {
-                sas = sas.stream().filter(secAssn -> secAssn.getScid().equals(scid)).toList();
+            try (Stream<ISecAssn> sas = dao.streamSas(query)) {
+                Stream<ISecAssn> filtered = sas;
+                if (filter != null && filter.inactiveOnly) {
+                    filtered = sas.filter(secAssn -> secAssn.getSaState() != KmcDao.SA_OPERATIONAL);
+                }
+                IOutput out = getOutput();
+                out.print(spec.commandLine().getOut(), filtered.iterator());
             }
-
-            IOutput out = getOutput();
-            out.print(spec.commandLine().getOut(), sas);
         }
 
         return 0;
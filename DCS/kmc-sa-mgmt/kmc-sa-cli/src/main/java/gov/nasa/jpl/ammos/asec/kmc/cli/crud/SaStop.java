@@ -3,9 +3,12 @@ package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
 import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.cli.crud.opts.SaIds;
 import gov.nasa.jpl.ammos.asec.kmc.cli.misc.Version;
 import picocli.CommandLine;
 
+import java.util.List;
+
 /**
  * Stop security associations
  */
@@ -16,27 +19,15 @@ public class SaStop extends BaseCliApp {
             "--force"}, description = "Force an SA to start, if another SA is currently active.")
     private boolean force = false;
 
-    @CommandLine.Option(names = "--scid", required = true, description = "spacecraft ID")
-    private Short     scid;
-    @CommandLine.Option(names = "--spi", required = true, description = "security parameter index")
-    private Integer[] spi;
+    @CommandLine.Mixin
+    private SaIds saIds;
 
     @Override
     public Integer call() throws KmcException {
-        int exit = 0;
+        List<SpiScid> ids = saIds.getIds(spec.commandLine());
         try (IKmcDao dao = getDao()) {
-            for (Integer s : spi) {
-                try {
-                    dao.stopSa(new SpiScid(s, scid), frameType);
-                    console(String.format("%s stopped SA %d/%d", System.getProperty("user.name"), s, scid));
-                } catch (KmcException e) {
-                    warn(String.format("%s, skipping stop on SA %d/%d", e.getMessage(), s, scid));
-                    exit = 1;
-                }
-            }
+            return report(dao.stopSas(ids, frameType, saIds.getMode()), "stopped");
         }
-
-        return exit;
     }
 
     /**
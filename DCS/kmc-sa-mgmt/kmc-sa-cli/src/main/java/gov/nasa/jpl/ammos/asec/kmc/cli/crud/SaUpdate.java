@@ -155,7 +155,7 @@ public class SaUpdate extends BaseCreateUpdate {
                 }
             } else if (args.bulk != null) {
                 if (args.bulk.file != null) {
-                    File file = new File(args.bulk.file);
+                    File file = args.bulk.file;
                     if (!file.exists()) {
                         throwEx(String.format("File does not exist: %s", args.bulk.file));
                     }
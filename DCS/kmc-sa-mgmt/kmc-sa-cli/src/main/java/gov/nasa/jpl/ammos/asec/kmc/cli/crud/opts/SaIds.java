@@ -0,0 +1,106 @@
+package gov.nasa.jpl.ammos.asec.kmc.cli.crud.opts;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaBulkResult;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SA selection opts for lifecycle operations on many SAs at once
+ */
+@CommandLine.Command
+public class SaIds {
+    /**
+     * SPI opt
+     */
+    @CommandLine.Option(names = "--spi", split = ",", description = "security parameter index, may be repeated")
+    public List<Integer> spi = new ArrayList<>();
+
+    /**
+     * SCID opt
+     */
+    @CommandLine.Option(names = "--scid", description = "spacecraft ID")
+    public Short scid;
+
+    /**
+     * SA file opt
+     */
+    @CommandLine.Option(names = "--file", description = "file of SAs, one 'spi' or 'spi,scid' per line. Blank lines "
+            + "and lines starting with '#' are ignored")
+    public Path file;
+
+    /**
+     * Atomic opt
+     */
+    @CommandLine.Option(names = "--atomic", description = "apply the operation to every SA, or to none of them if "
+            + "any SA fails")
+    public boolean atomic;
+
+    /**
+     * Get the selected SAs, from the command line followed by the SA file
+     *
+     * @param cli command line
+     * @return spi + scid of each SA
+     * @throws CommandLine.ParameterException if no SA is selected, or an SA has no SCID
+     */
+    public List<SpiScid> getIds(CommandLine cli) throws CommandLine.ParameterException {
+        List<SpiScid> ids = new ArrayList<>();
+        for (Integer s : spi) {
+            ids.add(new SpiScid(s, requireScid(cli, "--spi " + s)));
+        }
+        if (file != null) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(file);
+            } catch (IOException e) {
+                throw new CommandLine.ParameterException(cli, String.format("Unable to read SA file %s: %s", file,
+                        e.getMessage()));
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s*,\\s*");
+                try {
+                    if (fields.length == 1) {
+                        ids.add(new SpiScid(Integer.valueOf(fields[0]), requireScid(cli, file + ":" + (i + 1))));
+                    } else if (fields.length == 2) {
+                        ids.add(new SpiScid(Integer.valueOf(fields[0]), Short.valueOf(fields[1])));
+                    } else {
+                        throw new NumberFormatException(line);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new CommandLine.ParameterException(cli, String.format("%s:%d: expected 'spi' or 'spi,scid' "
+                            + "but was '%s'", file, i + 1, line));
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new CommandLine.ParameterException(cli, "Missing parameters: Must specify '--spi' or '--file'");
+        }
+        return ids;
+    }
+
+    /**
+     * Get the bulk operation mode
+     *
+     * @return all-or-nothing if atomic, best-effort otherwise
+     */
+    public SaBulkResult.Mode getMode() {
+        return atomic ? SaBulkResult.Mode.ALL_OR_NOTHING : SaBulkResult.Mode.BEST_EFFORT;
+    }
+
+    private Short requireScid(CommandLine cli, String source) throws CommandLine.ParameterException {
+        if (scid == null) {
+            throw new CommandLine.ParameterException(cli, String.format("Missing parameters: '--scid' is required "
+                    + "for %s", source));
+        }
+        return scid;
+    }
+}
@@ -0,0 +1,105 @@
+package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
+import org.junit.Test;
+import picocli.CommandLine;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for running commands in batch
+ */
+public class SaBatchTest extends BaseCommandLineTest {
+
+    private int batch(String script, StringWriter out, StringWriter err, String... args) throws Exception {
+        Path file = Files.createTempFile("batch", ".txt");
+        try {
+            Files.writeString(file, script);
+            CommandLine cli = getCmd(new SaBatch(), true, new PrintWriter(out, true), new PrintWriter(err, true));
+            String[]    all = new String[args.length + 2];
+            all[0] = "--file";
+            all[1] = file.toString();
+            System.arraycopy(args, 0, all, 2, args.length);
+            return cli.execute(all);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        StringWriter out  = new StringWriter();
+        int          exit = batch("""
+                # stop two SAs, then list them
+                stop --scid 46 --spi 1
+
+                stop --scid=46 --spi=2 --type=TM
+                list --scid 46 --spi 1 --type 'TC'
+                """, out, new StringWriter());
+        assertEquals(0, exit);
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(1, (short) 46), FrameType.TC).getSaState());
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(2, (short) 46), FrameType.TM).getSaState());
+        assertEquals(KmcDao.SA_OPERATIONAL,
+                (short) dao.getSa(new SpiScid(2, (short) 46), FrameType.TC).getSaState());
+        assertTrue(out.toString().contains("\"1\",\"46\",\"0\",\"0\",\"0\",\"2\""));
+    }
+
+    @Test
+    public void testBatchErrors() throws Exception {
+        StringWriter err    = new StringWriter();
+        String       script = """
+                stop --scid 40 --spi 1
+                stop --scid 46 --spi 1
+                """;
+        int exit = batch(script, new StringWriter(), err, "--fail-fast");
+        assertNotEquals(0, exit);
+        assertTrue(err.toString().contains("line 1: exit 1"));
+        assertEquals(KmcDao.SA_OPERATIONAL,
+                (short) dao.getSa(new SpiScid(1, (short) 46), FrameType.TC).getSaState());
+
+        // later commands still run by default
+        exit = batch(script, new StringWriter(), new StringWriter());
+        assertNotEquals(0, exit);
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(1, (short) 46), FrameType.TC).getSaState());
+    }
+
+    @Test
+    public void testBatchConfirm() throws Exception {
+        StringWriter err  = new StringWriter();
+        int          exit = batch("delete --scid 46 --spi 1\n", new StringWriter(), err);
+        assertNotEquals(0, exit);
+        assertTrue(err.toString().contains("use -y"));
+        assertNotNull(dao.getSa(new SpiScid(1, (short) 46), FrameType.TC));
+
+        exit = batch("delete --scid 46 --spi 1 -y\n", new StringWriter(), new StringWriter());
+        assertEquals(0, exit);
+        assertNull(dao.getSa(new SpiScid(1, (short) 46), FrameType.TC));
+    }
+
+    @Test
+    public void testBatchNested() throws Exception {
+        StringWriter err  = new StringWriter();
+        int          exit = batch("batch --file x\n", new StringWriter(), err);
+        assertNotEquals(0, exit);
+        assertTrue(err.toString().contains("cannot be run from a batch"));
+    }
+
+    @Test
+    public void testSplit() throws KmcException {
+        assertEquals(List.of(), SaBatch.split("   "));
+        assertEquals(List.of(), SaBatch.split("  # comment"));
+        assertEquals(List.of("update", "--ekid", "kmc/test/key 130", "--ecs=0x01"),
+                SaBatch.split("update  --ekid 'kmc/test/key 130' --ecs=0x01"));
+        assertEquals(List.of("a\"b", "c d", "e\\f", ""), SaBatch.split("\"a\\\"b\" c\\ d 'e\\f' \"\""));
+        assertThrows(IllegalArgumentException.class, () -> SaBatch.split("list --spi '1"));
+    }
+}
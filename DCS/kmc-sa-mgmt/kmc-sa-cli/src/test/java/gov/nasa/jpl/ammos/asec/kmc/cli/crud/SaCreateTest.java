@@ -59,6 +59,8 @@ public class SaCreateTest extends BaseCommandLineTest {
 
         assertTrue("Incorrect error message: " + w, w.toString().contains("SA create failed: an SA with " + "the " +
                 "SPI/SCID combination 20/44 already exists"));
+        // a partial import is not a success
+        assertNotEquals(0, exitCode);
     }
 
     @Test
@@ -0,0 +1,98 @@
+package gov.nasa.jpl.ammos.asec.kmc.cli.crud;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for serving invocations from the daemon
+ */
+public class SaDaemonTest extends BaseCommandLineTest {
+
+    @Test
+    public void testDaemon() throws Exception {
+        Path     dir    = Files.createTempDirectory("kmc");
+        Path     socket = dir.resolve("kmc.sock");
+        SaDaemon daemon = new SaDaemon();
+        Thread   thread = new Thread(() -> getCmd(daemon, true).execute("--socket", socket.toString()));
+        try {
+            assertNull(forward(socket, new StringWriter(), "--version"));
+            thread.start();
+            for (int i = 0; i < 100 && forward(socket, new StringWriter(), "--version") == null; i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(Files.exists(socket));
+
+            StringWriter out = new StringWriter();
+            assertEquals(0, (int) forward(socket, out, "stop", "--scid", "46", "--spi", "1"));
+            assertTrue(out.toString().contains("stopped SA 1/46"));
+            assertEquals(KmcDao.SA_KEYED,
+                    (short) dao.getSa(new SpiScid(1, (short) 46), FrameType.TC).getSaState());
+
+            out = new StringWriter();
+            assertEquals(0, (int) forward(socket, out, "list", "--scid=46", "--spi=1"));
+            assertTrue(out.toString().contains("\"1\",\"46\",\"0\",\"0\",\"0\",\"2\""));
+
+            // failures, prompts and commands the daemon does not run
+            assertNotEquals(0, (int) forward(socket, new StringWriter(), "stop", "--scid", "40", "--spi", "1"));
+            assertNotEquals(0, (int) forward(socket, new StringWriter(), "delete", "--scid", "46", "--spi", "1"));
+            assertNotNull(dao.getSa(new SpiScid(1, (short) 46), FrameType.TC));
+            assertNotEquals(0, (int) forward(socket, new StringWriter(), "daemon", "--socket", "x"));
+
+            // a second daemon on the same socket
+            assertNotEquals(0, getCmd(new SaDaemon(), true).execute("--socket", socket.toString()));
+        } finally {
+            daemon.stop();
+            thread.join(10000);
+            Files.deleteIfExists(socket);
+            Files.delete(dir);
+        }
+        assertFalse(thread.isAlive());
+        assertNull(forward(socket, new StringWriter(), "--version"));
+    }
+
+    @Test
+    public void testSocketDirectory() throws Exception {
+        Path dir = Files.createTempDirectory("kmc");
+        try {
+            // other users may reach sockets in the directory
+            Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxr-xr-x"));
+            assertNotEquals(0, getCmd(new SaDaemon(), true).execute("--socket", dir.resolve("kmc.sock").toString()));
+            assertFalse(Files.exists(dir.resolve("kmc.sock")));
+
+            // a missing directory is created private
+            Path     socket = dir.resolve("run").resolve("kmc.sock");
+            SaDaemon daemon = new SaDaemon();
+            Thread   thread = new Thread(() -> getCmd(daemon, true).execute("--socket", socket.toString()));
+            thread.start();
+            try {
+                for (int i = 0; i < 100 && forward(socket, new StringWriter(), "--version") == null; i++) {
+                    Thread.sleep(100);
+                }
+                assertEquals(PosixFilePermissions.fromString("rwx------"),
+                        Files.getPosixFilePermissions(socket.getParent()));
+                assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(socket));
+            } finally {
+                daemon.stop();
+                thread.join(10000);
+            }
+            Files.delete(socket.getParent());
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+    private static Integer forward(Path socket, StringWriter out, String... args) {
+        return SaDaemon.forward(socket, args, new PrintWriter(out, true), new PrintWriter(Writer.nullWriter()));
+    }
+}
@@ -343,7 +343,7 @@ public class SaListTest extends BaseCommandLineTest {
         int          exit = cli.execute("--json", String.format("--type=%s", type.name()));
         assertEquals(0, exit);
         assertEquals("""
-                     {
+                     [
                          {
                              "spi": 1,
                              "ekid": "130",
@@ -370,7 +370,7 @@ public class SaListTest extends BaseCommandLineTest {
                              "arsn": "0x0000000000000000000000000000000000000000",
                              "arsnw": 5,
                              "type": "%s"
-                         }
+                         },
                          {
                              "spi": 2,
                              "ekid": "130",
@@ -397,7 +397,7 @@ public class SaListTest extends BaseCommandLineTest {
                              "arsn": "0x0000000000000000000000000000000000000000",
                              "arsnw": 5,
                              "type": "%s"
-                         }
+                         },
                          {
                              "spi": 3,
                              "ekid": "130",
@@ -424,7 +424,7 @@ public class SaListTest extends BaseCommandLineTest {
                              "arsn": "0x0000000000000000000000000000000000000000",
                              "arsnw": 5,
                              "type": "%s"
-                         }
+                         },
                          {
                              "spi": 4,
                              "ekid": "130",
@@ -451,7 +451,7 @@ public class SaListTest extends BaseCommandLineTest {
                              "arsn": "0x0000000000000000000000000000000000000000",
                              "arsnw": 5,
                              "type": "%s"
-                         }
+                         },
                          {
                              "spi": 5,
                              "ekid": "",
@@ -479,7 +479,7 @@ public class SaListTest extends BaseCommandLineTest {
                              "arsnw": 5,
                              "type": "%s"
                          }
-                     }
+                     ]
                      """.formatted(type.name(), type.name(), type.name(), type.name(), type.name()), w.toString());
     }
 }
\ No newline at end of file
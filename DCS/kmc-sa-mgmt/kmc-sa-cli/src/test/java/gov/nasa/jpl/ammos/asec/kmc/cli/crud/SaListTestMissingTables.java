@@ -396,7 +396,7 @@ public class SaListTestMissingTables extends BaseCommandLineTest {
         assertEquals(0, exit);
         if (type == FrameType.TC) {
             assertEquals("""
-                         {
+                         [
                              {
                                  "spi": 1,
                                  "ekid": "130",
@@ -423,7 +423,7 @@ public class SaListTestMissingTables extends BaseCommandLineTest {
                                  "arsn": "0x0000000000000000000000000000000000000000",
                                  "arsnw": 5,
                                  "type": "%s"
-                             }
+                             },
                              {
                                  "spi": 2,
                                  "ekid": "130",
@@ -450,7 +450,7 @@ public class SaListTestMissingTables extends BaseCommandLineTest {
                                  "arsn": "0x0000000000000000000000000000000000000000",
                                  "arsnw": 5,
                                  "type": "%s"
-                             }
+                             },
                              {
                                  "spi": 3,
                                  "ekid": "130",
@@ -477,7 +477,7 @@ public class SaListTestMissingTables extends BaseCommandLineTest {
                                  "arsn": "0x0000000000000000000000000000000000000000",
                                  "arsnw": 5,
                                  "type": "%s"
-                             }
+                             },
                              {
                                  "spi": 4,
                                  "ekid": "130",
@@ -504,7 +504,7 @@ public class SaListTestMissingTables extends BaseCommandLineTest {
                                  "arsn": "0x0000000000000000000000000000000000000000",
                                  "arsnw": 5,
                                  "type": "%s"
-                             }
+                             },
                              {
                                  "spi": 5,
                                  "ekid": "",
@@ -532,10 +532,10 @@ public class SaListTestMissingTables extends BaseCommandLineTest {
                                  "arsnw": 5,
                                  "type": "%s"
                              }
-                         }
+                         ]
                          """.formatted(type.name(), type.name(), type.name(), type.name(), type.name()), w.toString());
         } else {
-            assertEquals("{\n}\n", w.toString());
+            assertEquals("[\n]\n", w.toString());
         }
     }
 }
\ No newline at end of file
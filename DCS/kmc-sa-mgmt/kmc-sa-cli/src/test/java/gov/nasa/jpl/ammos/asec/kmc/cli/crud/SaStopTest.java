@@ -8,6 +8,9 @@ import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
 import org.junit.Test;
 import picocli.CommandLine;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
@@ -94,4 +97,52 @@ public class SaStopTest extends BaseCommandLineTest {
         assertNotEquals(0, exit);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testStopFile() throws Exception {
+        testStopFile(FrameType.TC);
+        testStopFile(FrameType.TM);
+        testStopFile(FrameType.AOS);
+    }
+
+    public void testStopFile(FrameType type) throws Exception {
+        Path file = Files.createTempFile("spis", ".txt");
+        try {
+            Files.writeString(file, "# SAs to stop\n1\n\n2, 46\n");
+            CommandLine cli  = getCmd(new SaStop(), true);
+            int         exit = cli.execute("--file", file.toString(), String.format("--type=%s", type.name()));
+            // SPI 1 has no SCID
+            assertNotEquals(0, exit);
+            exit = cli.execute("--scid=46", "--spi=3", "--file", file.toString(), String.format("--type=%s",
+                    type.name()));
+            assertEquals(0, exit);
+            for (int spi = 1; spi <= 3; spi++) {
+                assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(spi, (short) 46), type).getSaState());
+            }
+            assertEquals(KmcDao.SA_OPERATIONAL, (short) dao.getSa(new SpiScid(4, (short) 46), type).getSaState());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStopAtomic() throws KmcException {
+        testStopAtomic(FrameType.TC);
+        testStopAtomic(FrameType.TM);
+        testStopAtomic(FrameType.AOS);
+    }
+
+    public void testStopAtomic(FrameType type) throws KmcException {
+        CommandLine cli  = getCmd(new SaStop(), true);
+        int         exit = cli.execute("--scid=46", "--spi=1,2,60", "--atomic", String.format("--type=%s",
+                type.name()));
+        assertNotEquals(0, exit);
+        assertEquals(KmcDao.SA_OPERATIONAL, (short) dao.getSa(new SpiScid(1, (short) 46), type).getSaState());
+
+        // best effort by default, the existing SAs are stopped
+        exit = cli.execute("--scid=46", "--spi=1,2,60", String.format("--type=%s", type.name()));
+        assertNotEquals(0, exit);
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(1, (short) 46), type).getSaState());
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(2, (short) 46), type).getSaState());
+    }
+
+}
@@ -3,6 +3,7 @@ package gov.nasa.jpl.ammos.asec.kmc.cli.format;
 import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaImportResult;
 import gov.nasa.jpl.ammos.asec.kmc.format.SaCsvInput;
 import org.apache.commons.codec.DecoderException;
 import org.junit.Test;
@@ -11,7 +12,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -37,6 +42,42 @@ public class SaCsvInputTest {
         }
     }
 
+    @Test
+    public void testStreamErrors() throws KmcException {
+        String header = "spi,scid,vcid,tfvn,mapid,sa_state,st,est,ast,shivf_len,shsnf_len,shplf_len,stmacf_len,ecs," +
+                "ekid,iv_len,iv,acs,akid,abm_len,abm,arsn_len,arsn,arsnw_len,arsnw\n";
+        String row = ",44,0,0,0,3,3,1,1,12,0,0,16,X'01',kmc/test/KEY130,12,X'000000000000000000000001',X'00',NULL,19," +
+                "X'00000000000000000000000000000000000000',0,,1,5\n";
+        String csv = header + "1" + row + "x" + row + "3" + row.replace("X'01'", "X'0G'") + "4" + row;
+
+        AtomicBoolean closed = new AtomicBoolean();
+        Reader reader = new StringReader(csv) {
+            @Override
+            public void close() {
+                closed.set(true);
+                super.close();
+            }
+        };
+        SaImportResult           result = new SaImportResult();
+        List<SaImportResult.Row> rows;
+        try (Stream<SaImportResult.Row> stream = new SaCsvInput().streamCsv(reader, FrameType.TC, result)) {
+            rows = stream.collect(Collectors.toList());
+        }
+        // closing the stream closes the parser and its reader
+        assertTrue(closed.get());
+
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.get(0).getRow());
+        assertEquals(4, rows.get(1).getRow());
+        assertEquals(4, (int) rows.get(1).getSa().getSpi());
+        assertEquals(2, result.getErrors().size());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertNull(result.getErrors().get(0).getId());
+        assertTrue(result.getErrors().get(0).getMessage().contains("number"));
+        assertEquals(3, result.getErrors().get(1).getRow());
+        assertTrue(result.getErrors().get(1).getMessage().contains("hex"));
+    }
+
     @Test
     public void testParseHex() throws DecoderException {
         SaCsvInput i   = new SaCsvInput();
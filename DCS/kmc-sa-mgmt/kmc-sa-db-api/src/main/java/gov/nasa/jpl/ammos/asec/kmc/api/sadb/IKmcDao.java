@@ -5,7 +5,9 @@ import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * KMC DAO
@@ -65,6 +67,31 @@ public interface IKmcDao extends AutoCloseable {
      */
     void createSa(IDbSession IdbSession, ISecAssn sa) throws KmcException;
 
+    /**
+     * Create SAs in bulk. SAs are consumed from the iterator in chunks; each chunk is validated, checked for
+     * existing SAs with a single query, inserted in JDBC batches and committed in its own transaction. SAs that
+     * fail are reported in the result and do not stop the import.
+     *
+     * @param sas     security associations, consumed incrementally
+     * @param replace replace existing SAs instead of reporting them as errors
+     * @return import result
+     * @throws KmcException exception
+     */
+    SaImportResult createSas(Iterator<? extends ISecAssn> sas, boolean replace) throws KmcException;
+
+    /**
+     * Create SAs in bulk as {@link #createSas(Iterator, boolean)}, reporting errors with the row number of each SA,
+     * e.g. its record in a CSV file
+     *
+     * @param rows    security associations and their row numbers, consumed incrementally
+     * @param replace replace existing SAs instead of reporting them as errors
+     * @param result  result to add to, e.g. with the rows that could not be read
+     * @return import result
+     * @throws KmcException exception
+     */
+    SaImportResult createSas(Iterator<SaImportResult.Row> rows, boolean replace, SaImportResult result) throws
+            KmcException;
+
     /**
      * Re/key an SA for encryption with the provided database session
      *
@@ -198,6 +225,162 @@ public interface IKmcDao extends AutoCloseable {
      */
     void deleteSa(SpiScid id, FrameType type) throws KmcException;
 
+    /**
+     * Start SAs in bulk. The SAs are checked with a single query and updated with set-based statements in one
+     * transaction.
+     *
+     * @param ids   spi + scid of each SA
+     * @param force start SAs, stopping other SAs with same GVCID
+     * @param type  frame type
+     * @param mode  all-or-nothing or best-effort
+     * @return per SA result
+     * @throws KmcException exception
+     */
+    SaBulkResult startSas(List<SpiScid> ids, boolean force, FrameType type, SaBulkResult.Mode mode) throws
+                                                                                                    KmcException;
+
+    /**
+     * Stop SAs in bulk, in one transaction
+     *
+     * @param ids  spi + scid of each SA
+     * @param type frame type
+     * @param mode all-or-nothing or best-effort
+     * @return per SA result
+     * @throws KmcException exception
+     */
+    SaBulkResult stopSas(List<SpiScid> ids, FrameType type, SaBulkResult.Mode mode) throws KmcException;
+
+    /**
+     * Expire SAs in bulk, in one transaction
+     *
+     * @param ids  spi + scid of each SA
+     * @param type frame type
+     * @param mode all-or-nothing or best-effort
+     * @return per SA result
+     * @throws KmcException exception
+     */
+    SaBulkResult expireSas(List<SpiScid> ids, FrameType type, SaBulkResult.Mode mode) throws KmcException;
+
+    /**
+     * Re/key SAs in bulk, in one transaction. Encryption and authentication keys are each left unchanged when their
+     * key id is null.
+     *
+     * @param ids    spi + scid of each SA
+     * @param ekid   encryption key id
+     * @param ecs    encryption cipher suite, unchanged if null
+     * @param ecsLen ecs length
+     * @param akid   authentication key id
+     * @param acs    authentication cipher suite, unchanged if null
+     * @param acsLen acs length
+     * @param type   frame type
+     * @param mode   all-or-nothing or best-effort
+     * @return per SA result
+     * @throws KmcException exception
+     */
+    SaBulkResult rekeySas(List<SpiScid> ids, String ekid, byte[] ecs, Short ecsLen, String akid, byte[] acs,
+                          Short acsLen, FrameType type, SaBulkResult.Mode mode) throws KmcException;
+
+    /**
+     * Reset the ARSN of SAs in bulk, in one transaction
+     *
+     * @param ids     spi + scid of each SA
+     * @param arsn    anti-replay sequence number
+     * @param arsnLen arsn length
+     * @param arsnw   arsn window
+     * @param type    frame type
+     * @param mode    all-or-nothing or best-effort
+     * @return per SA result
+     * @throws KmcException exception
+     */
+    SaBulkResult resetArsns(List<SpiScid> ids, byte[] arsn, Short arsnLen, Short arsnw, FrameType type,
+                            SaBulkResult.Mode mode) throws KmcException;
+
+    /**
+     * Reset the IV of SAs in bulk, in one transaction
+     *
+     * @param ids   spi + scid of each SA
+     * @param iv    initialization vector
+     * @param ivLen iv length
+     * @param type  frame type
+     * @param mode  all-or-nothing or best-effort
+     * @return per SA result
+     * @throws KmcException exception
+     */
+    SaBulkResult resetIvs(List<SpiScid> ids, byte[] iv, Short ivLen, FrameType type, SaBulkResult.Mode mode) throws
+                                                                                                           KmcException;
+
+    /**
+     * Delete SAs in bulk, in one transaction
+     *
+     * @param ids  spi + scid of each SA
+     * @param type frame type
+     * @param mode all-or-nothing or best-effort
+     * @return per SA result
+     * @throws KmcException exception
+     */
+    SaBulkResult deleteSas(List<SpiScid> ids, FrameType type, SaBulkResult.Mode mode) throws KmcException;
+
+    /**
+     * Get the ARSN and IV of an SA, with the version to compare them against
+     *
+     * @param id   spi + scid
+     * @param type frame type
+     * @return counters, null if the SA does not exist
+     * @throws KmcException exception
+     */
+    SaCounters getCounters(SpiScid id, FrameType type) throws KmcException;
+
+    /**
+     * Set the ARSN of an SA if it has not been written since it was read. Only the ARSN columns are written, with a
+     * single statement conditional on the ARSN itself and, if the SA table has a version column, on the SA version.
+     *
+     * @param expected counters as read
+     * @param arsn     anti-replay sequence number
+     * @param arsnLen  arsn length, unchanged if null
+     * @param arsnw    arsn window, unchanged if null
+     * @return counters as written, null if the ARSN was written by someone else
+     * @throws KmcException exception
+     */
+    SaCounters compareAndSetArsn(SaCounters expected, byte[] arsn, Short arsnLen, Short arsnw) throws KmcException;
+
+    /**
+     * Set the IV of an SA if it has not been written since it was read. Only the IV columns are written, with a
+     * single statement conditional on the IV itself and, if the SA table has a version column, on the SA version.
+     *
+     * @param expected counters as read
+     * @param iv       initialization vector
+     * @param ivLen    iv length, unchanged if null
+     * @return counters as written, null if the IV was written by someone else
+     * @throws KmcException exception
+     */
+    SaCounters compareAndSetIv(SaCounters expected, byte[] iv, Short ivLen) throws KmcException;
+
+    /**
+     * Increment the ARSN of an SA, as a big-endian unsigned number of its current width. Concurrent writes are
+     * retried.
+     *
+     * @param id   spi + scid
+     * @param type frame type
+     * @param n    increment, positive
+     * @return counters as written
+     * @throws KmcException if the SA does not exist, the ARSN would overflow, or the ARSN kept being written by
+     *                      someone else
+     */
+    SaCounters incrementArsn(SpiScid id, FrameType type, long n) throws KmcException;
+
+    /**
+     * Increment the IV of an SA, as a big-endian unsigned number of its current width. Concurrent writes are
+     * retried.
+     *
+     * @param id   spi + scid
+     * @param type frame type
+     * @param n    increment, positive
+     * @return counters as written
+     * @throws KmcException if the SA does not exist or has no IV, the IV would overflow, or the IV kept being written
+     *                      by someone else
+     */
+    SaCounters incrementIv(SpiScid id, FrameType type, long n) throws KmcException;
+
     /**
      * Get an SA with the provided database session
      *
@@ -210,7 +393,7 @@ public interface IKmcDao extends AutoCloseable {
     ISecAssn getSa(IDbSession session, SpiScid id, FrameType type) throws KmcException;
 
     /**
-     * Get an SA
+     * Get an SA, from the primary database even when reads are routed to read replicas
      *
      * @param id   spi + scid
      * @param type frame type
@@ -238,6 +421,26 @@ public interface IKmcDao extends AutoCloseable {
      */
     List<ISecAssn> getSas(FrameType type) throws KmcException;
 
+    /**
+     * Get one page of SAs matching a query. Filters and sort order are applied by the database.
+     *
+     * @param query SA query
+     * @return page of SAs
+     * @throws KmcException exception
+     */
+    SaPage getSas(SaQuery query) throws KmcException;
+
+    /**
+     * Stream all SAs matching a query. Filters and sort order are applied by the database, the page size and page
+     * token are ignored. SAs are read through a database cursor as the stream is consumed; the stream holds a
+     * database session and must be closed.
+     *
+     * @param query SA query
+     * @return stream of SAs
+     * @throws KmcException exception
+     */
+    Stream<ISecAssn> streamSas(SaQuery query) throws KmcException;
+
     /**
      * Update an SA with the provided database session
      *
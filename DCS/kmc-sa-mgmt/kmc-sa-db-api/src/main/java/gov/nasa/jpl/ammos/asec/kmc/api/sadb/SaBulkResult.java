@@ -0,0 +1,171 @@
+package gov.nasa.jpl.ammos.asec.kmc.api.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a bulk Security Association operation, with one item per requested SA in request order
+ */
+public class SaBulkResult {
+
+    /**
+     * Bulk operation mode
+     */
+    public enum Mode {
+        /**
+         * Apply the operation to every SA, or to none of them if any SA fails
+         */
+        ALL_OR_NOTHING,
+        /**
+         * Apply the operation to every SA that does not fail
+         */
+        BEST_EFFORT
+    }
+
+    private final Mode       mode;
+    private final List<Item> items = new ArrayList<>();
+    private       boolean    committed;
+
+    /**
+     * Constructor
+     *
+     * @param mode bulk operation mode
+     */
+    public SaBulkResult(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Record an SA the operation was applied to
+     *
+     * @param id spi + scid
+     */
+    public void success(SpiScid id) {
+        items.add(new Item(id, true, null));
+    }
+
+    /**
+     * Record an SA the operation was not applied to
+     *
+     * @param id      spi + scid
+     * @param message error message
+     */
+    public void failure(SpiScid id, String message) {
+        items.add(new Item(id, false, message));
+    }
+
+    /**
+     * Set whether the operation was committed
+     *
+     * @param committed true if committed
+     */
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    /**
+     * Get the bulk operation mode
+     *
+     * @return mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Check if the operation was committed. An all-or-nothing operation with a failed SA is not committed.
+     *
+     * @return true if committed
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Get the per SA results, in request order
+     *
+     * @return items
+     */
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Get the number of SAs the operation was applied to
+     *
+     * @return succeeded SAs
+     */
+    public int getSucceeded() {
+        return (int) items.stream().filter(Item::isSuccess).count();
+    }
+
+    /**
+     * Get the number of SAs the operation was not applied to
+     *
+     * @return failed SAs
+     */
+    public int getFailed() {
+        return items.size() - getSucceeded();
+    }
+
+    /**
+     * Check if the operation was not applied to any requested SA
+     *
+     * @return true if there were errors
+     */
+    public boolean hasErrors() {
+        return getFailed() > 0;
+    }
+
+    /**
+     * Result of the operation on one SA
+     */
+    public static class Item {
+        private final SpiScid id;
+        private final boolean success;
+        private final String  message;
+
+        /**
+         * Constructor
+         *
+         * @param id      spi + scid
+         * @param success true if the operation was applied
+         * @param message error message, null on success
+         */
+        public Item(SpiScid id, boolean success, String message) {
+            this.id = id;
+            this.success = success;
+            this.message = message;
+        }
+
+        /**
+         * Get the SPI + SCID
+         *
+         * @return SPI + SCID
+         */
+        public SpiScid getId() {
+            return id;
+        }
+
+        /**
+         * Check if the operation was applied
+         *
+         * @return true if applied
+         */
+        public boolean isSuccess() {
+            return success;
+        }
+
+        /**
+         * Get the error message
+         *
+         * @return error message, null on success
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
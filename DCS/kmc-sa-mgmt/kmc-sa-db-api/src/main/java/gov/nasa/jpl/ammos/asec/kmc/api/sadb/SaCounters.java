@@ -0,0 +1,119 @@
+package gov.nasa.jpl.ammos.asec.kmc.api.sadb;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import gov.nasa.jpl.ammos.asec.kmc.api.json.ByteArraySerializer;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+
+/**
+ * Anti-replay sequence number and initialization vector of a Security Association, as read or written together with
+ * the SA version
+ */
+public class SaCounters {
+    private final SpiScid   id;
+    private final FrameType type;
+    @JsonSerialize(using = ByteArraySerializer.class)
+    private final byte[]    arsn;
+    private final Short     arsnLen;
+    private final Short     arsnw;
+    @JsonSerialize(using = ByteArraySerializer.class)
+    private final byte[]    iv;
+    private final Short     ivLen;
+    private final Long      version;
+
+    /**
+     * Constructor
+     *
+     * @param id      spi + scid
+     * @param type    frame type
+     * @param arsn    anti-replay sequence number
+     * @param arsnLen arsn length
+     * @param arsnw   arsn window
+     * @param iv      initialization vector
+     * @param ivLen   iv length
+     * @param version SA version, null if the SA table has no version column
+     */
+    public SaCounters(SpiScid id, FrameType type, byte[] arsn, Short arsnLen, Short arsnw, byte[] iv, Short ivLen,
+                      Long version) {
+        this.id = id;
+        this.type = type;
+        this.arsn = arsn;
+        this.arsnLen = arsnLen;
+        this.arsnw = arsnw;
+        this.iv = iv;
+        this.ivLen = ivLen;
+        this.version = version;
+    }
+
+    /**
+     * Get the SPI + SCID
+     *
+     * @return SPI + SCID
+     */
+    public SpiScid getId() {
+        return id;
+    }
+
+    /**
+     * Get the frame type
+     *
+     * @return frame type
+     */
+    public FrameType getType() {
+        return type;
+    }
+
+    /**
+     * Get the anti-replay sequence number
+     *
+     * @return arsn
+     */
+    public byte[] getArsn() {
+        return arsn;
+    }
+
+    /**
+     * Get the ARSN length
+     *
+     * @return arsn length
+     */
+    public Short getArsnLen() {
+        return arsnLen;
+    }
+
+    /**
+     * Get the ARSN window
+     *
+     * @return arsn window
+     */
+    public Short getArsnw() {
+        return arsnw;
+    }
+
+    /**
+     * Get the initialization vector
+     *
+     * @return iv
+     */
+    public byte[] getIv() {
+        return iv;
+    }
+
+    /**
+     * Get the IV length
+     *
+     * @return iv length
+     */
+    public Short getIvLen() {
+        return ivLen;
+    }
+
+    /**
+     * Get the SA version. The version is incremented by every write of the ARSN or IV.
+     *
+     * @return version, null if the SA table has no version column
+     */
+    public Long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,187 @@
+package gov.nasa.jpl.ammos.asec.kmc.api.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a bulk Security Association import
+ */
+public class SaImportResult {
+    private final List<RowError> errors = new ArrayList<>();
+    private       int            created;
+    private       int            replaced;
+
+    /**
+     * Record a created SA
+     */
+    public void created() {
+        created++;
+    }
+
+    /**
+     * Record a replaced SA
+     */
+    public void replaced() {
+        replaced++;
+    }
+
+    /**
+     * Record an SA that could not be imported
+     *
+     * @param row     row number of the SA in the import, starting at 1
+     * @param sa      security association
+     * @param message error message
+     */
+    public void error(int row, ISecAssn sa, String message) {
+        errors.add(new RowError(row, new SpiScid(sa.getSpi(), sa.getScid()), sa.getType(), message));
+    }
+
+    /**
+     * Record a row that could not be read as an SA
+     *
+     * @param row     row number in the import, starting at 1
+     * @param message error message
+     */
+    public void error(int row, String message) {
+        errors.add(new RowError(row, null, null, message));
+    }
+
+    /**
+     * Get the number of created SAs
+     *
+     * @return created SAs
+     */
+    public int getCreated() {
+        return created;
+    }
+
+    /**
+     * Get the number of existing SAs that were replaced
+     *
+     * @return replaced SAs
+     */
+    public int getReplaced() {
+        return replaced;
+    }
+
+    /**
+     * Get the SAs that could not be imported, in import order
+     *
+     * @return row errors
+     */
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Check if any SA could not be imported
+     *
+     * @return true if there were errors
+     */
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * An SA to import and its row number in the import
+     */
+    public static class Row {
+        private final int      row;
+        private final ISecAssn sa;
+
+        /**
+         * Constructor
+         *
+         * @param row row number in the import, starting at 1
+         * @param sa  security association
+         */
+        public Row(int row, ISecAssn sa) {
+            this.row = row;
+            this.sa = sa;
+        }
+
+        /**
+         * Get the row number in the import, starting at 1
+         *
+         * @return row number
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Get the security association
+         *
+         * @return security association
+         */
+        public ISecAssn getSa() {
+            return sa;
+        }
+    }
+
+    /**
+     * An SA that could not be imported
+     */
+    public static class RowError {
+        private final int       row;
+        private final SpiScid   id;
+        private final FrameType type;
+        private final String    message;
+
+        /**
+         * Constructor
+         *
+         * @param row     row number of the SA in the import, starting at 1
+         * @param id      SPI + SCID, the SPI may be null, null if the row could not be read as an SA
+         * @param type    frame type, null if the row could not be read as an SA
+         * @param message error message
+         */
+        public RowError(int row, SpiScid id, FrameType type, String message) {
+            this.row = row;
+            this.id = id;
+            this.type = type;
+            this.message = message;
+        }
+
+        /**
+         * Get the row number of the SA in the import, starting at 1
+         *
+         * @return row number
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Get the SPI + SCID, the SPI may be null. Null if the row could not be read as an SA.
+         *
+         * @return SPI + SCID
+         */
+        public SpiScid getId() {
+            return id;
+        }
+
+        /**
+         * Get the frame type, null if the row could not be read as an SA
+         *
+         * @return frame type
+         */
+        public FrameType getType() {
+            return type;
+        }
+
+        /**
+         * Get the error message
+         *
+         * @return error message
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
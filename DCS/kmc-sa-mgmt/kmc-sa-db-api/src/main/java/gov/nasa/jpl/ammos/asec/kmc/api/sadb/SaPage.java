@@ -0,0 +1,42 @@
+package gov.nasa.jpl.ammos.asec.kmc.api.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
+
+import java.util.List;
+
+/**
+ * A page of Security Associations returned by an {@link SaQuery}
+ */
+public class SaPage {
+    private final List<ISecAssn> sas;
+    private final String         nextPageToken;
+
+    /**
+     * Constructor
+     *
+     * @param sas           security associations
+     * @param nextPageToken token for the next page, null if this is the last page
+     */
+    public SaPage(List<ISecAssn> sas, String nextPageToken) {
+        this.sas = sas;
+        this.nextPageToken = nextPageToken;
+    }
+
+    /**
+     * Get security associations
+     *
+     * @return security associations
+     */
+    public List<ISecAssn> getSas() {
+        return sas;
+    }
+
+    /**
+     * Get token for the next page
+     *
+     * @return page token, null if this is the last page
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
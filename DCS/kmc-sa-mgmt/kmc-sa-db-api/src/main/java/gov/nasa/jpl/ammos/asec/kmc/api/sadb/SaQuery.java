@@ -0,0 +1,338 @@
+package gov.nasa.jpl.ammos.asec.kmc.api.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Filtered, sorted and keyset paginated Security Association query. Pages are ordered by the SA primary key, either
+ * SCID then SPI or SPI then SCID. When the frame type is ALL, TC SAs are returned first, then TM, then AOS.
+ */
+public class SaQuery {
+    /**
+     * Default page size
+     */
+    public static final int DEFAULT_LIMIT = 100;
+    /**
+     * Maximum page size
+     */
+    public static final int MAX_LIMIT     = 1000;
+
+    /**
+     * Sort order of the SA primary key
+     */
+    public enum Sort {
+        /**
+         * Sort by SCID, then SPI
+         */
+        SCID,
+        /**
+         * Sort by SPI, then SCID
+         */
+        SPI
+    }
+
+    private FrameType type       = FrameType.ALL;
+    private Short     scid;
+    private Integer   spiMin;
+    private Integer   spiMax;
+    private Byte      vcid;
+    private Byte      mapid;
+    private Short     saState;
+    private String    ekid;
+    private String    akid;
+    private Sort      sort       = Sort.SCID;
+    private boolean   descending;
+    private int       limit      = DEFAULT_LIMIT;
+    private FrameType afterType;
+    private SpiScid   after;
+
+    /**
+     * Set frame type
+     *
+     * @param type frame type
+     * @return this query
+     */
+    public SaQuery setType(final FrameType type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Set SCID
+     *
+     * @param scid spacecraft id
+     * @return this query
+     */
+    public SaQuery setScid(final Short scid) {
+        this.scid = scid;
+        return this;
+    }
+
+    /**
+     * Set inclusive SPI range, either bound may be null
+     *
+     * @param spiMin minimum SPI
+     * @param spiMax maximum SPI
+     * @return this query
+     */
+    public SaQuery setSpiRange(final Integer spiMin, final Integer spiMax) {
+        this.spiMin = spiMin;
+        this.spiMax = spiMax;
+        return this;
+    }
+
+    /**
+     * Set VCID
+     *
+     * @param vcid virtual channel id
+     * @return this query
+     */
+    public SaQuery setVcid(final Byte vcid) {
+        this.vcid = vcid;
+        return this;
+    }
+
+    /**
+     * Set MAP ID
+     *
+     * @param mapid multiplexer access point id
+     * @return this query
+     */
+    public SaQuery setMapid(final Byte mapid) {
+        this.mapid = mapid;
+        return this;
+    }
+
+    /**
+     * Set SA state
+     *
+     * @param saState SA state
+     * @return this query
+     */
+    public SaQuery setSaState(final Short saState) {
+        this.saState = saState;
+        return this;
+    }
+
+    /**
+     * Set encryption key id
+     *
+     * @param ekid encryption key id
+     * @return this query
+     */
+    public SaQuery setEkid(final String ekid) {
+        this.ekid = ekid;
+        return this;
+    }
+
+    /**
+     * Set authentication key id
+     *
+     * @param akid authentication key id
+     * @return this query
+     */
+    public SaQuery setAkid(final String akid) {
+        this.akid = akid;
+        return this;
+    }
+
+    /**
+     * Set sort order
+     *
+     * @param sort       sort order
+     * @param descending sort descending
+     * @return this query
+     */
+    public SaQuery setSort(final Sort sort, final boolean descending) {
+        this.sort = sort;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Set page size
+     *
+     * @param limit page size, between 1 and {@link #MAX_LIMIT}
+     * @return this query
+     * @throws KmcException if the page size is out of range
+     */
+    public SaQuery setLimit(final int limit) throws KmcException {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new KmcException(String.format("invalid page size %d, must be between 1 and %d", limit,
+                    MAX_LIMIT));
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Continue from a page token returned with a previous page of the same query. Must be set after the sort order.
+     *
+     * @param pageToken page token, null for the first page
+     * @return this query
+     * @throws KmcException if the page token is invalid or from a query with a different sort order
+     */
+    public SaQuery setPageToken(final String pageToken) throws KmcException {
+        if (pageToken == null || pageToken.isEmpty()) {
+            afterType = null;
+            after = null;
+            return this;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8)
+                    .split(":");
+            if (parts.length != 5 || Sort.valueOf(parts[1]) != sort ||
+                    Boolean.parseBoolean(parts[2]) != descending) {
+                throw new KmcException("invalid page token for this query");
+            }
+            afterType = FrameType.valueOf(parts[0]);
+            after = new SpiScid(Integer.parseInt(parts[3]), Short.parseShort(parts[4]));
+        } catch (IllegalArgumentException e) {
+            throw new KmcException("invalid page token", e);
+        }
+        return this;
+    }
+
+    /**
+     * Create the page token that continues this query after the given SA
+     *
+     * @param lastType frame type of the last SA on the page
+     * @param lastId   id of the last SA on the page
+     * @return page token
+     */
+    public String nextPageToken(final FrameType lastType, final SpiScid lastId) {
+        String token = String.format("%s:%s:%b:%d:%d", lastType.name(), sort.name(), descending, lastId.getSpi(),
+                lastId.getScid());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get frame type
+     *
+     * @return frame type
+     */
+    public FrameType getType() {
+        return type;
+    }
+
+    /**
+     * Get SCID
+     *
+     * @return SCID
+     */
+    public Short getScid() {
+        return scid;
+    }
+
+    /**
+     * Get minimum SPI
+     *
+     * @return minimum SPI
+     */
+    public Integer getSpiMin() {
+        return spiMin;
+    }
+
+    /**
+     * Get maximum SPI
+     *
+     * @return maximum SPI
+     */
+    public Integer getSpiMax() {
+        return spiMax;
+    }
+
+    /**
+     * Get VCID
+     *
+     * @return VCID
+     */
+    public Byte getVcid() {
+        return vcid;
+    }
+
+    /**
+     * Get MAP ID
+     *
+     * @return MAP ID
+     */
+    public Byte getMapid() {
+        return mapid;
+    }
+
+    /**
+     * Get SA state
+     *
+     * @return SA state
+     */
+    public Short getSaState() {
+        return saState;
+    }
+
+    /**
+     * Get encryption key id
+     *
+     * @return encryption key id
+     */
+    public String getEkid() {
+        return ekid;
+    }
+
+    /**
+     * Get authentication key id
+     *
+     * @return authentication key id
+     */
+    public String getAkid() {
+        return akid;
+    }
+
+    /**
+     * Get sort order
+     *
+     * @return sort order
+     */
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * Get sort direction
+     *
+     * @return true if sorted descending
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Get page size
+     *
+     * @return page size
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get frame type of the last SA on the previous page
+     *
+     * @return frame type, null for the first page
+     */
+    public FrameType getAfterType() {
+        return afterType;
+    }
+
+    /**
+     * Get id of the last SA on the previous page
+     *
+     * @return id, null for the first page
+     */
+    public SpiScid getAfter() {
+        return after;
+    }
+}
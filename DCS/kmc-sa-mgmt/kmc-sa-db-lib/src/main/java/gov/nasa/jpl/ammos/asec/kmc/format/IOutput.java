@@ -3,6 +3,7 @@ package gov.nasa.jpl.ammos.asec.kmc.format;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 
 import java.io.PrintWriter;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -16,5 +17,15 @@ public interface IOutput {
      * @param writer output
      * @param saList list of security associations
      */
-    void print(PrintWriter writer, List<ISecAssn> saList);
+    default void print(PrintWriter writer, List<ISecAssn> saList) {
+        print(writer, saList.iterator());
+    }
+
+    /**
+     * Print SA output to a writer as the SAs are read from the iterator, without collecting them first
+     *
+     * @param writer output
+     * @param sas    security associations
+     */
+    void print(PrintWriter writer, Iterator<? extends ISecAssn> sas);
 }
@@ -5,9 +5,11 @@ import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnFactory;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ServiceType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaImportResult;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +18,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * CSV Input
@@ -35,33 +39,8 @@ public class SaCsvInput {
         // come in with a desired frame type.
         List<ISecAssn> sas = new ArrayList<>();
         try {
-            Iterable<CSVRecord> records =
-                    CSVFormat.Builder.create(CSVFormat.EXCEL).setHeader().setSkipHeaderRecord(false).build().parse(reader);
-            for (CSVRecord record : records) {
-                // if the type column is mapped, then we only want to include those that match the desired type (or ALL)
-                ISecAssn sa;
-                if (record.isMapped("type")) {
-                    FrameType recType = FrameType.fromString(record.get("type"));
-                    if (type == FrameType.ALL || recType == type) {
-                        // convert if the desired type is ALL, or the recType == the desired type
-                        sa = convertRecord(record, recType);
-                        // else, skip
-                    } else if (type == FrameType.UNKNOWN) {
-                        LOG.warn("Unknown frame type encountered, skipping: {}", record.get("type"));
-                        continue;
-                    } else {
-                        continue;
-                    }
-                } else {
-                    // unmapped, need to coerce it to desired type, default to TC
-                    FrameType coerceTo;
-                    if (type == FrameType.ALL) {
-                        coerceTo = FrameType.TC;
-                    } else {
-                        coerceTo = type;
-                    }
-                    sa = convertRecord(record, coerceTo);
-                }
+            for (CSVRecord record : newParser(reader)) {
+                ISecAssn sa = convertRecordForType(record, type, true);
                 if (sa != null) {
                     sas.add(sa);
                 }
@@ -76,6 +55,74 @@ public class SaCsvInput {
         return sas;
     }
 
+    /**
+     * Parse CSV from reader incrementally. Records are read and converted as the stream is consumed, so the whole
+     * file is never held in memory. Each SA is numbered with its CSV record number. Records that cannot be
+     * converted are reported as errors in the result; records of other frame types are skipped. Closing the stream
+     * closes the parser and the reader.
+     *
+     * @param reader CSV input
+     * @param type   frame type
+     * @param result import result for the records that cannot be converted
+     * @return stream of SAs from CSV with their record numbers
+     * @throws KmcException ex
+     */
+    public Stream<SaImportResult.Row> streamCsv(Reader reader, FrameType type, SaImportResult result) throws
+            KmcException {
+        CSVParser parser;
+        try {
+            parser = newParser(reader);
+        } catch (IOException e) {
+            LOG.error("Encountered an I/O error while parsing CSV: {}", e.getMessage());
+            throw new KmcException("Unable to parse CSV due to I/O error: ", e);
+        }
+        return parser.stream().map(record -> {
+            int row = (int) record.getRecordNumber();
+            try {
+                ISecAssn sa = convertRecordForType(record, type, false);
+                return sa == null ? null : new SaImportResult.Row(row, sa);
+            } catch (KmcException e) {
+                LOG.error("Error converting record {}: {}", row, e.getMessage());
+                result.error(row, String.format("Cannot read SA from record %d: %s", row, e.getMessage()));
+                return null;
+            }
+        }).filter(Objects::nonNull).onClose(() -> {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing CSV parser: {}", e.getMessage());
+            }
+        });
+    }
+
+    private CSVParser newParser(Reader reader) throws IOException {
+        return CSVFormat.Builder.create(CSVFormat.EXCEL).setHeader().setSkipHeaderRecord(false).build().parse(reader);
+    }
+
+    private ISecAssn convertRecordForType(CSVRecord record, FrameType type, boolean skipInvalid) throws
+            KmcException {
+        // if the type column is mapped, then we only want to include those that match the desired type (or ALL)
+        if (record.isMapped("type")) {
+            FrameType recType = FrameType.fromString(record.get("type"));
+            if (type == FrameType.ALL || recType == type) {
+                // convert if the desired type is ALL, or the recType == the desired type
+                return convertRecord(record, recType, skipInvalid);
+            } else if (type == FrameType.UNKNOWN) {
+                LOG.warn("Unknown frame type encountered, skipping: {}", record.get("type"));
+            }
+            // else, skip
+            return null;
+        }
+        // unmapped, need to coerce it to desired type, default to TC
+        FrameType coerceTo;
+        if (type == FrameType.ALL) {
+            coerceTo = FrameType.TC;
+        } else {
+            coerceTo = type;
+        }
+        return convertRecord(record, coerceTo, skipInvalid);
+    }
+
     /**
      * Convert a parsed CSV record to a Security Association object
      *
@@ -85,6 +132,19 @@ public class SaCsvInput {
      * @throws KmcException ex
      */
     public ISecAssn convertRecord(CSVRecord record, FrameType type) throws KmcException {
+        return convertRecord(record, type, true);
+    }
+
+    /**
+     * Convert a parsed CSV record to a Security Association object
+     *
+     * @param record      csv record
+     * @param type        frame type
+     * @param skipInvalid log and return null for invalid values instead of throwing
+     * @return sa
+     * @throws KmcException ex
+     */
+    private ISecAssn convertRecord(CSVRecord record, FrameType type, boolean skipInvalid) throws KmcException {
         try {
             ISecAssn sa = SecAssnFactory.createSecAssn(type);
             sa.setSpi(parseInt(record.get("spi")));
@@ -96,10 +156,6 @@ public class SaCsvInput {
             ServiceType st;
             try {
                 st = ServiceType.fromShort(parseShort(record.get("st")));
-                if (st == ServiceType.UNKNOWN) {
-                    LOG.warn("Unknown service type provided, skipping");
-                    return null;
-                }
             } catch (Exception e) {
                 // try to parse out text value
                 LOG.warn("Encountered an error while attempting to parse 'service type' as short, " +
@@ -110,6 +166,13 @@ public class SaCsvInput {
                     throw new KmcException("Unable to evaluate provided service type");
                 }
             }
+            if (st == ServiceType.UNKNOWN) {
+                if (!skipInvalid) {
+                    throw new KmcException("Unknown service type provided");
+                }
+                LOG.warn("Unknown service type provided, skipping");
+                return null;
+            }
             sa.setEst(st.getEncryptionType());
             sa.setAst(st.getAuthenticationType());
             sa.setShivfLen(parseShort(record.get("shivf_len")));
@@ -140,9 +203,15 @@ public class SaCsvInput {
             sa.setArsnw(arsnw == null ? 0 : arsnw);
             return sa;
         } catch (DecoderException e) {
+            if (!skipInvalid) {
+                throw new KmcException("Error parsing a hex value", e);
+            }
             LOG.error("Error parsing a hex value on line {}, skipping", record.getRecordNumber() + 1);
             return null;
         } catch (NumberFormatException e) {
+            if (!skipInvalid) {
+                throw new KmcException("Error parsing a number value", e);
+            }
             LOG.error("Error parsing a number value on line {}, skipping", record.getRecordNumber() + 1);
             return null;
         }
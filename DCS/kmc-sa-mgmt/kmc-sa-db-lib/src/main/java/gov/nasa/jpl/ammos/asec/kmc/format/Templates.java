@@ -0,0 +1,58 @@
+package gov.nasa.jpl.ammos.asec.kmc.format;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared Velocity engine for the output formats. Templates are parsed once and reused; a parsed template can be
+ * merged concurrently.
+ */
+final class Templates {
+    private static final VelocityEngine        ENGINE    = createEngine();
+    private static final Map<String, Template> TEMPLATES = new ConcurrentHashMap<>();
+
+    private Templates() {
+    }
+
+    private static VelocityEngine createEngine() {
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
+        engine.setProperty("classpath.resource.loader.class", ClasspathResourceLoader.class.getName());
+        engine.init();
+        return engine;
+    }
+
+    /**
+     * Get a parsed template
+     *
+     * @param name template resource name
+     * @return template
+     */
+    static Template get(String name) {
+        return TEMPLATES.computeIfAbsent(name, ENGINE::getTemplate);
+    }
+
+    /**
+     * Render SAs with a template. SAs are pulled from the iterator and written one at a time.
+     *
+     * @param template template
+     * @param writer   output
+     * @param sas      security associations
+     */
+    static void merge(Template template, PrintWriter writer, Iterator<? extends ISecAssn> sas) {
+        VelocityContext context = new VelocityContext();
+        context.put("Utilities", Utilities.class);
+        context.put("saList", sas);
+        template.merge(context, writer);
+        writer.flush();
+    }
+}
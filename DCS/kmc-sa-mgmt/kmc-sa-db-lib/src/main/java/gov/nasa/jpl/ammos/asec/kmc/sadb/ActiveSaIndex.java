@@ -0,0 +1,346 @@
+package gov.nasa.jpl.ammos.asec.kmc.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnFactory;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaCounters;
+import jakarta.persistence.Table;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao.SA_OPERATIONAL;
+import static gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao.SQL_FROM;
+
+/**
+ * In-process index of operational SAs per frame type, keyed by packed GVCID and by packed SPI/SCID.
+ * <p>
+ * Lookups are served from an immutable view without reaching the database. Writes made through the owning DAO are
+ * applied to the view once their transaction commits. Writes made by anyone else are picked up by polling: when the
+ * SA table has an updated_at column, its row count and latest update time are checked at most once per poll interval
+ * and the view is only reloaded when they changed; without the column, the view is reloaded once per poll interval.
+ * A transaction may commit after a later one has already moved the latest update time, so views older than the
+ * maximum age are reloaded regardless.
+ * <p>
+ * SAs returned by the index are copies and may be modified by callers.
+ */
+class ActiveSaIndex {
+    /**
+     * Optional last update time column of the SA tables
+     */
+    static final String UPDATED_AT            = "updated_at";
+    /**
+     * Default interval between change checks, in milliseconds
+     */
+    static final long   DEFAULT_POLL_INTERVAL = 1000;
+    /**
+     * Default maximum age of a view, in milliseconds
+     */
+    static final long   DEFAULT_MAX_AGE       = 30000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ActiveSaIndex.class);
+
+    private final Supplier<IDbSession>   sessions;
+    private final Set<FrameType>         versioned;
+    private final long                   pollInterval;
+    private final long                   maxAge;
+    private final Map<FrameType, View>   views   = new ConcurrentHashMap<>();
+    private final Map<FrameType, Object> locks   = new ConcurrentHashMap<>();
+    private final AtomicLong             hits    = new AtomicLong();
+    private final AtomicLong             misses  = new AtomicLong();
+    private final AtomicLong             checks  = new AtomicLong();
+    private final AtomicLong             reloads = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param sessions     database session supplier, used to check for changes and reload views
+     * @param versioned    frame types whose SA table has an updated_at column
+     * @param pollInterval interval between change checks, in milliseconds
+     * @param maxAge       maximum age of a view, in milliseconds
+     */
+    ActiveSaIndex(Supplier<IDbSession> sessions, Set<FrameType> versioned, long pollInterval, long maxAge) {
+        this.sessions = sessions;
+        this.versioned = versioned;
+        this.pollInterval = TimeUnit.MILLISECONDS.toNanos(pollInterval);
+        this.maxAge = TimeUnit.MILLISECONDS.toNanos(maxAge);
+    }
+
+    /**
+     * Get the operational SAs of a frame type
+     *
+     * @param type frame type
+     * @return operational SAs
+     * @throws KmcException if the view could not be reloaded
+     */
+    List<ISecAssn> getActive(FrameType type) throws KmcException {
+        return view(type).all.stream().map(ActiveSaIndex::copy).toList();
+    }
+
+    /**
+     * Get the operational SA of a GVCID
+     *
+     * @param type  frame type
+     * @param tfvn  transfer frame version number
+     * @param scid  spacecraft id
+     * @param vcid  virtual channel id
+     * @param mapid multiplexer access point id
+     * @return operational SA, or null if there is none
+     * @throws KmcException if the view could not be reloaded
+     */
+    ISecAssn getActive(FrameType type, Byte tfvn, Short scid, Byte vcid, Byte mapid) throws KmcException {
+        List<ISecAssn> sas = view(type).byGvcid.get(gvcidKey(tfvn, scid, vcid, mapid));
+        return sas == null ? null : copy(sas.get(0));
+    }
+
+    /**
+     * Get an SA if it is operational
+     *
+     * @param type frame type
+     * @param id   spi + scid
+     * @return operational SA, or null if the SA does not exist or is not operational
+     * @throws KmcException if the view could not be reloaded
+     */
+    ISecAssn getActive(FrameType type, SpiScid id) throws KmcException {
+        ISecAssn sa = view(type).byId.get(idKey(id.getSpi(), id.getScid()));
+        return sa == null ? null : copy(sa);
+    }
+
+    /**
+     * Apply a committed write of an SA
+     *
+     * @param sa security association as committed
+     */
+    void written(ISecAssn sa) {
+        ISecAssn snapshot = copy(sa);
+        update(sa.getType(), view -> view.with(snapshot));
+    }
+
+    /**
+     * Apply a committed write of the ARSN and IV of an SA
+     *
+     * @param counters counters as committed
+     */
+    void countersWritten(SaCounters counters) {
+        long id = idKey(counters.getId().getSpi(), counters.getId().getScid());
+        update(counters.getType(), view -> {
+            ISecAssn sa = view.byId.get(id);
+            if (sa == null) {
+                return view;
+            }
+            ISecAssn c = copy(sa);
+            c.setArsn(clone(counters.getArsn()));
+            c.setArsnLen(counters.getArsnLen());
+            c.setArsnw(counters.getArsnw());
+            c.setIv(clone(counters.getIv()));
+            c.setIvLen(counters.getIvLen());
+            return view.with(c);
+        });
+    }
+
+    /**
+     * Apply a committed delete of an SA
+     *
+     * @param type frame type
+     * @param id   spi + scid
+     */
+    void removed(FrameType type, SpiScid id) {
+        update(type, view -> view.without(idKey(id.getSpi(), id.getScid())));
+    }
+
+    /**
+     * Discard the view of a frame type, e.g. after a write whose effect on other SAs is not known
+     *
+     * @param type frame type
+     */
+    void invalidate(FrameType type) {
+        synchronized (lock(type)) {
+            views.remove(type);
+        }
+    }
+
+    /**
+     * Get index counters
+     *
+     * @return counters
+     */
+    SaIndexStats getStats() {
+        return new SaIndexStats(hits.get(), misses.get(), checks.get(), reloads.get());
+    }
+
+    private void update(FrameType type, UnaryOperator<View> change) {
+        // reloads hold the same lock, a write committed during a reload is applied on top of it
+        synchronized (lock(type)) {
+            View view = views.get(type);
+            if (view != null) {
+                views.put(type, change.apply(view));
+            }
+        }
+    }
+
+    private View view(FrameType type) throws KmcException {
+        View view = views.get(type);
+        long now  = System.nanoTime();
+        if (view != null && now - view.checkedAt < pollInterval) {
+            hits.incrementAndGet();
+            return view;
+        }
+        synchronized (lock(type)) {
+            view = views.get(type);
+            now = System.nanoTime();
+            if (view != null && now - view.checkedAt < pollInterval) {
+                hits.incrementAndGet();
+                return view;
+            }
+            try (IDbSession session = sessions.get()) {
+                Session s = ((DbSession) session).getSession();
+                List<?> stamp = null;
+                if (versioned.contains(type)) {
+                    checks.incrementAndGet();
+                    stamp = stamp(s, type);
+                    if (view != null && stamp.equals(view.stamp) && now - view.loadedAt < maxAge) {
+                        view.checkedAt = now;
+                        hits.incrementAndGet();
+                        return view;
+                    }
+                }
+                // the stamp is read first, a write committed during the reload is picked up by the next check
+                view = new View(load(s, type), stamp, now);
+                views.put(type, view);
+                reloads.incrementAndGet();
+                misses.incrementAndGet();
+                LOG.debug("Reloaded {} active {} SA(s)", view.all.size(), type);
+                return view;
+            } catch (Exception e) {
+                throw new KmcException(String.format("Unable to load active %s SAs: %s", type.name(),
+                        e.getMessage()), e);
+            }
+        }
+    }
+
+    private Object lock(FrameType type) {
+        return locks.computeIfAbsent(type, t -> new Object());
+    }
+
+    private List<?> stamp(Session s, FrameType type) {
+        String table = type.getClazz().getAnnotation(Table.class).name();
+        Object[] row = s.createNativeQuery("SELECT COUNT(*), MAX(" + UPDATED_AT + ") FROM " + table, Object[].class)
+                .getSingleResult();
+        return Arrays.asList(row);
+    }
+
+    private List<ISecAssn> load(Session s, FrameType type) {
+        return s.createQuery(SQL_FROM + " " + type.toString() + " sa WHERE sa.saState = :state", type.getClazz())
+                .setParameter("state", SA_OPERATIONAL)
+                .setReadOnly(true)
+                .list().stream().map(o -> (ISecAssn) o).toList();
+    }
+
+    private static long gvcidKey(Byte tfvn, Short scid, Byte vcid, Byte mapid) {
+        return (long) unsigned(tfvn) << 32 | (long) (scid & 0xffff) << 16 | unsigned(vcid) << 8 | unsigned(mapid);
+    }
+
+    private static long idKey(Integer spi, Short scid) {
+        return (long) spi << 16 | (scid & 0xffff);
+    }
+
+    private static int unsigned(Byte b) {
+        return b == null ? 0 : b & 0xff;
+    }
+
+    private static ISecAssn copy(ISecAssn sa) {
+        ISecAssn c = SecAssnFactory.createSecAssn(new SpiScid(sa.getSpi(), sa.getScid()), sa.getType());
+        c.setEkid(sa.getEkid());
+        c.setAkid(sa.getAkid());
+        c.setSaState(sa.getSaState());
+        c.setTfvn(sa.getTfvn());
+        c.setVcid(sa.getVcid());
+        c.setMapid(sa.getMapid());
+        c.setLpid(sa.getLpid());
+        c.setEst(sa.getEst());
+        c.setAst(sa.getAst());
+        c.setShivfLen(sa.getShivfLen());
+        c.setShsnfLen(sa.getShsnfLen());
+        c.setShplfLen(sa.getShplfLen());
+        c.setStmacfLen(sa.getStmacfLen());
+        c.setEcsLen(sa.getEcsLen());
+        c.setEcs(clone(sa.getEcs()));
+        c.setIvLen(sa.getIvLen());
+        c.setIv(clone(sa.getIv()));
+        c.setAcsLen(sa.getAcsLen());
+        c.setAcs(clone(sa.getAcs()));
+        if (sa.getAbmLen() != null) {
+            c.setAbmLen(sa.getAbmLen());
+        }
+        c.setAbm(clone(sa.getAbm()));
+        c.setArsnLen(sa.getArsnLen());
+        c.setArsn(clone(sa.getArsn()));
+        c.setArsnw(sa.getArsnw());
+        return c;
+    }
+
+    private static byte[] clone(byte[] bytes) {
+        return bytes == null ? null : bytes.clone();
+    }
+
+    /**
+     * Immutable view of the operational SAs of a frame type
+     */
+    private static class View {
+        private final List<ISecAssn>            all;
+        private final Map<Long, List<ISecAssn>> byGvcid = new HashMap<>();
+        private final Map<Long, ISecAssn>       byId    = new HashMap<>();
+        private final List<?>                   stamp;
+        private final long                      loadedAt;
+        private volatile long                   checkedAt;
+
+        View(List<ISecAssn> sas, List<?> stamp, long loadedAt) {
+            this(sas, stamp, loadedAt, loadedAt);
+        }
+
+        private View(List<ISecAssn> sas, List<?> stamp, long loadedAt, long checkedAt) {
+            this.all = List.copyOf(sas);
+            this.stamp = stamp;
+            this.loadedAt = loadedAt;
+            this.checkedAt = checkedAt;
+            for (ISecAssn sa : all) {
+                byGvcid.computeIfAbsent(gvcidKey(sa.getTfvn(), sa.getScid(), sa.getVcid(), sa.getMapid()),
+                        k -> new ArrayList<>(1)).add(sa);
+                byId.put(idKey(sa.getSpi(), sa.getScid()), sa);
+            }
+        }
+
+        View with(ISecAssn sa) {
+            List<ISecAssn> sas = new ArrayList<>(without(idKey(sa.getSpi(), sa.getScid())).all);
+            if (sa.getSaState() != null && sa.getSaState() == SA_OPERATIONAL) {
+                sas.add(sa);
+            }
+            return new View(sas, stamp, loadedAt, checkedAt);
+        }
+
+        View without(long id) {
+            ISecAssn sa = byId.get(id);
+            if (sa == null) {
+                return this;
+            }
+            List<ISecAssn> sas = new ArrayList<>(all);
+            sas.remove(sa);
+            return new View(sas, stamp, loadedAt, checkedAt);
+        }
+    }
+}
@@ -8,7 +8,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.Security;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,7 +21,8 @@ public class DaoBuilder {
     private static final String connFormat = "jdbc:mariadb://%s:%s/%s";
     private static final Logger LOG        = LoggerFactory.getLogger(DaoBuilder.class);
 
-    private final Map<String, String> params = new HashMap<>();
+    private final Map<String, String> params   = new HashMap<>();
+    private final List<String>        replicas = new ArrayList<>();
 
     private boolean useMtls;
     private String  connString;
@@ -28,6 +31,9 @@ public class DaoBuilder {
     private String  schema;
     private String  user;
     private String  pass;
+    private long    replicaMaxLag = ReplicaRouter.DEFAULT_MAX_LAG;
+    private long    replicaSticky = ReplicaRouter.DEFAULT_STICKY;
+    private int     spiBlockSize  = KmcDao.SPI_BLOCK_SIZE;
 
 
     /**
@@ -165,6 +171,52 @@ public class DaoBuilder {
     }
 
 
+    /**
+     * Add a read replica. SA reads are routed to healthy replicas, see {@link KmcDao#setReadReplicas}. The TLS
+     * settings of the primary also apply to the replicas.
+     *
+     * @param connString replica connection string
+     * @return this builder
+     */
+    public DaoBuilder addReplica(final String connString) {
+        this.replicas.add(connString);
+        return this;
+    }
+
+    /**
+     * Set the maximum replication lag of a read replica
+     *
+     * @param maxLag maximum lag in milliseconds, negative to skip the lag check
+     * @return this builder
+     */
+    public DaoBuilder setReplicaMaxLag(final long maxLag) {
+        this.replicaMaxLag = maxLag;
+        return this;
+    }
+
+    /**
+     * Set the period after a write during which the writing thread reads from the primary instead of the read
+     * replicas
+     *
+     * @param sticky period in milliseconds
+     * @return this builder
+     */
+    public DaoBuilder setReplicaSticky(final long sticky) {
+        this.replicaSticky = sticky;
+        return this;
+    }
+
+    /**
+     * Set the number of SPIs reserved at a time, see {@link KmcDao#setSpiBlockSize}
+     *
+     * @param spiBlockSize number of SPIs, at least 1
+     * @return this builder
+     */
+    public DaoBuilder setSpiBlockSize(final int spiBlockSize) {
+        this.spiBlockSize = spiBlockSize;
+        return this;
+    }
+
     /**
      * Create and return a KMC DAO
      *
@@ -207,7 +259,16 @@ public class DaoBuilder {
                 url += "?" + paramString;
             }
 
-            return new KmcDao(user, pass, url);
+            KmcDao dao = new KmcDao(user, pass, url);
+            dao.setSpiBlockSize(spiBlockSize);
+            if (!replicas.isEmpty()) {
+                List<String> replicaUrls = new ArrayList<>();
+                for (String replica : replicas) {
+                    replicaUrls.add(paramString.isEmpty() ? replica : replica + "?" + paramString);
+                }
+                dao.setReadReplicas(replicaUrls, replicaMaxLag, replicaSticky);
+            }
+            return dao;
         } catch (Exception e) {
             LOG.error("Error initializing application, please check database settings", e);
             throw new KmcException("Error initializing application, please check database settings", e);
@@ -22,6 +22,18 @@ public class DaoFactory {
      * @throws KmcException kmc ex
      */
     public static IKmcDao getDao(Config cfg) throws KmcException {
+        return getDao(cfg, KmcDao.SPI_BLOCK_SIZE);
+    }
+
+    /**
+     * Create and return a KMC DAO from config
+     *
+     * @param cfg          config
+     * @param spiBlockSize number of SPIs reserved at a time, see {@link KmcDao#setSpiBlockSize}
+     * @return KMC DAO
+     * @throws KmcException kmc ex
+     */
+    public static IKmcDao getDao(Config cfg, int spiBlockSize) throws KmcException {
         try {
             DaoBuilder builder = new DaoBuilder();
             if (cfg.getUseTls()) {
@@ -65,6 +77,17 @@ public class DaoFactory {
             }
 
             builder.setSchema(cfg.getSchema());
+            builder.setSpiBlockSize(spiBlockSize);
+
+            for (String replica : cfg.getReplicas()) {
+                builder.addReplica(replica);
+            }
+            if (cfg.getReplicaMaxLag() != null) {
+                builder.setReplicaMaxLag(cfg.getReplicaMaxLag());
+            }
+            if (cfg.getReplicaSticky() != null) {
+                builder.setReplicaSticky(cfg.getReplicaSticky());
+            }
 
             return builder.build();
 
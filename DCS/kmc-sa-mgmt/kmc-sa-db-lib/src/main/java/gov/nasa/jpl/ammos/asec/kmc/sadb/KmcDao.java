@@ -4,6 +4,7 @@ import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
 import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcStartException;
 import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcStopException;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.Gvcid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnAos;
@@ -12,19 +13,42 @@ import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnValidator;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaBulkResult;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaCounters;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaImportResult;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaPage;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaQuery;
+import jakarta.persistence.Table;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.query.MutationQuery;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigInteger;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * KMC DAO
@@ -70,14 +94,61 @@ public class KmcDao implements IKmcDao {
      * SQL FROM keyword
      */
     public static final  String SQL_FROM                      = "FROM";
+    /**
+     * Number of SAs committed per transaction during a bulk import
+     */
+    public static final  int    IMPORT_CHUNK_SIZE             = 500;
+    /**
+     * JDBC fetch size used when streaming SAs
+     */
+    public static final  int    STREAM_FETCH_SIZE             = 500;
+    /**
+     * Maximum number of SPIs per set-based statement of a bulk operation
+     */
+    public static final  int    BULK_STATEMENT_SIZE           = 500;
+    /**
+     * Optional version column of the SA tables, incremented by every write of the ARSN or IV made through this DAO,
+     * and by other writers when the version triggers are installed
+     */
+    public static final  String VERSION_COLUMN                = "version";
+    /**
+     * Attempts of a counter increment before giving up on concurrent writes
+     */
+    public static final  int    COUNTER_RETRIES               = 10;
+    /**
+     * Number of SPIs reserved at a time from the SPI allocation table by default. SPIs left in a block when the DAO
+     * is closed are never handed out, so short-lived DAOs, e.g. of CLI commands, reserve one at a time.
+     */
+    public static final  int    SPI_BLOCK_SIZE                = 1;
+    /**
+     * Number of SPIs reserved at a time by long-lived DAOs creating many SAs, e.g. of the SA management service or
+     * the CLI daemon
+     */
+    public static final  int    SERVICE_SPI_BLOCK_SIZE        = 64;
+    private static final String ARSN                          = "arsn";
+    private static final String ARSN_LEN                      = "arsn_len";
+    private static final String ARSNW                         = "arsnw";
+    private static final String IV                            = "iv";
+    private static final String IV_LEN                        = "iv_len";
+    private static final String HIKARI_CONNECTION_TIMEOUT     = "hibernate.hikari.connectionTimeout";
+    private static final String REPLICA_CONNECTION_TIMEOUT    = "2000";
 
     private final Properties    properties = new Properties();
     private       Configuration config     = new Configuration();
 
     private SessionFactory factory;
 
-    private boolean hasAos;
-    private boolean hasTm;
+    private boolean        hasAos;
+    private boolean        hasTm;
+    private boolean        hasSpiAllocation;
+    private int            spiBlockSize     = SPI_BLOCK_SIZE;
+    private SpiAllocator   spiAllocator;
+    private Set<FrameType> versioned        = EnumSet.noneOf(FrameType.class);
+    private Set<FrameType> counterVersioned = EnumSet.noneOf(FrameType.class);
+    private ActiveSaIndex  activeSas;
+    private ReplicaRouter  replicas         = new ReplicaRouter(List.of(), this::buildReplicaFactory,
+            ReplicaRouter.MARIADB_LAG, ReplicaRouter.DEFAULT_MAX_LAG, ReplicaRouter.DEFAULT_STICKY,
+            ReplicaRouter.DEFAULT_CHECK_INTERVAL);
 
     /**
      * Constructor
@@ -123,6 +194,72 @@ public class KmcDao implements IKmcDao {
         configure();
     }
 
+    /**
+     * Route reads to read replicas. SA listings, SA pages and SA streams go to a healthy replica, everything else,
+     * including single SA reads and the active SA index, stays on the primary. A replica is healthy while its connection
+     * is valid and its replication lag is within the maximum lag, and reads fall back to the primary when no replica
+     * is healthy. A thread that committed a write through this DAO reads from the primary for the sticky period
+     * afterwards. Each replica has its own connection pool, using the credentials of the primary.
+     *
+     * @param urls   replica connection URLs
+     * @param maxLag maximum replication lag of a replica in milliseconds, negative to skip the lag check, e.g. when
+     *               the database user may not read the replication status
+     * @param sticky period after a write during which the writing thread reads from the primary, in milliseconds
+     */
+    public void setReadReplicas(List<String> urls, long maxLag, long sticky) {
+        setReadReplicas(urls, ReplicaRouter.MARIADB_LAG, maxLag, sticky, ReplicaRouter.DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Route reads to read replicas
+     *
+     * @param urls          replica connection URLs
+     * @param probe         replication lag probe
+     * @param maxLag        maximum replication lag of a replica in milliseconds, negative to skip the lag check
+     * @param sticky        period after a write during which the writing thread reads from the primary, in
+     *                      milliseconds
+     * @param checkInterval interval between health checks of a replica, in milliseconds
+     */
+    void setReadReplicas(List<String> urls, ReplicaRouter.LagProbe probe, long maxLag, long sticky,
+                         long checkInterval) {
+        replicas.close();
+        replicas = new ReplicaRouter(urls, this::buildReplicaFactory, probe, maxLag, sticky, checkInterval);
+    }
+
+    /**
+     * Set the number of SPIs reserved at a time from the SPI allocation table. Larger blocks reach the database less
+     * often, at the cost of the SPIs left unused when the DAO is closed.
+     *
+     * @param spiBlockSize number of SPIs, at least 1
+     */
+    public void setSpiBlockSize(int spiBlockSize) {
+        if (spiBlockSize < 1) {
+            throw new IllegalArgumentException("SPI block size must be at least 1");
+        }
+        this.spiBlockSize = spiBlockSize;
+        if (spiAllocator != null) {
+            resetSpiAllocation();
+        }
+    }
+
+    private SessionFactory buildReplicaFactory(String url) {
+        Configuration replica = new Configuration();
+        replica.configure(ETC_HIBERNATE_CFG_XML);
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            replica.getProperties().setProperty((String) entry.getKey(), (String) entry.getValue());
+        }
+        replica.setProperty(HIBERNATE_CONNECTION_URL, url);
+        // an unreachable replica must not hold up reads for long
+        replica.setProperty(HIKARI_CONNECTION_TIMEOUT, REPLICA_CONNECTION_TIMEOUT);
+        if (hasTm) {
+            replica.addAnnotatedClass(SecAssnTm.class);
+        }
+        if (hasAos) {
+            replica.addAnnotatedClass(SecAssnAos.class);
+        }
+        return replica.buildSessionFactory();
+    }
+
     private void configure() {
         config.configure(ETC_HIBERNATE_CFG_XML);
         for (Map.Entry<Object, Object> entry : properties.entrySet()) {
@@ -133,7 +270,9 @@ public class KmcDao implements IKmcDao {
     @Override
     public void init() throws KmcException {
         try {
-            final List<String> tables = new ArrayList<>();
+            final List<String> tables    = new ArrayList<>();
+            final Set<String>  updatedAt = new HashSet<>();
+            final Set<String>  version   = new HashSet<>();
             factory = config.buildSessionFactory();
             try (Session s = factory.openSession()) {
 
@@ -143,6 +282,20 @@ public class KmcDao implements IKmcDao {
                             tables.add(rs.getString(3));
                         }
                     }
+                    for (String table : tables) {
+                        if (!table.toLowerCase().startsWith("security_associations")) {
+                            continue;
+                        }
+                        try (ResultSet rs = session.getMetaData().getColumns(null, null, table, null)) {
+                            while (rs.next()) {
+                                if (ActiveSaIndex.UPDATED_AT.equalsIgnoreCase(rs.getString(4))) {
+                                    updatedAt.add(table.toLowerCase());
+                                } else if (VERSION_COLUMN.equalsIgnoreCase(rs.getString(4))) {
+                                    version.add(table.toLowerCase());
+                                }
+                            }
+                        }
+                    }
                 });
             }
             config = new Configuration();
@@ -158,6 +311,10 @@ public class KmcDao implements IKmcDao {
                         config.addAnnotatedClass(SecAssnAos.class);
                         hasAos = true;
                         break;
+                    case SpiAllocator.TABLE:
+                        LOG.info("Initializing SPI allocation");
+                        hasSpiAllocation = true;
+                        break;
                     default:
                         break;
                 }
@@ -165,6 +322,25 @@ public class KmcDao implements IKmcDao {
             configure();
             factory.close();
             factory = config.buildSessionFactory();
+            if (!hasSpiAllocation) {
+                LOG.info("No {} table, allocated SPIs are only unique within this process", SpiAllocator.TABLE);
+            }
+            resetSpiAllocation();
+            // replica session factories are rebuilt with the SA tables found on the primary
+            replicas.reset();
+            versioned = EnumSet.noneOf(FrameType.class);
+            counterVersioned = EnumSet.noneOf(FrameType.class);
+            for (FrameType type : getQueryTypes(FrameType.ALL)) {
+                if (updatedAt.contains(table(type))) {
+                    versioned.add(type);
+                }
+                if (version.contains(table(type))) {
+                    counterVersioned.add(type);
+                }
+            }
+            LOG.info("Active SA index change checks enabled for {}", versioned);
+            LOG.info("ARSN/IV versioning enabled for {}", counterVersioned);
+            resetSaIndex();
         } catch (HibernateException e) {
             throw new KmcException(e);
         }
@@ -182,10 +358,20 @@ public class KmcDao implements IKmcDao {
     @Override
     public void createSa(IDbSession dbSession, Integer spi, Byte tvfn, Short scid, Byte vcid, Byte mapid,
                          FrameType type) throws KmcException {
+        newSa(dbSession, spi, tvfn, scid, vcid, mapid, type);
+    }
+
+    private ISecAssn newSa(IDbSession dbSession, Integer spi, Byte tvfn, Short scid, Byte vcid, Byte mapid,
+                           FrameType type) throws KmcException {
         isReady();
         checkFrameType(type);
         if (spi == null) {
-            spi = getNextAvailableSpi(scid, type);
+            spi = getNextAvailableSpi(dbSession, scid, type);
+        } else if (getSa(dbSession, new SpiScid(spi, scid), type) != null) {
+            throw new KmcException(String.format("SA create failed: an SA with the SPI/SCID combination %d/%d " +
+                    "already exists", spi, scid));
+        } else {
+            spiAllocator.claim(type, scid, spi);
         }
         SpiScid  spiScid = new SpiScid(spi, scid);
         ISecAssn sa;
@@ -200,7 +386,9 @@ public class KmcDao implements IKmcDao {
         sa.setSaState(SA_UNKEYED);
         LOG.info("Creating SA {}/{}", spi, scid);
         dbSession.persist(sa);
+        afterCommit(dbSession, () -> activeSas.written(sa));
         LOG.info("Creating SA {}/{} done", spi, scid);
+        return sa;
     }
 
     @Override
@@ -209,8 +397,9 @@ public class KmcDao implements IKmcDao {
         checkFrameType(type);
         try (IDbSession session = newSession()) {
             session.beginTransaction();
-            createSa(session, spi, tvfn, scid, vcid, mapid, type);
+            ISecAssn sa = newSa(session, spi, tvfn, scid, vcid, mapid, type);
             session.commit();
+            return sa;
         } catch (Exception e) {
             LOG.error("Encountered unexpected error while creating SA with the following parameters: " +
                             "spi {}, tvfn {}, scid {}, vcid {}, mapid {}, type {} : {}", spi, tvfn, scid, vcid,
@@ -219,44 +408,71 @@ public class KmcDao implements IKmcDao {
                     e.getMessage());
             throw new KmcException("Unable to create SA due to error: ", e);
         }
-        return getSa(new SpiScid(spi, scid), type);
     }
 
-    private Integer getNextAvailableSpi(Short scid, FrameType type) throws KmcException {
+    private Integer getNextAvailableSpi(IDbSession dbSession, Short scid, FrameType type) throws KmcException {
         isReady();
         checkFrameType(type);
-        int spi;
-        try (Session session = factory.openSession()) {
-            Integer maxSpi = session
-                    .createQuery("SELECT max(sa.id.spi) " + SQL_FROM + " " + type.toString() + " sa WHERE sa.id" +
-                                    ".scid " +
-                                    "= :scid",
-                            Integer.class)
-                    .setParameter("scid", scid)
-                    .getSingleResult();
-            if (maxSpi == null) {
-                maxSpi = 0;
-            }
-            spi = maxSpi + 1;
-        } catch (HibernateException e) {
-            LOG.error("Encountered Hibernate error while querying for max SPI for SCID {}: {}", scid,
-                    e.getMessage());
-            throw new KmcException("Unable to get next available SPI due to Hibernate error: ", e);
+        try {
+            return spiAllocator.allocate(dbSession, type, scid, 1);
+        } catch (KmcException e) {
+            throw e;
         } catch (Exception e) {
-            LOG.error("Encountered unexpected error while querying for max SPI for SCID {}: {}", scid,
+            LOG.error("Encountered unexpected error while allocating an SPI for SCID {}: {}", scid,
                     e.getMessage());
             throw new KmcException("Unable to get next available SPI due to unexpected error: ", e);
         }
-        return spi;
+    }
+
+    /**
+     * Discard the SPI blocks reserved by this DAO, e.g. after the SPI allocation table has been reset
+     */
+    void resetSpiAllocation() {
+        spiAllocator = new SpiAllocator(this::newSession, hasSpiAllocation, spiBlockSize);
+    }
+
+    /**
+     * Discard the active SA index, e.g. after SA tables have been modified outside of this DAO
+     */
+    void resetSaIndex() {
+        activeSas = new ActiveSaIndex(this::newSession, versioned, ActiveSaIndex.DEFAULT_POLL_INTERVAL,
+                ActiveSaIndex.DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Run an action once the current transaction of a session commits, or right away if there is none
+     */
+    private void afterCommit(IDbSession session, Runnable action) {
+        Transaction tx = ((DbSession) session).getSession().getTransaction();
+        if (!tx.isActive()) {
+            action.run();
+            replicas.wrote();
+            return;
+        }
+        tx.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do before completion
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    action.run();
+                    replicas.wrote();
+                }
+            }
+        });
     }
 
     @Override
     public ISecAssn createSa(ISecAssn sa) throws KmcException {
         checkFrameType(sa.getType());
-        try (DbSession session = new DbSession(factory.openSession())) {
+        try (IDbSession session = newSession()) {
             session.beginTransaction();
             createSa(session, sa);
             session.commit();
+            return getSa(session, sa.getId(), sa.getType());
         } catch (HibernateException e) {
             LOG.error("Encountered Hibernate error while creating SA {}: {}", sa, e.getMessage());
             throw new KmcException("Unable to create SA due to Hibernate error: ", e);
@@ -264,7 +480,6 @@ public class KmcDao implements IKmcDao {
             LOG.error("Encountered unexpected error while creating SA {}: {}", sa, e.getMessage());
             throw new KmcException("Unable to create SA due to unexpected error: ", e);
         }
-        return getSa(sa.getId(), sa.getType());
     }
 
     @Override
@@ -277,13 +492,14 @@ public class KmcDao implements IKmcDao {
             throw new KmcException(String.format("Cannot create SA: %s", e.getMessage()));
         }
         if (sa.getSpi() == null) {
-            sa.setSpi(getNextAvailableSpi(sa.getScid(), sa.getType()));
+            sa.setSpi(getNextAvailableSpi(dbSession, sa.getScid(), sa.getType()));
         } else {
             ISecAssn exists = getSa(dbSession, sa.getId(), sa.getType());
             if (exists != null) {
                 throw new KmcException(String.format("SA create failed: an SA with the SPI/SCID combination %d/%d" +
                         " " + "already exists", sa.getSpi(), sa.getScid()));
             }
+            spiAllocator.claim(sa.getType(), sa.getScid(), sa.getSpi());
         }
         // validate more
         if (sa.getSaState() == null) {
@@ -292,9 +508,207 @@ public class KmcDao implements IKmcDao {
 
         LOG.info("Creating SA {}/{}", sa.getSpi(), sa.getScid());
         dbSession.persist(sa);
+        afterCommit(dbSession, () -> activeSas.written(sa));
         LOG.info("Creating SA {}/{} done", sa.getSpi(), sa.getScid());
     }
 
+    @Override
+    public SaImportResult createSas(Iterator<? extends ISecAssn> sas, boolean replace) throws KmcException {
+        return createSas(new Iterator<>() {
+            private int row = 1;
+
+            @Override
+            public boolean hasNext() {
+                return sas.hasNext();
+            }
+
+            @Override
+            public SaImportResult.Row next() {
+                return new SaImportResult.Row(row++, sas.next());
+            }
+        }, replace, new SaImportResult());
+    }
+
+    @Override
+    public SaImportResult createSas(Iterator<SaImportResult.Row> rows, boolean replace, SaImportResult result) throws
+            KmcException {
+        isReady();
+        List<ImportRow> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        int             row   = 0;
+        try {
+            while (rows.hasNext()) {
+                SaImportResult.Row next = rows.next();
+                row = next.getRow();
+                chunk.add(new ImportRow(row, next.getSa()));
+                if (chunk.size() == IMPORT_CHUNK_SIZE || !rows.hasNext()) {
+                    importChunk(chunk, replace, result);
+                    chunk.clear();
+                }
+            }
+        } catch (KmcException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("Encountered unexpected error while importing SAs at row {}: {}", row, e.getMessage());
+            throw new KmcException("Unable to import SAs due to unexpected error: ", e);
+        }
+        LOG.info("Imported SAs: {} created, {} replaced, {} failed", result.getCreated(), result.getReplaced(),
+                result.getErrors().size());
+        return result;
+    }
+
+    /**
+     * Import one chunk of SAs in a single transaction. If the batch fails, the transaction is rolled back and the
+     * SAs are retried one at a time, each in a new session, so that only the failing rows are reported.
+     */
+    private void importChunk(List<ImportRow> rows, boolean replace, SaImportResult result) throws Exception {
+        try (DbSession session = new DbSession(factory.openSession())) {
+            importChunk(session, rows, replace);
+        }
+        for (ImportRow r : rows) {
+            if (r.error != null) {
+                result.error(r.row, r.sa, r.error);
+            } else if (r.replace) {
+                result.replaced();
+            } else {
+                result.created();
+            }
+        }
+    }
+
+    private void importChunk(DbSession session, List<ImportRow> rows, boolean replace) throws Exception {
+        Session                             s        = session.getSession();
+        List<ImportRow>                     valid    = new ArrayList<>(rows.size());
+        Map<FrameType, Map<Short, Integer>> spiCount = new EnumMap<>(FrameType.class);
+        for (ImportRow r : rows) {
+            try {
+                checkFrameType(r.sa.getType());
+                SecAssnValidator.validate(r.sa);
+                if (r.sa.getSpi() == null) {
+                    spiCount.computeIfAbsent(r.sa.getType(), t -> new HashMap<>()).merge(r.sa.getScid(), 1,
+                            Integer::sum);
+                } else {
+                    spiAllocator.claim(r.sa.getType(), r.sa.getScid(), r.sa.getSpi());
+                }
+                valid.add(r);
+            } catch (KmcException e) {
+                r.error = String.format("Cannot create SA: %s", e.getMessage());
+            }
+        }
+
+        // one contiguous range of SPIs per frame type and SCID for the SAs without one
+        Map<FrameType, Map<Short, Integer>> nextSpi = new EnumMap<>(FrameType.class);
+        for (Map.Entry<FrameType, Map<Short, Integer>> entry : spiCount.entrySet()) {
+            Map<Short, Integer> next = nextSpi.computeIfAbsent(entry.getKey(), t -> new HashMap<>());
+            for (Map.Entry<Short, Integer> count : entry.getValue().entrySet()) {
+                next.put(count.getKey(), spiAllocator.allocate(session, entry.getKey(), count.getKey(),
+                        count.getValue()));
+            }
+        }
+
+        Map<FrameType, Set<SpiScid>> existing = findExisting(s, valid);
+        Map<FrameType, Set<SpiScid>> seen     = new EnumMap<>(FrameType.class);
+        List<ImportRow>              pending  = new ArrayList<>(valid.size());
+        for (ImportRow r : valid) {
+            ISecAssn sa = r.sa;
+            if (sa.getSpi() == null) {
+                sa.setSpi(nextSpi.get(sa.getType()).merge(sa.getScid(), 1, Integer::sum) - 1);
+            } else {
+                r.replace = existing.getOrDefault(sa.getType(), Set.of()).contains(sa.getId());
+            }
+            boolean dupe = !seen.computeIfAbsent(sa.getType(), t -> new HashSet<>()).add(sa.getId());
+            if (dupe || (r.replace && !replace)) {
+                r.error = String.format("SA create failed: an SA with the SPI/SCID combination %d/%d already " +
+                        "exists", sa.getSpi(), sa.getScid());
+            } else {
+                pending.add(r);
+            }
+        }
+
+        if (!pending.isEmpty() && !writeRows(session, pending)) {
+            // the batch failed, retry one at a time so that only the failing rows are reported. The failed session
+            // is not used again, Hibernate sessions are not usable after a failed flush.
+            for (ImportRow r : pending) {
+                try (DbSession rowSession = new DbSession(factory.openSession())) {
+                    writeRows(rowSession, List.of(r));
+                }
+            }
+        }
+    }
+
+    /**
+     * Write SAs in a single transaction
+     *
+     * @return true if the transaction was committed, otherwise the error is set on each SA
+     */
+    private boolean writeRows(DbSession session, List<ImportRow> rows) throws KmcException {
+        Session s = session.getSession();
+        session.beginTransaction();
+        try {
+            for (ImportRow r : rows) {
+                if (r.replace) {
+                    s.merge(r.sa);
+                } else {
+                    s.persist(r.sa);
+                }
+            }
+            s.flush();
+            session.commit();
+            rows.forEach(r -> {
+                r.error = null;
+                activeSas.written(r.sa);
+            });
+            replicas.wrote();
+            return true;
+        } catch (Exception e) {
+            LOG.warn("Import of {} SA(s) from row {} failed: {}", rows.size(), rows.get(0).row, e.getMessage());
+            if (session.isActive()) {
+                session.rollback();
+            }
+            rows.forEach(r -> r.error = String.format("Cannot create SA: %s", e.getMessage()));
+            return false;
+        } finally {
+            s.clear();
+        }
+    }
+
+    private Map<FrameType, Set<SpiScid>> findExisting(Session s, List<ImportRow> rows) {
+        Map<FrameType, Set<Short>>   scids = new EnumMap<>(FrameType.class);
+        Map<FrameType, Set<Integer>> spis  = new EnumMap<>(FrameType.class);
+        for (ImportRow r : rows) {
+            if (r.sa.getSpi() != null) {
+                scids.computeIfAbsent(r.sa.getType(), t -> new HashSet<>()).add(r.sa.getScid());
+                spis.computeIfAbsent(r.sa.getType(), t -> new HashSet<>()).add(r.sa.getSpi());
+            }
+        }
+        // the SCID and SPI lists select a superset of the chunk, the exact SPI/SCID pairs are matched in memory
+        Map<FrameType, Set<SpiScid>> existing = new EnumMap<>(FrameType.class);
+        for (Map.Entry<FrameType, Set<Short>> entry : scids.entrySet()) {
+            FrameType type = entry.getKey();
+            Set<SpiScid> ids = s.createQuery(SQL_FROM + " " + type.toString() + " sa WHERE sa.id.scid IN " +
+                            "(:scids) AND sa.id.spi IN (:spis)", type.getClazz())
+                    .setParameterList("scids", entry.getValue())
+                    .setParameterList("spis", spis.get(type))
+                    .stream().map(ISecAssn::getId).collect(Collectors.toSet());
+            existing.put(type, ids);
+        }
+        return existing;
+    }
+
+    /**
+     * An SA pending import
+     */
+    private static class ImportRow {
+        private final int      row;
+        private final ISecAssn sa;
+        private       boolean  replace;
+        private       String   error;
+
+        ImportRow(int row, ISecAssn sa) {
+            this.row = row;
+            this.sa = sa;
+        }
+    }
+
     @Override
     public void rekeySaEnc(IDbSession session, SpiScid id, String ekid, byte[] ecs, Short ecsLen, FrameType type) throws
                                                                                                                   KmcException {
@@ -310,6 +724,7 @@ public class KmcDao implements IKmcDao {
         sa.setEcsLen(ecsLen);
         sa.setSaState(SA_KEYED);
         session.merge(sa);
+        afterCommit(session, () -> activeSas.written(sa));
         LOG.info("Rekeying SA {}/{} for encryption complete", id.getSpi(), id.getScid());
     }
 
@@ -321,10 +736,10 @@ public class KmcDao implements IKmcDao {
             session.beginTransaction();
             rekeySaEnc(session, id, ekid, ecs, ecsLen, type);
             session.commit();
+            return getSa(session, id, type);
         } catch (Exception e) {
             throw new KmcException(e);
         }
-        return getSa(id, type);
     }
 
     @Override
@@ -343,6 +758,7 @@ public class KmcDao implements IKmcDao {
         sa.setAcsLen(acsLen);
         sa.setSaState(SA_KEYED);
         session.merge(sa);
+        afterCommit(session, () -> activeSas.written(sa));
         LOG.info("Rekeying SA {}/{} for authentication complete", id.getSpi(), id.getScid());
     }
 
@@ -354,18 +770,17 @@ public class KmcDao implements IKmcDao {
             session.beginTransaction();
             rekeySaAuth(session, id, akid, acs, acsLen, type);
             session.commit();
+            return getSa(session, id, type);
         } catch (Exception e) {
             throw new KmcException(e);
         }
-
-        return getSa(id, type);
     }
 
     @Override
     public void expireSa(IDbSession session, SpiScid id, FrameType type) throws KmcException {
         isReady();
         checkFrameType(type);
-        ISecAssn sa = getSa(id, type);
+        ISecAssn sa = getSa(session, id, type);
         if (sa == null) {
             throw new KmcException(String.format("SA %s does not exist, cannot expire", id));
         } else {
@@ -374,6 +789,7 @@ public class KmcDao implements IKmcDao {
             sa.setAkid(null);
             sa.setEkid(null);
             session.merge(sa);
+            afterCommit(session, () -> activeSas.written(sa));
             LOG.info("Expiring SA {}/{} done", id.getSpi(), id.getScid());
         }
     }
@@ -385,17 +801,17 @@ public class KmcDao implements IKmcDao {
             session.beginTransaction();
             expireSa(session, id, type);
             session.commit();
+            return getSa(session, id, type);
         } catch (Exception e) {
             throw new KmcException(e);
         }
-        return getSa(id, type);
     }
 
     @Override
     public void startSa(IDbSession session, SpiScid id, boolean force, FrameType type) throws KmcException {
         isReady();
         checkFrameType(type);
-        ISecAssn sa = getSa(id, type);
+        ISecAssn sa = getSa(session, id, type);
         if (sa == null) {
             throw new KmcStartException(String.format("SA %d/%d does not exist, cannot start", id.getSpi(),
                     id.getScid()));
@@ -403,39 +819,48 @@ public class KmcDao implements IKmcDao {
             throw new KmcStartException(String.format("SA %d/%d is already operational", id.getSpi(),
                     id.getScid()));
         } else {
-            Query<? extends ISecAssn> q =
-                    ((DbSession) session).getSession().createQuery(SQL_FROM + " " + type.toString() +
-                            " AS sa WHERE sa" +
-                            ".id.scid = :scid" +
-                            " AND " +
-                            "sa.tfvn = :tfvn" +
-                            " AND " +
-                            "sa.vcid = :vcid" +
-                            " AND " +
-                            "sa.mapid = :mapid" +
-                            " AND " +
-                            "sa.id.spi != :subjectSpi", ISecAssn.class);
-            q.setParameter("scid", sa.getId().getScid());
-            q.setParameter("tfvn", sa.getTfvn());
-            q.setParameter("vcid", sa.getVcid());
-            q.setParameter("mapid", sa.getMapid());
-            q.setParameter("subjectSpi", sa.getSpi());
-            List<? extends ISecAssn> sas = q.list();
-            for (ISecAssn s : sas) {
-                if (s.getSaState() == SA_OPERATIONAL) {
-                    if (force) {
-                        stopSa(s.getId(), type);
-                        LOG.info("SA {}/{} is already operational, stop has been forced", s.getSpi(), s.getScid());
-                    } else {
-                        throw new KmcStartException(String.format("SA %d/%d is already operational for GVCID " +
-                                        "(scid " + "%d, tfvn " + "%d, vcid %d, mapid %d)", s.getSpi(), s.getScid(),
-                                s.getScid(), s.getTfvn(), s.getVcid(), s.getMapid()));
-                    }
+            Session s = ((DbSession) session).getSession();
+            String  gvcid = "sa.id.scid = :scid AND sa.tfvn = :tfvn AND sa.vcid = :vcid AND sa.mapid = :mapid AND " +
+                    "sa.id.spi != :subjectSpi AND sa.saState = :operational";
+            if (force) {
+                // stop every other operational SA on the GVCID in one statement
+                int stopped = s.createMutationQuery("UPDATE " + type.toString() + " sa SET sa.saState = :keyed " +
+                                "WHERE " + gvcid)
+                        .setParameter("keyed", SA_KEYED)
+                        .setParameter("scid", sa.getId().getScid())
+                        .setParameter("tfvn", sa.getTfvn())
+                        .setParameter("vcid", sa.getVcid())
+                        .setParameter("mapid", sa.getMapid())
+                        .setParameter("subjectSpi", sa.getSpi())
+                        .setParameter("operational", SA_OPERATIONAL)
+                        .executeUpdate();
+                if (stopped > 0) {
+                    afterCommit(session, () -> activeSas.invalidate(type));
+                    LOG.info("{} operational SA(s) on the GVCID of SA {}/{}, stop has been forced", stopped,
+                            id.getSpi(), id.getScid());
+                }
+            } else {
+                List<? extends ISecAssn> active = s.createQuery(SQL_FROM + " " + type.toString() + " sa WHERE " +
+                                gvcid, type.getClazz())
+                        .setParameter("scid", sa.getId().getScid())
+                        .setParameter("tfvn", sa.getTfvn())
+                        .setParameter("vcid", sa.getVcid())
+                        .setParameter("mapid", sa.getMapid())
+                        .setParameter("subjectSpi", sa.getSpi())
+                        .setParameter("operational", SA_OPERATIONAL)
+                        .setMaxResults(1)
+                        .list();
+                if (!active.isEmpty()) {
+                    ISecAssn a = active.get(0);
+                    throw new KmcStartException(String.format("SA %d/%d is already operational for GVCID " +
+                                    "(scid " + "%d, tfvn " + "%d, vcid %d, mapid %d)", a.getSpi(), a.getScid(),
+                            a.getScid(), a.getTfvn(), a.getVcid(), a.getMapid()));
                 }
             }
             LOG.info("Starting SA {}/{}", id.getSpi(), id.getScid());
             sa.setSaState(SA_OPERATIONAL);
             session.merge(sa);
+            afterCommit(session, () -> activeSas.written(sa));
             LOG.info("Starting SA {}/{} done", id.getSpi(), id.getScid());
         }
     }
@@ -447,19 +872,19 @@ public class KmcDao implements IKmcDao {
             session.beginTransaction();
             startSa(session, id, force, type);
             session.commit();
+            return getSa(session, id, type);
         } catch (KmcStartException e) {
             throw e;
         } catch (Exception e) {
             throw new KmcException(e);
         }
-        return getSa(id, type);
     }
 
     @Override
     public void stopSa(IDbSession session, SpiScid id, FrameType type) throws KmcException {
         isReady();
         checkFrameType(type);
-        ISecAssn sa = getSa(id, type);
+        ISecAssn sa = getSa(session, id, type);
         if (sa == null) {
             throw new KmcStopException(String.format("SA %d/%d does not exist, cannot stop", id.getSpi(),
                     id.getScid()));
@@ -470,6 +895,7 @@ public class KmcDao implements IKmcDao {
             LOG.info("Stopping SA {}/{}", id.getSpi(), id.getScid());
             sa.setSaState(SA_KEYED);
             session.merge(sa);
+            afterCommit(session, () -> activeSas.written(sa));
             LOG.info("Stopping SA {}/{} done", id.getSpi(), id.getScid());
         }
     }
@@ -481,24 +907,25 @@ public class KmcDao implements IKmcDao {
             session.beginTransaction();
             stopSa(session, id, type);
             session.commit();
+            return getSa(session, id, type);
         } catch (KmcStopException e) {
             throw e;
         } catch (Exception e) {
             throw new KmcException(e);
         }
-        return getSa(id, type);
     }
 
     @Override
     public void deleteSa(IDbSession session, SpiScid id, FrameType type) throws KmcException {
         isReady();
         checkFrameType(type);
-        ISecAssn sa = getSa(id, type);
+        ISecAssn sa = getSa(session, id, type);
         if (sa == null) {
             throw new KmcException(String.format("SA %s does not exist, cannot delete", id));
         } else {
             LOG.info("Deleting SA {}/{}", id.getSpi(), id.getScid());
             session.remove(sa);
+            afterCommit(session, () -> activeSas.removed(type, id));
             LOG.info("Deleting SA {}/{} done", id.getSpi(), id.getScid());
         }
     }
@@ -517,6 +944,576 @@ public class KmcDao implements IKmcDao {
         }
     }
 
+    @Override
+    public SaBulkResult startSas(List<SpiScid> ids, boolean force, FrameType type, SaBulkResult.Mode mode) throws
+                                                                                                           KmcException {
+        return bulk(ids, type, mode, new BulkOp("start") {
+            private final Map<Gvcid, List<BulkRow>> operational = new HashMap<>();
+            private final Map<Gvcid, SpiScid>       starting    = new HashMap<>();
+
+            @Override
+            void prepare(Session s, Collection<BulkRow> rows) {
+                // operational SAs on the SCIDs of the request, matched to the GVCIDs in memory
+                Set<Short> scids = rows.stream().map(r -> r.id.getScid()).collect(Collectors.toSet());
+                if (!scids.isEmpty()) {
+                    selectRows(s, type, "sa.saState = :operational AND sa.id.scid IN (:scids)",
+                            Map.of("operational", SA_OPERATIONAL, "scids", scids))
+                            .forEach(r -> operational.computeIfAbsent(r.gvcid, g -> new ArrayList<>()).add(r));
+                }
+            }
+
+            @Override
+            String check(BulkRow row) {
+                if (row.state == SA_OPERATIONAL) {
+                    return String.format("SA %d/%d is already operational", row.id.getSpi(), row.id.getScid());
+                }
+                SpiScid other = starting.get(row.gvcid);
+                if (other != null) {
+                    return String.format("SA %d/%d is started on the same GVCID by this request", other.getSpi(),
+                            other.getScid());
+                }
+                List<BulkRow> active = operational.getOrDefault(row.gvcid, List.of());
+                if (!force && !active.isEmpty()) {
+                    BulkRow a = active.get(0);
+                    return String.format("SA %d/%d is already operational for GVCID (scid %d, tfvn %d, vcid %d, " +
+                                    "mapid %d)", a.id.getSpi(), a.id.getScid(), a.gvcid.getScid(), a.gvcid.getTfvn(),
+                            a.gvcid.getVcid(), a.gvcid.getMapid());
+                }
+                starting.put(row.gvcid, row.id);
+                return null;
+            }
+
+            @Override
+            void write(Session s, Map<Short, List<Integer>> spis) {
+                // SAs that passed are exactly the ones starting, stop the other operational SAs on their GVCIDs
+                Map<Short, List<Integer>> stop = new HashMap<>();
+                for (Gvcid gvcid : starting.keySet()) {
+                    for (BulkRow a : operational.getOrDefault(gvcid, List.of())) {
+                        stop.computeIfAbsent(a.id.getScid(), k -> new ArrayList<>()).add(a.id.getSpi());
+                    }
+                }
+                updateSpis(s, type, assignments("saState", SA_KEYED), stop);
+                updateSpis(s, type, assignments("saState", SA_OPERATIONAL), spis);
+            }
+        });
+    }
+
+    @Override
+    public SaBulkResult stopSas(List<SpiScid> ids, FrameType type, SaBulkResult.Mode mode) throws KmcException {
+        return bulk(ids, type, mode, new BulkOp("stop") {
+            @Override
+            String check(BulkRow row) {
+                return row.state == SA_OPERATIONAL ? null : String.format("SA %d/%d is not operational, cannot stop",
+                        row.id.getSpi(), row.id.getScid());
+            }
+
+            @Override
+            void write(Session s, Map<Short, List<Integer>> spis) {
+                updateSpis(s, type, assignments("saState", SA_KEYED), spis);
+            }
+        });
+    }
+
+    @Override
+    public SaBulkResult expireSas(List<SpiScid> ids, FrameType type, SaBulkResult.Mode mode) throws KmcException {
+        return bulk(ids, type, mode, new BulkOp("expire") {
+            @Override
+            void write(Session s, Map<Short, List<Integer>> spis) {
+                updateSpis(s, type, assignments("saState", SA_EXPIRE, "akid", null, "ekid", null), spis);
+            }
+        });
+    }
+
+    @Override
+    public SaBulkResult rekeySas(List<SpiScid> ids, String ekid, byte[] ecs, Short ecsLen, String akid, byte[] acs,
+                                 Short acsLen, FrameType type, SaBulkResult.Mode mode) throws KmcException {
+        if (ekid == null && akid == null) {
+            throw new KmcException("Cannot rekey SAs: an encryption or authentication key id is required");
+        }
+        Map<String, Object> values = assignments("saState", SA_KEYED);
+        if (ekid != null) {
+            values.put("ekid", ekid);
+            putIfNotNull(values, "ecs", ecs);
+            putIfNotNull(values, "ecsLen", ecsLen);
+        }
+        if (akid != null) {
+            values.put("akid", akid);
+            putIfNotNull(values, "acs", acs);
+            putIfNotNull(values, "acsLen", acsLen);
+        }
+        return bulk(ids, type, mode, new BulkOp("rekey") {
+            @Override
+            void write(Session s, Map<Short, List<Integer>> spis) {
+                updateSpis(s, type, values, spis);
+            }
+        });
+    }
+
+    @Override
+    public SaBulkResult resetArsns(List<SpiScid> ids, byte[] arsn, Short arsnLen, Short arsnw, FrameType type,
+                                   SaBulkResult.Mode mode) throws KmcException {
+        if (arsn == null || (arsnLen != null && arsn.length > arsnLen)) {
+            throw new KmcException("Cannot reset ARSN: ARSN is missing or larger than ARSN length in bytes");
+        }
+        Map<String, Object> values = assignments("arsn", arsn);
+        putIfNotNull(values, "arsnLen", arsnLen);
+        putIfNotNull(values, "arsnw", arsnw);
+        return bulk(ids, type, mode, new BulkOp("reset ARSN of") {
+            @Override
+            void write(Session s, Map<Short, List<Integer>> spis) {
+                updateSpis(s, type, values, spis);
+                bumpVersions(s, type, spis);
+            }
+        });
+    }
+
+    @Override
+    public SaBulkResult resetIvs(List<SpiScid> ids, byte[] iv, Short ivLen, FrameType type, SaBulkResult.Mode mode)
+            throws KmcException {
+        if (iv != null && ivLen != null && iv.length > ivLen) {
+            throw new KmcException("Cannot reset IV: IV is larger than IV length in bytes");
+        }
+        Map<String, Object> values = assignments("iv", iv);
+        putIfNotNull(values, "ivLen", ivLen);
+        return bulk(ids, type, mode, new BulkOp("reset IV of") {
+            @Override
+            void write(Session s, Map<Short, List<Integer>> spis) {
+                updateSpis(s, type, values, spis);
+                bumpVersions(s, type, spis);
+            }
+        });
+    }
+
+    @Override
+    public SaBulkResult deleteSas(List<SpiScid> ids, FrameType type, SaBulkResult.Mode mode) throws KmcException {
+        return bulk(ids, type, mode, new BulkOp("delete") {
+            @Override
+            void write(Session s, Map<Short, List<Integer>> spis) {
+                mutateSpis(s, "DELETE " + SQL_FROM + " " + type.toString() + " sa", Map.of(), spis);
+            }
+        });
+    }
+
+    /**
+     * Run a bulk operation in one transaction. The requested SAs are read with one query per SCID, checked in
+     * memory, and the ones that pass are written with set-based statements.
+     */
+    private SaBulkResult bulk(List<SpiScid> ids, FrameType type, SaBulkResult.Mode mode, BulkOp op) throws
+                                                                                                   KmcException {
+        isReady();
+        checkFrameType(type);
+        SaBulkResult result = new SaBulkResult(mode);
+        try (DbSession session = new DbSession(factory.openSession())) {
+            Session s = session.getSession();
+            session.beginTransaction();
+            try {
+                Map<SpiScid, BulkRow>     rows   = findRows(s, type, ids);
+                String[]                  errors = new String[ids.size()];
+                Set<SpiScid>              seen   = new HashSet<>();
+                Map<Short, List<Integer>> spis   = new HashMap<>();
+                boolean                   failed = false;
+                op.prepare(s, rows.values());
+                for (int i = 0; i < ids.size(); i++) {
+                    SpiScid id = ids.get(i);
+                    if (id == null || id.getSpi() == null || id.getScid() == null) {
+                        errors[i] = "SA id must have an SPI and SCID";
+                    } else if (!seen.add(id)) {
+                        errors[i] = String.format("SA %d/%d is listed more than once", id.getSpi(), id.getScid());
+                    } else if (!rows.containsKey(id)) {
+                        errors[i] = String.format("SA %d/%d does not exist, cannot %s", id.getSpi(), id.getScid(),
+                                op.name);
+                    } else {
+                        errors[i] = op.check(rows.get(id));
+                    }
+                    if (errors[i] == null) {
+                        spis.computeIfAbsent(id.getScid(), k -> new ArrayList<>()).add(id.getSpi());
+                    } else {
+                        failed = true;
+                    }
+                }
+
+                boolean apply = !failed || mode == SaBulkResult.Mode.BEST_EFFORT;
+                if (apply && !spis.isEmpty()) {
+                    op.write(s, spis);
+                    afterCommit(session, () -> activeSas.invalidate(type));
+                }
+                session.commit();
+                result.setCommitted(apply);
+                for (int i = 0; i < ids.size(); i++) {
+                    if (errors[i] != null) {
+                        result.failure(ids.get(i), errors[i]);
+                    } else if (apply) {
+                        result.success(ids.get(i));
+                    } else {
+                        result.failure(ids.get(i), "Not applied, another SA in the request failed");
+                    }
+                }
+            } catch (Exception e) {
+                if (session.isActive()) {
+                    session.rollback();
+                }
+                throw e;
+            }
+        } catch (KmcException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("Encountered unexpected error while bulk {} of {} {} SAs: {}", op.name, ids.size(), type.name(),
+                    e.getMessage());
+            throw new KmcException(String.format("Unable to %s SAs due to unexpected error: ", op.name), e);
+        }
+        LOG.info("Bulk {} of {} {} SA(s): {} applied, {} failed", op.name, ids.size(), type.name(),
+                result.getSucceeded(), result.getFailed());
+        return result;
+    }
+
+    private Map<SpiScid, BulkRow> findRows(Session s, FrameType type, List<SpiScid> ids) {
+        Map<Short, List<Integer>> spis = new HashMap<>();
+        for (SpiScid id : ids) {
+            if (id != null && id.getSpi() != null && id.getScid() != null) {
+                spis.computeIfAbsent(id.getScid(), k -> new ArrayList<>()).add(id.getSpi());
+            }
+        }
+        Map<SpiScid, BulkRow> rows = new HashMap<>();
+        forEachChunk(spis, (scid, chunk) -> selectRows(s, type, "sa.id.scid = :scid AND sa.id.spi IN (:spis)",
+                Map.of("scid", scid, "spis", chunk)).forEach(r -> rows.put(r.id, r)));
+        return rows;
+    }
+
+    private List<BulkRow> selectRows(Session s, FrameType type, String where, Map<String, Object> params) {
+        Query<Object[]> q = s.createQuery("SELECT sa.id.spi, sa.id.scid, sa.saState, sa.tfvn, sa.vcid, sa.mapid " +
+                SQL_FROM + " " + type.toString() + " sa WHERE " + where, Object[].class);
+        params.forEach((name, value) -> {
+            if (value instanceof Collection<?> values) {
+                q.setParameterList(name, values);
+            } else {
+                q.setParameter(name, value);
+            }
+        });
+        return q.list().stream().map(BulkRow::new).toList();
+    }
+
+    private void updateSpis(Session s, FrameType type, Map<String, Object> values, Map<Short, List<Integer>> spis) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder       hql    = new StringBuilder("UPDATE " + type.toString() + " sa SET ");
+        String              sep    = "";
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            hql.append(sep).append("sa.").append(value.getKey());
+            if (value.getValue() == null) {
+                hql.append(" = NULL");
+            } else {
+                hql.append(" = :").append(value.getKey());
+                params.put(value.getKey(), value.getValue());
+            }
+            sep = ", ";
+        }
+        mutateSpis(s, hql.toString(), params, spis);
+    }
+
+    private void mutateSpis(Session s, String statement, Map<String, Object> params, Map<Short, List<Integer>> spis) {
+        forEachChunk(spis, (scid, chunk) -> {
+            MutationQuery q = s.createMutationQuery(statement + " WHERE sa.id.scid = :scid AND sa.id.spi IN (:spis)")
+                    .setParameter("scid", scid)
+                    .setParameterList("spis", chunk);
+            params.forEach(q::setParameter);
+            q.executeUpdate();
+        });
+    }
+
+    private void forEachChunk(Map<Short, List<Integer>> spis, BiConsumer<Short, List<Integer>> action) {
+        for (Map.Entry<Short, List<Integer>> entry : spis.entrySet()) {
+            List<Integer> all = entry.getValue();
+            for (int i = 0; i < all.size(); i += BULK_STATEMENT_SIZE) {
+                action.accept(entry.getKey(), all.subList(i, Math.min(i + BULK_STATEMENT_SIZE, all.size())));
+            }
+        }
+    }
+
+    private static Map<String, Object> assignments(Object... pairs) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            values.put((String) pairs[i], pairs[i + 1]);
+        }
+        return values;
+    }
+
+    private static void putIfNotNull(Map<String, Object> values, String field, Object value) {
+        if (value != null) {
+            values.put(field, value);
+        }
+    }
+
+    /**
+     * A bulk operation, checked per SA and written for all SAs that passed at once
+     */
+    private abstract class BulkOp {
+        private final String name;
+
+        BulkOp(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Read what the checks need, once per request
+         */
+        void prepare(Session s, Collection<BulkRow> rows) {
+        }
+
+        /**
+         * Check one existing SA, in request order
+         *
+         * @return error message, or null if the operation can be applied
+         */
+        String check(BulkRow row) {
+            return null;
+        }
+
+        /**
+         * Write the SAs that passed, by SCID
+         */
+        abstract void write(Session s, Map<Short, List<Integer>> spis);
+    }
+
+    /**
+     * State of an SA read for a bulk operation
+     */
+    private static class BulkRow {
+        private final SpiScid id;
+        private final short   state;
+        private final Gvcid   gvcid;
+
+        BulkRow(Object[] row) {
+            this.id = new SpiScid((Integer) row[0], (Short) row[1]);
+            this.state = (Short) row[2];
+            this.gvcid = new Gvcid((Byte) row[3], (Short) row[1], (Byte) row[4], (Byte) row[5]);
+        }
+    }
+
+    @Override
+    public SaCounters getCounters(SpiScid id, FrameType type) throws KmcException {
+        isReady();
+        checkFrameType(type);
+        try (DbSession session = new DbSession(factory.openSession())) {
+            return readCounters(session.getSession(), id, type);
+        } catch (Exception e) {
+            LOG.error("Encountered unexpected error while reading counters of SA {}/{}: {}", id.getSpi(),
+                    id.getScid(), e.getMessage());
+            throw new KmcException("Unable to read SA counters due to unexpected error: ", e);
+        }
+    }
+
+    @Override
+    public SaCounters compareAndSetArsn(SaCounters expected, byte[] arsn, Short arsnLen, Short arsnw) throws
+                                                                                                      KmcException {
+        if (arsn == null || (arsnLen != null && arsn.length > arsnLen)) {
+            throw new KmcException("Cannot set ARSN: ARSN is missing or larger than ARSN length in bytes");
+        }
+        Map<String, Object> values = assignments(ARSN, arsn);
+        putIfNotNull(values, ARSN_LEN, arsnLen);
+        putIfNotNull(values, ARSNW, arsnw);
+        return compareAndSet(expected, ARSN, expected.getArsn(), values);
+    }
+
+    @Override
+    public SaCounters compareAndSetIv(SaCounters expected, byte[] iv, Short ivLen) throws KmcException {
+        if (iv == null || (ivLen != null && iv.length > ivLen)) {
+            throw new KmcException("Cannot set IV: IV is missing or larger than IV length in bytes");
+        }
+        Map<String, Object> values = assignments(IV, iv);
+        putIfNotNull(values, IV_LEN, ivLen);
+        return compareAndSet(expected, IV, expected.getIv(), values);
+    }
+
+    @Override
+    public SaCounters incrementArsn(SpiScid id, FrameType type, long n) throws KmcException {
+        return increment(id, type, n, ARSN, SaCounters::getArsn);
+    }
+
+    @Override
+    public SaCounters incrementIv(SpiScid id, FrameType type, long n) throws KmcException {
+        return increment(id, type, n, IV, SaCounters::getIv);
+    }
+
+    private SaCounters compareAndSet(SaCounters expected, String column, byte[] current, Map<String, Object> values)
+            throws KmcException {
+        isReady();
+        FrameType type = expected.getType();
+        checkFrameType(type);
+        if (counterVersioned.contains(type) && expected.getVersion() == null) {
+            throw new KmcException(String.format("Cannot set %s of SA %d/%d: counters were read without a version",
+                    column.toUpperCase(), expected.getId().getSpi(), expected.getId().getScid()));
+        }
+        try (DbSession session = new DbSession(factory.openSession())) {
+            session.beginTransaction();
+            try {
+                SaCounters written = compareAndSet(session, expected, column, current, values);
+                session.commit();
+                return written;
+            } catch (Exception e) {
+                if (session.isActive()) {
+                    session.rollback();
+                }
+                throw e;
+            }
+        } catch (Exception e) {
+            LOG.error("Encountered unexpected error while setting {} of SA {}/{}: {}", column.toUpperCase(),
+                    expected.getId().getSpi(), expected.getId().getScid(), e.getMessage());
+            throw new KmcException(String.format("Unable to set %s due to unexpected error: ", column.toUpperCase()),
+                    e);
+        }
+    }
+
+    private SaCounters increment(SpiScid id, FrameType type, long n, String column,
+                                 Function<SaCounters, byte[]> counter) throws KmcException {
+        isReady();
+        checkFrameType(type);
+        String name = column.toUpperCase();
+        if (n <= 0) {
+            throw new KmcException(String.format("Cannot increment %s by %d, the increment must be positive", name,
+                    n));
+        }
+        try (DbSession session = new DbSession(factory.openSession())) {
+            for (int attempt = 0; attempt < COUNTER_RETRIES; attempt++) {
+                session.beginTransaction();
+                try {
+                    SaCounters current = readCounters(session.getSession(), id, type);
+                    if (current == null || counter.apply(current) == null) {
+                        throw new KmcException(String.format("SA %d/%d does not exist or has no %s, cannot " +
+                                "increment", id.getSpi(), id.getScid(), name));
+                    }
+                    byte[] next = addUnsigned(counter.apply(current), n);
+                    if (next == null) {
+                        throw new KmcException(String.format("Cannot increment %s of SA %d/%d by %d, it would " +
+                                "overflow", name, id.getSpi(), id.getScid(), n));
+                    }
+                    SaCounters written = compareAndSet(session, current, column, counter.apply(current),
+                            assignments(column, next));
+                    session.commit();
+                    if (written != null) {
+                        return written;
+                    }
+                } catch (Exception e) {
+                    if (session.isActive()) {
+                        session.rollback();
+                    }
+                    throw e;
+                }
+            }
+        } catch (KmcException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("Encountered unexpected error while incrementing {} of SA {}/{}: {}", name, id.getSpi(),
+                    id.getScid(), e.getMessage());
+            throw new KmcException(String.format("Unable to increment %s due to unexpected error: ", name), e);
+        }
+        throw new KmcException(String.format("Unable to increment %s of SA %d/%d, it was written by someone else %d " +
+                "times in a row", name, id.getSpi(), id.getScid(), COUNTER_RETRIES));
+    }
+
+    /**
+     * Write counter columns of an SA with a single statement, conditional on the value read and, if the SA table has
+     * a version column, on the version read. The value is checked even with a version, since writers outside SA
+     * management, e.g. CryptoLib, update the ARSN and IV without incrementing the version.
+     *
+     * @return counters as written, null if the SA was written by someone else
+     */
+    private SaCounters compareAndSet(DbSession session, SaCounters expected, String column, byte[] current,
+                                     Map<String, Object> values) {
+        FrameType     type      = expected.getType();
+        boolean       versioned = counterVersioned.contains(type);
+        StringBuilder sql       = new StringBuilder("UPDATE " + table(type) + " SET ");
+        for (String c : values.keySet()) {
+            sql.append(c).append(" = :").append(c).append(", ");
+        }
+        if (versioned) {
+            sql.append(VERSION_COLUMN).append(" = ").append(VERSION_COLUMN).append(" + 1, ");
+        }
+        sql.setLength(sql.length() - 2);
+        sql.append(" WHERE spi = :spi AND scid = :scid AND ");
+        if (versioned) {
+            sql.append(VERSION_COLUMN).append(" = :expected AND ");
+        }
+        sql.append(column).append(current == null ? " IS NULL" : " = :current");
+        MutationQuery q = session.getSession().createNativeMutationQuery(sql.toString())
+                .setParameter("spi", expected.getId().getSpi())
+                .setParameter("scid", expected.getId().getScid());
+        values.forEach(q::setParameter);
+        if (versioned) {
+            q.setParameter("expected", expected.getVersion());
+        }
+        if (current != null) {
+            q.setParameter("current", current);
+        }
+        if (q.executeUpdate() == 0) {
+            LOG.info("{} of SA {}/{} was written by someone else, not set", column.toUpperCase(),
+                    expected.getId().getSpi(), expected.getId().getScid());
+            return null;
+        }
+        SaCounters written = new SaCounters(expected.getId(), type,
+                (byte[]) values.getOrDefault(ARSN, expected.getArsn()),
+                (Short) values.getOrDefault(ARSN_LEN, expected.getArsnLen()),
+                (Short) values.getOrDefault(ARSNW, expected.getArsnw()),
+                (byte[]) values.getOrDefault(IV, expected.getIv()),
+                (Short) values.getOrDefault(IV_LEN, expected.getIvLen()),
+                versioned ? expected.getVersion() + 1 : null);
+        afterCommit(session, () -> activeSas.countersWritten(written));
+        return written;
+    }
+
+    private SaCounters readCounters(Session s, SpiScid id, FrameType type) {
+        boolean versioned = counterVersioned.contains(type);
+        List<Object[]> rows = s.createNativeQuery(String.format("SELECT %s, %s, %s, %s, %s%s FROM %s WHERE spi = " +
+                                ":spi AND scid = :scid", ARSN, ARSN_LEN, ARSNW, IV, IV_LEN,
+                        versioned ? ", " + VERSION_COLUMN : "", table(type)), Object[].class)
+                .setParameter("spi", id.getSpi())
+                .setParameter("scid", id.getScid())
+                .list();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        return new SaCounters(id, type, (byte[]) row[0], toShort(row[1]), toShort(row[2]), (byte[]) row[3],
+                toShort(row[4]), versioned ? ((Number) row[5]).longValue() : null);
+    }
+
+    /**
+     * Increment the version of SAs whose ARSN or IV were written by a statement that does not maintain it
+     */
+    private void bumpVersions(Session s, FrameType type, Map<Short, List<Integer>> spis) {
+        if (!counterVersioned.contains(type)) {
+            return;
+        }
+        forEachChunk(spis, (scid, chunk) -> s.createNativeMutationQuery(String.format("UPDATE %s SET %s = %s + 1 " +
+                        "WHERE scid = :scid AND spi IN (:spis)", table(type), VERSION_COLUMN, VERSION_COLUMN))
+                .setParameter("scid", scid)
+                .setParameterList("spis", chunk)
+                .executeUpdate());
+    }
+
+    /**
+     * Add to a big-endian unsigned number, keeping its width
+     *
+     * @return sum, or null if it does not fit in the width of the number
+     */
+    static byte[] addUnsigned(byte[] value, long n) {
+        BigInteger sum = new BigInteger(1, value).add(BigInteger.valueOf(n));
+        if (sum.bitLength() > value.length * 8) {
+            return null;
+        }
+        byte[] bytes  = sum.toByteArray();
+        byte[] result = new byte[value.length];
+        int    len    = Math.min(bytes.length, result.length);
+        System.arraycopy(bytes, bytes.length - len, result, result.length - len, len);
+        return result;
+    }
+
+    private static Short toShort(Object value) {
+        return value == null ? null : ((Number) value).shortValue();
+    }
+
+    private static String table(FrameType type) {
+        return type.getClazz().getAnnotation(Table.class).name();
+    }
+
     @Override
     public ISecAssn getSa(IDbSession session, SpiScid id, FrameType type) throws KmcException {
         isReady();
@@ -527,6 +1524,7 @@ public class KmcDao implements IKmcDao {
     @Override
     public ISecAssn getSa(SpiScid id, FrameType type) throws KmcException {
         checkFrameType(type);
+        // single SAs are read before they are updated, a lagging replica would have the update undo recent writes
         try (IDbSession session = newSession()) {
             return getSa(session, id, type);
         } catch (KmcException e) {
@@ -548,7 +1546,7 @@ public class KmcDao implements IKmcDao {
     @Override
     public List<ISecAssn> getSas(FrameType type) throws KmcException {
         checkFrameType(type);
-        try (IDbSession session = newSession()) {
+        return read(session -> {
             if (type == FrameType.ALL) {
                 List<ISecAssn> sas = new ArrayList<>();
                 sas.addAll(getSas(session, FrameType.TC));
@@ -562,6 +1560,80 @@ public class KmcDao implements IKmcDao {
             } else {
                 return getSas(session, type);
             }
+        });
+    }
+
+    @Override
+    public SaPage getSas(SaQuery query) throws KmcException {
+        isReady();
+        checkFrameType(query.getType());
+        List<FrameType> types     = getQueryTypes(query.getType());
+        FrameType       afterType = query.getAfterType();
+        if (afterType != null && !types.contains(afterType)) {
+            throw new KmcException("invalid page token for this query");
+        }
+
+        // fetch one more than the page size to find out if there is a next page
+        int max = query.getLimit() + 1;
+        List<ISecAssn> sas = read(session -> {
+            List<ISecAssn> found = new ArrayList<>(max);
+            for (FrameType type : types) {
+                if (afterType != null && type.ordinal() < afterType.ordinal()) {
+                    continue;
+                }
+                SpiScid after = type == afterType ? query.getAfter() : null;
+                found.addAll(getSasPage(session, type, query, after, max - found.size()));
+                if (found.size() == max) {
+                    break;
+                }
+            }
+            return found;
+        });
+
+        if (sas.size() < max) {
+            return new SaPage(sas, null);
+        }
+        List<ISecAssn> page = new ArrayList<>(sas.subList(0, query.getLimit()));
+        ISecAssn       last = page.get(page.size() - 1);
+        return new SaPage(page, query.nextPageToken(last.getType(), last.getId()));
+    }
+
+    @Override
+    public Stream<ISecAssn> streamSas(SaQuery query) throws KmcException {
+        isReady();
+        checkFrameType(query.getType());
+        List<FrameType>       types   = getQueryTypes(query.getType());
+        ReplicaRouter.Replica replica = replicas.select();
+        IDbSession            session = replica != null ? replica.newSession() : newSession();
+        // each frame type is scrolled in turn, only one cursor is open at a time
+        return types.stream()
+                .flatMap(type -> scrollSas(session, type, query))
+                .onClose(() -> {
+                    try {
+                        session.close();
+                    } catch (Exception e) {
+                        LOG.warn("Error closing SA stream session", e);
+                    }
+                });
+    }
+
+    /**
+     * Run a read on a healthy read replica, or on the primary if there is none or the read fails on the replica
+     */
+    private <T> T read(Read<T> read) throws KmcException {
+        isReady();
+        ReplicaRouter.Replica replica = replicas.select();
+        if (replica != null) {
+            try (IDbSession session = replica.newSession()) {
+                return read.apply(session);
+            } catch (KmcException e) {
+                throw e;
+            } catch (Exception e) {
+                replicas.failed(replica, e);
+            }
+        }
+        try (IDbSession session = newSession()) {
+            return read.apply(session);
         } catch (KmcException e) {
             throw e;
         } catch (Exception e) {
@@ -569,6 +1641,87 @@ public class KmcDao implements IKmcDao {
         }
     }
 
+    @FunctionalInterface
+    private interface Read<T> {
+        T apply(IDbSession session) throws KmcException;
+    }
+
+    private Stream<ISecAssn> scrollSas(IDbSession session, FrameType type, SaQuery query) {
+        Session s = ((DbSession) session).getSession();
+        // rows are detached once read so the persistence context does not grow with the result set
+        return createSasQuery(session, type, query, null)
+                .setReadOnly(true)
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .stream()
+                .map(o -> {
+                    s.detach(o);
+                    return (ISecAssn) o;
+                });
+    }
+
+    private List<FrameType> getQueryTypes(FrameType type) {
+        List<FrameType> types = new ArrayList<>();
+        if (type == FrameType.ALL) {
+            types.add(FrameType.TC);
+            if (hasTm) {
+                types.add(FrameType.TM);
+            }
+            if (hasAos) {
+                types.add(FrameType.AOS);
+            }
+        } else {
+            types.add(type);
+        }
+        return types;
+    }
+
+    private List<ISecAssn> getSasPage(IDbSession session, FrameType type, SaQuery query, SpiScid after,
+                                      int max) {
+        return createSasQuery(session, type, query, after).setMaxResults(max).list().stream()
+                .map(o -> (ISecAssn) o).toList();
+    }
+
+    private Query<? extends ISecAssn> createSasQuery(IDbSession session, FrameType type, SaQuery query,
+                                                     SpiScid after) {
+        StringBuilder       hql    = new StringBuilder(SQL_FROM + " " + type.toString() + " sa WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        addFilter(hql, params, "sa.id.scid = :scid", "scid", query.getScid());
+        addFilter(hql, params, "sa.id.spi >= :spiMin", "spiMin", query.getSpiMin());
+        addFilter(hql, params, "sa.id.spi <= :spiMax", "spiMax", query.getSpiMax());
+        addFilter(hql, params, "sa.vcid = :vcid", "vcid", query.getVcid());
+        addFilter(hql, params, "sa.mapid = :mapid", "mapid", query.getMapid());
+        addFilter(hql, params, "sa.saState = :saState", "saState", query.getSaState());
+        addFilter(hql, params, "sa.ekid = :ekid", "ekid", query.getEkid());
+        addFilter(hql, params, "sa.akid = :akid", "akid", query.getAkid());
+
+        String first  = query.getSort() == SaQuery.Sort.SPI ? "sa.id.spi" : "sa.id.scid";
+        String second = query.getSort() == SaQuery.Sort.SPI ? "sa.id.scid" : "sa.id.spi";
+        String dir    = query.isDescending() ? "DESC" : "ASC";
+        if (after != null) {
+            // keyset pagination, continue after the last SA of the previous page
+            String op = query.isDescending() ? "<" : ">";
+            hql.append(String.format(" AND (%1$s %3$s :afterFirst OR (%1$s = :afterFirst AND %2$s %3$s " +
+                    ":afterSecond))", first, second, op));
+            boolean spiFirst = query.getSort() == SaQuery.Sort.SPI;
+            params.put("afterFirst", spiFirst ? after.getSpi() : after.getScid());
+            params.put("afterSecond", spiFirst ? after.getScid() : after.getSpi());
+        }
+        hql.append(String.format(" ORDER BY %s %s, %s %s", first, dir, second, dir));
+
+        Query<? extends ISecAssn> q = ((DbSession) session).getSession()
+                .createQuery(hql.toString(), type.getClazz());
+        params.forEach(q::setParameter);
+        return q;
+    }
+
+    private void addFilter(StringBuilder hql, Map<String, Object> params, String clause, String name,
+                           Object value) {
+        if (value != null) {
+            hql.append(" AND ").append(clause);
+            params.put(name, value);
+        }
+    }
+
     private void checkFrameType(FrameType type) throws KmcException {
         if (type == FrameType.TM && !hasTm) {
             throw new KmcException("TM frame type not supported");
@@ -578,7 +1731,7 @@ public class KmcDao implements IKmcDao {
     }
 
     /**
-     * Get active SAs
+     * Get active SAs. Served from the in-process active SA index, see {@link #getSaIndexStats()}.
      *
      * @param type frame type
      * @return active SAs
@@ -587,15 +1740,48 @@ public class KmcDao implements IKmcDao {
     public List<ISecAssn> getActiveSas(FrameType type) throws KmcException {
         isReady();
         checkFrameType(type);
-        try (IDbSession session = newSession()) {
-            Query<? extends ISecAssn> query = ((DbSession) session).getSession()
-                    .createQuery(SQL_FROM + " " + type.toString() + " as sa WHERE sa.saState = :state",
-                            type.getClazz());
-            query.setParameter("state", SA_OPERATIONAL);
-            return query.stream().map(o -> (ISecAssn) o).toList();
-        } catch (Exception e) {
-            throw new KmcException(e);
+        List<ISecAssn> sas = new ArrayList<>();
+        for (FrameType t : getQueryTypes(type)) {
+            sas.addAll(activeSas.getActive(t));
         }
+        return sas;
+    }
+
+    /**
+     * Get the active SA of a GVCID. Served from the in-process active SA index.
+     *
+     * @param type  frame type
+     * @param gvcid global virtual channel id
+     * @return active SA, or null if there is none
+     * @throws KmcException exception
+     */
+    public ISecAssn getActiveSa(FrameType type, Gvcid gvcid) throws KmcException {
+        isReady();
+        checkFrameType(type);
+        return activeSas.getActive(type, gvcid.getTfvn(), gvcid.getScid(), gvcid.getVcid(), gvcid.getMapid());
+    }
+
+    /**
+     * Get an SA if it is active. Served from the in-process active SA index.
+     *
+     * @param id   spi + scid
+     * @param type frame type
+     * @return active SA, or null if the SA does not exist or is not active
+     * @throws KmcException exception
+     */
+    public ISecAssn getActiveSa(SpiScid id, FrameType type) throws KmcException {
+        isReady();
+        checkFrameType(type);
+        return activeSas.getActive(type, id);
+    }
+
+    /**
+     * Get the hit, miss and reload counters of the active SA index
+     *
+     * @return active SA index counters
+     */
+    public SaIndexStats getSaIndexStats() {
+        return activeSas == null ? new SaIndexStats(0, 0, 0, 0) : activeSas.getStats();
     }
 
     @Override
@@ -604,6 +1790,8 @@ public class KmcDao implements IKmcDao {
         checkFrameType(sa.getType());
         LOG.info("Updating SA {}/{}", sa.getId().getSpi(), sa.getId().getScid());
         session.merge(sa);
+        bumpVersions(((DbSession) session).getSession(), sa.getType(), Map.of(sa.getScid(), List.of(sa.getSpi())));
+        afterCommit(session, () -> activeSas.written(sa));
         LOG.info("Updated SA {}/{}", sa.getId().getSpi(), sa.getId().getScid());
     }
 
@@ -614,16 +1802,17 @@ public class KmcDao implements IKmcDao {
             session.beginTransaction();
             updateSa(session, sa);
             session.commit();
+            return getSa(session, sa.getId(), sa.getType());
         } catch (KmcException e) {
             throw e;
         } catch (Exception e) {
             throw new KmcException(e);
         }
-        return getSa(sa.getId(), sa.getType());
     }
 
     @Override
     public void close() throws KmcException {
+        replicas.close();
         if (factory == null) {
             return;
         }
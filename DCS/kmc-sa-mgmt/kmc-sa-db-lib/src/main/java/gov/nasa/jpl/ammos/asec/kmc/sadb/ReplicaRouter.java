@@ -0,0 +1,260 @@
+package gov.nasa.jpl.ammos.asec.kmc.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Routes reads to the read replicas of the SADB.
+ * <p>
+ * A replica is used while it is healthy: a connection to it is valid and, unless the lag check is disabled, it is no
+ * further behind the primary than the maximum lag. Health is checked on the read path at most once per check interval,
+ * and a replica that fails a read is unhealthy until its next check. Healthy replicas are used in turn, and reads go to
+ * the primary when there is none.
+ * <p>
+ * A thread that committed a write reads from the primary for the sticky period afterwards, so it sees its own writes
+ * even when the replicas lag behind.
+ */
+class ReplicaRouter implements AutoCloseable {
+    /**
+     * Default maximum replication lag of a replica, in milliseconds
+     */
+    static final long     DEFAULT_MAX_LAG        = 5000;
+    /**
+     * Default period after a write during which the writing thread reads from the primary, in milliseconds
+     */
+    static final long     DEFAULT_STICKY         = 5000;
+    /**
+     * Default interval between health checks of a replica, in milliseconds
+     */
+    static final long     DEFAULT_CHECK_INTERVAL = 5000;
+    /**
+     * Replication lag reported by MariaDB, a server that is not a replica has no lag
+     */
+    static final LagProbe MARIADB_LAG            = conn -> {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SHOW SLAVE STATUS")) {
+            if (!rs.next()) {
+                return 0;
+            }
+            long seconds = rs.getLong("Seconds_Behind_Master");
+            // replication is stopped
+            return rs.wasNull() ? Long.MAX_VALUE : TimeUnit.SECONDS.toMillis(seconds);
+        }
+    };
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private final List<Replica>                    replicas  = new ArrayList<>();
+    private final Function<String, SessionFactory> factories;
+    private final LagProbe                         probe;
+    private final long                             maxLag;
+    private final long                             sticky;
+    private final long                             checkInterval;
+    private final AtomicInteger                    next      = new AtomicInteger();
+    private final ThreadLocal<Long>                lastWrite = new ThreadLocal<>();
+
+    /**
+     * Replication lag of a database server
+     */
+    @FunctionalInterface
+    interface LagProbe {
+        /**
+         * Get the replication lag
+         *
+         * @param conn connection to the replica
+         * @return lag in milliseconds, {@link Long#MAX_VALUE} if the replica is not replicating
+         * @throws SQLException if the lag could not be read
+         */
+        long lag(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param urls          replica connection URLs, reads go to the primary when empty
+     * @param factories     session factory builder, called with a replica URL
+     * @param probe         replication lag probe
+     * @param maxLag        maximum replication lag of a replica in milliseconds, negative to disable the lag check
+     * @param sticky        period after a write during which the writing thread reads from the primary, in
+     *                      milliseconds
+     * @param checkInterval interval between health checks of a replica, in milliseconds
+     */
+    ReplicaRouter(List<String> urls, Function<String, SessionFactory> factories, LagProbe probe, long maxLag,
+                  long sticky, long checkInterval) {
+        urls.forEach(url -> replicas.add(new Replica(url)));
+        this.factories = factories;
+        this.probe = probe;
+        this.maxLag = maxLag;
+        this.sticky = TimeUnit.MILLISECONDS.toNanos(sticky);
+        this.checkInterval = TimeUnit.MILLISECONDS.toNanos(checkInterval);
+    }
+
+    /**
+     * Select the replica for a read
+     *
+     * @return healthy replica, or null if the read goes to the primary
+     */
+    Replica select() {
+        if (replicas.isEmpty() || isSticky()) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.isHealthy()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record a committed write of the current thread
+     */
+    void wrote() {
+        if (!replicas.isEmpty()) {
+            lastWrite.set(System.nanoTime());
+        }
+    }
+
+    /**
+     * Mark a replica unhealthy after a failed read
+     *
+     * @param replica replica
+     * @param e       read error
+     */
+    void failed(Replica replica, Exception e) {
+        LOG.warn("Read from replica {} failed: {}", replica.url, e.getMessage());
+        replica.setHealthy(false);
+    }
+
+    /**
+     * Discard the session factories of the replicas, e.g. after the mapped SA tables have changed. They are rebuilt at
+     * the next health check.
+     */
+    void reset() {
+        replicas.forEach(Replica::reset);
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+    private boolean isSticky() {
+        Long last = lastWrite.get();
+        if (last == null) {
+            return false;
+        }
+        if (System.nanoTime() - last < sticky) {
+            return true;
+        }
+        lastWrite.remove();
+        return false;
+    }
+
+    /**
+     * Read replica
+     */
+    class Replica {
+        private final    String         url;
+        private final    AtomicBoolean  checking = new AtomicBoolean();
+        private volatile SessionFactory factory;
+        private volatile boolean        healthy;
+        private volatile long           nextCheck;
+        private          boolean        reported;
+
+        private Replica(String url) {
+            this.url = url;
+            this.nextCheck = System.nanoTime();
+        }
+
+        /**
+         * Open a session against the replica
+         *
+         * @return session
+         */
+        IDbSession newSession() {
+            return new DbSession(factory.openSession());
+        }
+
+        private boolean isHealthy() {
+            // one thread checks a replica that is due, the others go on with its last known health
+            if (System.nanoTime() - nextCheck >= 0 && checking.compareAndSet(false, true)) {
+                try {
+                    setHealthy(check());
+                } finally {
+                    checking.set(false);
+                }
+            }
+            return healthy && factory != null;
+        }
+
+        /**
+         * Check the replica
+         *
+         * @return null if healthy, or the reason it is not
+         */
+        private String check() {
+            try {
+                if (factory == null) {
+                    factory = factories.apply(url);
+                }
+                long lag;
+                try (Session session = factory.openSession()) {
+                    lag = session.doReturningWork(conn -> {
+                        if (!conn.isValid(1)) {
+                            throw new SQLException("connection is not valid");
+                        }
+                        return maxLag < 0 ? 0 : probe.lag(conn);
+                    });
+                }
+                if (maxLag >= 0 && lag > maxLag) {
+                    return lag == Long.MAX_VALUE ? "replication is stopped" : String.format("%d ms behind the " +
+                            "primary", lag);
+                }
+                return null;
+            } catch (Exception e) {
+                return e.getMessage();
+            }
+        }
+
+        private void setHealthy(boolean healthy) {
+            setHealthy(healthy ? null : "read failed");
+        }
+
+        private synchronized void setHealthy(String problem) {
+            if (problem == null && !healthy) {
+                LOG.info("Reading from replica {}", url);
+            } else if (problem != null && (healthy || !reported)) {
+                LOG.warn("Replica {} is unhealthy, reading from the primary: {}", url, problem);
+            }
+            reported = true;
+            healthy = problem == null;
+            nextCheck = System.nanoTime() + checkInterval;
+        }
+
+        private synchronized void reset() {
+            healthy = false;
+            reported = false;
+            nextCheck = System.nanoTime();
+            if (factory != null) {
+                factory.close();
+                factory = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package gov.nasa.jpl.ammos.asec.kmc.sadb;
+
+/**
+ * Point in time counters of the active SA index
+ */
+public class SaIndexStats {
+    private final long hits;
+    private final long misses;
+    private final long checks;
+    private final long reloads;
+
+    /**
+     * Constructor
+     *
+     * @param hits    lookups served from the index without reading SAs from the database
+     * @param misses  lookups that had to reload SAs from the database
+     * @param checks  change checks against the database
+     * @param reloads reloads of the active SAs of a frame type
+     */
+    public SaIndexStats(long hits, long misses, long checks, long reloads) {
+        this.hits = hits;
+        this.misses = misses;
+        this.checks = checks;
+        this.reloads = reloads;
+    }
+
+    /**
+     * Get number of lookups served from the index without reading SAs from the database
+     *
+     * @return hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get number of lookups that had to reload SAs from the database
+     *
+     * @return misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get number of change checks against the database
+     *
+     * @return checks
+     */
+    public long getChecks() {
+        return checks;
+    }
+
+    /**
+     * Get number of reloads of the active SAs of a frame type
+     *
+     * @return reloads
+     */
+    public long getReloads() {
+        return reloads;
+    }
+
+    /**
+     * Get hit rate
+     *
+     * @return hits over all lookups, 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits %d, misses %d, hit rate %.3f, checks %d, reloads %d", hits, misses,
+                getHitRate(), checks, reloads);
+    }
+}
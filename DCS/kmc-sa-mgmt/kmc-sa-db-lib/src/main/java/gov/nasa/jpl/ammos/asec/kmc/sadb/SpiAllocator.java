@@ -0,0 +1,181 @@
+package gov.nasa.jpl.ammos.asec.kmc.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao.SQL_FROM;
+
+/**
+ * Allocates SPIs per frame type and SCID.
+ * <p>
+ * SPIs are handed out from an in-memory block with a single atomic increment; the database is only reached when the
+ * block is used up. When the SPI allocation table exists, each block is reserved by advancing a per frame type and
+ * SCID counter under a row lock in its own short transaction, so blocks are never handed out twice, across DAOs and
+ * processes. Without the table, every allocation is seeded from the highest SPI in use, read through the caller's
+ * session, and allocations are only unique within this allocator.
+ * <p>
+ * SPIs provided by callers are claimed so that allocations from this allocator skip past them.
+ */
+class SpiAllocator {
+    /**
+     * SPI allocation counter table
+     */
+    static final String TABLE = "spi_allocation";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpiAllocator.class);
+
+    private final Supplier<IDbSession>       sessions;
+    private final boolean                    counterTable;
+    private final int                        blockSize;
+    private final Map<String, Block>         blocks = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> floors = new ConcurrentHashMap<>();
+    private final Map<String, Object>        locks  = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param sessions     database session supplier, used to reserve blocks from the allocation table
+     * @param counterTable true if the SPI allocation table exists
+     * @param blockSize    number of SPIs reserved at a time from the allocation table
+     */
+    SpiAllocator(Supplier<IDbSession> sessions, boolean counterTable, int blockSize) {
+        this.sessions = sessions;
+        this.counterTable = counterTable;
+        this.blockSize = counterTable ? blockSize : 1;
+    }
+
+    /**
+     * Allocate a contiguous range of SPIs
+     *
+     * @param session caller's database session, used to find the highest SPI in use when there is no allocation
+     *                table
+     * @param type    frame type
+     * @param scid    spacecraft id
+     * @param count   number of SPIs
+     * @return first SPI of the range
+     * @throws KmcException if a block could not be reserved
+     */
+    int allocate(IDbSession session, FrameType type, Short scid, int count) throws KmcException {
+        String key = key(type, scid);
+        while (true) {
+            Block block = blocks.get(key);
+            if (block != null) {
+                int first = block.next.getAndAdd(count);
+                if (first + count <= block.end) {
+                    return first;
+                }
+            }
+            synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+                if (blocks.get(key) == block) {
+                    // SPIs of the previous block may not be committed yet, never go below its end
+                    int start = block == null ? 1 : block.end;
+                    blocks.put(key, reserve(session, type, scid, Math.max(count, blockSize), start));
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim an SPI provided by a caller, later allocations from this allocator will be above it
+     *
+     * @param type frame type
+     * @param scid spacecraft id
+     * @param spi  claimed SPI
+     */
+    void claim(FrameType type, Short scid, int spi) {
+        String key = key(type, scid);
+        floors.computeIfAbsent(key, k -> new AtomicInteger()).accumulateAndGet(spi + 1, Math::max);
+        Block block = blocks.get(key);
+        if (block != null) {
+            block.next.accumulateAndGet(spi + 1, Math::max);
+        }
+    }
+
+    private Block reserve(IDbSession session, FrameType type, Short scid, int size, int minimum)
+            throws KmcException {
+        AtomicInteger floor = floors.get(key(type, scid));
+        int           start = floor == null ? minimum : Math.max(minimum, floor.get());
+        if (!counterTable) {
+            return new Block(Math.max(start, maxSpi(((DbSession) session).getSession(), type, scid) + 1), size);
+        }
+        // a first reservation for a new SCID may race another process inserting the counter row, retry once
+        for (int attempt = 1; ; attempt++) {
+            try (IDbSession s = sessions.get()) {
+                s.beginTransaction();
+                try {
+                    Block block = reserve(((DbSession) s).getSession(), type, scid, size, start);
+                    s.commit();
+                    return block;
+                } catch (Exception e) {
+                    if (s.isActive()) {
+                        s.rollback();
+                    }
+                    throw e;
+                }
+            } catch (Exception e) {
+                if (attempt == 2) {
+                    throw new KmcException(String.format("Unable to reserve SPIs for SCID %d: %s", scid,
+                            e.getMessage()), e);
+                }
+                LOG.warn("Retrying SPI reservation for {} SCID {}: {}", type, scid, e.getMessage());
+            }
+        }
+    }
+
+    private Block reserve(Session s, FrameType type, Short scid, int size, int start) {
+        Integer next = s.createNativeQuery("SELECT next_spi FROM " + TABLE + " WHERE frame_type = :type AND scid " +
+                        "= :scid FOR UPDATE", Integer.class)
+                .setParameter("type", type.name())
+                .setParameter("scid", scid)
+                .uniqueResult();
+        // SPIs created without the allocator are never handed out
+        int first = Math.max(start, maxSpi(s, type, scid) + 1);
+        if (next != null) {
+            first = Math.max(first, next);
+        }
+        String sql = next == null ?
+                "INSERT INTO " + TABLE + " (frame_type, scid, next_spi) VALUES (:type, :scid, :next)" :
+                "UPDATE " + TABLE + " SET next_spi = :next WHERE frame_type = :type AND scid = :scid";
+        s.createNativeMutationQuery(sql)
+                .setParameter("type", type.name())
+                .setParameter("scid", scid)
+                .setParameter("next", first + size)
+                .executeUpdate();
+        LOG.debug("Reserved {} SPIs from {} for {} SCID {}", size, first, type, scid);
+        return new Block(first, size);
+    }
+
+    private int maxSpi(Session s, FrameType type, Short scid) {
+        Integer maxSpi = s.createQuery("SELECT max(sa.id.spi) " + SQL_FROM + " " + type.toString() + " sa WHERE " +
+                        "sa.id.scid = :scid", Integer.class)
+                .setParameter("scid", scid)
+                .getSingleResult();
+        return maxSpi == null ? 0 : maxSpi;
+    }
+
+    private String key(FrameType type, Short scid) {
+        return type.name() + "/" + scid;
+    }
+
+    /**
+     * A reserved range of SPIs
+     */
+    private static class Block {
+        private final AtomicInteger next;
+        private final int           end;
+
+        Block(int first, int size) {
+            this.next = new AtomicInteger(first);
+            this.end = first + size;
+        }
+    }
+}
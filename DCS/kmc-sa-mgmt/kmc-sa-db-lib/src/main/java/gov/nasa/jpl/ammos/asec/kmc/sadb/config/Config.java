@@ -12,6 +12,7 @@ import org.apache.commons.configuration2.io.FileLocationStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -81,6 +82,18 @@ public class Config extends CompositeConfiguration {
      * DB mTLS
      */
     public static final  String DB_MTLS            = "db.mtls";
+    /**
+     * DB read replica connection strings, comma separated
+     */
+    public static final  String DB_REPLICAS        = "db.replica.conn.strings";
+    /**
+     * DB read replica maximum lag, in milliseconds
+     */
+    public static final  String DB_REPLICA_MAX_LAG = "db.replica.max.lag";
+    /**
+     * DB read replica stickiness after a write, in milliseconds
+     */
+    public static final  String DB_REPLICA_STICKY  = "db.replica.sticky";
 
     // Environment variable overrides
     /**
@@ -131,6 +144,10 @@ public class Config extends CompositeConfiguration {
      * DB mTLS override
      */
     public static final String ENV_DB_MTLS            = "DB_MTLS";
+    /**
+     * DB read replica connection strings override
+     */
+    public static final String ENV_DB_REPLICAS        = "DB_REPLICA_CONN_STRINGS";
     /**
      * None string constant
      */
@@ -140,19 +157,22 @@ public class Config extends CompositeConfiguration {
      */
     public static final String KMC_OVERRIDE_CONFIG    = "KMC_OVERRIDE_CONFIG";
 
-    private String  user;
-    private String  pass;
-    private String  conn;
-    private String  host;
-    private String  port;
-    private String  schema;
-    private String  keystore;
-    private String  keystorePass;
-    private String  truststore;
-    private String  truststorePass;
-    private Boolean useTls;
-    private Boolean useMtls;
-    private Boolean overrideJvmTruststore = true;
+    private String       user;
+    private String       pass;
+    private String       conn;
+    private String       host;
+    private String       port;
+    private String       schema;
+    private String       keystore;
+    private String       keystorePass;
+    private String       truststore;
+    private String       truststorePass;
+    private Boolean      useTls;
+    private Boolean      useMtls;
+    private Boolean      overrideJvmTruststore = true;
+    private List<String> replicas;
+    private Long         replicaMaxLag;
+    private Long         replicaSticky;
 
     /**
      * Constructor
@@ -302,6 +322,24 @@ public class Config extends CompositeConfiguration {
             LOG.info("{} env var found, overriding {}", ENV_DB_MTLS, DB_MTLS);
             this.useMtls = System.getenv(ENV_DB_MTLS).equalsIgnoreCase("true");
         }
+        String replicaConns = getString(DB_REPLICAS, NONE);
+        if (System.getenv(ENV_DB_REPLICAS) != null) {
+            LOG.info("{} env var found, overriding {}", ENV_DB_REPLICAS, DB_REPLICAS);
+            replicaConns = System.getenv(ENV_DB_REPLICAS);
+        }
+        this.replicas = parseReplicas(replicaConns);
+        this.replicaMaxLag = getLong(DB_REPLICA_MAX_LAG, null);
+        this.replicaSticky = getLong(DB_REPLICA_STICKY, null);
+    }
+
+    private static List<String> parseReplicas(String conns) {
+        List<String> replicas = new ArrayList<>();
+        for (String conn : conns.split(",")) {
+            if (!conn.isBlank() && !conn.trim().equals(NONE)) {
+                replicas.add(conn.trim());
+            }
+        }
+        return replicas;
     }
 
     /**
@@ -537,4 +575,58 @@ public class Config extends CompositeConfiguration {
     public void setOverrideJvmTruststore(Boolean overrideJvmTruststore) {
         this.overrideJvmTruststore = overrideJvmTruststore;
     }
+
+    /**
+     * Get read replica connection strings
+     *
+     * @return read replica connection strings, empty if there are no read replicas
+     */
+    public List<String> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Set read replica connection strings
+     *
+     * @param replicas read replica connection strings
+     */
+    public void setReplicas(List<String> replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Get read replica maximum lag
+     *
+     * @return maximum lag in milliseconds, null if not configured
+     */
+    public Long getReplicaMaxLag() {
+        return replicaMaxLag;
+    }
+
+    /**
+     * Set read replica maximum lag
+     *
+     * @param replicaMaxLag maximum lag in milliseconds, negative to skip the lag check
+     */
+    public void setReplicaMaxLag(Long replicaMaxLag) {
+        this.replicaMaxLag = replicaMaxLag;
+    }
+
+    /**
+     * Get read replica stickiness after a write
+     *
+     * @return stickiness in milliseconds, null if not configured
+     */
+    public Long getReplicaSticky() {
+        return replicaSticky;
+    }
+
+    /**
+     * Set read replica stickiness after a write
+     *
+     * @param replicaSticky stickiness in milliseconds
+     */
+    public void setReplicaSticky(Long replicaSticky) {
+        this.replicaSticky = replicaSticky;
+    }
 }
@@ -0,0 +1,147 @@
+package gov.nasa.jpl.ammos.asec.kmc.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.Gvcid;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the active SA index
+ */
+public class ActiveSaIndexTest extends BaseH2Test {
+
+    public void lookup(FrameType type) throws KmcException {
+        ISecAssn sa = dao.getActiveSa(type, new Gvcid((byte) 0, (short) 46, (byte) 0, (byte) 0));
+        assertNotNull(sa);
+        assertEquals(1, (int) sa.getSpi());
+        assertEquals(type, sa.getType());
+        assertNotNull(dao.getActiveSa(new SpiScid(2, (short) 46), type));
+        assertNull(dao.getActiveSa(new SpiScid(1, (short) 45), type));
+        assertNull(dao.getActiveSa(type, new Gvcid((byte) 0, (short) 46, (byte) 60, (byte) 0)));
+    }
+
+    @Test
+    public void testLookup() throws KmcException {
+        lookup(FrameType.TC);
+    }
+
+    @Test
+    public void testLookupAos() throws KmcException {
+        lookup(FrameType.AOS);
+    }
+
+    @Test
+    public void testLookupTm() throws KmcException {
+        lookup(FrameType.TM);
+    }
+
+    public void writeThrough(FrameType type) throws KmcException {
+        SpiScid id = new SpiScid(1, (short) 46);
+        assertNotNull(dao.getActiveSa(id, type));
+        long reloads = dao.getSaIndexStats().getReloads();
+
+        dao.stopSa(id, type);
+        assertNull(dao.getActiveSa(id, type));
+        assertEquals(4, dao.getActiveSas(type).size());
+        dao.startSa(id, false, type);
+        assertEquals(KmcDao.SA_OPERATIONAL, (short) dao.getActiveSa(id, type).getSaState());
+        dao.deleteSa(id, type);
+        assertNull(dao.getActiveSa(id, type));
+        assertEquals(reloads, dao.getSaIndexStats().getReloads());
+    }
+
+    @Test
+    public void testWriteThrough() throws KmcException {
+        writeThrough(FrameType.TC);
+    }
+
+    @Test
+    public void testWriteThroughAos() throws KmcException {
+        writeThrough(FrameType.AOS);
+    }
+
+    @Test
+    public void testWriteThroughTm() throws KmcException {
+        writeThrough(FrameType.TM);
+    }
+
+    @Test
+    public void testRollbackNotApplied() throws Exception {
+        SpiScid id = new SpiScid(1, (short) 46);
+        assertNotNull(dao.getActiveSa(id, FrameType.TC));
+        try (IDbSession session = dao.newSession()) {
+            session.beginTransaction();
+            dao.stopSa(session, id, FrameType.TC);
+            session.rollback();
+        }
+        assertNotNull(dao.getActiveSa(id, FrameType.TC));
+    }
+
+    @Test
+    public void testCopies() throws KmcException {
+        SpiScid  id = new SpiScid(1, (short) 46);
+        ISecAssn sa = dao.getActiveSa(id, FrameType.TC);
+        sa.setSaState(KmcDao.SA_KEYED);
+        sa.getArsn()[0] = 1;
+        ISecAssn again = dao.getActiveSa(id, FrameType.TC);
+        assertEquals(KmcDao.SA_OPERATIONAL, (short) again.getSaState());
+        assertEquals(0, again.getArsn()[0]);
+    }
+
+    @Test
+    public void testExternalWrite() throws Exception {
+        // no polling delay, every lookup checks for changes
+        ActiveSaIndex index = new ActiveSaIndex(dao::newSession, EnumSet.of(FrameType.TC), 0, 60000);
+        assertEquals(5, index.getActive(FrameType.TC).size());
+        assertEquals(5, index.getActive(FrameType.TC).size());
+        execute("UPDATE sadb.security_associations SET sa_state = 2 WHERE spi = 1");
+        assertEquals(4, index.getActive(FrameType.TC).size());
+        execute("DELETE FROM sadb.security_associations WHERE spi = 2");
+        assertEquals(3, index.getActive(FrameType.TC).size());
+
+        SaIndexStats stats = index.getStats();
+        assertEquals(4, stats.getChecks());
+        assertEquals(3, stats.getReloads());
+        assertEquals(1, stats.getHits());
+        assertEquals(0.25, stats.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void testExternalWriteWithoutColumn() throws Exception {
+        // without the updated_at column, every poll reloads
+        ActiveSaIndex index = new ActiveSaIndex(dao::newSession, EnumSet.noneOf(FrameType.class), 0, 60000);
+        assertEquals(5, index.getActive(FrameType.AOS).size());
+        execute("UPDATE sadb.security_associations_aos SET sa_state = 2 WHERE spi = 1");
+        assertEquals(4, index.getActive(FrameType.AOS).size());
+        assertEquals(0, index.getStats().getChecks());
+        assertEquals(2, index.getStats().getReloads());
+    }
+
+    @Test
+    public void testPollInterval() throws Exception {
+        ActiveSaIndex index = new ActiveSaIndex(dao::newSession, EnumSet.of(FrameType.TC), 60000, 60000);
+        assertEquals(5, index.getActive(FrameType.TC).size());
+        execute("UPDATE sadb.security_associations SET sa_state = 2 WHERE spi = 1");
+        // not seen until the next poll
+        assertEquals(5, index.getActive(FrameType.TC).size());
+        index.invalidate(FrameType.TC);
+        assertEquals(4, index.getActive(FrameType.TC).size());
+        assertEquals(2, index.getStats().getReloads());
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:test", "sadb_user", "sadb_test")) {
+            conn.createStatement().execute(sql);
+        }
+    }
+}
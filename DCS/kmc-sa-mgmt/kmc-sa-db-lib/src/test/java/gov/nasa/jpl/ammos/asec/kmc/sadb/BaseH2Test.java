@@ -49,6 +49,7 @@ public class BaseH2Test {
         try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:test", "sadb_user", "sadb_test");
              Reader reader = new InputStreamReader(getClass().getResourceAsStream(sqlFile))) {
             RunScript.execute(conn, reader);
+            resetSaIndex();
         } catch (SQLException sqlException) {
             throw new RuntimeException("Encountered unexpected SQLException while setting up unit test DB: ",
                     sqlException);
@@ -70,10 +71,23 @@ public class BaseH2Test {
         truncateTable("security_associations_aos");
     }
 
+    public static void truncateSpiAllocation() throws SQLException {
+        truncateTable("spi_allocation");
+        dao.resetSpiAllocation();
+    }
+
     private static void truncateTable(String tableName) throws SQLException {
         try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:test", "sadb_user", "sadb_test")) {
             conn.createStatement().execute("TRUNCATE TABLE sadb.%s".formatted(tableName));
         }
+        resetSaIndex();
+    }
+
+    private static void resetSaIndex() {
+        // SA tables modified behind the DAO's back
+        if (dao != null) {
+            dao.resetSaIndex();
+        }
     }
 
     public static void dropTc() throws SQLException {
@@ -104,5 +118,6 @@ public class BaseH2Test {
         truncateTc();
         truncateTm();
         truncateAos();
+        truncateSpiAllocation();
     }
 }
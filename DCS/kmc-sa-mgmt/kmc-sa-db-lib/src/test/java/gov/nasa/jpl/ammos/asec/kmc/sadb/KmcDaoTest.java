@@ -6,13 +6,25 @@ import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnAos;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnFactory;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnTm;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaBulkResult;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaCounters;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaImportResult;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaPage;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaQuery;
 import org.junit.Test;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao.SA_KEYED;
+import static gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao.SA_OPERATIONAL;
 import static org.junit.Assert.*;
 
 /**
@@ -125,6 +137,112 @@ public class KmcDaoTest extends BaseH2Test {
         createDeleteSaNonNullSpi(FrameType.TM);
     }
 
+    private ISecAssn newSa(FrameType type, Integer spi, short scid) {
+        ISecAssn sa = SecAssnFactory.createSecAssn(new SpiScid(spi, scid), type);
+        sa.setTfvn((byte) 0);
+        sa.setVcid((byte) 1);
+        sa.setMapid((byte) 0);
+        return sa;
+    }
+
+    public void createSas(FrameType type) throws KmcException {
+        // more than one chunk, followed by an existing SA, a duplicate, an allocated SPI, and an invalid SA
+        List<ISecAssn> sas = new ArrayList<>();
+        for (int spi = 1; spi <= KmcDao.IMPORT_CHUNK_SIZE + 10; spi++) {
+            sas.add(newSa(type, spi, (short) 255));
+        }
+        sas.add(newSa(type, 1, (short) 46));
+        sas.add(newSa(type, 1, (short) 255));
+        sas.add(newSa(type, null, (short) 255));
+        ISecAssn invalid = newSa(type, 20, (short) 46);
+        invalid.setVcid(null);
+        sas.add(invalid);
+
+        SaImportResult result = dao.createSas(sas.iterator(), false);
+        assertEquals(KmcDao.IMPORT_CHUNK_SIZE + 11, result.getCreated());
+        assertEquals(0, result.getReplaced());
+        assertEquals(3, result.getErrors().size());
+        assertEquals(KmcDao.IMPORT_CHUNK_SIZE + 11, result.getErrors().get(0).getRow());
+        assertTrue(result.getErrors().get(0).getMessage().contains("SPI/SCID combination 1/46 already exists"));
+        assertEquals(KmcDao.IMPORT_CHUNK_SIZE + 12, result.getErrors().get(1).getRow());
+        assertTrue(result.getErrors().get(1).getMessage().contains("SPI/SCID combination 1/255 already exists"));
+        assertEquals(KmcDao.IMPORT_CHUNK_SIZE + 14, result.getErrors().get(2).getRow());
+        assertTrue(result.getErrors().get(2).getMessage().contains("invalid GVCID"));
+
+        assertNotNull(dao.getSa(new SpiScid(KmcDao.IMPORT_CHUNK_SIZE + 11, (short) 255), type));
+        assertEquals(5 + KmcDao.IMPORT_CHUNK_SIZE + 11, dao.getSas(type).size());
+    }
+
+    @Test
+    public void testCreateSas() throws KmcException {
+        createSas(FrameType.TC);
+    }
+
+    @Test
+    public void testCreateSasAos() throws KmcException {
+        createSas(FrameType.AOS);
+    }
+
+    @Test
+    public void testCreateSasTm() throws KmcException {
+        createSas(FrameType.TM);
+    }
+
+    public void createSasReplace(FrameType type) throws KmcException {
+        ISecAssn sa = newSa(type, 1, (short) 46);
+        sa.setVcid((byte) 5);
+        SaImportResult result = dao.createSas(List.of(sa, newSa(type, 6, (short) 46)).iterator(), true);
+        assertFalse(result.hasErrors());
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getReplaced());
+        assertEquals(5, (byte) dao.getSa(new SpiScid(1, (short) 46), type).getVcid());
+        assertEquals(6, dao.getSas(type).size());
+    }
+
+    @Test
+    public void testCreateSasReplace() throws KmcException {
+        createSasReplace(FrameType.TC);
+    }
+
+    @Test
+    public void testCreateSasReplaceAos() throws KmcException {
+        createSasReplace(FrameType.AOS);
+    }
+
+    @Test
+    public void testCreateSasReplaceTm() throws KmcException {
+        createSasReplace(FrameType.TM);
+    }
+
+    public void createSasBatchFailure(FrameType type) throws KmcException {
+        // the key ID is too long for the column, failing the batch at the database
+        ISecAssn bad = newSa(type, 7, (short) 46);
+        bad.setEkid("k".repeat(101));
+        SaImportResult result = dao.createSas(List.of(newSa(type, 6, (short) 46), bad, newSa(type, 8,
+                (short) 46)).iterator(), false);
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertEquals(7, (int) result.getErrors().get(0).getId().getSpi());
+        assertNull(dao.getSa(new SpiScid(7, (short) 46), type));
+        assertEquals(7, dao.getSas(type).size());
+    }
+
+    @Test
+    public void testCreateSasBatchFailure() throws KmcException {
+        createSasBatchFailure(FrameType.TC);
+    }
+
+    @Test
+    public void testCreateSasBatchFailureAos() throws KmcException {
+        createSasBatchFailure(FrameType.AOS);
+    }
+
+    @Test
+    public void testCreateSasBatchFailureTm() throws KmcException {
+        createSasBatchFailure(FrameType.TM);
+    }
+
     public void deleteDne(FrameType type) throws KmcException {
         SpiScid fake = new SpiScid(10, (short) 46);
         dao.deleteSa(fake, type);
@@ -195,6 +313,44 @@ public class KmcDaoTest extends BaseH2Test {
         startSaAlreadyActive(FrameType.TM);
     }
 
+    public void startSaForce(FrameType type) throws Exception {
+        SpiScid id1 = new SpiScid(8, (short) 46);
+        SpiScid id2 = new SpiScid(9, (short) 46);
+        SpiScid id3 = new SpiScid(10, (short) 46);
+        dao.createSa(8, (byte) 0, (short) 46, (byte) 10, (byte) 0, type);
+        dao.createSa(9, (byte) 0, (short) 46, (byte) 10, (byte) 0, type);
+        dao.createSa(10, (byte) 0, (short) 46, (byte) 10, (byte) 0, type);
+        dao.startSa(id1, false, type);
+        ISecAssn started = dao.startSa(id2, true, type);
+        assertEquals(KmcDao.SA_OPERATIONAL, (short) started.getSaState());
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(id1, type).getSaState());
+        assertEquals(KmcDao.SA_UNKEYED, (short) dao.getSa(id3, type).getSaState());
+
+        // a forced start in a rolled back session leaves the GVCID untouched
+        try (IDbSession session = dao.newSession()) {
+            session.beginTransaction();
+            dao.startSa(session, id3, true, type);
+            session.rollback();
+        }
+        assertEquals(KmcDao.SA_OPERATIONAL, (short) dao.getSa(id2, type).getSaState());
+        assertEquals(KmcDao.SA_UNKEYED, (short) dao.getSa(id3, type).getSaState());
+    }
+
+    @Test
+    public void testStartSaForce() throws Exception {
+        startSaForce(FrameType.TC);
+    }
+
+    @Test
+    public void testStartSaForceAos() throws Exception {
+        startSaForce(FrameType.AOS);
+    }
+
+    @Test
+    public void testStartSaForceTm() throws Exception {
+        startSaForce(FrameType.TM);
+    }
+
     public void createDupe(FrameType type) throws KmcException {
         dao.createSa(8, (byte) 0, (short) 46, (byte) 1, (byte) 0, type);
         dao.createSa(8, (byte) 0, (short) 46, (byte) 1, (byte) 0, type);
@@ -438,6 +594,106 @@ public class KmcDaoTest extends BaseH2Test {
         getActiveSas(FrameType.TM);
     }
 
+    public void getSasPage(FrameType type) throws KmcException {
+        SaQuery       query = new SaQuery().setType(type).setLimit(2);
+        List<Integer> spis  = new ArrayList<>();
+        int           pages = 0;
+        SaPage        page;
+        do {
+            page = dao.getSas(query);
+            pages++;
+            page.getSas().forEach(sa -> spis.add(sa.getSpi()));
+            query.setPageToken(page.getNextPageToken());
+        } while (page.getNextPageToken() != null);
+        assertEquals(3, pages);
+        assertEquals(List.of(1, 2, 3, 4, 5), spis);
+
+        page = dao.getSas(new SaQuery().setType(type).setSpiRange(2, 4).setSort(SaQuery.Sort.SPI, true));
+        assertNull(page.getNextPageToken());
+        assertEquals(List.of(4, 3, 2), page.getSas().stream().map(ISecAssn::getSpi).toList());
+
+        assertEquals(5, dao.getSas(new SaQuery().setType(type).setSaState(SA_OPERATIONAL)).getSas().size());
+        List<ISecAssn> sas = dao.getSas(new SaQuery().setType(type).setEkid("130")).getSas();
+        assertFalse(sas.isEmpty());
+        sas.forEach(sa -> assertEquals("130", sa.getEkid()));
+        assertTrue(dao.getSas(new SaQuery().setType(type).setSaState(SA_KEYED)).getSas().isEmpty());
+        assertTrue(dao.getSas(new SaQuery().setType(type).setScid((short) 44)).getSas().isEmpty());
+    }
+
+    @Test
+    public void testGetSasPage() throws KmcException {
+        getSasPage(FrameType.TC);
+    }
+
+    @Test
+    public void testGetSasPageAos() throws KmcException {
+        getSasPage(FrameType.AOS);
+    }
+
+    @Test
+    public void testGetSasPageTm() throws KmcException {
+        getSasPage(FrameType.TM);
+    }
+
+    @Test
+    public void testGetSasPageAll() throws KmcException {
+        SaQuery         query = new SaQuery().setLimit(4);
+        List<FrameType> types = new ArrayList<>();
+        SaPage          page;
+        do {
+            page = dao.getSas(query);
+            page.getSas().forEach(sa -> types.add(sa.getType()));
+            query.setPageToken(page.getNextPageToken());
+        } while (page.getNextPageToken() != null);
+        assertEquals(15, types.size());
+        assertEquals(FrameType.TC, types.get(4));
+        assertEquals(FrameType.TM, types.get(5));
+        assertEquals(FrameType.AOS, types.get(14));
+
+        String token = dao.getSas(new SaQuery().setLimit(1)).getNextPageToken();
+        assertNotNull(token);
+        assertThrows(KmcException.class, () -> new SaQuery().setSort(SaQuery.Sort.SPI, false).setPageToken(token));
+        assertThrows(KmcException.class, () -> new SaQuery().setPageToken("bm90IGEgdG9rZW4"));
+        assertThrows(KmcException.class, () -> new SaQuery().setLimit(SaQuery.MAX_LIMIT + 1));
+    }
+
+    public void streamSas(FrameType type) throws KmcException {
+        try (Stream<ISecAssn> sas = dao.streamSas(new SaQuery().setType(type).setSort(SaQuery.Sort.SPI, true))) {
+            assertEquals(List.of(5, 4, 3, 2, 1), sas.map(ISecAssn::getSpi).toList());
+        }
+        try (Stream<ISecAssn> sas = dao.streamSas(new SaQuery().setType(type).setSpiRange(2, 3))) {
+            List<ISecAssn> list = sas.toList();
+            assertEquals(2, list.size());
+            list.forEach(sa -> assertEquals(type, sa.getType()));
+        }
+    }
+
+    @Test
+    public void testStreamSas() throws KmcException {
+        streamSas(FrameType.TC);
+    }
+
+    @Test
+    public void testStreamSasAos() throws KmcException {
+        streamSas(FrameType.AOS);
+    }
+
+    @Test
+    public void testStreamSasTm() throws KmcException {
+        streamSas(FrameType.TM);
+    }
+
+    @Test
+    public void testStreamSasAll() throws KmcException {
+        try (Stream<ISecAssn> sas = dao.streamSas(new SaQuery())) {
+            List<FrameType> types = sas.map(ISecAssn::getType).toList();
+            assertEquals(15, types.size());
+            assertEquals(FrameType.TC, types.get(0));
+            assertEquals(FrameType.TM, types.get(5));
+            assertEquals(FrameType.AOS, types.get(14));
+        }
+    }
+
     public void updateSa(FrameType type) throws KmcException {
         SpiScid  id = new SpiScid(1, (short) 46);
         ISecAssn sa = dao.getSa(id, type);
@@ -493,4 +749,194 @@ public class KmcDaoTest extends BaseH2Test {
     public void testRollbackUpdateTm() throws KmcException {
         rollbackUpdate(FrameType.TM);
     }
-}
\ No newline at end of file
+
+    public void bulkLifecycle(FrameType type) throws KmcException {
+        List<SpiScid> ids = List.of(new SpiScid(1, (short) 46), new SpiScid(2, (short) 46), new SpiScid(3,
+                (short) 46));
+        SaBulkResult result = dao.stopSas(ids, type, SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertTrue(result.isCommitted());
+        assertEquals(3, result.getSucceeded());
+        assertEquals(2, dao.getActiveSas(type).size());
+
+        result = dao.rekeySas(ids, "kmc/test/key130", new byte[]{0x01}, (short) 1, null, null, null, type,
+                SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertFalse(result.hasErrors());
+        ISecAssn sa = dao.getSa(ids.get(1), type);
+        assertEquals("kmc/test/key130", sa.getEkid());
+        assertEquals(KmcDao.SA_KEYED, (short) sa.getSaState());
+
+        result = dao.resetArsns(ids, new byte[]{0x00, 0x05}, (short) 2, (short) 10, type,
+                SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertFalse(result.hasErrors());
+        assertArrayEquals(new byte[]{0x00, 0x05}, dao.getSa(ids.get(2), type).getArsn());
+
+        result = dao.startSas(ids, false, type, SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertFalse(result.hasErrors());
+        assertEquals(5, dao.getActiveSas(type).size());
+
+        result = dao.expireSas(ids, type, SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertFalse(result.hasErrors());
+        sa = dao.getSa(ids.get(0), type);
+        assertEquals(KmcDao.SA_EXPIRE, (short) sa.getSaState());
+        assertNull(sa.getEkid());
+
+        result = dao.deleteSas(ids, type, SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertFalse(result.hasErrors());
+        assertEquals(2, dao.getSas(type).size());
+    }
+
+    @Test
+    public void testBulkLifecycle() throws KmcException {
+        bulkLifecycle(FrameType.TC);
+    }
+
+    @Test
+    public void testBulkLifecycleAos() throws KmcException {
+        bulkLifecycle(FrameType.AOS);
+    }
+
+    @Test
+    public void testBulkLifecycleTm() throws KmcException {
+        bulkLifecycle(FrameType.TM);
+    }
+
+    @Test
+    public void testBulkAllOrNothing() throws KmcException {
+        List<SpiScid> ids = List.of(new SpiScid(1, (short) 46), new SpiScid(100, (short) 46), new SpiScid(2,
+                (short) 46), new SpiScid(1, (short) 46));
+        SaBulkResult result = dao.stopSas(ids, FrameType.TC, SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertFalse(result.isCommitted());
+        assertEquals(0, result.getSucceeded());
+        assertEquals(4, result.getItems().size());
+        assertEquals("Not applied, another SA in the request failed", result.getItems().get(0).getMessage());
+        assertEquals("SA 100/46 does not exist, cannot stop", result.getItems().get(1).getMessage());
+        assertEquals("SA 1/46 is listed more than once", result.getItems().get(3).getMessage());
+        assertEquals(5, dao.getActiveSas(FrameType.TC).size());
+    }
+
+    @Test
+    public void testBulkBestEffort() throws KmcException {
+        List<SpiScid> ids = List.of(new SpiScid(1, (short) 46), new SpiScid(100, (short) 46), new SpiScid(2,
+                (short) 46));
+        SaBulkResult result = dao.deleteSas(ids, FrameType.TC, SaBulkResult.Mode.BEST_EFFORT);
+        assertTrue(result.isCommitted());
+        assertEquals(2, result.getSucceeded());
+        assertFalse(result.getItems().get(1).isSuccess());
+        assertNull(dao.getSa(ids.get(0), FrameType.TC));
+        assertEquals(3, dao.getSas(FrameType.TC).size());
+    }
+
+    @Test
+    public void testBulkStartConflict() throws KmcException {
+        dao.createSa(8, (byte) 0, (short) 46, (byte) 10, (byte) 0, FrameType.TC);
+        dao.createSa(9, (byte) 0, (short) 46, (byte) 10, (byte) 0, FrameType.TC);
+        dao.createSa(10, (byte) 0, (short) 46, (byte) 11, (byte) 0, FrameType.TC);
+        SpiScid id8  = new SpiScid(8, (short) 46);
+        SpiScid id9  = new SpiScid(9, (short) 46);
+        SpiScid id10 = new SpiScid(10, (short) 46);
+
+        SaBulkResult result = dao.startSas(List.of(id8, id9, id10), false, FrameType.TC,
+                SaBulkResult.Mode.BEST_EFFORT);
+        assertEquals(2, result.getSucceeded());
+        assertEquals("SA 8/46 is started on the same GVCID by this request", result.getItems().get(1).getMessage());
+
+        result = dao.startSas(List.of(id9), false, FrameType.TC, SaBulkResult.Mode.BEST_EFFORT);
+        assertTrue(result.hasErrors());
+        result = dao.startSas(List.of(id9), true, FrameType.TC, SaBulkResult.Mode.BEST_EFFORT);
+        assertFalse(result.hasErrors());
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(id8, FrameType.TC).getSaState());
+        assertEquals(KmcDao.SA_OPERATIONAL, (short) dao.getSa(id9, FrameType.TC).getSaState());
+        assertEquals(KmcDao.SA_OPERATIONAL, (short) dao.getSa(id10, FrameType.TC).getSaState());
+    }
+
+    public void counters(FrameType type) throws KmcException {
+        SpiScid    id   = new SpiScid(2, (short) 46);
+        SaCounters read = dao.getCounters(id, type);
+        assertEquals(type == FrameType.TC, read.getVersion() != null);
+        SaCounters written = dao.compareAndSetArsn(read, new byte[]{0x00, 0x07}, (short) 2, null);
+        assertNotNull(written);
+        assertArrayEquals(new byte[]{0x00, 0x07}, dao.getSa(id, type).getArsn());
+        assertEquals(5, (short) dao.getSa(id, type).getArsnw());
+        // the ARSN was written since it was read
+        assertNull(dao.compareAndSetArsn(read, new byte[]{0x00, 0x08}, (short) 2, null));
+
+        written = dao.incrementArsn(id, type, 0x1FA);
+        assertArrayEquals(new byte[]{0x02, 0x01}, written.getArsn());
+        assertArrayEquals(new byte[]{0x02, 0x01}, dao.getSa(id, type).getArsn());
+        written = dao.incrementIv(id, type, 1);
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x02}, written.getIv());
+        // the active SA index sees the written counters
+        assertArrayEquals(new byte[]{0x02, 0x01}, dao.getActiveSa(id, type).getArsn());
+        assertArrayEquals(written.getIv(), dao.getActiveSa(id, type).getIv());
+    }
+
+    @Test
+    public void testCounters() throws KmcException {
+        counters(FrameType.TC);
+    }
+
+    @Test
+    public void testCountersAos() throws KmcException {
+        counters(FrameType.AOS);
+    }
+
+    @Test
+    public void testCountersTm() throws KmcException {
+        counters(FrameType.TM);
+    }
+
+    @Test
+    public void testCountersVersion() throws KmcException {
+        SpiScid    id   = new SpiScid(2, (short) 46);
+        SaCounters read = dao.getCounters(id, FrameType.TC);
+        ISecAssn   sa   = dao.getSa(id, FrameType.TC);
+        sa.setArsn(read.getArsn());
+        dao.updateSa(sa);
+        // the full SA update wrote the same ARSN, the version still tells it apart
+        assertEquals(read.getVersion() + 1, (long) dao.getCounters(id, FrameType.TC).getVersion());
+        assertNull(dao.compareAndSetArsn(read, new byte[]{0x01}, null, null));
+
+        dao.resetArsns(List.of(id), new byte[]{0x01}, (short) 1, null, FrameType.TC,
+                SaBulkResult.Mode.ALL_OR_NOTHING);
+        assertEquals(read.getVersion() + 2, (long) dao.getCounters(id, FrameType.TC).getVersion());
+    }
+
+    @Test
+    public void testCountersExternalWrite() throws Exception {
+        SpiScid    id   = new SpiScid(2, (short) 46);
+        SaCounters read = dao.getCounters(id, FrameType.TC);
+        // CryptoLib writes the counters without incrementing the version
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:test", "sadb_user", "sadb_test")) {
+            conn.createStatement().execute("UPDATE sadb.security_associations SET arsn = X'0105', iv = " +
+                    "X'000000000000000000000105' WHERE spi = 2 AND scid = 46");
+        }
+        assertEquals(read.getVersion(), dao.getCounters(id, FrameType.TC).getVersion());
+        assertNull(dao.compareAndSetArsn(read, new byte[]{0x00, 0x07}, (short) 2, null));
+        assertNull(dao.compareAndSetIv(read, new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x07}, null));
+        assertArrayEquals(new byte[]{0x01, 0x05}, dao.getSa(id, FrameType.TC).getArsn());
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x01, 0x05}, dao.getSa(id, FrameType.TC).getIv());
+        assertArrayEquals(new byte[]{0x01, 0x06}, dao.incrementArsn(id, FrameType.TC, 1).getArsn());
+    }
+
+    @Test
+    public void testCountersIncrementFail() throws KmcException {
+        SpiScid id = new SpiScid(2, (short) 46);
+        dao.compareAndSetArsn(dao.getCounters(id, FrameType.TC), new byte[]{(byte) 0xff, (byte) 0xfe}, (short) 2,
+                null);
+        assertArrayEquals(new byte[]{(byte) 0xff, (byte) 0xff}, dao.incrementArsn(id, FrameType.TC, 1).getArsn());
+        assertThrows(KmcException.class, () -> dao.incrementArsn(id, FrameType.TC, 1));
+        assertThrows(KmcException.class, () -> dao.incrementArsn(id, FrameType.TC, 0));
+        // SA 1 has no IV
+        assertThrows(KmcException.class, () -> dao.incrementIv(new SpiScid(1, (short) 46), FrameType.TC, 1));
+        assertThrows(KmcException.class, () -> dao.incrementIv(new SpiScid(100, (short) 46), FrameType.TC, 1));
+        assertNull(dao.getCounters(new SpiScid(100, (short) 46), FrameType.TC));
+    }
+
+    @Test
+    public void testAddUnsigned() {
+        assertArrayEquals(new byte[]{0x00, 0x01, 0x00}, KmcDao.addUnsigned(new byte[]{0x00, 0x00, (byte) 0xff}, 1));
+        assertArrayEquals(new byte[]{(byte) 0x80}, KmcDao.addUnsigned(new byte[]{0x7f}, 1));
+        assertNull(KmcDao.addUnsigned(new byte[]{(byte) 0xff}, 1));
+        assertNull(KmcDao.addUnsigned(new byte[0], 1));
+    }
+}
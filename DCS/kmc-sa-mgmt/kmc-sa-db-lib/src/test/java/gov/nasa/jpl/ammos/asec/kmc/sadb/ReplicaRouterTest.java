@@ -0,0 +1,132 @@
+package gov.nasa.jpl.ammos.asec.kmc.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaQuery;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for read replica routing. The replica is an empty database, so reads served by it find no SAs.
+ */
+public class ReplicaRouterTest extends BaseH2Test {
+
+    private static final String  REPLICA = "jdbc:h2:mem:replica;MODE=mysql;INIT=RUNSCRIPT FROM " +
+            "'classpath:create_sadb.sql'";
+    private static final SpiScid ID      = new SpiScid(1, (short) 46);
+
+    private KmcDao reader;
+
+    private KmcDao reader(String url, ReplicaRouter.LagProbe probe, long maxLag, long sticky) throws KmcException {
+        reader = new KmcDao("sadb_user", "sadb_test");
+        reader.setReadReplicas(List.of(url), probe, maxLag, sticky, 0);
+        reader.init();
+        return reader;
+    }
+
+    @After
+    public void closeReader() throws KmcException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    public void reads(FrameType type) throws KmcException {
+        reader(REPLICA, conn -> 0, ReplicaRouter.DEFAULT_MAX_LAG, 0);
+        assertEquals(5, dao.getSas(type).size());
+        assertTrue(reader.getSas(type).isEmpty());
+        assertTrue(reader.getSas(new SaQuery().setType(type)).getSas().isEmpty());
+        try (Stream<?> sas = reader.streamSas(new SaQuery().setType(type))) {
+            assertEquals(0, sas.count());
+        }
+        // single SAs, read before updates, and the active SA index stay on the primary
+        assertNotNull(reader.getSa(ID, type));
+        assertEquals(5, reader.getActiveSas(type).size());
+    }
+
+    @Test
+    public void testReads() throws KmcException {
+        reads(FrameType.TC);
+    }
+
+    @Test
+    public void testReadsAos() throws KmcException {
+        reads(FrameType.AOS);
+    }
+
+    @Test
+    public void testReadsTm() throws KmcException {
+        reads(FrameType.TM);
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        reader(REPLICA, conn -> 0, ReplicaRouter.DEFAULT_MAX_LAG, 60000);
+        assertTrue(reader.getSas(FrameType.TC).isEmpty());
+        reader.stopSa(ID, FrameType.TC);
+        assertEquals(5, reader.getSas(FrameType.TC).size());
+
+        // other threads still read from the replica
+        AtomicLong found = new AtomicLong(-1);
+        Thread     other = new Thread(() -> {
+            try {
+                found.set(reader.getSas(FrameType.TC).size());
+            } catch (KmcException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        other.start();
+        other.join();
+        assertEquals(0, found.get());
+    }
+
+    @Test
+    public void testLag() throws KmcException {
+        AtomicLong lag = new AtomicLong(10000);
+        reader(REPLICA, conn -> lag.get(), 5000, 0);
+        assertEquals(5, reader.getSas(FrameType.TC).size());
+        lag.set(1000);
+        assertEquals(0, reader.getSas(FrameType.TC).size());
+        lag.set(Long.MAX_VALUE);
+        assertEquals(5, reader.getSas(FrameType.TC).size());
+    }
+
+    @Test
+    public void testLagCheckDisabled() throws KmcException {
+        reader(REPLICA, conn -> {
+            throw new SQLException("access denied");
+        }, -1, 0);
+        assertEquals(0, reader.getSas(FrameType.TC).size());
+    }
+
+    @Test
+    public void testUnhealthy() throws KmcException {
+        AtomicLong lag = new AtomicLong(0);
+        reader(REPLICA, conn -> {
+            if (lag.get() < 0) {
+                throw new SQLException("lost connection");
+            }
+            return lag.get();
+        }, 5000, 0);
+        assertEquals(0, reader.getSas(FrameType.TC).size());
+        lag.set(-1);
+        assertEquals(5, reader.getSas(FrameType.TC).size());
+        lag.set(0);
+        assertEquals(0, reader.getSas(FrameType.TC).size());
+    }
+
+    @Test
+    public void testUnavailable() throws KmcException {
+        reader("jdbc:h2:mem:missing;IFEXISTS=TRUE", conn -> 0, 5000, 0);
+        assertEquals(5, reader.getSas(FrameType.TC).size());
+        assertNotNull(reader.getSa(ID, FrameType.TC));
+    }
+}
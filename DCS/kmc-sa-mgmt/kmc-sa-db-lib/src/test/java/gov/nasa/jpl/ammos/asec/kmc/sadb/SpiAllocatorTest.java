@@ -0,0 +1,116 @@
+package gov.nasa.jpl.ammos.asec.kmc.sadb;
+
+import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
+import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for SPI allocation
+ */
+public class SpiAllocatorTest extends BaseH2Test {
+
+    @Test
+    public void testAllocateBlocks() throws Exception {
+        // two allocators stand in for two processes sharing the allocation table
+        SpiAllocator a = new SpiAllocator(dao::newSession, true, 10);
+        SpiAllocator b = new SpiAllocator(dao::newSession, true, 10);
+        try (IDbSession session = dao.newSession()) {
+            assertEquals(6, a.allocate(session, FrameType.TC, (short) 46, 1));
+            assertEquals(16, b.allocate(session, FrameType.TC, (short) 46, 1));
+            assertEquals(7, a.allocate(session, FrameType.TC, (short) 46, 1));
+            // a range larger than the block size gets a block of its own
+            assertEquals(26, a.allocate(session, FrameType.TC, (short) 46, 20));
+            assertEquals(1, a.allocate(session, FrameType.TM, (short) 47, 1));
+        }
+    }
+
+    @Test
+    public void testAllocateConcurrent() throws Exception {
+        SpiAllocator    allocator = new SpiAllocator(dao::newSession, true, 16);
+        Set<Integer>    spis      = ConcurrentHashMap.newKeySet();
+        ExecutorService executor  = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    try (IDbSession session = dao.newSession()) {
+                        for (int i = 0; i < 100; i++) {
+                            assertTrue(spis.add(allocator.allocate(session, FrameType.AOS, (short) 46, 1)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(400, spis.size());
+        assertTrue(spis.stream().allMatch(spi -> spi > 5));
+    }
+
+    @Test
+    public void testClaim() throws Exception {
+        SpiAllocator allocator = new SpiAllocator(dao::newSession, true, 10);
+        try (IDbSession session = dao.newSession()) {
+            assertEquals(6, allocator.allocate(session, FrameType.TC, (short) 46, 1));
+            allocator.claim(FrameType.TC, (short) 46, 50);
+            assertEquals(51, allocator.allocate(session, FrameType.TC, (short) 46, 1));
+            allocator.claim(FrameType.TC, (short) 44, 9);
+            assertEquals(10, allocator.allocate(session, FrameType.TC, (short) 44, 1));
+        }
+    }
+
+    @Test
+    public void testAllocateWithoutTable() throws Exception {
+        SpiAllocator allocator = new SpiAllocator(dao::newSession, false, 10);
+        try (IDbSession session = dao.newSession()) {
+            // allocations are not committed, each one still gets a new SPI
+            assertEquals(6, allocator.allocate(session, FrameType.TC, (short) 46, 1));
+            assertEquals(7, allocator.allocate(session, FrameType.TC, (short) 46, 1));
+            assertEquals(8, allocator.allocate(session, FrameType.TC, (short) 46, 3));
+            assertEquals(11, allocator.allocate(session, FrameType.TC, (short) 46, 1));
+        }
+    }
+
+    @Test
+    public void testBlockSize() throws KmcException {
+        dao.createSa(null, (byte) 0, (short) 46, (byte) 1, (byte) 0, FrameType.TC);
+        // a new DAO, as a later CLI command would use, continues after the SPI of the previous one
+        dao.resetSpiAllocation();
+        dao.createSa(null, (byte) 0, (short) 46, (byte) 2, (byte) 0, FrameType.TC);
+        dao.setSpiBlockSize(10);
+        try {
+            dao.createSa(null, (byte) 0, (short) 46, (byte) 3, (byte) 0, FrameType.TC);
+            // the rest of the block is lost
+            dao.resetSpiAllocation();
+            dao.createSa(null, (byte) 0, (short) 46, (byte) 4, (byte) 0, FrameType.TC);
+        } finally {
+            dao.setSpiBlockSize(KmcDao.SPI_BLOCK_SIZE);
+        }
+        List<Integer> spis = dao.getSas(FrameType.TC).stream().map(sa -> sa.getSpi()).sorted().toList();
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 18), spis);
+    }
+
+    @Test
+    public void testCreateSaAllocates() throws KmcException {
+        dao.createSa(null, (byte) 0, (short) 46, (byte) 1, (byte) 0, FrameType.TC);
+        dao.createSa(20, (byte) 0, (short) 46, (byte) 2, (byte) 0, FrameType.TC);
+        dao.createSa(null, (byte) 0, (short) 46, (byte) 3, (byte) 0, FrameType.TC);
+        List<Integer> spis = dao.getSas(FrameType.TC).stream().map(sa -> sa.getSpi()).sorted().toList();
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 20, 21), spis);
+    }
+}
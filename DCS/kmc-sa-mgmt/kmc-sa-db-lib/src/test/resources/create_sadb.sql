@@ -53,6 +53,9 @@ CREATE TABLE IF NOT EXISTS security_associations
     arsn       VARBINARY(20)   NOT NULL DEFAULT X'0000000000000000000000000000000000000000' -- ARSN_SIZE=20 , TBD why so large...
     ,
     arsnw      SMALLINT        NOT NULL DEFAULT 0                                           -- ARSNW_SIZE=1
+    ,
+    updated_at TIMESTAMP(6)    NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+    version    BIGINT          NOT NULL DEFAULT 0
 );
 
 create unique index if not exists main_spi on security_associations (spi, scid, vcid, tfvn, mapid);
@@ -131,6 +134,16 @@ CREATE TABLE IF NOT EXISTS security_associations_tm
     arsn       VARBINARY(20)   NOT NULL DEFAULT X'0000000000000000000000000000000000000000' -- ARSN_SIZE=20 , TBD why so large...
     ,
     arsnw      SMALLINT        NOT NULL DEFAULT 0                                           -- ARSNW_SIZE=1
+    ,
+    updated_at TIMESTAMP(6)    NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6)
     );
 
-create unique index if not exists main_spi on security_associations_tm (spi, scid, vcid, tfvn, mapid);
\ No newline at end of file
+create unique index if not exists main_spi on security_associations_tm (spi, scid, vcid, tfvn, mapid);
+
+CREATE TABLE IF NOT EXISTS spi_allocation
+(
+    frame_type VARCHAR(8) NOT NULL,
+    scid       SMALLINT   NOT NULL,
+    next_spi   INT        NOT NULL,
+    PRIMARY KEY (frame_type, scid)
+);
@@ -18,6 +18,7 @@ import React, {useEffect, useMemo, useState} from "react";
 import {useFilters, useRowSelect, useTable} from "react-table";
 import {
     Box,
+    Button,
     FormControl,
     IconButton,
     MenuItem,
@@ -54,13 +55,19 @@ export default function SaTable(props) {
     const {enqueueSnackbar} = useSnackbar()
 
     /**
-     * Refresh table data
+     * Load a page of table data, the first page replaces the table data and later pages are appended. The server
+     * filters are sent with every page so that the pages continue the same query.
+     * @param pageToken page token, null for the first page
      */
-    const refreshTable = () => {
-        listSa(props.type, (result) => {
-            const data = result.data
-            setData(data)
+    const loadPage = (pageToken) => {
+        setLoading(true)
+        listSa(props.type, pageToken, (result) => {
+            const page = result.data
+            setData(prev => pageToken ? prev.concat(page.sas) : page.sas)
+            setNextPageToken(page.nextPageToken)
+            setLoading(false)
         }, (err) => {
+            setLoading(false)
             let msg
             if (err.response) {
                 msg = err.response.data.messages
@@ -70,17 +77,42 @@ export default function SaTable(props) {
                 preventDuplicate: true
             })
             console.log(err)
-        })
+        }, queryParams)
+    }
+
+    /**
+     * Refresh table data
+     */
+    const refreshTable = () => {
+        loadPage(null)
+    }
+
+    /**
+     * Load the next page of table data, if any
+     */
+    const loadMore = () => {
+        if (nextPageToken && !loading) {
+            loadPage(nextPageToken)
+        }
+    }
+
+    /**
+     * Load the next page when the table is scrolled near the bottom
+     * @param e scroll event
+     */
+    const handleScroll = (e) => {
+        const el = e.currentTarget
+        if (el.scrollHeight - el.scrollTop - el.clientHeight < 200) {
+            loadMore()
+        }
     }
 
     /**
      * Table data
      */
     const [data, setData] = useState([])
-
-    useEffect(() => {
-        (refreshTable)()
-    }, [])
+    const [nextPageToken, setNextPageToken] = useState(null)
+    const [loading, setLoading] = useState(false)
 
     /**
      * Default table column for react-table
@@ -90,67 +122,77 @@ export default function SaTable(props) {
         Filter: DefaultColumnFilter
     }), [])
 
+    /**
+     * Whether the loaded rows hold all the SAs. The columns in SERVER_FILTERS are filtered by the server, the others
+     * filter the loaded rows so they can only be filtered once all the pages are loaded.
+     */
+    const clientFilters = !nextPageToken
+
     /**
      * All columns
      * @type {[{Header: string, accessor: string},{Header: string, accessor: string},{Header: string, accessor: string},{Header: string, accessor: string},{Header: string, accessor: string},null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null]}
      */
     const columns = useMemo(() => [{
-        Header: "SPI", accessor: "spi"
+        Header: "SPI", accessor: "spi", ...serverFilter(true)
     }, {
-        Header: "SCID", accessor: "scid"
+        Header: "SCID", accessor: "scid", ...serverFilter(true)
     }, {
-        Header: "VCID", accessor: "vcid"
+        Header: "VCID", accessor: "vcid", ...serverFilter(true)
     }, {
-        Header: "TFVN", accessor: "tfvn"
+        Header: "TFVN", accessor: "tfvn", disableFilters: !clientFilters
     }, {
-        Header: "MAPID", accessor: "mapid"
+        Header: "MAPID", accessor: "mapid", ...serverFilter(true)
     }, {
         Header: "State",
         accessor: "saState",
         Cell: ({value}) => stateLookupInt(value), Filter: SelectColumnFilter,
+        options: [1, 2, 3],
+        ...serverFilter(false)
     }, {
         Header: "Service Type",
         accessor: "serviceType",
-        Filter: SelectColumnFilter, filter: 'includes'
+        Filter: SelectColumnFilter, filter: 'includes', disableFilters: !clientFilters
     }, {
-        Header: "EKID", accessor: "ekid"
+        Header: "EKID", accessor: "ekid", ...serverFilter(false)
     }, {
-        Header: "AKID", accessor: "akid"
+        Header: "AKID", accessor: "akid", ...serverFilter(false)
     }, {
         Header: "ECS",
         accessor: "ecs",
         Cell: ({value}) => hexEncLookup(value).name,
         Filter: SelectColumnFilter,
-        filter: 'exact'
+        filter: 'exact',
+        disableFilters: !clientFilters
     }, {
         Header: "ACS",
         accessor: "acs",
         Cell: ({value}) => hexAuthLookup(value).name,
         Filter: SelectColumnFilter,
-        filter: 'exact'
+        filter: 'exact',
+        disableFilters: !clientFilters
     }, {
-        Header: "SHIVF Length", accessor: "shivfLen"
+        Header: "SHIVF Length", accessor: "shivfLen", disableFilters: !clientFilters
     }, {
-        Header: "SHSNF Length", accessor: "shsnfLen"
+        Header: "SHSNF Length", accessor: "shsnfLen", disableFilters: !clientFilters
     }, {
-        Header: "SHPLF Length", accessor: "shplfLen"
+        Header: "SHPLF Length", accessor: "shplfLen", disableFilters: !clientFilters
     }, {
-        Header: "STMACF Length", accessor: "stmacfLen"
+        Header: "STMACF Length", accessor: "stmacfLen", disableFilters: !clientFilters
     }, {
-        Header: "IV Length", accessor: "ivLen"
+        Header: "IV Length", accessor: "ivLen", disableFilters: !clientFilters
     }, {
-        Header: "IV", accessor: "iv"
+        Header: "IV", accessor: "iv", disableFilters: !clientFilters
     }, {
-        Header: "ABM Length", accessor: "abmLen"
+        Header: "ABM Length", accessor: "abmLen", disableFilters: !clientFilters
     }, {
-        Header: "ABM", accessor: "abm"
+        Header: "ABM", accessor: "abm", disableFilters: !clientFilters
     }, {
-        Header: "ARSN Length", accessor: "arsnLen"
+        Header: "ARSN Length", accessor: "arsnLen", disableFilters: !clientFilters
     }, {
-        Header: "ARSN", accessor: "arsn"
+        Header: "ARSN", accessor: "arsn", disableFilters: !clientFilters
     }, {
-        Header: "ARSNW", accessor: "arsnw"
-    }], [])
+        Header: "ARSNW", accessor: "arsnw", disableFilters: !clientFilters
+    }], [clientFilters])
 
     /**
      * Default hidden columns
@@ -185,11 +227,15 @@ export default function SaTable(props) {
         selectedFlatRows,
         allColumns,
         toggleHideColumn,
-        setHiddenColumns
+        setHiddenColumns,
+        setAllFilters,
+        state: {filters}
     } = useTable({
             columns,
             data,
             defaultColumn,
+            // the server filters reload the data, which must keep them
+            autoResetFilters: false,
             initialState: {
                 hiddenColumns: hiddenCols
             }
@@ -215,6 +261,29 @@ export default function SaTable(props) {
             ])
         })
 
+    /**
+     * Query parameters of the server filters
+     */
+    const queryParams = toQueryParams(filters)
+    const queryKey = JSON.stringify(queryParams)
+
+    /**
+     * Reload the first page when the server filters change, waiting for the user to stop typing
+     */
+    useEffect(() => {
+        const timer = setTimeout(refreshTable, 300)
+        return () => clearTimeout(timer)
+    }, [queryKey])
+
+    /**
+     * Drop the filters of the loaded rows when there are pages left to load, they would hide the SAs of these pages
+     */
+    useEffect(() => {
+        if (!clientFilters && filters.some(f => !SERVER_FILTERS[f.id])) {
+            setAllFilters(filters.filter(f => SERVER_FILTERS[f.id]))
+        }
+    }, [clientFilters, filters])
+
     /**
      * Reset default hidden columns
      */
@@ -314,7 +383,7 @@ export default function SaTable(props) {
                 handleRowOpen={handleRowOpen}
                 type={props.type}
             />
-            <TableContainer sx={{maxHeight: 1024}}>
+            <TableContainer sx={{maxHeight: 1024}} onScroll={handleScroll}>
                 <Table {...getTableProps()} stickyHeader sx={{minWidth: 650, ...getTableProps()}}
                        aria-label={"sticky table"}>
                     <TableHead key={"tablehead"}>
@@ -329,7 +398,7 @@ export default function SaTable(props) {
                                     }}
                                     >
                                         {column.render("Header")}
-                                        {column.id !== 'selection' ? (
+                                        {column.id !== 'selection' && column.canFilter ? (
                                             <IconButton aria-describedby={anchorElId}
                                                         onClick={(e) => handlePopoverClick(e, column.id)}
                                                         color={column.filterValue ? "secondary" : "primary"}><FilterAltOutlined/></IconButton>
@@ -372,10 +441,56 @@ export default function SaTable(props) {
                     </TableBody>
                 </Table>
             </TableContainer>
+            {nextPageToken ? (
+                <Box sx={{textAlign: "center", padding: "8px"}}>
+                    <Button onClick={loadMore} disabled={loading}>Load more</Button>
+                </Box>
+            ) : ''}
         </Paper>
     </div>)
 }
 
+/**
+ * Query parameters of the columns filtered by the server
+ * @type {{spi: string[], scid: string[], vcid: string[], mapid: string[], saState: string[], ekid: string[], akid: string[]}}
+ */
+const SERVER_FILTERS = Object.freeze({
+    spi: ['spiMin', 'spiMax'],
+    scid: ['scid'],
+    vcid: ['vcid'],
+    mapid: ['mapid'],
+    saState: ['state'],
+    ekid: ['ekid'],
+    akid: ['akid']
+})
+
+/**
+ * Column options of a filter applied by the server, the rows are already filtered when they are loaded
+ * @param numeric whether the filter value is a number
+ * @returns {{serverFilter: boolean, numeric: boolean, filter: function(*): *}}
+ */
+function serverFilter(numeric) {
+    return {serverFilter: true, numeric: numeric, filter: rows => rows}
+}
+
+/**
+ * Map the table filters to the query parameters of the SA page request
+ * @param filters react-table filters
+ * @returns {{}} query parameters
+ */
+function toQueryParams(filters) {
+    const params = {}
+    filters.forEach(f => {
+        const names = SERVER_FILTERS[f.id]
+        if (names && f.value !== undefined && f.value !== '') {
+            names.forEach(name => {
+                params[name] = f.value
+            })
+        }
+    })
+    return params
+}
+
 /**
  * Allows checkboxes to interact with table/row state. From react-table examples.
  * @type {React.ForwardRefExoticComponent<React.PropsWithoutRef<{readonly indeterminate?: *}> & React.RefAttributes<unknown>>}
@@ -404,15 +519,16 @@ const IndeterminateCheckBox = React.forwardRef(
  * @constructor
  */
 function DefaultColumnFilter({
-                                 column: {filterValue, preFilteredRows, setFilter},
+                                 column: {filterValue, preFilteredRows, setFilter, serverFilter, numeric},
                              }) {
     const count = preFilteredRows.length
     return (<TextField
         value={filterValue || ''}
+        type={numeric ? 'number' : 'text'}
         onChange={e => {
             setFilter(e.target.value || undefined)
         }}
-        placeholder={`Filter ${count} items`}
+        placeholder={serverFilter ? 'Filter all items' : `Filter ${count} items`}
         autoFocus
     />)
 }
@@ -427,15 +543,19 @@ function DefaultColumnFilter({
  * @constructor
  */
 function SelectColumnFilter({
-                                column: {filterValue, setFilter, preFilteredRows, id},
+                                column: {filterValue, setFilter, preFilteredRows, id, options: columnOptions},
                             }) {
+    // a column filtered by the server lists its options, the loaded rows only have the selected one
     const options = React.useMemo(() => {
+        if (columnOptions) {
+            return columnOptions
+        }
         const options = new Set()
         preFilteredRows.forEach(row => {
             options.add(row.values[id])
         })
         return [...options.values()]
-    }, [id, preFilteredRows])
+    }, [id, preFilteredRows, columnOptions])
 
     return (<FormControl fullWidth>
         <Select
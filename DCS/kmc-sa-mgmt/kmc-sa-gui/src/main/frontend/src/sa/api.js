@@ -18,9 +18,21 @@
  */
 import axios from "axios";
 
-export const listSa = async (type, respCallback, errCallback) => {
+/**
+ * List a page of SAs
+ * @param type frame type (TC/TM/AOS)
+ * @param pageToken token of the page to fetch, null for the first page
+ * @param respCallback response callback, receives the SAs and the next page token
+ * @param errCallback error callback
+ * @param params optional query parameters (scid, spiMin, spiMax, vcid, mapid, state, ekid, akid, sort, order, limit)
+ */
+export const listSa = async (type, pageToken, respCallback, errCallback, params = {}) => {
     try {
-        const result = await axios("api/sa/" + type)
+        const result = await axios({
+            method: 'get',
+            url: `api/sa/page/${type}`,
+            params: pageToken ? {...params, pageToken: pageToken} : params
+        })
         respCallback(result)
     } catch (err) {
         errCallback(err)
@@ -4,6 +4,7 @@ import gov.nasa.jpl.ammos.asec.kmc.api.ex.KmcException;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
 import gov.nasa.jpl.ammos.asec.kmc.sadb.DaoFactory;
+import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
 import gov.nasa.jpl.ammos.asec.kmc.sadb.config.Config;
 import gov.nasa.jpl.ammos.asec.kmc.saserver.app.sa.SecAssnDeserializer;
 import jakarta.annotation.PreDestroy;
@@ -62,7 +63,7 @@ public class KmcSaMgmt extends SpringBootServletInitializer {
         Config cfg = new Config(defaultKmcCfgPath, "kmc-sa-mgmt-service.properties");
         cfg.setOverrideJvmTruststore(false);
         try {
-            dao = DaoFactory.getDao(cfg);
+            dao = DaoFactory.getDao(cfg, KmcDao.SERVICE_SPI_BLOCK_SIZE);
             dao.init();
         } catch (KmcException e) {
             if (e.getCause() instanceof HibernateException) {
@@ -10,13 +10,20 @@ import gov.nasa.jpl.ammos.asec.kmc.api.json.ByteArrayDeserializer;
 import gov.nasa.jpl.ammos.asec.kmc.api.json.ByteArraySerializer;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.FrameType;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
-import gov.nasa.jpl.ammos.asec.kmc.api.sa.SecAssnValidator;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ServiceType;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IDbSession;
 import gov.nasa.jpl.ammos.asec.kmc.api.sadb.IKmcDao;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaBulkResult;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaCounters;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaImportResult;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaPage;
+import gov.nasa.jpl.ammos.asec.kmc.api.sadb.SaQuery;
+import gov.nasa.jpl.ammos.asec.kmc.format.IOutput;
 import gov.nasa.jpl.ammos.asec.kmc.format.SaCsvInput;
 import gov.nasa.jpl.ammos.asec.kmc.format.SaCsvOutput;
+import gov.nasa.jpl.ammos.asec.kmc.format.SaJsonOutput;
+import gov.nasa.jpl.ammos.asec.kmc.format.SaMysqlOutput;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,21 +35,25 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Serializable;
-import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao.*;
 
@@ -76,6 +87,7 @@ public class SaController {
         private byte[]  arsn;
         private Short   arsnLen;
         private Short   arsnw;
+        private Long    version;
 
         public SpiScid getId() {
             return id;
@@ -108,6 +120,14 @@ public class SaController {
         public void setArsnw(Short arsnw) {
             this.arsnw = arsnw;
         }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
     }
 
     /**
@@ -119,6 +139,7 @@ public class SaController {
         @JsonDeserialize(using = ByteArrayDeserializer.class)
         private byte[]  iv;
         private Short   ivLen;
+        private Long    version;
 
         public SpiScid getId() {
             return id;
@@ -143,6 +164,38 @@ public class SaController {
         public void setIvLen(Short ivLen) {
             this.ivLen = ivLen;
         }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Convenience class for counter increment operation
+     */
+    public static class Increment implements Serializable {
+        private SpiScid id;
+        private long    n = 1;
+
+        public SpiScid getId() {
+            return id;
+        }
+
+        public void setId(SpiScid id) {
+            this.id = id;
+        }
+
+        public long getN() {
+            return n;
+        }
+
+        public void setN(long n) {
+            this.n = n;
+        }
     }
 
     /**
@@ -178,6 +231,147 @@ public class SaController {
         }
     }
 
+    /**
+     * Convenience class for bulk operations. Fields other than ids and mode are used by the operations they apply
+     * to.
+     */
+    public static class Bulk implements Serializable {
+        private List<SpiScid>     ids  = new ArrayList<>();
+        private SaBulkResult.Mode mode = SaBulkResult.Mode.ALL_OR_NOTHING;
+        private boolean           force;
+        private String            ekid;
+        @JsonSerialize(using = ByteArraySerializer.class)
+        @JsonDeserialize(using = ByteArrayDeserializer.class)
+        private byte[]            ecs;
+        private Short             ecsLen;
+        private String            akid;
+        @JsonSerialize(using = ByteArraySerializer.class)
+        @JsonDeserialize(using = ByteArrayDeserializer.class)
+        private byte[]            acs;
+        private Short             acsLen;
+        @JsonSerialize(using = ByteArraySerializer.class)
+        @JsonDeserialize(using = ByteArrayDeserializer.class)
+        private byte[]            arsn;
+        private Short             arsnLen;
+        private Short             arsnw;
+        @JsonSerialize(using = ByteArraySerializer.class)
+        @JsonDeserialize(using = ByteArrayDeserializer.class)
+        private byte[]            iv;
+        private Short             ivLen;
+
+        public List<SpiScid> getIds() {
+            return ids;
+        }
+
+        public void setIds(List<SpiScid> ids) {
+            this.ids = ids;
+        }
+
+        public SaBulkResult.Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(SaBulkResult.Mode mode) {
+            this.mode = mode;
+        }
+
+        public boolean isForce() {
+            return force;
+        }
+
+        public void setForce(boolean force) {
+            this.force = force;
+        }
+
+        public String getEkid() {
+            return ekid;
+        }
+
+        public void setEkid(String ekid) {
+            this.ekid = ekid;
+        }
+
+        public byte[] getEcs() {
+            return ecs;
+        }
+
+        public void setEcs(byte[] ecs) {
+            this.ecs = ecs;
+        }
+
+        public Short getEcsLen() {
+            return ecsLen;
+        }
+
+        public void setEcsLen(Short ecsLen) {
+            this.ecsLen = ecsLen;
+        }
+
+        public String getAkid() {
+            return akid;
+        }
+
+        public void setAkid(String akid) {
+            this.akid = akid;
+        }
+
+        public byte[] getAcs() {
+            return acs;
+        }
+
+        public void setAcs(byte[] acs) {
+            this.acs = acs;
+        }
+
+        public Short getAcsLen() {
+            return acsLen;
+        }
+
+        public void setAcsLen(Short acsLen) {
+            this.acsLen = acsLen;
+        }
+
+        public byte[] getArsn() {
+            return arsn;
+        }
+
+        public void setArsn(byte[] arsn) {
+            this.arsn = arsn;
+        }
+
+        public Short getArsnLen() {
+            return arsnLen;
+        }
+
+        public void setArsnLen(Short arsnLen) {
+            this.arsnLen = arsnLen;
+        }
+
+        public Short getArsnw() {
+            return arsnw;
+        }
+
+        public void setArsnw(Short arsnw) {
+            this.arsnw = arsnw;
+        }
+
+        public byte[] getIv() {
+            return iv;
+        }
+
+        public void setIv(byte[] iv) {
+            this.iv = iv;
+        }
+
+        public Short getIvLen() {
+            return ivLen;
+        }
+
+        public void setIvLen(Short ivLen) {
+            this.ivLen = ivLen;
+        }
+    }
+
     @GetMapping({"/sa/{type}", "/sa"})
     public List<ISecAssn> getSa(@PathVariable(name = "type", required = false) String type,
                                 @RequestParam(name = "scid", required = false) Short scid,
@@ -194,17 +388,71 @@ public class SaController {
             return Collections.singletonList(dao.getSa(new SpiScid(spi, scid), frameType));
         }
         LOG.info("{} retrieving {} SAs", request.getRemoteAddr(), frameType.name());
-        List<ISecAssn> sas = dao.getSas(frameType);
-        if (scid != null) {
-            sas = sas.stream().filter(sa -> sa.getScid().equals(scid)).toList();
-        }
-        if (spi != null) {
-            sas = sas.stream().filter(sa -> sa.getSpi().equals(spi)).toList();
+        List<ISecAssn> sas;
+        if (scid != null || spi != null) {
+            // filter in the database, reading every page of the result
+            sas = new ArrayList<>();
+            SaQuery query = new SaQuery().setType(frameType).setScid(scid).setSpiRange(spi, spi)
+                    .setLimit(SaQuery.MAX_LIMIT);
+            SaPage page;
+            do {
+                page = dao.getSas(query);
+                sas.addAll(page.getSas());
+                query.setPageToken(page.getNextPageToken());
+            } while (page.getNextPageToken() != null);
+        } else {
+            sas = dao.getSas(frameType);
         }
         LOG.info("{} sent {} {} SAs", request.getRemoteAddr(), sas.size(), frameType.name());
         return sas;
     }
 
+    @GetMapping({"/sa/page/{type}", "/sa/page"})
+    public SaPage getSaPage(@PathVariable(name = "type", required = false) String type,
+                            @RequestParam(name = "scid", required = false) Short scid,
+                            @RequestParam(name = "spiMin", required = false) Integer spiMin,
+                            @RequestParam(name = "spiMax", required = false) Integer spiMax,
+                            @RequestParam(name = "vcid", required = false) Byte vcid,
+                            @RequestParam(name = "mapid", required = false) Byte mapid,
+                            @RequestParam(name = "state", required = false) Short state,
+                            @RequestParam(name = "ekid", required = false) String ekid,
+                            @RequestParam(name = "akid", required = false) String akid,
+                            @RequestParam(name = "sort", defaultValue = "scid") String sort,
+                            @RequestParam(name = "order", defaultValue = "asc") String order,
+                            @RequestParam(name = "limit", defaultValue = "" + SaQuery.DEFAULT_LIMIT) int limit,
+                            @RequestParam(name = "pageToken", required = false) String pageToken,
+                            HttpServletRequest request) throws KmcException {
+        FrameType frameType = StringUtils.hasText(type) ? FrameType.fromString(type) : FrameType.ALL;
+        if (frameType == FrameType.UNKNOWN) {
+            throw new KmcException(String.format("%s is an unknown frame type", type));
+        }
+        SaQuery.Sort sortBy;
+        try {
+            sortBy = SaQuery.Sort.valueOf(sort.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new KmcException(String.format("%s is an unknown sort order", sort));
+        }
+        if (!order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            throw new KmcException(String.format("%s is an unknown sort direction", order));
+        }
+        SaQuery query = new SaQuery()
+                .setType(frameType)
+                .setScid(scid)
+                .setSpiRange(spiMin, spiMax)
+                .setVcid(vcid)
+                .setMapid(mapid)
+                .setSaState(state)
+                .setEkid(ekid)
+                .setAkid(akid)
+                .setSort(sortBy, order.equalsIgnoreCase("desc"))
+                .setLimit(limit)
+                .setPageToken(pageToken);
+        LOG.info("{} retrieving page of {} SAs", request.getRemoteAddr(), frameType.name());
+        SaPage page = dao.getSas(query);
+        LOG.info("{} sent page of {} {} SAs", request.getRemoteAddr(), page.getSas().size(), frameType.name());
+        return page;
+    }
+
     @PutMapping("/sa")
     public ISecAssn putSa(@RequestBody ISecAssn sa, HttpServletRequest request) throws KmcException {
         LOG.info("{} creating SA ({}/{})", request.getRemoteAddr(), sa.getSpi(), sa.getScid());
@@ -218,9 +466,14 @@ public class SaController {
         LOG.info("{} updating SA ({}/{})", request.getRemoteAddr(), sa.getSpi(), sa.getScid());
         checkEncryption(sa);
         checkAuthentication(sa);
-        ISecAssn original = dao.getSa(sa.getId(), sa.getType());
+        ISecAssn updated;
         try (IDbSession dbSession = dao.newSession()) {
             dbSession.beginTransaction();
+            ISecAssn original = dao.getSa(dbSession, sa.getId(), sa.getType());
+            if (original == null) {
+                throw new KmcException(String.format("SA %d/%d does not exist, cannot update", sa.getSpi(),
+                        sa.getScid()));
+            }
             if (!Objects.equals(original.getSaState(), sa.getSaState())) {
                 switch (sa.getSaState()) {
                     case SA_OPERATIONAL:
@@ -236,13 +489,14 @@ public class SaController {
             }
             dao.updateSa(dbSession, sa);
             dbSession.commit();
+            updated = dao.getSa(dbSession, sa.getId(), sa.getType());
         } catch (KmcException e) {
             throw e;
         } catch (Exception e) {
             throw new KmcException(e);
         }
         LOG.info("{} updated SA ({}/{})", request.getRemoteAddr(), sa.getSpi(), sa.getScid());
-        return dao.getSa(sa.getId(), sa.getType());
+        return updated;
     }
 
     private void checkAuthentication(ISecAssn sa) throws KmcException {
@@ -315,49 +569,154 @@ public class SaController {
         LOG.info("{} resetting ARSN on SA ({}/{}) {}", request.getRemoteAddr(), idArsn.id.getSpi(),
                 idArsn.id.getScid(), frameType.name());
         ObjectNode respBody = mapper.createObjectNode();
-        ISecAssn   sa       = dao.getSa(idArsn.id, frameType);
-        if (sa != null) {
-            try {
-                if (idArsn.arsn.length < idArsn.arsnLen) {
-                    int    diff    = idArsn.arsnLen - idArsn.arsn.length;
-                    byte[] newArsn = new byte[idArsn.arsnLen];
-                    System.arraycopy(idArsn.arsn, 0, newArsn, diff, idArsn.arsn.length);
-                    idArsn.arsn = newArsn;
-                    respBody.withArray(MESSAGES_KEY).add("Array left padded with " + diff + " bytes");
-                } else if (idArsn.arsn.length > idArsn.arsnLen) {
-                    respBody.put(STATUS_KEY, ERROR_STATUS);
-                    respBody.withArray(MESSAGES_KEY).add("ARSN is larger than ARSN length in bytes");
-                    return ResponseEntity.badRequest().body(respBody);
-                }
-                sa.setArsn(idArsn.arsn);
-                sa.setArsnLen(idArsn.arsnLen);
-                sa.setArsnw(idArsn.arsnw);
-                dao.updateSa(sa);
-                respBody.put(STATUS_KEY, SUCCESS_STATUS);
-                LOG.info("{} reset ARSN on SA ({}/{}) {}", request.getRemoteAddr(), idArsn.id.getSpi(),
-                        idArsn.id.getScid(), frameType.name());
-                return ResponseEntity.ok().body(respBody);
-            } catch (IllegalArgumentException e) {
-                respBody.put(STATUS_KEY, ERROR_STATUS);
-                respBody.withArray(MESSAGES_KEY).add("ARSN input not a valid hex string");
+        if (idArsn.arsn.length < idArsn.arsnLen) {
+            int diff = idArsn.arsnLen - idArsn.arsn.length;
+            idArsn.arsn = leftPad(idArsn.arsn, idArsn.arsnLen);
+            respBody.withArray(MESSAGES_KEY).add("Array left padded with " + diff + " bytes");
+        } else if (idArsn.arsn.length > idArsn.arsnLen) {
+            respBody.put(STATUS_KEY, ERROR_STATUS);
+            respBody.withArray(MESSAGES_KEY).add("ARSN is larger than ARSN length in bytes");
+            return ResponseEntity.badRequest().body(respBody);
+        }
+        ResponseEntity<JsonNode> resp;
+        if (idArsn.version == null) {
+            resp = counterResponse(respBody, dao.resetArsns(List.of(idArsn.id), idArsn.arsn, idArsn.arsnLen,
+                    idArsn.arsnw, frameType, SaBulkResult.Mode.ALL_OR_NOTHING));
+        } else {
+            SaCounters expected = dao.getCounters(idArsn.id, frameType);
+            SaCounters written  = null;
+            if (expected != null && idArsn.version.equals(expected.getVersion())) {
+                written = dao.compareAndSetArsn(expected, idArsn.arsn, idArsn.arsnLen, idArsn.arsnw);
             }
+            resp = counterResponse(respBody, idArsn.id, idArsn.version, expected, written);
         }
-        respBody.put(STATUS_KEY, ERROR_STATUS);
-        respBody.withArray(MESSAGES_KEY).add("An unknown error occurred");
-        LOG.info("{} failed to reset ARSN on SA ({}/{}) {}", request.getRemoteAddr(), idArsn.id.getSpi(),
-                idArsn.id.getScid(), frameType.name());
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(respBody);
+        LOG.info("{} {} ARSN on SA ({}/{}) {}", request.getRemoteAddr(), resp.getStatusCode().is2xxSuccessful() ?
+                "reset" : "failed to reset", idArsn.id.getSpi(), idArsn.id.getScid(), frameType.name());
+        return resp;
+    }
+
+    @GetMapping({"/sa/counters/{type}", "/sa/counters"})
+    public SaCounters getCounters(@PathVariable(name = "type", required = false) String type,
+                                  @RequestParam(name = "spi") Integer spi,
+                                  @RequestParam(name = "scid") Short scid) throws KmcException {
+        FrameType  frameType = StringUtils.hasText(type) ? FrameType.fromString(type) : FrameType.TC;
+        SaCounters counters  = dao.getCounters(new SpiScid(spi, scid), frameType);
+        if (counters == null) {
+            throw new KmcException(String.format("SA %d/%d does not exist", spi, scid));
+        }
+        return counters;
+    }
+
+    @PostMapping(value = {"/sa/increment/{counter}/{type}", "/sa/increment/{counter}"}, consumes =
+            MediaType.APPLICATION_JSON_VALUE)
+    public SaCounters increment(@PathVariable(name = "counter") String counter,
+                                @PathVariable(name = "type", required = false) String type,
+                                @RequestBody Increment increment,
+                                HttpServletRequest request) throws KmcException {
+        FrameType frameType = StringUtils.hasText(type) ? FrameType.fromString(type) : FrameType.TC;
+        LOG.info("{} incrementing {} on SA ({}/{}) {} by {}", request.getRemoteAddr(), counter,
+                increment.id.getSpi(), increment.id.getScid(), frameType.name(), increment.n);
+        SaCounters written = switch (counter.toLowerCase()) {
+            case "arsn" -> dao.incrementArsn(increment.id, frameType, increment.n);
+            case "iv" -> dao.incrementIv(increment.id, frameType, increment.n);
+            default -> throw new KmcException(String.format("%s is an unknown counter", counter));
+        };
+        LOG.info("{} incremented {} on SA ({}/{}) {}", request.getRemoteAddr(), counter, increment.id.getSpi(),
+                increment.id.getScid(), frameType.name());
+        return written;
+    }
+
+    private static ResponseEntity<JsonNode> counterResponse(ObjectNode respBody, SaBulkResult result) {
+        if (result.hasErrors()) {
+            respBody.put(STATUS_KEY, ERROR_STATUS);
+            errorMessages(result).forEach(respBody.withArray(MESSAGES_KEY)::add);
+            return ResponseEntity.badRequest().body(respBody);
+        }
+        respBody.put(STATUS_KEY, SUCCESS_STATUS);
+        return ResponseEntity.ok().body(respBody);
+    }
+
+    private static ResponseEntity<JsonNode> counterResponse(ObjectNode respBody, SpiScid id, Long version,
+                                                            SaCounters expected, SaCounters written) {
+        if (expected == null || expected.getVersion() == null) {
+            respBody.put(STATUS_KEY, ERROR_STATUS);
+            respBody.withArray(MESSAGES_KEY).add(String.format(expected == null ? "SA %d/%d does not exist" :
+                    "SA %d/%d has no version, reset it without one", id.getSpi(), id.getScid()));
+            return ResponseEntity.badRequest().body(respBody);
+        }
+        if (written == null) {
+            respBody.put(STATUS_KEY, ERROR_STATUS);
+            respBody.withArray(MESSAGES_KEY).add(String.format("SA %d/%d is at version %s, not %d", id.getSpi(),
+                    id.getScid(), expected.getVersion(), version));
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(respBody);
+        }
+        respBody.put(STATUS_KEY, SUCCESS_STATUS);
+        respBody.put("version", written.getVersion());
+        return ResponseEntity.ok().body(respBody);
     }
 
     @DeleteMapping({"/sa/{type}", "/sa"})
     public void deleteSa(@PathVariable(name = "type", required = false) String type, @RequestBody List<SpiScid> ids,
+                         @RequestParam(name = "mode", defaultValue = "ALL_OR_NOTHING") SaBulkResult.Mode mode,
                          HttpServletRequest request) throws KmcException {
         FrameType frameType = type == null ? FrameType.TC : FrameType.fromString(type);
-        for (SpiScid id : ids) {
-            LOG.info("{} deleting SA ({}/{}) {}", request.getRemoteAddr(), id.getSpi(), id.getScid(), frameType.name());
-            dao.deleteSa(id, frameType);
-            LOG.info("{} deleted SA ({}/{}) {}", request.getRemoteAddr(), id.getSpi(), id.getScid(), frameType.name());
+        LOG.info("{} deleting {} SA(s) {}", request.getRemoteAddr(), ids.size(), frameType.name());
+        SaBulkResult result = dao.deleteSas(ids, frameType, mode);
+        LOG.info("{} deleted {} SA(s) {}", request.getRemoteAddr(), result.getSucceeded(), frameType.name());
+        if (result.hasErrors()) {
+            throw new KmcException(String.join(", ", errorMessages(result)));
+        }
+    }
+
+    @PostMapping(value = {"/sa/bulk/{operation}/{type}", "/sa/bulk/{operation}"}, consumes =
+            MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JsonNode> bulk(@PathVariable(name = "operation") String operation,
+                                         @PathVariable(name = "type", required = false) String type,
+                                         @RequestBody Bulk bulk,
+                                         HttpServletRequest request) throws KmcException {
+        FrameType frameType = StringUtils.hasText(type) ? FrameType.fromString(type) : FrameType.TC;
+        LOG.info("{} bulk {} of {} SA(s) {}", request.getRemoteAddr(), operation, bulk.ids.size(), frameType.name());
+        SaBulkResult result = switch (operation.toLowerCase()) {
+            case "start" -> dao.startSas(bulk.ids, bulk.force, frameType, bulk.mode);
+            case "stop" -> dao.stopSas(bulk.ids, frameType, bulk.mode);
+            case "expire" -> dao.expireSas(bulk.ids, frameType, bulk.mode);
+            case "key" -> dao.rekeySas(bulk.ids, bulk.ekid, bulk.ecs, bulk.ecsLen, bulk.akid, bulk.acs,
+                    bulk.acsLen, frameType, bulk.mode);
+            case "arsn" -> dao.resetArsns(bulk.ids, leftPad(bulk.arsn, bulk.arsnLen), bulk.arsnLen, bulk.arsnw,
+                    frameType, bulk.mode);
+            case "iv" -> dao.resetIvs(bulk.ids, leftPad(bulk.iv, bulk.ivLen), bulk.ivLen, frameType, bulk.mode);
+            case "delete" -> dao.deleteSas(bulk.ids, frameType, bulk.mode);
+            default -> throw new KmcException(String.format("%s is an unknown bulk operation", operation));
+        };
+        ObjectNode resp = mapper.valueToTree(result);
+        if (result.hasErrors()) {
+            resp.put(STATUS_KEY, ERROR_STATUS);
+            errorMessages(result).forEach(resp.withArray(MESSAGES_KEY)::add);
+        } else {
+            resp.put(STATUS_KEY, SUCCESS_STATUS);
+        }
+        LOG.info("{} bulk {} of {} SA(s) {}: {} applied, {} failed", request.getRemoteAddr(), operation,
+                bulk.ids.size(), frameType.name(), result.getSucceeded(), result.getFailed());
+        return new ResponseEntity<>(resp, result.hasErrors() ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+    }
+
+    private static byte[] leftPad(byte[] value, Short len) {
+        if (value == null || len == null || value.length >= len) {
+            return value;
+        }
+        byte[] padded = new byte[len];
+        System.arraycopy(value, 0, padded, len - value.length, value.length);
+        return padded;
+    }
+
+    private static List<String> errorMessages(SaBulkResult result) {
+        List<String> messages = new ArrayList<>();
+        for (SaBulkResult.Item item : result.getItems()) {
+            if (!item.isSuccess()) {
+                messages.add(item.getMessage());
+            }
         }
+        return messages;
     }
 
     @PostMapping(value = {"/sa/create/{type}", "/sa/create"})
@@ -384,35 +743,18 @@ public class SaController {
         SaCsvInput input  = new SaCsvInput();
         int        count  = 0;
         int        errs   = 0;
-        try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            List<ISecAssn> sas = input.parseCsv(reader, FrameType.ALL);
-            sas = sas.stream().filter(sa -> frameTypes.contains(sa.getType())).toList();
-            try (IDbSession session = dao.newSession()) {
-                for (ISecAssn sa : sas) {
-                    session.beginTransaction();
-                    try {
-                        SecAssnValidator.validate(sa);
-                        ISecAssn exists = dao.getSa(sa.getId(), sa.getType());
-                        if (exists != null && force) {
-                            dao.deleteSa(session, sa.getId(), sa.getType());
-                            session.flush();
-                        }
-                        dao.createSa(session, sa);
-                        count++;
-                    } catch (KmcException e) {
-                        errors = true;
-                        errs++;
-                        resp.withArray(MESSAGES_KEY).add(e.getMessage());
-                        session.rollback();
-                    } finally {
-                        if (session.isActive()) {
-                            session.commit();
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                handleException(e);
+        SaImportResult result = new SaImportResult();
+        try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
+             Stream<SaImportResult.Row> sas = input.streamCsv(reader, FrameType.ALL, result)) {
+            dao.createSas(sas.filter(row -> frameTypes.contains(row.getSa().getType())).iterator(), force, result);
+            count = result.getCreated() + result.getReplaced();
+            for (SaImportResult.RowError e : result.getErrors()) {
+                errors = true;
+                errs++;
+                resp.withArray(MESSAGES_KEY).add(e.getMessage());
             }
+        } catch (KmcException e) {
+            handleException(e);
         }
         HttpStatus status = HttpStatus.CREATED;
         if (!errors) {
@@ -427,69 +769,86 @@ public class SaController {
     }
 
     @GetMapping(value = {"/sa/csv/{type}", "/sa/csv"})
-    public ResponseEntity<String> downloadCsv(@PathVariable(name = "type", required = false) String type,
-                                              HttpServletRequest request) throws KmcException {
+    public ResponseEntity<StreamingResponseBody> downloadCsv(@PathVariable(name = "type", required = false)
+                                                             String type,
+                                                             HttpServletRequest request) throws KmcException {
+        return export(type, "csv", request);
+    }
+
+    @GetMapping(value = {"/sa/export/{type}", "/sa/export"})
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable(name = "type", required = false) String type,
+                                                        @RequestParam(name = "format", defaultValue = "csv")
+                                                        String format,
+                                                        HttpServletRequest request) throws KmcException {
         FrameType frameType = StringUtils.hasText(type) ? FrameType.fromString(type) : FrameType.ALL;
-        LOG.info("{} downloading {} SAs as CSV", request.getRemoteAddr(), frameType.name());
-        SaCsvOutput    out = new SaCsvOutput(true);
-        List<ISecAssn> sas = dao.getSas(frameType);
-        StringWriter   w   = new StringWriter();
-        try (PrintWriter pw = new PrintWriter(w)) {
-            out.print(pw, sas);
+        if (frameType == FrameType.UNKNOWN) {
+            throw new KmcException(String.format("%s is an unknown frame type", type));
         }
+        IOutput   out;
+        String    extension;
+        switch (format.toLowerCase()) {
+            case "csv" -> {
+                out = new SaCsvOutput(true);
+                extension = "csv";
+            }
+            case "json" -> {
+                out = new SaJsonOutput();
+                extension = "json";
+            }
+            case "mysql" -> {
+                out = new SaMysqlOutput();
+                extension = "txt";
+            }
+            default -> throw new KmcException(String.format("unsupported export format %s", format));
+        }
+        LOG.info("{} exporting {} SAs as {}", request.getRemoteAddr(), frameType.name(), format);
+        // the stream, and its database session, only live while the body is written, so an abandoned response
+        // never opens one
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<ISecAssn> sas = dao.streamSas(new SaQuery().setType(frameType))) {
+                PrintWriter pw = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                out.print(pw, sas.iterator());
+            } catch (KmcException e) {
+                throw new IOException(e);
+            }
+        };
         SimpleDateFormat sdf      = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-        String           fileName = "SADB_" + sdf.format(new Date()) + ".csv";
-        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName).header("X-Suggested-Filename", fileName).body(w.toString());
+        String           fileName = "SADB_" + sdf.format(new Date()) + "." + extension;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName).header("X-Suggested-Filename", fileName).body(body);
     }
 
     @PostMapping(value = {"/sa/iv/{type}", "/sa/iv"}, consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<JsonNode> resetIv(@PathVariable(name = "type", required = false) String type,
                                             @RequestBody IdIv idIv,
-                                            HttpServletRequest request) {
+                                            HttpServletRequest request) throws KmcException {
         FrameType  frameType = StringUtils.hasText(type) ? FrameType.fromString(type) : FrameType.TC;
         ObjectNode respBody  = mapper.createObjectNode();
         LOG.info("{} resetting IV on ({}/{}) {}", request.getRemoteAddr(), idIv.id.getSpi(), idIv.id.getScid(),
                 frameType.name());
-        try (IDbSession dbSession = dao.newSession()) {
-            try {
-                dbSession.beginTransaction();
-                ISecAssn sa = dao.getSa(dbSession, idIv.id, frameType);
-                if (sa != null) {
-                    try {
-                        if (idIv.iv.length < idIv.ivLen) {
-                            int    diff  = idIv.ivLen - idIv.iv.length;
-                            byte[] newIv = new byte[idIv.ivLen];
-                            System.arraycopy(idIv.iv, 0, newIv, diff, idIv.iv.length);
-                            idIv.iv = newIv;
-                            respBody.withArray(MESSAGES_KEY).add("Array left padded with " + diff + " bytes");
-                        } else if (idIv.iv.length > idIv.ivLen) {
-                            respBody.put(STATUS_KEY, ERROR_STATUS);
-                            respBody.withArray(MESSAGES_KEY).add("IV is larger than IV length in bytes");
-                            return ResponseEntity.badRequest().body(respBody);
-                        }
-                        sa.setIv(idIv.iv);
-                        sa.setIvLen(idIv.ivLen);
-                        dao.updateSa(dbSession, sa);
-                        respBody.put(STATUS_KEY, SUCCESS_STATUS);
-                        LOG.info("{} reset IV on ({}/{}) {}", request.getRemoteAddr(), idIv.id.getSpi(),
-                                idIv.id.getScid(),
-                                frameType.name());
-                        return ResponseEntity.ok().body(respBody);
-                    } catch (IllegalArgumentException e) {
-                        respBody.put(STATUS_KEY, ERROR_STATUS);
-                        respBody.withArray(MESSAGES_KEY).add("IV input not a valid Base64 string");
-                    }
-                }
-            } finally {
-                dbSession.commit();
+        if (idIv.iv.length < idIv.ivLen) {
+            int diff = idIv.ivLen - idIv.iv.length;
+            idIv.iv = leftPad(idIv.iv, idIv.ivLen);
+            respBody.withArray(MESSAGES_KEY).add("Array left padded with " + diff + " bytes");
+        } else if (idIv.iv.length > idIv.ivLen) {
+            respBody.put(STATUS_KEY, ERROR_STATUS);
+            respBody.withArray(MESSAGES_KEY).add("IV is larger than IV length in bytes");
+            return ResponseEntity.badRequest().body(respBody);
+        }
+        ResponseEntity<JsonNode> resp;
+        if (idIv.version == null) {
+            resp = counterResponse(respBody, dao.resetIvs(List.of(idIv.id), idIv.iv, idIv.ivLen, frameType,
+                    SaBulkResult.Mode.ALL_OR_NOTHING));
+        } else {
+            SaCounters expected = dao.getCounters(idIv.id, frameType);
+            SaCounters written  = null;
+            if (expected != null && idIv.version.equals(expected.getVersion())) {
+                written = dao.compareAndSetIv(expected, idIv.iv, idIv.ivLen);
             }
-        } catch (Exception e) {
-            handleException(e);
+            resp = counterResponse(respBody, idIv.id, idIv.version, expected, written);
         }
-
-        respBody.put(STATUS_KEY, ERROR_STATUS);
-        respBody.withArray(MESSAGES_KEY).add("An unknown error occurred");
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(respBody);
+        LOG.info("{} {} IV on ({}/{}) {}", request.getRemoteAddr(), resp.getStatusCode().is2xxSuccessful() ?
+                "reset" : "failed to reset", idIv.id.getSpi(), idIv.id.getScid(), frameType.name());
+        return resp;
     }
 
     @PostMapping(value = {"/sa/key/{type}", "/sa/key"}, consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -10,6 +10,7 @@ import gov.nasa.jpl.ammos.asec.kmc.api.sa.ISecAssn;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.ServiceType;
 import gov.nasa.jpl.ammos.asec.kmc.api.sa.SpiScid;
 import gov.nasa.jpl.ammos.asec.kmc.sadb.BaseH2Test;
+import gov.nasa.jpl.ammos.asec.kmc.sadb.KmcDao;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +21,7 @@ import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -75,6 +77,34 @@ public class SaControllerTest extends BaseH2Test {
         assertEquals(5, resp.size());
     }
 
+    @Test
+    public void testGetSaPages() {
+        List<String> ids       = new ArrayList<>();
+        String       pageToken = null;
+        int          pages     = 0;
+        do {
+            String url = getUrl() + "/page?limit=4&sort=spi&order=desc" + (pageToken != null ?
+                    "&pageToken=" + pageToken : "");
+            ObjectNode page = restTemplate.getForObject(url, ObjectNode.class);
+            assertNotNull(page);
+            page.get("sas").forEach(sa -> ids.add(sa.get("type").asText() + sa.get("spi").asInt()));
+            pageToken = page.get("nextPageToken").isNull() ? null : page.get("nextPageToken").asText();
+            pages++;
+        } while (pageToken != null);
+        assertEquals(4, pages);
+        assertEquals(15, ids.size());
+        assertEquals("TC5", ids.get(0));
+        assertEquals("AOS1", ids.get(14));
+
+        ObjectNode page = restTemplate.getForObject(getUrl() + "/page/tm?scid=46&spiMin=2&spiMax=3",
+                ObjectNode.class);
+        assertEquals(2, page.get("sas").size());
+        assertTrue(page.get("nextPageToken").isNull());
+
+        ObjectNode err = restTemplate.getForObject(getUrl() + "/page?sort=vcid", ObjectNode.class);
+        assertEquals("error", err.get("status").asText());
+    }
+
     private String getUrl() {
         return String.format("http://localhost:%d/api/sa", port);
     }
@@ -779,6 +809,25 @@ public class SaControllerTest extends BaseH2Test {
         assertEquals(17, entries.size());
     }
 
+    @Test
+    public void testExport() throws Exception {
+        testCreateSa();
+        String mysql = restTemplate.getForObject(getUrl() + "/export/TC?format=mysql", String.class);
+        assertNotNull(mysql);
+        assertTrue(mysql.contains("*************************** 6. row ***************************"));
+        String json = restTemplate.getForObject(getUrl() + "/export/TC?format=json", String.class);
+        assertNotNull(json);
+        JsonNode sas = mapper.readTree(json);
+        assertTrue(sas.isArray());
+        assertEquals(dao.getSas(FrameType.TC).size(), sas.size());
+        assertEquals(1, sas.get(0).get("spi").asInt());
+        assertEquals("TC", sas.get(0).get("type").asText());
+        assertTrue(sas.findValues("spi").stream().anyMatch(spi -> spi.asInt() == 100));
+        ResponseEntity<ObjectNode> resp = restTemplate.getForEntity(getUrl() + "/export?format=xml",
+                ObjectNode.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+    }
+
     @Test
     public void testBulkUpload() throws KmcException {
         testCreateSa();
@@ -837,4 +886,71 @@ public class SaControllerTest extends BaseH2Test {
         assertNull(deleted);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBulk() throws KmcException {
+        ObjectNode bulk = mapper.createObjectNode();
+        bulk.withArray("ids").addObject().put("spi", 1).put("scid", 46);
+        bulk.withArray("ids").addObject().put("spi", 2).put("scid", 46);
+        ResponseEntity<ObjectNode> resp = restTemplate.postForEntity(getUrl() + "/bulk/stop/TM", bulk,
+                ObjectNode.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals("success", resp.getBody().get("status").asText());
+        assertEquals(2, resp.getBody().get("succeeded").asInt());
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(2, (short) 46), FrameType.TM).getSaState());
+
+        bulk.put("arsn", "0A").put("arsnLen", 2).put("arsnw", 5);
+        resp = restTemplate.postForEntity(getUrl() + "/bulk/arsn/TM", bulk, ObjectNode.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertArrayEquals(new byte[]{0x00, 0x0A}, dao.getSa(new SpiScid(1, (short) 46), FrameType.TM).getArsn());
+
+        // all or nothing by default, the missing SA fails the request and SA 1 is not started
+        bulk.withArray("ids").addObject().put("spi", 100).put("scid", 46);
+        resp = restTemplate.postForEntity(getUrl() + "/bulk/start/TM", bulk, ObjectNode.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+        assertFalse(resp.getBody().get("committed").asBoolean());
+        assertEquals(3, resp.getBody().get("messages").size());
+        assertEquals(KmcDao.SA_KEYED, (short) dao.getSa(new SpiScid(1, (short) 46), FrameType.TM).getSaState());
+
+        bulk.put("mode", "BEST_EFFORT");
+        resp = restTemplate.postForEntity(getUrl() + "/bulk/start/TM", bulk, ObjectNode.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+        assertEquals(2, resp.getBody().get("succeeded").asInt());
+        assertEquals(KmcDao.SA_OPERATIONAL,
+                (short) dao.getSa(new SpiScid(1, (short) 46), FrameType.TM).getSaState());
+
+        resp = restTemplate.postForEntity(getUrl() + "/bulk/bogus/TM", bulk, ObjectNode.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+    }
+
+    @Test
+    public void testCounters() throws KmcException {
+        ObjectNode counters = restTemplate.getForObject(getUrl() + "/counters/TC?spi=2&scid=46", ObjectNode.class);
+        long       version  = counters.get("version").asLong();
+
+        ObjectNode idArsn = mapper.createObjectNode();
+        idArsn.withObject("/id").put("spi", 2).put("scid", 46);
+        idArsn.put("arsnLen", 2).put("arsn", "0001").put("arsnw", 5).put("version", version);
+        ResponseEntity<ObjectNode> resp = restTemplate.postForEntity(getUrl() + "/arsn/TC", idArsn,
+                ObjectNode.class);
+        assertEquals(HttpStatus.OK, resp.getStatusCode());
+        assertEquals(version + 1, resp.getBody().get("version").asLong());
+        // stale version
+        resp = restTemplate.postForEntity(getUrl() + "/arsn/TC", idArsn, ObjectNode.class);
+        assertEquals(HttpStatus.CONFLICT, resp.getStatusCode());
+
+        ObjectNode increment = mapper.createObjectNode();
+        increment.withObject("/id").put("spi", 2).put("scid", 46);
+        increment.put("n", 2);
+        counters = restTemplate.postForObject(getUrl() + "/increment/arsn/TC", increment, ObjectNode.class);
+        assertEquals(version + 2, counters.get("version").asLong());
+        assertArrayEquals(new byte[]{0x00, 0x03}, dao.getSa(new SpiScid(2, (short) 46), FrameType.TC).getArsn());
+        resp = restTemplate.postForEntity(getUrl() + "/increment/bogus/TC", increment, ObjectNode.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+
+        // AOS SAs have no version
+        resp = restTemplate.postForEntity(getUrl() + "/arsn/AOS", idArsn, ObjectNode.class);
+        assertEquals(HttpStatus.BAD_REQUEST, resp.getStatusCode());
+        counters = restTemplate.postForObject(getUrl() + "/increment/iv/AOS", increment, ObjectNode.class);
+        assertTrue(counters.get("version").isNull());
+    }
+}
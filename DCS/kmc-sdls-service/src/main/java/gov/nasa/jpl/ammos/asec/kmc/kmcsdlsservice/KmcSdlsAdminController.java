@@ -0,0 +1,107 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ *  SDLS Admin REST Controller, runtime reconfiguration of CryptoLib. Disabled unless sdls.admin.enabled is true, and
+ *  refused with HTTP 403 to clients whose certificate subject is not in sdls.admin.allowed_subjects.
+ *
+ */
+
+@RestController
+public class KmcSdlsAdminController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KmcSdlsAdminController.class);
+
+    @Value("${sdls.admin.enabled:false}")
+    private boolean adminEnabled;
+
+    // subject DNs separated by ;, as DNs contain commas
+    @Value("${sdls.admin.allowed_subjects:}")
+    private String allowedSubjects;
+
+    @Value("${sdls.admin.allowed_properties:}")
+    private List<String> allowedProperties;
+
+    private Set<String> adminSubjects;
+
+    @PostConstruct
+    public void init() {
+        adminSubjects = new HashSet<>();
+        for (String subject : allowedSubjects.split(";")) {
+            if (!subject.isBlank()) {
+                adminSubjects.add(KmcSdlsController.canonicalSubject(subject));
+            }
+        }
+    }
+
+    private void checkAdmin(HttpServletRequest request) {
+        String subject = KmcSdlsController.clientSubject(request);
+        if (subject == null || !adminSubjects.contains(subject)) {
+            LOG.error("/admin/config: Refusing client {} from {}", subject == null ? "without certificate" : subject,
+                    request.getRemoteAddr());
+            throw new SdlsConfigException(HttpStatus.FORBIDDEN, "Client is not allowed to administer the SDLS " +
+                    "service");
+        }
+    }
+
+    @RequestMapping(value = "/admin/config", method = RequestMethod.GET)
+    public ResponseEntity<?> config(HttpServletRequest request) {
+        if (!adminEnabled) {
+            return ResponseEntity.notFound().build();
+        }
+        checkAdmin(request);
+        SdlsEngineConfig config = KmcSdlsService.getEngineConfig();
+        if (config == null) {
+            throw new SdlsConfigException(HttpStatus.CONFLICT, "The SDLS engine has no valid configuration");
+        }
+        return ResponseEntity.ok(config.describe());
+    }
+
+    /**
+     * Swap in a new CryptoLib configuration. The body holds cryptolib.* properties in properties file format, they
+     * override the running configuration; any GVCID managed parameter in the body replaces the whole GVCID table.
+     * Security relevant properties are refused unless listed in sdls.admin.allowed_properties, see
+     * {@link SdlsEngineConfig#PROTECTED_PROPERTIES}. With the version parameter the changes are refused if the
+     * configuration is no longer at that version.
+     */
+    @RequestMapping(value = "/admin/config", method = RequestMethod.POST)
+    public ResponseEntity<?> reconfigure(@RequestParam(value = "version", required = false) Long version,
+                                         HttpServletRequest request) throws Exception {
+        if (!adminEnabled) {
+            return ResponseEntity.notFound().build();
+        }
+        checkAdmin(request);
+        Properties changes = new Properties();
+        try {
+            changes.load(new StringReader(IOUtils.toString(request.getInputStream(), StandardCharsets.UTF_8)));
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.error("/admin/config: Unable to read the configuration properties : {}", e.getMessage());
+            throw new SdlsConfigException(HttpStatus.BAD_REQUEST, "Unable to read the configuration properties: " +
+                    e.getMessage());
+        }
+
+        SdlsEngineConfig config = KmcSdlsService.reconfigure(changes, version, allowedProperties);
+        return ResponseEntity.ok(config.describe());
+    }
+}
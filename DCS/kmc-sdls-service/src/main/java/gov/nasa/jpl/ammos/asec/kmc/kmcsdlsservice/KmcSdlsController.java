@@ -1,18 +1,24 @@
 package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
 
-import gov.nasa.jpl.ammos.asec.kmc.SDLS_TC_TransferFrame;
-import org.apache.commons.codec.DecoderException;
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.codec.binary.Hex;
 
 import javax.servlet.http.Cookie;
+import javax.security.auth.x500.X500Principal;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -24,11 +30,14 @@ import java.util.stream.Collectors;
 public class KmcSdlsController {
 
     private static final Logger LOG = LoggerFactory.getLogger(KmcSdlsController.class);
+    private static final String CLIENT_CERTIFICATE_ATTRIBUTE = "javax.servlet.request.X509Certificate";
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8");
     private final KmcSdlsService kmcSdlsService = KmcSdlsService.getInstance();
 
     @RequestMapping(value = "/apply_security", method = RequestMethod.POST)
     public byte[] applySecurity(HttpServletRequest request) {
-        byte[] transferFrameData = new byte[0];
+        long received = System.nanoTime();
+        byte[] transferFrameData;
         try {
             transferFrameData = IOUtils.toByteArray(request.getInputStream());
         } catch (IOException e) {
@@ -36,33 +45,40 @@ public class KmcSdlsController {
                     "process request Input Stream {} : {}", request, e.getMessage());
             throw new RuntimeException("Unable to read Input Stream due to error: " + e.getMessage());
         }
-        String transferFrameDataString = Hex.encodeHexString(transferFrameData);
-        LOG.debug("Received Transfer Frame Hex: " + transferFrameDataString);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received Transfer Frame Hex: " + Hex.encodeHexString(transferFrameData));
+        }
 
         String cookies = buildCookiesString(request.getCookies());
 
-        String transferFrameSDLSApplied = null;
+        byte[] transferFrameSDLSApplied;
         try {
-            transferFrameSDLSApplied = this.kmcSdlsService.getKmcSdlsEngine().applySecurity(transferFrameDataString,cookies);
+            KmcSdlsEngine engine = this.kmcSdlsService.getKmcSdlsEngine();
+            transferFrameSDLSApplied = this.kmcSdlsService.getSdlsMetrics().dispatch(
+                    this.kmcSdlsService.getSdlsDispatcher(), SdlsMetrics.Operation.APPLY, transferFrameData, received,
+                    () -> engine.applySecurity(transferFrameData,cookies));
+        } catch (SdlsBusyException e) {
+            throw e;
         } catch (Exception e) {
             LOG.error("Encountered unexpected exception while attempting applySecurity() " +
-                    "on frame {} : {}", transferFrameDataString, e.getMessage());
+                    "on frame {} : {}", Hex.encodeHexString(transferFrameData), e.getMessage());
             throw new RuntimeException("Unable to execute applySecurity() due to error: " + e.getMessage());
         }
 
-        LOG.debug("SDLS Applied Transfer Frame Hex: " + transferFrameSDLSApplied);
-
-        try {
-            return Hex.decodeHex(transferFrameSDLSApplied);
-        } catch (DecoderException e) {
-            LOG.error("Encountered an error while attempting to decode HEX {} : {}",
-                    transferFrameSDLSApplied, e.getMessage());
-            throw new RuntimeException("Unable to decode due to error: " + e.getMessage());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("SDLS Applied Transfer Frame Hex: " + Hex.encodeHexString(transferFrameSDLSApplied));
         }
+        return transferFrameSDLSApplied;
     }
 
+    /**
+     * Process security on a frame. The result is JSON, or the compact processed frame of
+     * {@link KmcSdlsEngine#processSecurityCompact(byte[], String)} when the client accepts application/octet-stream
+     * rather than JSON.
+     */
     @RequestMapping(value = "/process_security", method = RequestMethod.POST)
-    public SDLS_TC_TransferFrame processSecurity(HttpServletRequest request) {
+    public ResponseEntity<?> processSecurity(HttpServletRequest request) {
+        long received = System.nanoTime();
         byte[] sdlsTransferFrameData;
         try {
             sdlsTransferFrameData = IOUtils.toByteArray(request.getInputStream());
@@ -71,21 +87,115 @@ public class KmcSdlsController {
                     "read request Input Stream {} : {}", request, e.getMessage());
             throw new RuntimeException("Unable to read Input Stream due to error: " + e.getMessage());
         }
-        String sdlsTransferFrameDataString = Hex.encodeHexString(sdlsTransferFrameData);
-        LOG.debug("Received SDLS Transfer Frame Hex: " + sdlsTransferFrameDataString);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received SDLS Transfer Frame Hex: " + Hex.encodeHexString(sdlsTransferFrameData));
+        }
 
         String cookies = buildCookiesString(request.getCookies());
 
-        SDLS_TC_TransferFrame processSecurityResult;
+        boolean compact = acceptsCompact(request.getHeader(HttpHeaders.ACCEPT));
+
+        Object processSecurityResult;
         try {
-            processSecurityResult = this.kmcSdlsService.getKmcSdlsEngine().processSecurity(sdlsTransferFrameDataString,cookies);
+            KmcSdlsEngine engine = this.kmcSdlsService.getKmcSdlsEngine();
+            processSecurityResult = this.kmcSdlsService.getSdlsMetrics().dispatch(
+                    this.kmcSdlsService.getSdlsDispatcher(), SdlsMetrics.Operation.PROCESS, sdlsTransferFrameData,
+                    received, () -> compact ?
+                            engine.processSecurityCompact(sdlsTransferFrameData,cookies) :
+                            engine.processSecurity(sdlsTransferFrameData,cookies));
+        } catch (SdlsBusyException e) {
+            throw e;
         } catch (Exception e) {
             LOG.error("Encountered unexpected error while calling processSecurity() on frame {} : {}",
-                    sdlsTransferFrameDataString, e.getMessage());
+                    Hex.encodeHexString(sdlsTransferFrameData), e.getMessage());
             throw new RuntimeException("Unable to execute processSecurity() due to error: " + e.getMessage());
         }
 
-        return processSecurityResult;
+        if (compact) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(processSecurityResult);
+        }
+        return ResponseEntity.ok(processSecurityResult);
+    }
+
+    // The compact processed frame is returned when application/octet-stream is preferred over JSON, wildcards and
+    // a missing Accept header keep the JSON response
+    static boolean acceptsCompact(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            if (MediaType.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(mediaType)) {
+                return true;
+            }
+            if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(mediaType)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @RequestMapping(value = "/apply_security_batch", method = RequestMethod.POST)
+    public byte[] applySecurityBatch(HttpServletRequest request) {
+        byte[] batch = readBatch(request, "/apply_security_batch");
+        String cookies = buildCookiesString(request.getCookies());
+
+        try {
+            KmcSdlsEngine engine = this.kmcSdlsService.getKmcSdlsEngine();
+            return SdlsBatch.dispatch(this.kmcSdlsService.getSdlsDispatcher(), batch, frame -> true,
+                    frames -> engine.applySecurityBatch(frames,cookies),
+                    this.kmcSdlsService.getSdlsMetrics().batchRecorder(SdlsMetrics.Operation.APPLY));
+        } catch (SdlsBusyException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            throw new SdlsBatchException("Unable to execute applySecurityBatch() on a malformed batch: " + e.getMessage());
+        } catch (Exception e) {
+            LOG.error("Encountered unexpected exception while attempting applySecurityBatch() " +
+                    "on a batch of {} bytes : {}", batch.length, e.getMessage());
+            throw new RuntimeException("Unable to execute applySecurityBatch() due to error: " + e.getMessage());
+        }
+    }
+
+    @RequestMapping(value = "/process_security_batch", method = RequestMethod.POST)
+    public byte[] processSecurityBatch(HttpServletRequest request) {
+        byte[] batch = readBatch(request, "/process_security_batch");
+        String cookies = buildCookiesString(request.getCookies());
+
+        try {
+            KmcSdlsEngine engine = this.kmcSdlsService.getKmcSdlsEngine();
+            return SdlsBatch.dispatch(this.kmcSdlsService.getSdlsDispatcher(), batch, frame -> true,
+                    frames -> engine.processSecurityBatch(frames,cookies),
+                    this.kmcSdlsService.getSdlsMetrics().batchRecorder(SdlsMetrics.Operation.PROCESS));
+        } catch (SdlsBusyException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            throw new SdlsBatchException("Unable to execute processSecurityBatch() on a malformed batch: " + e.getMessage());
+        } catch (Exception e) {
+            LOG.error("Encountered unexpected exception while attempting processSecurityBatch() " +
+                    "on a batch of {} bytes : {}", batch.length, e.getMessage());
+            throw new RuntimeException("Unable to execute processSecurityBatch() due to error: " + e.getMessage());
+        }
+    }
+
+    private byte[] readBatch(HttpServletRequest request, String endpoint) {
+        try {
+            byte[] batch = IOUtils.toByteArray(request.getInputStream());
+            LOG.debug("Received Transfer Frame Batch of {} bytes", batch.length);
+            return batch;
+        } catch (IOException e) {
+            LOG.error("{}: Encountered an I/O error while attempting to " +
+                    "read request Input Stream {} : {}", endpoint, request, e.getMessage());
+            throw new RuntimeException("Unable to read Input Stream due to error: " + e.getMessage());
+        }
     }
 
     @RequestMapping(value = "/status", method = RequestMethod.GET)
@@ -99,13 +209,28 @@ public class KmcSdlsController {
         return this.kmcSdlsService.getKmcSdlsEngine().getCryptoLibErrorCodeEnum(engineStatus)+"\n";
     }
 
+    /**
+     * Frame counters and stage latencies in the Prometheus text format, see {@link SdlsMetrics}. Not found when
+     * sdls.metrics.enabled is false.
+     */
+    @RequestMapping(value = "/metrics", method = RequestMethod.GET)
+    public ResponseEntity<String> metrics() {
+        SdlsMetrics metrics = this.kmcSdlsService.getSdlsMetrics();
+        if (metrics == null || !metrics.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        KmcSdlsEngine engine = this.kmcSdlsService.getKmcSdlsEngine();
+        return ResponseEntity.ok().contentType(PROMETHEUS_TEXT)
+                .body(metrics.export(engine::getCryptoLibErrorCodeEnum, this.kmcSdlsService.getSdlsDispatcher()));
+    }
+
     @RequestMapping(value = "/health", method = RequestMethod.GET)
     public String health() {
         // This method will simply return HTTP 200 status with the following string
         return "Service is UP\n";
     }
 
-    private String buildCookiesString(Cookie[] cookies)
+    static String buildCookiesString(Cookie[] cookies)
     {
         if (cookies != null) {
             String cookiesStr = Arrays.stream(cookies)
@@ -119,4 +244,31 @@ public class KmcSdlsController {
             return null;
         }
     }
+
+    /**
+     * @param request request
+     * @return canonical subject DN of the client certificate, null without a client certificate
+     */
+    static String clientSubject(HttpServletRequest request)
+    {
+        Object certs = request.getAttribute(CLIENT_CERTIFICATE_ATTRIBUTE);
+        if (certs instanceof X509Certificate[] && ((X509Certificate[]) certs).length > 0) {
+            return ((X509Certificate[]) certs)[0].getSubjectX500Principal().getName(X500Principal.CANONICAL);
+        }
+        return null;
+    }
+
+    /**
+     * @param subject subject DN, e.g. {@code CN=ops1,O=Example}
+     * @return canonical form of the DN, as returned by {@link #clientSubject(HttpServletRequest)}
+     * @throws IllegalArgumentException if the DN is invalid
+     */
+    static String canonicalSubject(String subject)
+    {
+        try {
+            return new X500Principal(subject.trim()).getName(X500Principal.CANONICAL);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid subject DN '" + subject.trim() + "': " + e.getMessage());
+        }
+    }
 }
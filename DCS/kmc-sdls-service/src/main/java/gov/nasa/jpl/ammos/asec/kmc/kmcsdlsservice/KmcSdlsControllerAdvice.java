@@ -2,6 +2,7 @@ package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -21,6 +22,47 @@ public class KmcSdlsControllerAdvice extends ResponseEntityExceptionHandler
     private static final Logger LOG = LoggerFactory.getLogger(KmcSdlsControllerAdvice.class);
 
 
+    @ExceptionHandler(SdlsBusyException.class)
+    public ResponseEntity<Object> handleSdlsBusyException(
+            SdlsBusyException ex, WebRequest request) {
+
+        LOG.warn(ex.getMessage());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()))
+                .body(body);
+    }
+
+    @ExceptionHandler(SdlsBatchException.class)
+    public ResponseEntity<Object> handleSdlsBatchException(
+            SdlsBatchException ex, WebRequest request) {
+
+        LOG.warn(ex.getMessage());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", ex.getMessage());
+
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(SdlsConfigException.class)
+    public ResponseEntity<Object> handleSdlsConfigException(
+            SdlsConfigException ex, WebRequest request) {
+
+        LOG.warn(ex.getMessage());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", ex.getMessage());
+
+        return new ResponseEntity<>(body, ex.getStatus());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Object> handleKmcSdlsEngineException(
             Exception ex, WebRequest request) {
@@ -4,7 +4,11 @@ import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.http.HttpStatus;
+
 import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public final class KmcSdlsService
@@ -12,7 +16,11 @@ public final class KmcSdlsService
     private static KmcSdlsService INSTANCE = null;
     private static Logger LOG = LoggerFactory.getLogger(KmcSdlsService.class);
     private KmcSdlsEngine kmcSdlsEngine = null;
+    private SdlsDispatcher sdlsDispatcher = null;
+    private SdlsMetrics sdlsMetrics = null;
+    private Map<String, SdlsStreamScope> sdlsStreamScopes = Map.of();
     private KmcSdlsServiceConfiguration kmcConfig = null;
+    private volatile SdlsEngineConfig engineConfig = null;
 
     private KmcSdlsService(){
     }
@@ -26,12 +34,25 @@ public final class KmcSdlsService
         Properties props = INSTANCE.kmcConfig.getConfiguration();
         try
         {
+            INSTANCE.sdlsDispatcher = SdlsDispatcher.fromProperties(props);
+            INSTANCE.sdlsMetrics = SdlsMetrics.fromProperties(props);
+            INSTANCE.sdlsStreamScopes = SdlsStreamScope.fromProperties(props);
             INSTANCE.kmcSdlsEngine = new KmcSdlsEngine(props);
             INSTANCE.LOG.info("KMC SDLS Service Initialized Successfully.");
         } catch (Exception e)
         {
             INSTANCE.LOG.error("KMC SDLS Service Initialization Failure!");
             INSTANCE.LOG.error(e.getMessage());
+            return;
+        }
+        try
+        {
+            INSTANCE.engineConfig = SdlsEngineConfig.of(props, 1);
+            INSTANCE.sdlsMetrics.configure(INSTANCE.engineConfig);
+        } catch (IllegalArgumentException e)
+        {
+            INSTANCE.LOG.warn("CryptoLib configuration does not validate, runtime reconfiguration is disabled: {}",
+                    e.getMessage());
         }
     }
 
@@ -53,5 +74,92 @@ public final class KmcSdlsService
         return INSTANCE.kmcSdlsEngine;
     }
 
+    // Apply and process security calls go through the dispatcher, see SdlsDispatcher for the threading model.
+    public static SdlsDispatcher getSdlsDispatcher(){
+        getKmcSdlsEngine();
+        return INSTANCE.sdlsDispatcher;
+    }
+
+    // Frame counters and stage latencies, see SdlsMetrics.
+    public static SdlsMetrics getSdlsMetrics(){
+        getKmcSdlsEngine();
+        return INSTANCE.sdlsMetrics;
+    }
+
+    // GVCIDs of the stream clients by canonical subject DN of their certificate, see SdlsStreamScope.
+    static Map<String, SdlsStreamScope> getSdlsStreamScopes(){
+        getKmcSdlsEngine();
+        return INSTANCE.sdlsStreamScopes;
+    }
+
+    // CryptoLib configuration the engine runs with, null if the service failed to initialize or its configuration
+    // does not validate.
+    public static SdlsEngineConfig getEngineConfig(){
+        getKmcSdlsEngine();
+        return INSTANCE.engineConfig;
+    }
+
+    /**
+     * Reconfigure CryptoLib without restarting the service. The configuration is validated first, then swapped in as
+     * an exclusive dispatcher call: frames queued before it finish with the current configuration, frames submitted
+     * after it wait for it and are protected with the new one. If CryptoLib does not initialize with the new
+     * configuration the current one is restored. Changes to the GVCID managed parameters only rebuild the GVCID table,
+     * other changes shut CryptoLib down and initialize it again, which holds frames for longer.
+     *
+     * @param changes         cryptolib.* properties, see {@link SdlsEngineConfig#update(Properties, List)}
+     * @param expectedVersion version the changes are based on, or null to apply them to any version
+     * @param allowed         protected properties that may be changed
+     * @return new configuration
+     * @throws SdlsConfigException if the changes are invalid or the version changed
+     * @throws SdlsBusyException   if the dispatcher queues are full
+     * @throws Exception           if CryptoLib fails to reconfigure
+     */
+    public static synchronized SdlsEngineConfig reconfigure(Properties changes, Long expectedVersion,
+                                                            List<String> allowed) throws Exception {
+        SdlsEngineConfig current = getEngineConfig();
+        if (current == null) {
+            throw new SdlsConfigException(HttpStatus.CONFLICT, "The SDLS engine has no valid configuration to " +
+                    "change, restart the service with a valid configuration");
+        }
+        if (expectedVersion != null && expectedVersion != current.getVersion()) {
+            throw new SdlsConfigException(HttpStatus.CONFLICT, "Configuration version is " + current.getVersion() +
+                    ", not " + expectedVersion);
+        }
+        SdlsEngineConfig next;
+        try {
+            next = current.update(changes, allowed);
+        } catch (IllegalArgumentException e) {
+            throw new SdlsConfigException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        KmcSdlsEngine engine = getKmcSdlsEngine();
+        boolean gvcidsOnly = next.differsInGvcidsOnly(current);
+        getSdlsDispatcher().dispatchExclusive(() -> {
+            try {
+                return gvcidsOnly ? engine.reconfigureGvcids(next.getProperties()) :
+                        engine.reconfigure(next.getProperties());
+            } catch (Exception e) {
+                LOG.error("CryptoLib reconfiguration to version {} failed, restoring version {}: {}",
+                        next.getVersion(), current.getVersion(), e.getMessage());
+                try {
+                    if (gvcidsOnly) {
+                        engine.reconfigureGvcids(current.getProperties());
+                    } else {
+                        engine.reconfigure(current.getProperties());
+                    }
+                } catch (Exception restoreError) {
+                    LOG.error("Unable to restore CryptoLib configuration version {}: {}", current.getVersion(),
+                            restoreError.getMessage());
+                    e.addSuppressed(restoreError);
+                }
+                throw e;
+            }
+        });
+        INSTANCE.engineConfig = next;
+        INSTANCE.sdlsMetrics.configure(next);
+        LOG.info("CryptoLib reconfigured to version {} with {} GVCID(s)", next.getVersion(), next.getGvcids().size());
+        return next;
+    }
+
 }
 
@@ -0,0 +1,300 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ *  Batches of TC frames for the batch endpoints.
+ *
+ *  A batch is a sequence of frames, each prefixed with its length as an unsigned big-endian 16 bit integer. The
+ *  results of a batch are in the same order, each a big-endian 32 bit status followed by the length prefixed output:
+ *  the applied frame or processed PDU when the status is 0, otherwise an error message. Negative statuses are
+ *  CryptoLib errors, {@link #STATUS_BUSY}, {@link #STATUS_ERROR} and {@link #STATUS_FORBIDDEN} are service errors.
+ */
+final class SdlsBatch
+{
+    /**
+     * The lane of the frame was busy, the frame was not protected or processed and may be retried
+     */
+    static final int STATUS_BUSY = 503;
+    /**
+     * The frame was not protected or processed because of a service error
+     */
+    static final int STATUS_ERROR = 500;
+    /**
+     * The frame is outside the global virtual channels the client may use, it was not protected or processed
+     */
+    static final int STATUS_FORBIDDEN = 403;
+
+    private SdlsBatch()
+    {
+    }
+
+    /**
+     * Engine call on the frames of a batch
+     */
+    @FunctionalInterface
+    interface BatchCall
+    {
+        /**
+         * @param frames batch of frames
+         * @return results of the frames
+         * @throws Exception if the batch could not be protected or processed
+         */
+        byte[] call(byte[] frames) throws Exception;
+    }
+
+    /**
+     * Result of a frame
+     */
+    static final class Result
+    {
+        final int status;
+        final byte[] output;
+
+        Result(int status, byte[] output)
+        {
+            this.status = status;
+            this.output = output;
+        }
+
+        Result(int status, String message)
+        {
+            this(status, message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Run a batch through the dispatcher. Frames are grouped by lane, and each group is one engine call on its lane,
+     * so frames of a virtual channel keep their order relative to the frames of other requests.
+     *
+     * @param dispatcher dispatcher
+     * @param batch      batch of frames
+     * @param call       engine call
+     * @return results of the frames
+     * @throws IllegalArgumentException if the batch is not framed correctly
+     * @throws SdlsBusyException        if no frame of the batch could be queued
+     * @throws InterruptedException     if interrupted while waiting for the results
+     */
+    static byte[] dispatch(SdlsDispatcher dispatcher, byte[] batch, BatchCall call) throws InterruptedException
+    {
+        return dispatch(dispatcher, batch, frame -> true, call);
+    }
+
+    /**
+     * Run the frames of a batch that are in scope through the dispatcher, the others get {@link #STATUS_FORBIDDEN}
+     *
+     * @param dispatcher dispatcher
+     * @param batch      batch of frames
+     * @param inScope    whether a frame may be protected or processed
+     * @param call       engine call
+     * @return results of the frames
+     * @throws IllegalArgumentException if the batch is not framed correctly
+     * @throws SdlsBusyException        if no frame of the batch could be queued
+     * @throws InterruptedException     if interrupted while waiting for the results
+     * @see #dispatch(SdlsDispatcher, byte[], BatchCall)
+     */
+    static byte[] dispatch(SdlsDispatcher dispatcher, byte[] batch, Predicate<byte[]> inScope, BatchCall call)
+            throws InterruptedException
+    {
+        return dispatch(dispatcher, batch, inScope, call, (frame, result) -> { });
+    }
+
+    /**
+     * Run the frames of a batch that are in scope through the dispatcher, and pass each frame with its result to a
+     * recorder, such as {@link SdlsMetrics#batchRecorder(SdlsMetrics.Operation)}
+     *
+     * @param dispatcher dispatcher
+     * @param batch      batch of frames
+     * @param inScope    whether a frame may be protected or processed
+     * @param call       engine call
+     * @param recorder   recorder of the frames and their results
+     * @return results of the frames
+     * @throws IllegalArgumentException if the batch is not framed correctly
+     * @throws SdlsBusyException        if no frame of the batch could be queued
+     * @throws InterruptedException     if interrupted while waiting for the results
+     * @see #dispatch(SdlsDispatcher, byte[], Predicate, BatchCall)
+     */
+    static byte[] dispatch(SdlsDispatcher dispatcher, byte[] batch, Predicate<byte[]> inScope, BatchCall call,
+                           BiConsumer<byte[], Result> recorder) throws InterruptedException
+    {
+        List<byte[]> frames = readFrames(batch);
+        Result[] results = new Result[frames.size()];
+        Map<Integer, List<Integer>> lanes = new LinkedHashMap<>();
+        int accepted = 0;
+        for (int i = 0; i < frames.size(); i++) {
+            if (!inScope.test(frames.get(i))) {
+                results[i] = new Result(STATUS_FORBIDDEN, "TC Frame is outside the virtual channels of the client");
+                continue;
+            }
+            lanes.computeIfAbsent(dispatcher.laneOf(frames.get(i)), lane -> new ArrayList<>()).add(i);
+            accepted++;
+        }
+
+        Map<List<Integer>, Future<byte[]>> pending = new LinkedHashMap<>();
+        SdlsBusyException busy = null;
+        for (List<Integer> indices : lanes.values()) {
+            byte[] group = indices.size() == frames.size() ? batch :
+                    writeFrames(indices.stream().map(frames::get).toList());
+            try {
+                pending.put(indices, dispatcher.submit(frames.get(indices.get(0)), () -> call.call(group)));
+            } catch (SdlsBusyException e) {
+                busy = e;
+                indices.forEach(i -> results[i] = new Result(STATUS_BUSY, e.getMessage()));
+            }
+        }
+        if (busy != null && pending.isEmpty() && accepted == frames.size()) {
+            // nothing was protected or processed, the whole batch can be retried
+            record(frames, results, recorder);
+            throw busy;
+        }
+
+        for (Map.Entry<List<Integer>, Future<byte[]>> entry : pending.entrySet()) {
+            List<Integer> indices = entry.getKey();
+            List<Result> groupResults;
+            try {
+                groupResults = readResults(entry.getValue().get());
+                if (groupResults.size() != indices.size()) {
+                    throw new IllegalStateException(String.format("%d result(s) for %d frame(s)",
+                            groupResults.size(), indices.size()));
+                }
+            } catch (ExecutionException | RuntimeException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                groupResults = new ArrayList<>();
+                for (int i = 0; i < indices.size(); i++) {
+                    groupResults.add(new Result(STATUS_ERROR, cause.getMessage()));
+                }
+            }
+            for (int i = 0; i < indices.size(); i++) {
+                results[indices.get(i)] = groupResults.get(i);
+            }
+        }
+        record(frames, results, recorder);
+        return writeResults(List.of(results));
+    }
+
+    private static void record(List<byte[]> frames, Result[] results, BiConsumer<byte[], Result> recorder)
+    {
+        for (int i = 0; i < frames.size(); i++) {
+            recorder.accept(frames.get(i), results[i]);
+        }
+    }
+
+    /**
+     * Read the frames of a batch
+     *
+     * @param batch batch
+     * @return frames
+     * @throws IllegalArgumentException if the batch is not framed correctly
+     */
+    static List<byte[]> readFrames(byte[] batch)
+    {
+        List<byte[]> frames = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        while (buffer.hasRemaining()) {
+            if (frames.size() == KmcSdlsEngine.MAX_BATCH_FRAMES) {
+                throw new IllegalArgumentException("TC Frame Batch has more than " + KmcSdlsEngine.MAX_BATCH_FRAMES +
+                        " frames");
+            }
+            if (buffer.remaining() < KmcSdlsEngine.BATCH_LENGTH_SIZE) {
+                throw new IllegalArgumentException("TC Frame Batch is truncated in the length of frame " +
+                        frames.size());
+            }
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (length > KmcSdlsEngine.MAX_TC_FRAME_SIZE) {
+                throw new IllegalArgumentException("TC Frame " + frames.size() + " of " + length + " bytes is " +
+                        "longer than the maximum of " + KmcSdlsEngine.MAX_TC_FRAME_SIZE + " bytes");
+            }
+            if (buffer.remaining() < length) {
+                throw new IllegalArgumentException("TC Frame Batch is truncated in frame " + frames.size());
+            }
+            byte[] frame = new byte[length];
+            buffer.get(frame);
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * Write a batch of frames
+     *
+     * @param frames frames
+     * @return batch
+     */
+    static byte[] writeFrames(List<byte[]> frames)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            writeLength(out, frame.length);
+            out.writeBytes(frame);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Read the results of a batch
+     *
+     * @param results results
+     * @return results of the frames
+     * @throws IllegalArgumentException if the results are not framed correctly
+     */
+    static List<Result> readResults(byte[] results)
+    {
+        List<Result> read = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(results);
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < KmcSdlsEngine.BATCH_STATUS_SIZE + KmcSdlsEngine.BATCH_LENGTH_SIZE) {
+                throw new IllegalArgumentException("TC Frame Batch results are truncated in result " + read.size());
+            }
+            int status = buffer.getInt();
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (buffer.remaining() < length) {
+                throw new IllegalArgumentException("TC Frame Batch results are truncated in result " + read.size());
+            }
+            byte[] output = new byte[length];
+            buffer.get(output);
+            read.add(new Result(status, output));
+        }
+        return read;
+    }
+
+    /**
+     * Write the results of a batch
+     *
+     * @param results results of the frames
+     * @return results
+     */
+    static byte[] writeResults(List<Result> results)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Result result : results) {
+            if (result.output.length > 0xFFFF) {
+                result = new Result(STATUS_ERROR, "Output of " + result.output.length + " bytes is too long");
+            }
+            out.write(result.status >>> 24);
+            out.write(result.status >>> 16);
+            out.write(result.status >>> 8);
+            out.write(result.status);
+            writeLength(out, result.output.length);
+            out.writeBytes(result.output);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeLength(ByteArrayOutputStream out, int length)
+    {
+        out.write(length >>> 8);
+        out.write(length);
+    }
+}
@@ -0,0 +1,13 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+/**
+ *  Thrown when a batch of frames is not framed correctly. Reported to clients as HTTP 400, nothing of the batch was
+ *  protected or processed.
+ */
+public class SdlsBatchException extends RuntimeException
+{
+    public SdlsBatchException(String message)
+    {
+        super(message);
+    }
+}
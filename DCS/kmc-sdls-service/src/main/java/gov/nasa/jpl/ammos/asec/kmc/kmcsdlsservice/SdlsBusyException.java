@@ -0,0 +1,24 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+/**
+ *  Thrown when the SDLS dispatcher cannot accept more calls. Reported to clients as HTTP 503 with a Retry-After
+ *  header.
+ */
+public class SdlsBusyException extends RuntimeException
+{
+    private final int retryAfter;
+
+    public SdlsBusyException(int retryAfter)
+    {
+        super("SDLS Service is busy, retry after " + retryAfter + " second(s)");
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return seconds after which the client should retry
+     */
+    public int getRetryAfter()
+    {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,27 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ *  Thrown when a reconfiguration of the SDLS engine is refused before CryptoLib is touched: HTTP 400 for an invalid
+ *  configuration, HTTP 403 for a client that may not administer the service, HTTP 409 when the configuration changed
+ *  since the version the client based its changes on.
+ */
+public class SdlsConfigException extends RuntimeException
+{
+    private final HttpStatus status;
+
+    public SdlsConfigException(HttpStatus status, String message)
+    {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return HTTP status reported to the client
+     */
+    public HttpStatus getStatus()
+    {
+        return status;
+    }
+}
@@ -0,0 +1,277 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  Dispatches SDLS engine calls from the request threads to a fixed set of workers, through bounded queues.
+ *
+ *  Each worker is a serial lane. Frames are assigned to a lane by their global virtual channel (TFVN, SCID and VCID
+ *  of the TC primary header, and optionally the MAP ID of the segment header), so the frames of one virtual channel
+ *  are protected in the order they were submitted, as its anti-replay sequence numbers and IVs require, while
+ *  different virtual channels are protected in parallel.
+ *
+ *  CryptoLib keeps global state and its SADB and crypto backends share one connection each, so the engine lets a
+ *  single thread at a time into CryptoLib. Lanes overlap outside of it, in the checks, copies and conversions around
+ *  each call. Calls submitted while the queue of their lane is full are rejected with a {@link SdlsBusyException}
+ *  rather than queued without bound.
+ *
+ *  Calls that change CryptoLib itself, such as a reconfiguration, run exclusively: every lane is paused after the
+ *  calls already queued on it, so frames in flight finish with the previous state and frames submitted afterwards see
+ *  the new one, without any synchronization on the frame path.
+ */
+public class SdlsDispatcher
+{
+    public static final String WORKERS_PROPERTY = "sdls.dispatcher.workers";
+    public static final String QUEUE_SIZE_PROPERTY = "sdls.dispatcher.queue_size";
+    public static final String RETRY_AFTER_PROPERTY = "sdls.dispatcher.retry_after";
+    public static final String LANE_BY_MAPID_PROPERTY = "sdls.dispatcher.lane_by_mapid";
+
+    public static final int DEFAULT_WORKERS = 4;
+    public static final int DEFAULT_QUEUE_SIZE = 256;
+    public static final int DEFAULT_RETRY_AFTER = 1;
+
+    private static final Logger LOG = LoggerFactory.getLogger(SdlsDispatcher.class);
+
+    // TC primary header length, followed by the segment header when the virtual channel has one
+    private static final int TC_PRIMARY_HEADER_LENGTH = 5;
+
+    private final ThreadPoolExecutor[] lanes;
+    private final int retryAfter;
+    private final boolean laneByMapId;
+    // Exclusive calls pause the lanes one after the other, two of them interleaving could each hold a lane the other
+    // waits for
+    private final Object exclusiveLock = new Object();
+
+    /**
+     * Constructor
+     *
+     * @param workers    number of lanes, each with one thread calling the engine
+     * @param queueSize  number of calls waiting in a lane before calls to it are rejected
+     * @param retryAfter seconds after which clients of rejected calls should retry
+     */
+    public SdlsDispatcher(int workers, int queueSize, int retryAfter)
+    {
+        this(workers, queueSize, retryAfter, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param workers     number of lanes, each with one thread calling the engine
+     * @param queueSize   number of calls waiting in a lane before calls to it are rejected
+     * @param retryAfter  seconds after which clients of rejected calls should retry
+     * @param laneByMapId include the MAP ID of the segment header in the lane of a frame, only valid when every
+     *                    virtual channel has segment headers
+     */
+    public SdlsDispatcher(int workers, int queueSize, int retryAfter, boolean laneByMapId)
+    {
+        if (workers < 1 || queueSize < 1 || retryAfter < 0) {
+            throw new IllegalArgumentException(String.format("Invalid SDLS dispatcher settings: %d worker(s), " +
+                    "queue size %d, retry after %d s", workers, queueSize, retryAfter));
+        }
+        this.lanes = new ThreadPoolExecutor[workers];
+        for (int i = 0; i < workers; i++) {
+            String name = "sdls-dispatcher-" + (i + 1);
+            this.lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+        this.retryAfter = retryAfter;
+        this.laneByMapId = laneByMapId;
+        LOG.info("SDLS dispatcher started with {} lane(s) of {} queued call(s){}", workers, queueSize,
+                laneByMapId ? ", by MAP ID" : "");
+    }
+
+    /**
+     * Create a dispatcher from the service configuration
+     *
+     * @param props service properties
+     * @return dispatcher
+     */
+    public static SdlsDispatcher fromProperties(Properties props)
+    {
+        return new SdlsDispatcher(
+                Integer.parseInt(props.getProperty(WORKERS_PROPERTY, String.valueOf(DEFAULT_WORKERS)).trim()),
+                Integer.parseInt(props.getProperty(QUEUE_SIZE_PROPERTY, String.valueOf(DEFAULT_QUEUE_SIZE)).trim()),
+                Integer.parseInt(props.getProperty(RETRY_AFTER_PROPERTY, String.valueOf(DEFAULT_RETRY_AFTER)).trim()),
+                Boolean.parseBoolean(props.getProperty(LANE_BY_MAPID_PROPERTY, "false").trim()));
+    }
+
+    /**
+     * Run a call on the lane of a frame and wait for its result
+     *
+     * @param frame TC frame the call protects or processes
+     * @param call  engine call
+     * @param <T>   result type
+     * @return call result
+     * @throws SdlsBusyException if the queue of the lane is full
+     * @throws Exception         if the call fails
+     */
+    public <T> T dispatch(byte[] frame, Callable<T> call) throws Exception
+    {
+        return result(submit(frame, call), true);
+    }
+
+    /**
+     * Run a call while no other call runs on any lane and wait for its result. The call runs after the calls already
+     * queued on every lane, calls submitted meanwhile wait for it to finish.
+     *
+     * @param call engine call
+     * @param <T>  result type
+     * @return call result
+     * @throws SdlsBusyException if the queue of a lane is full
+     * @throws Exception         if the call fails
+     */
+    public <T> T dispatchExclusive(Callable<T> call) throws Exception
+    {
+        synchronized (exclusiveLock) {
+            CountDownLatch paused = new CountDownLatch(lanes.length - 1);
+            CountDownLatch released = new CountDownLatch(1);
+            Future<T> future;
+            try {
+                for (int i = 1; i < lanes.length; i++) {
+                    lanes[i].submit(() -> {
+                        paused.countDown();
+                        released.await();
+                        return null;
+                    });
+                }
+                future = lanes[0].submit(() -> {
+                    try {
+                        paused.await();
+                        return call.call();
+                    } finally {
+                        released.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                released.countDown();
+                LOG.warn("SDLS dispatcher queue is full, rejecting exclusive call");
+                throw new SdlsBusyException(retryAfter);
+            }
+            // once queued the call must run to release the paused lanes, it is not cancelled
+            return result(future, false);
+        }
+    }
+
+    private static <T> T result(Future<T> future, boolean cancelOnInterrupt) throws Exception
+    {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            if (cancelOnInterrupt) {
+                future.cancel(false);
+            }
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a call on the lane of a frame. Calls on one lane run in the order they were submitted.
+     *
+     * @param frame TC frame the call protects or processes
+     * @param call  engine call
+     * @param <T>   result type
+     * @return pending call result
+     * @throws SdlsBusyException if the queue of the lane is full
+     */
+    public <T> Future<T> submit(byte[] frame, Callable<T> call)
+    {
+        ThreadPoolExecutor lane = lanes[laneOf(frame)];
+        try {
+            return lane.submit(call);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("SDLS dispatcher queue is full ({} call(s) waiting), rejecting call", lane.getQueue().size());
+            throw new SdlsBusyException(retryAfter);
+        }
+    }
+
+    /**
+     * Get the lane of a frame
+     *
+     * @param frame TC frame
+     * @return lane index
+     */
+    int laneOf(byte[] frame)
+    {
+        int key = gvcidOf(frame);
+        if (lanes.length == 1 || key < 0) {
+            // too short to be a TC frame, CryptoLib rejects it
+            return 0;
+        }
+        if (laneByMapId && frame.length > TC_PRIMARY_HEADER_LENGTH) {
+            key = (key << 6) | (frame[TC_PRIMARY_HEADER_LENGTH] & 0x3F);
+        }
+        // spread consecutive virtual channels over the lanes
+        return Math.floorMod(key * 0x9E3779B9, lanes.length);
+    }
+
+    /**
+     * Get the global virtual channel of a frame
+     *
+     * @param frame TC frame
+     * @return TFVN, SCID and VCID of the TC primary header packed as (tfvn << 16) | (scid << 6) | vcid, or -1 if the
+     * frame is too short to be a TC frame
+     */
+    static int gvcidOf(byte[] frame)
+    {
+        if (frame.length < TC_PRIMARY_HEADER_LENGTH) {
+            return -1;
+        }
+        int tfvn = (frame[0] >> 6) & 0x03;
+        int scid = ((frame[0] & 0x03) << 8) | (frame[1] & 0xFF);
+        int vcid = (frame[2] >> 2) & 0x3F;
+        return gvcid(tfvn, scid, vcid);
+    }
+
+    /**
+     * @return TFVN, SCID and VCID packed as {@link #gvcidOf(byte[])} does
+     */
+    static int gvcid(int tfvn, int scid, int vcid)
+    {
+        return (tfvn << 16) | (scid << 6) | vcid;
+    }
+
+    /**
+     * @return number of calls waiting for a worker
+     */
+    public int queued()
+    {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Stop the workers after the calls already submitted
+     */
+    public void shutdown()
+    {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
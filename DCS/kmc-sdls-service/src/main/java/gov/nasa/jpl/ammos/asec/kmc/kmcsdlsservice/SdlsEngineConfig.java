@@ -0,0 +1,329 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *  A validated, versioned CryptoLib configuration of the SDLS engine: the cryptolib.* service properties, including
+ *  the GVCID managed parameters cryptolib.tc.&lt;scid&gt;.&lt;vcid&gt;.&lt;tfvn&gt;.&lt;property&gt;. Instances are
+ *  immutable, a reconfiguration builds the next version with {@link #update(Properties)}.
+ */
+final class SdlsEngineConfig
+{
+    static final String CRYPTOLIB_PREFIX = "cryptolib.";
+
+    private static final Pattern GVCID_KEY = Pattern.compile(
+            "cryptolib\\.tc\\.(?<scid>\\d+)\\.(?<vcid>\\d+)\\.(?<tfvn>\\d+)\\.(?<property>.+)");
+    // the managed parameters of a GVCID are registered by its has_ecf property, see KmcSdlsEngine
+    private static final String HAS_ECF = "has_ecf";
+    private static final String HAS_SEGMENTATION_HEADER = "has_segmentation_header";
+    private static final String HAS_PUS_HEADER = "has_pus_header";
+    private static final String MAX_FRAME_LENGTH = "max_frame_length";
+    private static final Set<String> GVCID_PROPERTIES = Set.of(HAS_ECF, HAS_SEGMENTATION_HEADER, HAS_PUS_HEADER,
+            MAX_FRAME_LENGTH);
+
+    private static final Set<String> BOOLEAN_PROPERTIES = Set.of(
+            "cryptolib.apply_tc.create_ecf",
+            "cryptolib.process_tc.process_pdus",
+            "cryptolib.tc.has_pus_header",
+            "cryptolib.process_tc.ignore_sa_state",
+            "cryptolib.process_tc.ignore_antireplay",
+            "cryptolib.tc.unique_sa_per_mapid",
+            "cryptolib.process_tc.check_ecf",
+            "cryptolib.process_tc.check_fecf",
+            "cryptolib.tc.on_rollover_increment_nontransmitted_counter",
+            "cryptolib.sadb.mariadb.require_secure_transport",
+            "cryptolib.sadb.mariadb.tls.verifyserver",
+            "cryptolib.crypto.kmccryptoservice.verifyserver",
+            "cryptolib.cam.enabled");
+    private static final Set<String> PORT_PROPERTIES = Set.of(
+            "cryptolib.sadb.mariadb.port",
+            "cryptolib.crypto.kmccryptoservice.port");
+    // properties that turn frame checks off or point CryptoLib at another SADB, crypto service or CAM, a trailing *
+    // matches any property with that prefix
+    static final List<String> PROTECTED_PROPERTIES = List.of(
+            "cryptolib.process_tc.ignore_antireplay",
+            "cryptolib.process_tc.ignore_sa_state",
+            "cryptolib.sadb.*",
+            "cryptolib.crypto.*",
+            "cryptolib.cam.*");
+
+    private final long version;
+    private final Instant applied;
+    private final Properties properties;
+    private final SortedMap<Integer, Map<String, Object>> gvcids;
+
+    private SdlsEngineConfig(long version, Properties properties, SortedMap<Integer, Map<String, Object>> gvcids)
+    {
+        this.version = version;
+        this.applied = Instant.now();
+        this.properties = properties;
+        this.gvcids = gvcids;
+    }
+
+    /**
+     * Validate a configuration
+     *
+     * @param props   service properties, only the cryptolib.* properties are kept
+     * @param version configuration version
+     * @return configuration
+     * @throws IllegalArgumentException if a property is invalid
+     */
+    static SdlsEngineConfig of(Properties props, long version)
+    {
+        Properties cryptolib = new Properties();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(CRYPTOLIB_PREFIX)) {
+                cryptolib.setProperty(key, props.getProperty(key).trim());
+            }
+        }
+        return new SdlsEngineConfig(version, cryptolib, validate(cryptolib));
+    }
+
+    /**
+     * Build the next version of the configuration, without changing any of the {@link #PROTECTED_PROPERTIES}
+     *
+     * @param changes cryptolib.* properties
+     * @return configuration of the next version
+     * @throws IllegalArgumentException if a change is not a cryptolib.* property, changes a protected property, no
+     *                                  GVCID is left, or a property is invalid
+     * @see #update(Properties, List)
+     */
+    SdlsEngineConfig update(Properties changes)
+    {
+        return update(changes, List.of());
+    }
+
+    /**
+     * Build the next version of the configuration. The changes override the current properties, and replace the
+     * whole GVCID managed parameter table when they contain any GVCID property, so virtual channels can be removed.
+     * {@link #PROTECTED_PROPERTIES} may only be given with their current value, unless they are allowed.
+     *
+     * @param changes cryptolib.* properties
+     * @param allowed protected properties that may be changed, a trailing * matches any property with that prefix
+     * @return configuration of the next version
+     * @throws IllegalArgumentException if a change is not a cryptolib.* property, changes a protected property that
+     *                                  is not allowed, no GVCID is left, or a property is invalid
+     */
+    SdlsEngineConfig update(Properties changes, List<String> allowed)
+    {
+        if (changes.isEmpty()) {
+            throw new IllegalArgumentException("No CryptoLib properties given");
+        }
+        Properties next = new Properties();
+        next.putAll(properties);
+        boolean gvcidTable = false;
+        for (String key : changes.stringPropertyNames()) {
+            if (!key.startsWith(CRYPTOLIB_PREFIX)) {
+                throw new IllegalArgumentException("Property '" + key + "' cannot be changed at runtime, only " +
+                        CRYPTOLIB_PREFIX + "* properties can");
+            }
+            if (matches(PROTECTED_PROPERTIES, key) && !matches(allowed, key)
+                    && !changes.getProperty(key).trim().equals(properties.getProperty(key))) {
+                throw new IllegalArgumentException("Property '" + key + "' is security relevant, it can only be " +
+                        "changed at runtime when allowed by sdls.admin.allowed_properties");
+            }
+            gvcidTable |= GVCID_KEY.matcher(key).matches();
+        }
+        if (gvcidTable) {
+            next.keySet().removeIf(key -> GVCID_KEY.matcher((String) key).matches());
+        }
+        for (String key : changes.stringPropertyNames()) {
+            next.setProperty(key, changes.getProperty(key).trim());
+        }
+        SdlsEngineConfig config = of(next, version + 1);
+        if (config.gvcids.isEmpty()) {
+            throw new IllegalArgumentException("No GVCID managed parameters left, every frame would be rejected");
+        }
+        return config;
+    }
+
+    private static boolean matches(List<String> patterns, String key)
+    {
+        for (String pattern : patterns) {
+            if (pattern.endsWith("*") ? key.startsWith(pattern.substring(0, pattern.length() - 1)) :
+                    key.equals(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SortedMap<Integer, Map<String, Object>> validate(Properties props)
+    {
+        checkChoice(props, "cryptolib.sadb.type", "inmemory", "mariadb");
+        checkChoice(props, "cryptolib.crypto.type", "libgcrypt", "kmccryptoservice");
+        String vcidBitmask = props.getProperty("cryptolib.tc.vcid_bitmask");
+        if (vcidBitmask == null) {
+            throw new IllegalArgumentException("Property 'cryptolib.tc.vcid_bitmask' is required");
+        }
+        checkNumber("cryptolib.tc.vcid_bitmask", vcidBitmask, 0, 0x3F);
+        for (String key : BOOLEAN_PROPERTIES) {
+            checkBoolean(key, props.getProperty(key));
+        }
+        for (String key : PORT_PROPERTIES) {
+            if (props.getProperty(key) != null) {
+                checkNumber(key, props.getProperty(key), 1, 0xFFFF);
+            }
+        }
+
+        SortedMap<Integer, Map<String, Object>> gvcids = new TreeMap<>();
+        List<String> unregistered = new ArrayList<>();
+        for (String key : props.stringPropertyNames()) {
+            Matcher m = GVCID_KEY.matcher(key);
+            if (!m.matches()) {
+                continue;
+            }
+            int scid = checkNumber(key, m.group("scid"), 0, 0x3FF);
+            int vcid = checkNumber(key, m.group("vcid"), 0, 0x3F);
+            int tfvn = checkNumber(key, m.group("tfvn"), 0, 0x03);
+            String property = m.group("property");
+            // KmcSdlsEngine looks the properties of a GVCID up by their decimal keys
+            if (!key.equals(String.format("cryptolib.tc.%d.%d.%d.%s", scid, vcid, tfvn, property))) {
+                throw new IllegalArgumentException("Invalid GVCID property '" + key + "', SCID, VCID and TFVN " +
+                        "must be decimal without leading zeros");
+            }
+            if (!GVCID_PROPERTIES.contains(property)) {
+                throw new IllegalArgumentException("Unknown GVCID property '" + key + "', expected one of " +
+                        new TreeSet<>(GVCID_PROPERTIES));
+            }
+            if (MAX_FRAME_LENGTH.equals(property)) {
+                checkNumber(key, props.getProperty(key), 1, KmcSdlsEngine.MAX_TC_FRAME_SIZE);
+            } else {
+                checkBoolean(key, props.getProperty(key));
+            }
+            if (!HAS_ECF.equals(property)) {
+                if (props.getProperty(String.format("cryptolib.tc.%d.%d.%d.%s", scid, vcid, tfvn, HAS_ECF)) == null) {
+                    unregistered.add(key);
+                }
+                continue;
+            }
+
+            String prefix = String.format("cryptolib.tc.%d.%d.%d.", scid, vcid, tfvn);
+            Map<String, Object> gvcid = new LinkedHashMap<>();
+            gvcid.put("tfvn", tfvn);
+            gvcid.put("scid", scid);
+            gvcid.put("vcid", vcid);
+            gvcid.put(HAS_ECF, Boolean.parseBoolean(props.getProperty(key)));
+            gvcid.put(HAS_SEGMENTATION_HEADER, Boolean.parseBoolean(props.getProperty(prefix + HAS_SEGMENTATION_HEADER)));
+            gvcid.put(MAX_FRAME_LENGTH, Integer.decode(props.getProperty(prefix + MAX_FRAME_LENGTH,
+                    String.valueOf(KmcSdlsEngine.MAX_TC_FRAME_SIZE))));
+            gvcids.put(SdlsDispatcher.gvcid(tfvn, scid, vcid), Collections.unmodifiableMap(gvcid));
+        }
+        if (!unregistered.isEmpty()) {
+            Collections.sort(unregistered);
+            throw new IllegalArgumentException("GVCID properties " + unregistered + " have no " + HAS_ECF +
+                    " property, the GVCID would not be managed");
+        }
+        return Collections.unmodifiableSortedMap(gvcids);
+    }
+
+    private static void checkChoice(Properties props, String key, String... choices)
+    {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return;
+        }
+        for (String choice : choices) {
+            if (choice.equalsIgnoreCase(value)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Invalid value '" + value + "' of property '" + key + "', expected one of " +
+                String.join(", ", choices));
+    }
+
+    private static void checkBoolean(String key, String value)
+    {
+        if (value != null && !"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+            throw new IllegalArgumentException("Invalid value '" + value + "' of property '" + key + "', expected " +
+                    "true or false");
+        }
+    }
+
+    private static int checkNumber(String key, String value, int min, int max)
+    {
+        int number;
+        try {
+            number = Integer.decode(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number '" + value + "' in property '" + key + "'");
+        }
+        if (number < min || number > max) {
+            throw new IllegalArgumentException("Property '" + key + "' is outside " + min + ".." + max);
+        }
+        return number;
+    }
+
+    /**
+     * @return configuration version, incremented by every reconfiguration
+     */
+    long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return cryptolib.* properties to configure the engine with
+     */
+    Properties getProperties()
+    {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    /**
+     * @param other configuration
+     * @return whether the configurations differ in their GVCID managed parameters only
+     */
+    boolean differsInGvcidsOnly(SdlsEngineConfig other)
+    {
+        return withoutGvcids(properties).equals(withoutGvcids(other.properties));
+    }
+
+    private static Properties withoutGvcids(Properties props)
+    {
+        Properties global = new Properties();
+        for (String key : props.stringPropertyNames()) {
+            if (!GVCID_KEY.matcher(key).matches()) {
+                global.setProperty(key, props.getProperty(key));
+            }
+        }
+        return global;
+    }
+
+    /**
+     * @return GVCID managed parameters, by packed GVCID
+     */
+    SortedMap<Integer, Map<String, Object>> getGvcids()
+    {
+        return gvcids;
+    }
+
+    /**
+     * @return version, time and GVCID managed parameters of the configuration, without the other properties as they
+     * may hold credentials
+     */
+    Map<String, Object> describe()
+    {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("version", version);
+        description.put("applied", applied.toString());
+        description.put("gvcids", new ArrayList<>(gvcids.values()));
+        return description;
+    }
+}
@@ -0,0 +1,445 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngineException;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ *  Frame counters and stage latency histograms of the SDLS service, exported in the Prometheus text format.
+ *
+ *  Frames, bytes and errors are counted by operation and global virtual channel, and by the SPI of the security
+ *  header; failures are also counted by CryptoLib status. Single frame calls record the latency of their stages:
+ *  reading the request, waiting in the dispatcher queue, and the engine call. The engine stage covers the JNI call
+ *  with the SADB lookup and crypto backend of CryptoLib, which cannot be told apart from Java.
+ *
+ *  Recording a frame takes a few map lookups and {@link LongAdder} increments, so request threads and dispatcher
+ *  lanes do not contend on it. Series are created on first use, at most {@link #MAX_SERIES} per family: frames of
+ *  further virtual channels or SPIs, and frames too short to have them, are counted as "other".
+ */
+final class SdlsMetrics
+{
+    static final String ENABLED_PROPERTY = "sdls.metrics.enabled";
+
+    static final int MAX_SERIES = 1024;
+
+    // key of the frames without a known GVCID or SPI
+    private static final int OTHER = -1;
+    // TC primary header length, followed by the segment header when the virtual channel has one, then the SPI
+    private static final int TC_PRIMARY_HEADER_LENGTH = 5;
+
+    /**
+     * Engine operation on a frame
+     */
+    enum Operation
+    {
+        APPLY("apply"),
+        PROCESS("process");
+
+        final String label;
+
+        Operation(String label)
+        {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Stage of a single frame call
+     */
+    enum Stage
+    {
+        READ("read"),
+        QUEUE("queue"),
+        ENGINE("engine"),
+        TOTAL("total");
+
+        final String label;
+
+        Stage(String label)
+        {
+            this.label = label;
+        }
+    }
+
+    private static final class Counters
+    {
+        final LongAdder frames = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * Latency histogram with fixed buckets
+     */
+    static final class Histogram
+    {
+        // upper bounds in nanoseconds, from 25 us to 2.5 s, followed by the +Inf bucket
+        static final long[] BOUNDS = {25_000L, 50_000L, 100_000L, 250_000L, 500_000L, 1_000_000L, 2_500_000L,
+                5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L,
+                1_000_000_000L, 2_500_000_000L};
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder sum = new LongAdder();
+
+        Histogram()
+        {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos)
+        {
+            int i = 0;
+            while (i < BOUNDS.length && nanos > BOUNDS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sum.add(nanos);
+        }
+
+        /**
+         * @return number of values recorded into each bucket, not cumulative
+         */
+        long[] counts()
+        {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<Integer, Counters>[] byGvcid;
+    private final Map<Integer, Counters>[] bySpi;
+    private final Map<Integer, LongAdder>[] byStatus;
+    private final Histogram[][] stages;
+    // GVCIDs whose frames have a segment header before the SPI, null while the GVCID managed parameters are unknown
+    private volatile Set<Integer> segmentHeaders = null;
+
+    /**
+     * Constructor
+     *
+     * @param enabled record frames, a disabled instance records and exports nothing
+     */
+    @SuppressWarnings("unchecked")
+    SdlsMetrics(boolean enabled)
+    {
+        int operations = Operation.values().length;
+        this.enabled = enabled;
+        this.byGvcid = new Map[operations];
+        this.bySpi = new Map[operations];
+        this.byStatus = new Map[operations];
+        this.stages = new Histogram[operations][Stage.values().length];
+        for (int op = 0; op < operations; op++) {
+            byGvcid[op] = new ConcurrentHashMap<>();
+            bySpi[op] = new ConcurrentHashMap<>();
+            byStatus[op] = new ConcurrentHashMap<>();
+            for (int stage = 0; stage < stages[op].length; stage++) {
+                stages[op][stage] = new Histogram();
+            }
+        }
+    }
+
+    /**
+     * Create the metrics from the service configuration
+     *
+     * @param props service properties
+     * @return metrics
+     */
+    static SdlsMetrics fromProperties(Properties props)
+    {
+        return new SdlsMetrics(Boolean.parseBoolean(props.getProperty(ENABLED_PROPERTY, "true").trim()));
+    }
+
+    /**
+     * @return whether frames are recorded
+     */
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Use the GVCID managed parameters of a configuration to locate the SPI of frames
+     *
+     * @param config CryptoLib configuration, or null if it is unknown, then frames are not counted by SPI
+     */
+    void configure(SdlsEngineConfig config)
+    {
+        if (config == null) {
+            segmentHeaders = null;
+            return;
+        }
+        Set<Integer> gvcids = new HashSet<>();
+        config.getGvcids().forEach((gvcid, parameters) -> {
+            if (Boolean.TRUE.equals(parameters.get("has_segmentation_header"))) {
+                gvcids.add(gvcid);
+            }
+        });
+        segmentHeaders = gvcids;
+    }
+
+    /**
+     * Run a single frame call through the dispatcher, recording the frame and the latency of its stages
+     *
+     * @param dispatcher dispatcher
+     * @param operation  operation of the call
+     * @param frame      TC frame the call protects or processes
+     * @param received   {@link System#nanoTime()} when the request was received, before it was read
+     * @param call       engine call, for apply security the SPI is read from the applied frame it returns
+     * @param <T>        result type
+     * @return call result
+     * @throws Exception as {@link SdlsDispatcher#dispatch(byte[], Callable)}
+     */
+    <T> T dispatch(SdlsDispatcher dispatcher, Operation operation, byte[] frame, long received, Callable<T> call)
+            throws Exception
+    {
+        if (!enabled) {
+            return dispatcher.dispatch(frame, call);
+        }
+        long submitted = System.nanoTime();
+        // written by the lane, read after the dispatcher returned the result
+        long[] engine = new long[2];
+        T result;
+        try {
+            result = dispatcher.dispatch(frame, () -> {
+                engine[0] = System.nanoTime();
+                try {
+                    return call.call();
+                } finally {
+                    engine[1] = System.nanoTime();
+                }
+            });
+        } catch (Exception e) {
+            record(operation, frame, operation == Operation.PROCESS ? frame : null, statusOf(e));
+            recordStages(operation, received, submitted, engine);
+            throw e;
+        }
+        byte[] secured = operation == Operation.PROCESS ? frame : result instanceof byte[] ? (byte[]) result : null;
+        record(operation, frame, secured, 0);
+        recordStages(operation, received, submitted, engine);
+        return result;
+    }
+
+    /**
+     * Get a recorder of the frames of batches, to pass to {@link SdlsBatch}
+     *
+     * @param operation operation of the batch
+     * @return recorder of a frame and its result
+     */
+    BiConsumer<byte[], SdlsBatch.Result> batchRecorder(Operation operation)
+    {
+        if (!enabled) {
+            return (frame, result) -> { };
+        }
+        return (frame, result) -> record(operation, frame, operation == Operation.PROCESS ? frame :
+                result.status == 0 ? result.output : null, result.status);
+    }
+
+    /**
+     * Record a frame
+     *
+     * @param operation operation on the frame
+     * @param frame     TC frame as received
+     * @param secured   frame with the security header, the applied frame or the received frame to process, or null
+     *                  if there is none
+     * @param status    0, a CryptoLib status, or an {@link SdlsBatch} service status
+     */
+    void record(Operation operation, byte[] frame, byte[] secured, int status)
+    {
+        if (!enabled) {
+            return;
+        }
+        int op = operation.ordinal();
+        int gvcid = SdlsDispatcher.gvcidOf(frame);
+        count(byGvcid[op], gvcid, frame.length, status);
+        Set<Integer> segmentHeaders = this.segmentHeaders;
+        if (segmentHeaders != null && secured != null && gvcid >= 0) {
+            int offset = TC_PRIMARY_HEADER_LENGTH + (segmentHeaders.contains(gvcid) ? 1 : 0);
+            int spi = secured.length < offset + 2 ? OTHER :
+                    ((secured[offset] & 0xFF) << 8) | (secured[offset + 1] & 0xFF);
+            count(bySpi[op], spi, frame.length, status);
+        }
+        if (status != 0) {
+            byStatus[op].computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    private static void count(Map<Integer, Counters> series, int key, int bytes, int status)
+    {
+        Counters counters = series.get(key);
+        if (counters == null) {
+            if (series.size() >= MAX_SERIES) {
+                key = OTHER;
+            }
+            counters = series.computeIfAbsent(key, k -> new Counters());
+        }
+        counters.frames.increment();
+        counters.bytes.add(bytes);
+        if (status != 0) {
+            counters.errors.increment();
+        }
+    }
+
+    private void recordStages(Operation operation, long received, long submitted, long[] engine)
+    {
+        Histogram[] histograms = stages[operation.ordinal()];
+        histograms[Stage.READ.ordinal()].record(submitted - received);
+        if (engine[1] != 0) {
+            histograms[Stage.QUEUE.ordinal()].record(engine[0] - submitted);
+            histograms[Stage.ENGINE.ordinal()].record(engine[1] - engine[0]);
+        }
+        histograms[Stage.TOTAL.ordinal()].record(System.nanoTime() - received);
+    }
+
+    private static int statusOf(Exception e)
+    {
+        if (e instanceof KmcSdlsEngineException) {
+            return ((KmcSdlsEngineException) e).getStatus();
+        }
+        if (e instanceof SdlsBusyException) {
+            return SdlsBatch.STATUS_BUSY;
+        }
+        return SdlsBatch.STATUS_ERROR;
+    }
+
+    /**
+     * @return histogram of a stage, for tests
+     */
+    Histogram histogram(Operation operation, Stage stage)
+    {
+        return stages[operation.ordinal()][stage.ordinal()];
+    }
+
+    /**
+     * Export the metrics in the Prometheus text format, version 0.0.4
+     *
+     * @param codeNames  CryptoLib error code name of a status
+     * @param dispatcher dispatcher whose queued calls are exported, or null
+     * @return metrics
+     */
+    String export(IntFunction<String> codeNames, SdlsDispatcher dispatcher)
+    {
+        StringBuilder out = new StringBuilder();
+        if (!enabled) {
+            return out.toString();
+        }
+        exportCounters(out, "kmc_sdls_frames_total", "TC frames by operation and GVCID (scid.vcid.tfvn)",
+                byGvcid, "gvcid", SdlsMetrics::gvcidLabel, c -> c.frames);
+        exportCounters(out, "kmc_sdls_frame_bytes_total", "Bytes of the received TC frames by operation and GVCID",
+                byGvcid, "gvcid", SdlsMetrics::gvcidLabel, c -> c.bytes);
+        exportCounters(out, "kmc_sdls_frame_errors_total", "Failed TC frames by operation and GVCID",
+                byGvcid, "gvcid", SdlsMetrics::gvcidLabel, c -> c.errors);
+        exportCounters(out, "kmc_sdls_spi_frames_total", "TC frames by operation and SPI",
+                bySpi, "spi", SdlsMetrics::spiLabel, c -> c.frames);
+        exportCounters(out, "kmc_sdls_spi_bytes_total", "Bytes of the received TC frames by operation and SPI",
+                bySpi, "spi", SdlsMetrics::spiLabel, c -> c.bytes);
+        exportCounters(out, "kmc_sdls_spi_errors_total", "Failed TC frames by operation and SPI",
+                bySpi, "spi", SdlsMetrics::spiLabel, c -> c.errors);
+
+        header(out, "kmc_sdls_errors_total", "counter", "Failed TC frames by operation and CryptoLib error code");
+        for (Operation operation : Operation.values()) {
+            Map<String, Long> errors = new TreeMap<>();
+            byStatus[operation.ordinal()].forEach((status, count) ->
+                    errors.merge(codeName(status, codeNames), count.sum(), Long::sum));
+            errors.forEach((code, count) -> out.append("kmc_sdls_errors_total{operation=\"").append(operation.label)
+                    .append("\",code=\"").append(escape(code)).append("\"} ").append(count).append('\n'));
+        }
+
+        header(out, "kmc_sdls_stage_seconds", "histogram", "Latency of the stages of single frame calls");
+        for (Operation operation : Operation.values()) {
+            for (Stage stage : Stage.values()) {
+                Histogram histogram = stages[operation.ordinal()][stage.ordinal()];
+                String labels = "operation=\"" + operation.label + "\",stage=\"" + stage.label + "\"";
+                long[] counts = histogram.counts();
+                long cumulative = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    cumulative += counts[i];
+                    String le = i < Histogram.BOUNDS.length ? seconds(Histogram.BOUNDS[i]) : "+Inf";
+                    out.append("kmc_sdls_stage_seconds_bucket{").append(labels).append(",le=\"").append(le)
+                            .append("\"} ").append(cumulative).append('\n');
+                }
+                out.append("kmc_sdls_stage_seconds_sum{").append(labels).append("} ")
+                        .append(seconds(histogram.sum.sum())).append('\n');
+                out.append("kmc_sdls_stage_seconds_count{").append(labels).append("} ").append(cumulative)
+                        .append('\n');
+            }
+        }
+
+        if (dispatcher != null) {
+            header(out, "kmc_sdls_dispatcher_queued", "gauge", "Calls waiting for a dispatcher lane");
+            out.append("kmc_sdls_dispatcher_queued ").append(dispatcher.queued()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void exportCounters(StringBuilder out, String name, String help, Map<Integer, Counters>[] series,
+                                       String label, IntFunction<String> labelValue,
+                                       Function<Counters, LongAdder> field)
+    {
+        header(out, name, "counter", help);
+        for (Operation operation : Operation.values()) {
+            new TreeMap<>(series[operation.ordinal()]).forEach((key, counters) -> out.append(name)
+                    .append("{operation=\"").append(operation.label).append("\",").append(label).append("=\"")
+                    .append(labelValue.apply(key)).append("\"} ").append(field.apply(counters).sum()).append('\n'));
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help)
+    {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String gvcidLabel(int gvcid)
+    {
+        if (gvcid == OTHER) {
+            return "other";
+        }
+        // in the order of the GVCID managed parameter properties, cryptolib.tc.<scid>.<vcid>.<tfvn>
+        return ((gvcid >> 6) & 0x3FF) + "." + (gvcid & 0x3F) + "." + (gvcid >> 16);
+    }
+
+    private static String spiLabel(int spi)
+    {
+        return spi == OTHER ? "other" : String.valueOf(spi);
+    }
+
+    private static String codeName(int status, IntFunction<String> codeNames)
+    {
+        switch (status) {
+            case SdlsBatch.STATUS_BUSY:
+                return "SERVICE_BUSY";
+            case SdlsBatch.STATUS_ERROR:
+                return "SERVICE_ERROR";
+            case SdlsBatch.STATUS_FORBIDDEN:
+                return "SERVICE_FORBIDDEN";
+            default:
+                String name = codeNames == null ? null : codeNames.apply(status);
+                return name == null || name.isBlank() ? String.valueOf(status) : name;
+        }
+    }
+
+    private static String seconds(long nanos)
+    {
+        return String.valueOf(nanos / 1e9);
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
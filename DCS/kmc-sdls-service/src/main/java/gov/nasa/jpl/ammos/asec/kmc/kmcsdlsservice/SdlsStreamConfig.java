@@ -0,0 +1,82 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
+
+/**
+ *  WebSocket endpoints streaming TC frames, /stream/apply_security and /stream/process_security.
+ *
+ *  The GVCIDs of a connection are those configured for the subject of its client certificate (see
+ *  {@link SdlsStreamScope}), handshakes without a client certificate or from an unknown subject are refused with
+ *  HTTP 403. CAM cookies are given by the Cookie header of the handshake, as for the REST API.
+ */
+@Configuration
+@EnableWebSocket
+public class SdlsStreamConfig implements WebSocketConfigurer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SdlsStreamConfig.class);
+
+    @Value("${sdls.stream.max_message_size:65536}")
+    private int maxMessageSize;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry)
+    {
+        registry.addHandler(new SdlsStreamHandler(true, maxMessageSize), "/stream/apply_security")
+                .addInterceptors(new ScopeInterceptor());
+        registry.addHandler(new SdlsStreamHandler(false, maxMessageSize), "/stream/process_security")
+                .addInterceptors(new ScopeInterceptor());
+    }
+
+    /**
+     * Rejects handshakes from clients without configured GVCIDs, and keeps the GVCIDs and CAM cookies of the
+     * connection
+     */
+    static class ScopeInterceptor implements HandshakeInterceptor
+    {
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes)
+        {
+            if (!(request instanceof ServletServerHttpRequest)) {
+                response.setStatusCode(HttpStatus.FORBIDDEN);
+                return false;
+            }
+            HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+            String subject = KmcSdlsController.clientSubject(servletRequest);
+            SdlsStreamScope scope = subject == null ? null : KmcSdlsService.getSdlsStreamScopes().get(subject);
+            if (scope == null) {
+                LOG.error("Rejecting SDLS stream from {}: no GVCIDs are configured for {}", request.getRemoteAddress(),
+                        subject == null ? "clients without certificate" : "client " + subject);
+                response.setStatusCode(HttpStatus.FORBIDDEN);
+                return false;
+            }
+            attributes.put(SdlsStreamHandler.SCOPE_ATTRIBUTE, scope);
+            String cookies = KmcSdlsController.buildCookiesString(servletRequest.getCookies());
+            if (cookies != null) {
+                attributes.put(SdlsStreamHandler.COOKIES_ATTRIBUTE, cookies);
+            }
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception)
+        {
+        }
+    }
+}
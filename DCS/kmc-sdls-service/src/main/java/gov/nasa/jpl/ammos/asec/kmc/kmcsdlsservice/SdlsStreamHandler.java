@@ -0,0 +1,99 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  Streams TC frames over a WebSocket connection.
+ *
+ *  Each binary message carries one or more frames framed as a batch (see {@link SdlsBatch}), and is answered by one
+ *  binary message with their results, in order. Messages of a connection are handled one at a time: the next message
+ *  is not read until the results of the previous one are sent, so a client sending faster than its frames are
+ *  protected or processed is slowed down by TCP flow control, and frames of a virtual channel keep their order.
+ *  Frames outside the GVCIDs configured for the client get {@link SdlsBatch#STATUS_FORBIDDEN}, frames whose dispatcher lane
+ *  is full get {@link SdlsBatch#STATUS_BUSY} and may be sent again.
+ */
+public class SdlsStreamHandler extends BinaryWebSocketHandler
+{
+    static final String SCOPE_ATTRIBUTE = "sdls.stream.scope";
+    static final String COOKIES_ATTRIBUTE = "sdls.stream.cookies";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SdlsStreamHandler.class);
+
+    private final boolean apply;
+    private final int maxMessageSize;
+
+    /**
+     * Constructor
+     *
+     * @param apply          apply security to the frames if true, process security otherwise
+     * @param maxMessageSize maximum size of a message in bytes, larger messages close the connection
+     */
+    public SdlsStreamHandler(boolean apply, int maxMessageSize)
+    {
+        this.apply = apply;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session)
+    {
+        session.setBinaryMessageSizeLimit(maxMessageSize);
+        LOG.info("SDLS stream {} opened from {} for GVCID(s) {}", session.getId(), session.getRemoteAddress(),
+                session.getAttributes().get(SCOPE_ATTRIBUTE));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception
+    {
+        ByteBuffer payload = message.getPayload();
+        byte[] batch = new byte[payload.remaining()];
+        payload.get(batch);
+
+        SdlsStreamScope scope = (SdlsStreamScope) session.getAttributes().get(SCOPE_ATTRIBUTE);
+        String cookies = (String) session.getAttributes().get(COOKIES_ATTRIBUTE);
+        KmcSdlsEngine engine = KmcSdlsService.getKmcSdlsEngine();
+
+        byte[] results;
+        try {
+            results = SdlsBatch.dispatch(KmcSdlsService.getSdlsDispatcher(), batch, scope,
+                    frames -> apply ? engine.applySecurityBatch(frames, cookies) :
+                            engine.processSecurityBatch(frames, cookies),
+                    KmcSdlsService.getSdlsMetrics().batchRecorder(apply ? SdlsMetrics.Operation.APPLY :
+                            SdlsMetrics.Operation.PROCESS));
+        } catch (SdlsBusyException e) {
+            List<SdlsBatch.Result> busy = new ArrayList<>();
+            for (int i = SdlsBatch.readFrames(batch).size(); i > 0; i--) {
+                busy.add(new SdlsBatch.Result(SdlsBatch.STATUS_BUSY, e.getMessage()));
+            }
+            results = SdlsBatch.writeResults(busy);
+        } catch (IllegalArgumentException e) {
+            // the stream is out of sync, the following messages cannot be trusted either
+            LOG.error("SDLS stream {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+            return;
+        }
+        session.sendMessage(new BinaryMessage(results));
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception)
+    {
+        LOG.error("SDLS stream {}: transport error: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status)
+    {
+        LOG.info("SDLS stream {} closed: {}", session.getId(), status);
+    }
+}
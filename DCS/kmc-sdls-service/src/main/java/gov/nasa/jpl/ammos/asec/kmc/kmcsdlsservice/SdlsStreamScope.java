@@ -0,0 +1,134 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ *  Global virtual channels a stream client may protect or process frames of. They are configured by client
+ *  certificate subject, as sdls.stream.clients.&lt;name&gt;.subject, the subject DN, and
+ *  sdls.stream.clients.&lt;name&gt;.gvcids, a comma separated list of TFVN:SCID:VCID, e.g. {@code 0:3:1,0:3:2}.
+ *  Numbers are decimal, or hexadecimal with a 0x prefix.
+ */
+final class SdlsStreamScope implements Predicate<byte[]>
+{
+    static final String CLIENTS_PREFIX = "sdls.stream.clients.";
+
+    private final Set<Integer> gvcids;
+
+    private SdlsStreamScope(Set<Integer> gvcids)
+    {
+        this.gvcids = gvcids;
+    }
+
+    /**
+     * Parse a scope
+     *
+     * @param gvcids comma separated list of TFVN:SCID:VCID
+     * @return scope
+     * @throws IllegalArgumentException if the list is empty or a GVCID is invalid
+     */
+    static SdlsStreamScope parse(String gvcids)
+    {
+        if (gvcids == null || gvcids.isBlank()) {
+            throw new IllegalArgumentException("No GVCID given for the SDLS stream");
+        }
+        Set<Integer> parsed = new TreeSet<>();
+        for (String gvcid : gvcids.split(",", -1)) {
+            String[] fields = gvcid.trim().split(":");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Invalid GVCID '" + gvcid.trim() + "', expected TFVN:SCID:VCID");
+            }
+            int tfvn = parseField(gvcid, fields[0], 0x03);
+            int scid = parseField(gvcid, fields[1], 0x3FF);
+            int vcid = parseField(gvcid, fields[2], 0x3F);
+            parsed.add(SdlsDispatcher.gvcid(tfvn, scid, vcid));
+        }
+        return new SdlsStreamScope(parsed);
+    }
+
+    /**
+     * Read the scopes of the stream clients
+     *
+     * @param props properties
+     * @return scopes by canonical subject DN of the client certificate
+     * @throws IllegalArgumentException if a client has an invalid subject or GVCIDs, or a subject is given twice
+     */
+    static Map<String, SdlsStreamScope> fromProperties(Properties props)
+    {
+        Set<String> names = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith(CLIENTS_PREFIX)) {
+                continue;
+            }
+            int dot = key.lastIndexOf('.');
+            String property = key.substring(dot + 1);
+            if (dot < CLIENTS_PREFIX.length() || !property.equals("subject") && !property.equals("gvcids")) {
+                throw new IllegalArgumentException("Unknown SDLS stream client property " + key +
+                        ", expected " + CLIENTS_PREFIX + "<name>.subject or .gvcids");
+            }
+            names.add(key.substring(CLIENTS_PREFIX.length(), dot));
+        }
+
+        Map<String, SdlsStreamScope> scopes = new HashMap<>();
+        for (String name : names) {
+            String subject = props.getProperty(CLIENTS_PREFIX + name + ".subject");
+            if (subject == null || subject.isBlank()) {
+                throw new IllegalArgumentException("No subject given for SDLS stream client " + name);
+            }
+            SdlsStreamScope scope;
+            try {
+                scope = parse(props.getProperty(CLIENTS_PREFIX + name + ".gvcids"));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("SDLS stream client " + name + ": " + e.getMessage());
+            }
+            String canonical = KmcSdlsController.canonicalSubject(subject);
+            if (scopes.put(canonical, scope) != null) {
+                throw new IllegalArgumentException("Subject '" + subject.trim() + "' is given for more than one " +
+                        "SDLS stream client");
+            }
+        }
+        return scopes;
+    }
+
+    private static int parseField(String gvcid, String field, int max)
+    {
+        int value;
+        try {
+            value = Integer.decode(field.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid GVCID '" + gvcid.trim() + "': " + e.getMessage());
+        }
+        if (value < 0 || value > max) {
+            throw new IllegalArgumentException("Invalid GVCID '" + gvcid.trim() + "', " + field.trim() +
+                    " is outside 0.." + max);
+        }
+        return value;
+    }
+
+    /**
+     * @param frame TC frame
+     * @return whether the frame is on a virtual channel of the scope
+     */
+    @Override
+    public boolean test(byte[] frame)
+    {
+        return gvcids.contains(SdlsDispatcher.gvcidOf(frame));
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int gvcid : gvcids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(gvcid >> 16).append(':').append((gvcid >> 6) & 0x3FF).append(':').append(gvcid & 0x3F);
+        }
+        return sb.toString();
+    }
+}
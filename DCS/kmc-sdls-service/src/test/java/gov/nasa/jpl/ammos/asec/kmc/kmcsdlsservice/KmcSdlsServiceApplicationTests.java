@@ -1,6 +1,8 @@
 package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
+import gov.nasa.jpl.ammos.asec.kmc.SDLS_TC_TransferFrame;
 import org.apache.commons.codec.binary.Hex;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -12,10 +14,30 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.security.auth.x500.X500Principal;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -76,4 +98,210 @@ public class KmcSdlsServiceApplicationTests {
 
     }
 
+    @Test
+    public void testMetricsEndpoint() throws Exception {
+        byte[] tcSdlsFrame = Hex.decodeHex("200300230000000100000000000000000000000080d2c70008197f0b00310000b1fefe0f");
+        mockMvc.perform(post("/process_security").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE).content(tcSdlsFrame))
+                .andExpect(status().isOk());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN)).andReturn();
+        String metrics = result.getResponse().getContentAsString();
+        assertTrue(metrics.contains("kmc_sdls_frames_total{operation=\"process\",gvcid=\"3.0.0\"}"));
+        assertTrue(metrics.contains("kmc_sdls_spi_frames_total{operation=\"process\",spi=\"1\"}"));
+        assertTrue(metrics.contains("kmc_sdls_stage_seconds_bucket{operation=\"process\",stage=\"engine\",le=\"+Inf\"}"));
+    }
+
+    @Test
+    public void testApplySecurityBatchEndpoint() throws Exception {
+        // valid frame, frame too short to be a TC frame, valid frame
+        byte[] tcFrame = Hex.decodeHex("20030015000080d2c70008197f0b00310000b1fe3128");
+        byte[] batch = SdlsBatch.writeFrames(List.of(tcFrame, Hex.decodeHex("2003"), tcFrame));
+
+        MvcResult result = mockMvc.perform(post("/apply_security_batch").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE).content(batch))
+                .andExpect(status().isOk()).andReturn();
+        List<SdlsBatch.Result> results = SdlsBatch.readResults(result.getResponse().getContentAsByteArray());
+        assertEquals(3, results.size());
+        assertEquals(0, results.get(0).status);
+        assertEquals("200300230000000100000000000000000000000080d2c70008197f0b00310000b1fefe0f", Hex.encodeHexString(results.get(0).output, true));
+        assertNotEquals(0, results.get(1).status);
+        assertEquals(0, results.get(2).status);
+    }
+
+    @Test
+    public void testProcessSecurityBatchEndpoint() throws Exception {
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            frames.add(Hex.decodeHex(String.format("2003002300000001000000000000000000000000" + "80D2C70008197F0B00310000%04X" + "fe0f", i)));
+        }
+        byte[] batch = SdlsBatch.writeFrames(frames);
+
+        MvcResult result = mockMvc.perform(post("/process_security_batch").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE).content(batch))
+                .andExpect(status().isOk()).andReturn();
+        List<SdlsBatch.Result> results = SdlsBatch.readResults(result.getResponse().getContentAsByteArray());
+        assertEquals(16, results.size());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(0, results.get(i).status);
+            assertEquals(String.format("80D2C70008197F0B00310000%04X", i), Hex.encodeHexString(results.get(i).output, false));
+        }
+    }
+
+    @Test
+    public void testInvalidBatchEndpoint() throws Exception {
+        mockMvc.perform(post("/process_security_batch").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE).content(new byte[]{0x00, 0x24, 0x20}))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testMalformedBatchEndpoint() throws Exception {
+        // truncated in the length of the second frame
+        byte[] tcFrame = Hex.decodeHex("20030015000080d2c70008197f0b00310000b1fe3128");
+        byte[] batch = SdlsBatch.writeFrames(List.of(tcFrame));
+        byte[] truncated = Arrays.copyOf(batch, batch.length + 1);
+        mockMvc.perform(post("/apply_security_batch").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE).content(truncated))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("truncated in the length of frame 1")));
+
+        // frame longer than the maximum TC frame size
+        mockMvc.perform(post("/apply_security_batch").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE).content(new byte[]{(byte) 0xff, (byte) 0xff}))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testProcessSecurityEndpointCompact() throws Exception {
+        byte[] tcSdlsFrame = Hex.decodeHex("200300230000000100000000000000000000000080d2c70008197f0b00310000b1fefe0f");
+
+        MvcResult result = mockMvc.perform(post("/process_security").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM).content(tcSdlsFrame))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andReturn();
+        // tfvn, bypass, cc, vcid, scid, fl, fsn, sh, spi, fecf, tc_pdu_len, PDU
+        assertEquals("00010000" + "0003" + "0023" + "00" + "00" + "0001" + "fe0f" + "000e" + "80d2c70008197f0b00310000b1fe",
+                Hex.encodeHexString(result.getResponse().getContentAsByteArray(), true));
+    }
+
+    @Test
+    public void testAcceptsCompact() {
+        assertTrue(KmcSdlsController.acceptsCompact("application/octet-stream"));
+        assertTrue(KmcSdlsController.acceptsCompact("application/json;q=0.5, application/octet-stream"));
+        assertFalse(KmcSdlsController.acceptsCompact(null));
+        assertFalse(KmcSdlsController.acceptsCompact("*/*"));
+        assertFalse(KmcSdlsController.acceptsCompact("application/json, application/octet-stream;q=0.5"));
+        assertFalse(KmcSdlsController.acceptsCompact("application/octet-stream;q=0"));
+        assertFalse(KmcSdlsController.acceptsCompact("not a media type"));
+    }
+
+    private static MockHttpServletRequestBuilder asClient(MockHttpServletRequestBuilder request, String subject) {
+        X509Certificate cert = mock(X509Certificate.class);
+        when(cert.getSubjectX500Principal()).thenReturn(new X500Principal(subject));
+        return request.requestAttr("javax.servlet.request.X509Certificate", new X509Certificate[]{cert});
+    }
+
+    private static MockHttpServletRequestBuilder asAdmin(MockHttpServletRequestBuilder request) {
+        return asClient(request, "cn=admin, o=Example");
+    }
+
+    @Test
+    public void testAdminSubjects() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/admin/config"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(asClient(MockMvcRequestBuilders.get("/admin/config"), "CN=ops1,O=Example"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(asClient(post("/admin/config"), "CN=ops1,O=Example")
+                        .contentType(MediaType.TEXT_PLAIN).content("cryptolib.tc.3.0.0.has_ecf=true"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(asAdmin(MockMvcRequestBuilders.get("/admin/config")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testAdminProtectedProperties() throws Exception {
+        MvcResult current = mockMvc.perform(asAdmin(MockMvcRequestBuilders.get("/admin/config")))
+                .andExpect(status().isOk())
+                .andReturn();
+        long version = objectMapper.readTree(current.getResponse().getContentAsString()).get("version").asLong();
+
+        mockMvc.perform(asAdmin(post("/admin/config")).contentType(MediaType.TEXT_PLAIN)
+                        .content("cryptolib.process_tc.ignore_antireplay=false"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(asAdmin(post("/admin/config")).contentType(MediaType.TEXT_PLAIN)
+                        .content("cryptolib.sadb.type=mariadb"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(asAdmin(MockMvcRequestBuilders.get("/admin/config")))
+                .andExpect(jsonPath("$.version").value(version));
+    }
+
+    @Test
+    public void testAdminReconfigureEndpoint() throws Exception {
+        MvcResult current = mockMvc.perform(asAdmin(MockMvcRequestBuilders.get("/admin/config")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.gvcids.length()").value(2))
+                .andReturn();
+        long version = objectMapper.readTree(current.getResponse().getContentAsString()).get("version").asLong();
+
+        // add VCID 2, keeping the virtual channels of the other tests
+        String gvcids = String.join("\n",
+                "cryptolib.tc.3.0.0.has_segmentation_header=true",
+                "cryptolib.tc.3.0.0.has_ecf=true",
+                "cryptolib.tc.3.1.0.has_segmentation_header=true",
+                "cryptolib.tc.3.1.0.has_ecf=true",
+                "cryptolib.tc.3.2.0.has_segmentation_header=true",
+                "cryptolib.tc.3.2.0.has_ecf=true");
+        mockMvc.perform(asAdmin(post("/admin/config")).param("version", String.valueOf(version))
+                        .contentType(MediaType.TEXT_PLAIN).content(gvcids))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(version + 1))
+                .andExpect(jsonPath("$.gvcids.length()").value(3))
+                .andExpect(jsonPath("$.gvcids[2].vcid").value(2));
+
+        // frames are still protected with the new configuration
+        mockMvc.perform(post("/apply_security").contentType(MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                        .content(Hex.decodeHex("20030015000080d2c70008197f0b00310000b1fe3128")))
+                .andExpect(status().isOk());
+
+        // outdated version
+        mockMvc.perform(asAdmin(post("/admin/config")).param("version", String.valueOf(version))
+                        .contentType(MediaType.TEXT_PLAIN).content(gvcids))
+                .andExpect(status().isConflict());
+        // invalid VCID, the configuration is unchanged
+        mockMvc.perform(asAdmin(post("/admin/config")).contentType(MediaType.TEXT_PLAIN).content("cryptolib.tc.3.64.0.has_ecf=true"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(asAdmin(MockMvcRequestBuilders.get("/admin/config")))
+                .andExpect(jsonPath("$.version").value(version + 1));
+    }
+
+    @Test
+    public void testConcurrentProcessSecurity() throws Exception {
+        // Threads call the engine directly, all at once, so calls overlap rather than being serialized by a lane.
+        // Frames differ only in their PDU, each result must carry the PDU of its own frame
+        KmcSdlsEngine engine = KmcSdlsService.getKmcSdlsEngine();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int caller = 0; caller < 8; caller++) {
+                int id = caller;
+                results.add(callers.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 25; i++) {
+                        String pdu = String.format("80D2C70008197F0B0031%04X%04X", id, i);
+                        byte[] tcSdlsFrame = Hex.decodeHex("2003002300000001000000000000000000000000" + pdu + "fe0f");
+                        SDLS_TC_TransferFrame frame = engine.processSecurity(tcSdlsFrame);
+                        assertEquals(pdu, frame.tc_pdu);
+                        assertEquals(14, frame.tc_pdu_len);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
 }
@@ -0,0 +1,182 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SdlsBatchTest {
+
+    private SdlsDispatcher dispatcher;
+
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private static byte[] frame(int vcid, int seq) {
+        return new byte[]{0x00, 0x03, (byte) (vcid << 2), 0x00, (byte) seq, 0x00};
+    }
+
+    /**
+     * Engine stand-in, the output of a frame is the frame itself
+     */
+    private static byte[] echo(byte[] batch) {
+        List<SdlsBatch.Result> results = new ArrayList<>();
+        for (byte[] frame : SdlsBatch.readFrames(batch)) {
+            results.add(new SdlsBatch.Result(0, frame));
+        }
+        return SdlsBatch.writeResults(results);
+    }
+
+    @Test
+    public void testFraming() {
+        List<byte[]> frames = List.of(frame(1, 1), new byte[0], frame(2, 2));
+        byte[] batch = SdlsBatch.writeFrames(frames);
+        assertEquals(6 + 2 + 6 + 2 + 2, batch.length);
+        assertEquals(0x00, batch[0]);
+        assertEquals(0x06, batch[1]);
+        List<byte[]> read = SdlsBatch.readFrames(batch);
+        assertEquals(3, read.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertArrayEquals(frames.get(i), read.get(i));
+        }
+        assertTrue(SdlsBatch.readFrames(new byte[0]).isEmpty());
+
+        List<SdlsBatch.Result> results = SdlsBatch.readResults(SdlsBatch.writeResults(List.of(
+                new SdlsBatch.Result(0, frame(1, 1)), new SdlsBatch.Result(-8, "CRYPTO_LIB_ERR"))));
+        assertEquals(2, results.size());
+        assertEquals(0, results.get(0).status);
+        assertArrayEquals(frame(1, 1), results.get(0).output);
+        assertEquals(-8, results.get(1).status);
+        assertEquals("CRYPTO_LIB_ERR", new String(results.get(1).output));
+    }
+
+    @Test
+    public void testInvalidFraming() {
+        for (byte[] batch : new byte[][]{{0x00}, {0x00, 0x06, 0x00}, {0x04, 0x01}}) {
+            try {
+                SdlsBatch.readFrames(batch);
+                fail("Expected invalid framing");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testDispatchKeepsOrder() throws Exception {
+        dispatcher = new SdlsDispatcher(4, 16, 1);
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            frames.add(frame(i % 7, i));
+        }
+        List<List<byte[]>> calls = new ArrayList<>();
+        byte[] results = SdlsBatch.dispatch(dispatcher, SdlsBatch.writeFrames(frames), batch -> {
+            synchronized (calls) {
+                calls.add(SdlsBatch.readFrames(batch));
+            }
+            return echo(batch);
+        });
+
+        List<SdlsBatch.Result> read = SdlsBatch.readResults(results);
+        assertEquals(frames.size(), read.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertEquals(0, read.get(i).status);
+            assertArrayEquals(frames.get(i), read.get(i).output);
+        }
+        // one call per lane, with the frames of that lane only
+        assertTrue(calls.size() <= 4);
+        for (List<byte[]> call : calls) {
+            for (byte[] frame : call) {
+                assertEquals(dispatcher.laneOf(call.get(0)), dispatcher.laneOf(frame));
+            }
+        }
+    }
+
+    @Test
+    public void testPartialFailure() throws Exception {
+        dispatcher = new SdlsDispatcher(2, 16, 1);
+        byte[] failing = frame(0, 0);
+        byte[] other = null;
+        for (int vcid = 1; other == null; vcid++) {
+            if (dispatcher.laneOf(frame(vcid, 0)) != dispatcher.laneOf(failing)) {
+                other = frame(vcid, 1);
+            }
+        }
+        byte[] results = SdlsBatch.dispatch(dispatcher, SdlsBatch.writeFrames(List.of(failing, other, failing)),
+                batch -> {
+                    if (dispatcher.laneOf(SdlsBatch.readFrames(batch).get(0)) == dispatcher.laneOf(failing)) {
+                        throw new Exception("engine failure");
+                    }
+                    return echo(batch);
+                });
+        List<SdlsBatch.Result> read = SdlsBatch.readResults(results);
+        assertEquals(3, read.size());
+        assertEquals(SdlsBatch.STATUS_ERROR, read.get(0).status);
+        assertEquals("engine failure", new String(read.get(0).output));
+        assertEquals(0, read.get(1).status);
+        assertArrayEquals(other, read.get(1).output);
+        assertEquals(SdlsBatch.STATUS_ERROR, read.get(2).status);
+    }
+
+    @Test
+    public void testOutOfScope() throws Exception {
+        dispatcher = new SdlsDispatcher(2, 16, 1);
+        List<byte[]> frames = List.of(frame(1, 0), frame(2, 1), frame(1, 2), frame(3, 3));
+        List<byte[]> called = new ArrayList<>();
+        byte[] results = SdlsBatch.dispatch(dispatcher, SdlsBatch.writeFrames(frames),
+                SdlsStreamScope.parse("0:3:1,0:3:3"), batch -> {
+                    synchronized (called) {
+                        called.addAll(SdlsBatch.readFrames(batch));
+                    }
+                    return echo(batch);
+                });
+        List<SdlsBatch.Result> read = SdlsBatch.readResults(results);
+        assertEquals(4, read.size());
+        assertEquals(0, read.get(0).status);
+        assertEquals(SdlsBatch.STATUS_FORBIDDEN, read.get(1).status);
+        assertEquals(0, read.get(2).status);
+        assertArrayEquals(frames.get(2), read.get(2).output);
+        assertEquals(0, read.get(3).status);
+        assertEquals(3, called.size());
+    }
+
+    @Test
+    public void testBusy() throws Exception {
+        dispatcher = new SdlsDispatcher(1, 1, 3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        byte[] frame = frame(0, 0);
+        try {
+            Future<String> running = dispatcher.submit(frame, () -> {
+                started.countDown();
+                release.await();
+                return "running";
+            });
+            started.await();
+            Future<String> queued = dispatcher.submit(frame, () -> "queued");
+            try {
+                SdlsBatch.dispatch(dispatcher, SdlsBatch.writeFrames(List.of(frame)), SdlsBatchTest::echo);
+                fail("Expected the dispatcher to be busy");
+            } catch (SdlsBusyException e) {
+                assertEquals(3, e.getRetryAfter());
+            }
+            release.countDown();
+            running.get();
+            queued.get();
+        } finally {
+            release.countDown();
+        }
+    }
+}
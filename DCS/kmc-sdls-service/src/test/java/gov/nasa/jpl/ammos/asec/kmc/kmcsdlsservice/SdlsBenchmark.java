@@ -0,0 +1,421 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngine;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  In-process throughput and latency benchmark of the SDLS engine and REST controller.
+ *
+ *  The engine is configured from kmc-sdls-service-unittest.properties by default, an in-memory SADB and libgcrypt,
+ *  so no database or KMC Crypto Service is needed. For each combination of mode (engine calls through the SDLS
+ *  dispatcher, or HTTP requests to the controller of an in-process service), operation, virtual channel, frame size
+ *  and thread count, frames are sent for a fixed count after a warm-up, and one JSON object per line is written with
+ *  the throughput and latency percentiles. The SA type is chosen by the virtual channel, each has its own SA.
+ *
+ *  Run with the kmc_sdls_java library on LD_LIBRARY_PATH:
+ *  mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="--threads 1,4 --frame-sizes 64,512"
+ */
+public class SdlsBenchmark
+{
+    private static final String DEFAULT_PROPERTIES = "kmc-sdls-service-unittest.properties";
+    private static final String MODE_ENGINE = "engine";
+    private static final String MODE_HTTP = "http";
+    private static final String OPERATION_APPLY = "apply";
+    private static final String OPERATION_PROCESS = "process";
+    private static final String OPERATION_PROCESS_COMPACT = "process-compact";
+    // TC primary header, segment header and FECF around the PDU of a generated frame
+    private static final int TC_PRIMARY_HEADER_LENGTH = 5;
+    private static final int FECF_LENGTH = 2;
+
+    private final Properties props;
+    private final boolean segmentHeader;
+    private final int frames;
+    private final int warmup;
+    private final PrintStream out;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private KmcSdlsEngine engine;
+    private SdlsDispatcher dispatcher;
+    private ConfigurableApplicationContext service;
+    private HttpClient httpClient;
+    private String baseUri;
+
+    SdlsBenchmark(Properties props, boolean segmentHeader, int frames, int warmup, PrintStream out)
+    {
+        this.props = props;
+        this.segmentHeader = segmentHeader;
+        this.frames = frames;
+        this.warmup = warmup;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("properties").hasArg().argName("file")
+                .desc("engine and service properties, default " + DEFAULT_PROPERTIES).build());
+        options.addOption(Option.builder().longOpt("modes").hasArg().argName("list")
+                .desc("engine and/or http, default engine,http").build());
+        options.addOption(Option.builder().longOpt("operations").hasArg().argName("list")
+                .desc("apply, process and/or process-compact, default apply,process").build());
+        options.addOption(Option.builder().longOpt("vcs").hasArg().argName("list")
+                .desc("virtual channels as name=tfvn:scid:vcid, default vc0=0:3:0,vc1=0:3:1").build());
+        options.addOption(Option.builder().longOpt("frame-sizes").hasArg().argName("list")
+                .desc("unprotected frame sizes in bytes, default 64,256,512").build());
+        options.addOption(Option.builder().longOpt("threads").hasArg().argName("list")
+                .desc("client thread counts, default 1,4,16").build());
+        options.addOption(Option.builder().longOpt("frames").hasArg().argName("count")
+                .desc("frames measured per run, default 10000").build());
+        options.addOption(Option.builder().longOpt("warmup").hasArg().argName("count")
+                .desc("frames sent before each run, default 1000").build());
+        options.addOption(Option.builder().longOpt("no-segment-header")
+                .desc("generate frames without a segment header").build());
+        options.addOption(Option.builder().longOpt("output").hasArg().argName("file")
+                .desc("JSON lines output, default standard output").build());
+        options.addOption(Option.builder("h").longOpt("help").desc("print this help").build());
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("SdlsBenchmark", options);
+            System.exit(1);
+            return;
+        }
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("SdlsBenchmark", options);
+            return;
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = cmd.hasOption("properties") ?
+                new FileInputStream(cmd.getOptionValue("properties")) :
+                SdlsBenchmark.class.getClassLoader().getResourceAsStream(DEFAULT_PROPERTIES)) {
+            if (in == null) {
+                throw new IOException(DEFAULT_PROPERTIES + " not found on the classpath");
+            }
+            props.load(in);
+        }
+
+        List<String> modes = list(cmd.getOptionValue("modes", "engine,http"));
+        List<String> operations = list(cmd.getOptionValue("operations", "apply,process"));
+        Map<String, int[]> vcs = new LinkedHashMap<>();
+        for (String vc : list(cmd.getOptionValue("vcs", "vc0=0:3:0,vc1=0:3:1"))) {
+            String[] nameGvcid = vc.split("=", 2);
+            String[] gvcid = nameGvcid[nameGvcid.length - 1].split(":");
+            if (gvcid.length != 3) {
+                throw new IllegalArgumentException("Invalid virtual channel '" + vc + "', expected name=tfvn:scid:vcid");
+            }
+            vcs.put(nameGvcid[0], new int[]{Integer.decode(gvcid[0]), Integer.decode(gvcid[1]),
+                    Integer.decode(gvcid[2])});
+        }
+        int[] frameSizes = list(cmd.getOptionValue("frame-sizes", "64,256,512")).stream()
+                .mapToInt(Integer::parseInt).toArray();
+        int[] threads = list(cmd.getOptionValue("threads", "1,4,16")).stream()
+                .mapToInt(Integer::parseInt).toArray();
+
+        OutputStream file = cmd.hasOption("output") ? new FileOutputStream(cmd.getOptionValue("output")) : null;
+        PrintStream out = file != null ? new PrintStream(file, true, StandardCharsets.UTF_8) : System.out;
+        SdlsBenchmark benchmark = new SdlsBenchmark(props, !cmd.hasOption("no-segment-header"),
+                Integer.parseInt(cmd.getOptionValue("frames", "10000")),
+                Integer.parseInt(cmd.getOptionValue("warmup", "1000")), out);
+        try {
+            benchmark.start(modes.contains(MODE_HTTP));
+            for (String mode : modes) {
+                for (String operation : operations) {
+                    for (Map.Entry<String, int[]> vc : vcs.entrySet()) {
+                        for (int frameSize : frameSizes) {
+                            for (int threadCount : threads) {
+                                benchmark.run(mode, operation, vc.getKey(), vc.getValue(), frameSize, threadCount);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            benchmark.stop();
+            if (file != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Start the engine, and the service when benchmarking HTTP. The service makes its own engine, CryptoLib is only
+     * initialized once so the engine mode then uses it.
+     */
+    void start(boolean http) throws Exception
+    {
+        if (http) {
+            Map<String, String> settings = new LinkedHashMap<>();
+            for (String name : props.stringPropertyNames()) {
+                settings.put(name, props.getProperty(name));
+            }
+            settings.put("server.port", "0");
+            settings.put("server.ssl.enabled", "false");
+            settings.put("server.ssl.client-auth", "none");
+            settings.put("logging.level.root", "WARN");
+            settings.put("logging.level.gov.nasa.jpl.ammos.asec.kmc", "WARN");
+            List<String> args = new ArrayList<>();
+            settings.forEach((name, value) -> args.add("--" + name + "=" + value));
+            System.setProperty("spring.config.name", "kmc-sdls-service");
+            service = new SpringApplicationBuilder(KmcSdlsServiceApplication.class).run(args.toArray(new String[0]));
+            int port = ((WebServerApplicationContext) service).getWebServer().getPort();
+            baseUri = "http://localhost:" + port + service.getEnvironment().getProperty("server.servlet.context-path", "");
+            httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            engine = KmcSdlsService.getKmcSdlsEngine();
+            dispatcher = KmcSdlsService.getSdlsDispatcher();
+        } else {
+            engine = new KmcSdlsEngine(props);
+            dispatcher = SdlsDispatcher.fromProperties(props);
+        }
+        if (engine == null) {
+            throw new IllegalStateException("KMC SDLS Engine failed to initialize, see the log");
+        }
+    }
+
+    void stop() throws Exception
+    {
+        if (service != null) {
+            service.close();
+        } else {
+            if (dispatcher != null) {
+                dispatcher.shutdown();
+            }
+            if (engine != null) {
+                engine.shutdown();
+            }
+        }
+    }
+
+    void run(String mode, String operation, String vcName, int[] gvcid, int frameSize, int threads) throws Exception
+    {
+        boolean apply = OPERATION_APPLY.equals(operation);
+        boolean compact = OPERATION_PROCESS_COMPACT.equals(operation);
+        if (!apply && !compact && !OPERATION_PROCESS.equals(operation)) {
+            throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+        byte[] clearFrame = frame(gvcid, frameSize);
+        // processed frames are protected frames, anti-replay checks must be disabled to process one repeatedly
+        byte[] frame = apply ? clearFrame :
+                dispatcher.dispatch(clearFrame, () -> engine.applySecurity(clearFrame, null));
+
+        Callable<?> call;
+        if (MODE_HTTP.equals(mode)) {
+            call = httpCall(apply ? "/apply_security" : "/process_security", frame, compact);
+        } else if (MODE_ENGINE.equals(mode)) {
+            // engine calls go through the dispatcher, as in the service
+            Callable<?> engineCall = apply ? () -> engine.applySecurity(frame, null) :
+                    compact ? () -> engine.processSecurityCompact(frame, null) :
+                            () -> engine.processSecurity(frame, null);
+            call = () -> dispatcher.dispatch(frame, engineCall);
+        } else {
+            throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+
+        runThreads(call, threads, warmup);
+        long start = System.nanoTime();
+        Latencies latencies = runThreads(call, threads, frames);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mode", mode);
+        result.put("operation", operation);
+        result.put("vc", vcName);
+        result.put("gvcid", gvcid[0] + ":" + gvcid[1] + ":" + gvcid[2]);
+        result.put("frame_size", frameSize);
+        result.put("threads", threads);
+        result.put("frames", latencies.count);
+        result.put("errors", latencies.errors);
+        result.put("error", latencies.error);
+        result.put("seconds", seconds);
+        result.put("frames_per_second", latencies.count / seconds);
+        result.put("mbytes_per_second", latencies.count * (double) frameSize / seconds / 1e6);
+        result.put("latency_us", latencies.percentiles());
+        out.println(mapper.writeValueAsString(result));
+    }
+
+    private Callable<byte[]> httpCall(String endpoint, byte[] frame, boolean compact)
+    {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + endpoint))
+                .header("Content-Type", "application/octet-stream")
+                .header("Accept", compact ? "application/octet-stream" : "*/*")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(frame))
+                .build();
+        return () -> {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode() + ": " +
+                        new String(response.body(), StandardCharsets.UTF_8));
+            }
+            return response.body();
+        };
+    }
+
+    /**
+     * Send frames from client threads
+     */
+    private static Latencies runThreads(Callable<?> call, int threads, int count) throws Exception
+    {
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Latencies>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int perThread = count / threads + (t < count % threads ? 1 : 0);
+                results.add(clients.submit(() -> {
+                    Latencies latencies = new Latencies(perThread);
+                    for (int i = 0; i < perThread; i++) {
+                        long start = System.nanoTime();
+                        try {
+                            call.call();
+                            latencies.add(System.nanoTime() - start);
+                        } catch (Exception e) {
+                            latencies.fail(e);
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+            Latencies all = new Latencies(count);
+            for (Future<Latencies> result : results) {
+                all.addAll(result.get());
+            }
+            return all;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Generate an unprotected TC frame: primary header, optional segment header, random PDU and an FECF placeholder
+     */
+    byte[] frame(int[] gvcid, int frameSize)
+    {
+        int overhead = TC_PRIMARY_HEADER_LENGTH + (segmentHeader ? 1 : 0) + FECF_LENGTH;
+        if (frameSize <= overhead || frameSize > KmcSdlsEngine.MAX_TC_FRAME_SIZE) {
+            throw new IllegalArgumentException("Frame size " + frameSize + " is outside " + (overhead + 1) + ".." +
+                    KmcSdlsEngine.MAX_TC_FRAME_SIZE);
+        }
+        byte[] frame = new byte[frameSize];
+        int fl = frameSize - 1;
+        frame[0] = (byte) ((gvcid[0] << 6) | 0x20 | ((gvcid[1] >> 8) & 0x03)); // bypass, type-B
+        frame[1] = (byte) gvcid[1];
+        frame[2] = (byte) ((gvcid[2] << 2) | ((fl >> 8) & 0x03));
+        frame[3] = (byte) fl;
+        byte[] pdu = new byte[frameSize - overhead];
+        new Random(frameSize).nextBytes(pdu);
+        System.arraycopy(pdu, 0, frame, TC_PRIMARY_HEADER_LENGTH + (segmentHeader ? 1 : 0), pdu.length);
+        return frame;
+    }
+
+    private static List<String> list(String value)
+    {
+        List<String> list = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                list.add(item.trim());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Latencies of the frames of a run, in nanoseconds
+     */
+    static final class Latencies
+    {
+        private long[] nanos;
+        private int count;
+        private int errors;
+        private String error;
+
+        Latencies(int capacity)
+        {
+            this.nanos = new long[Math.max(capacity, 1)];
+        }
+
+        void add(long latency)
+        {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latency;
+        }
+
+        void fail(Exception e)
+        {
+            errors++;
+            if (error == null) {
+                error = e.getMessage();
+            }
+        }
+
+        void addAll(Latencies other)
+        {
+            for (int i = 0; i < other.count; i++) {
+                add(other.nanos[i]);
+            }
+            errors += other.errors;
+            if (error == null) {
+                error = other.error;
+            }
+        }
+
+        Map<String, Double> percentiles()
+        {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            percentiles.put("min", percentile(sorted, 0));
+            percentiles.put("p50", percentile(sorted, 50));
+            percentiles.put("p90", percentile(sorted, 90));
+            percentiles.put("p99", percentile(sorted, 99));
+            percentiles.put("p999", percentile(sorted, 99.9));
+            percentiles.put("max", percentile(sorted, 100));
+            return percentiles;
+        }
+
+        private static Double percentile(long[] sorted, double percentile)
+        {
+            if (sorted.length == 0) {
+                return null;
+            }
+            // nearest rank
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1] / 1e3;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SdlsDispatcherTest {
+
+    private SdlsDispatcher dispatcher;
+
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * TC primary header and segment header of a frame
+     */
+    private static byte[] frame(int tfvn, int scid, int vcid, int mapId) {
+        return new byte[]{(byte) ((tfvn << 6) | (scid >> 8)), (byte) scid, (byte) (vcid << 2), 0x00, 0x00,
+                (byte) (0xC0 | mapId)};
+    }
+
+    @Test
+    public void testResultsDoNotCross() throws Exception {
+        dispatcher = new SdlsDispatcher(4, 1024, 1);
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int client = 0; client < 16; client++) {
+                int id = client;
+                results.add(clients.submit(() -> {
+                    int mismatches = 0;
+                    for (int i = 0; i < 500; i++) {
+                        String request = id + ":" + i;
+                        // each call builds its result from call-local state only
+                        String response = dispatcher.dispatch(frame(0, 3, id, 0), () -> {
+                            StringBuilder sb = new StringBuilder(request);
+                            Thread.yield();
+                            return sb.reverse().reverse().toString();
+                        });
+                        if (!request.equals(response)) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, (int) result.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSingleWorkerSerializesCalls() throws Exception {
+        dispatcher = new SdlsDispatcher(1, 1024, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int client = 0; client < 8; client++) {
+                int id = client;
+                results.add(clients.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        dispatcher.dispatch(frame(0, 3, id, 0), () -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            Thread.yield();
+                            return running.decrementAndGet();
+                        });
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testLaneKeepsSubmissionOrder() throws Exception {
+        dispatcher = new SdlsDispatcher(4, 1024, 1);
+        List<Integer> vc1 = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> vc2 = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int seq = i;
+            results.add(dispatcher.submit(frame(0, 3, 1, 0), () -> vc1.add(seq)));
+            results.add(dispatcher.submit(frame(0, 3, 2, 0), () -> vc2.add(seq)));
+        }
+        for (Future<Boolean> result : results) {
+            result.get(1, TimeUnit.MINUTES);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) vc1.get(i));
+            assertEquals(i, (int) vc2.get(i));
+        }
+    }
+
+    @Test
+    public void testLanes() {
+        dispatcher = new SdlsDispatcher(8, 1, 1);
+        assertEquals(dispatcher.laneOf(frame(0, 3, 1, 0)), dispatcher.laneOf(frame(0, 3, 1, 5)));
+        assertEquals(dispatcher.laneOf(frame(0, 3, 1, 0)), dispatcher.laneOf(new byte[]{0x00, 0x03, 0x04, 0x00,
+                0x10}));
+        assertEquals(0, dispatcher.laneOf(new byte[]{0x00, 0x03}));
+        int used = 0;
+        boolean[] lanes = new boolean[8];
+        for (int vcid = 0; vcid < 64; vcid++) {
+            int lane = dispatcher.laneOf(frame(0, 3, vcid, 0));
+            if (!lanes[lane]) {
+                lanes[lane] = true;
+                used++;
+            }
+        }
+        assertEquals(8, used);
+        dispatcher.shutdown();
+
+        dispatcher = new SdlsDispatcher(8, 1, 1, true);
+        boolean spread = false;
+        for (int mapId = 1; mapId < 64; mapId++) {
+            spread |= dispatcher.laneOf(frame(0, 3, 1, 0)) != dispatcher.laneOf(frame(0, 3, 1, mapId));
+        }
+        assertTrue(spread);
+    }
+
+    @Test
+    public void testLanesRunInParallel() throws Exception {
+        dispatcher = new SdlsDispatcher(2, 16, 1);
+        byte[] blocked = frame(0, 3, 0, 0);
+        byte[] other = null;
+        for (int vcid = 1; other == null; vcid++) {
+            if (dispatcher.laneOf(frame(0, 3, vcid, 0)) != dispatcher.laneOf(blocked)) {
+                other = frame(0, 3, vcid, 0);
+            }
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<String> waiting = dispatcher.submit(blocked, () -> {
+                release.await();
+                return "blocked";
+            });
+            assertEquals("other", dispatcher.dispatch(other, () -> "other"));
+            assertFalse(waiting.isDone());
+            release.countDown();
+            assertEquals("blocked", waiting.get(1, TimeUnit.MINUTES));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testBusy() throws Exception {
+        dispatcher = new SdlsDispatcher(1, 1, 7);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        byte[] frame = frame(0, 3, 0, 0);
+        try {
+            Future<String> running = dispatcher.submit(frame, () -> {
+                started.countDown();
+                release.await();
+                return "running";
+            });
+            assertTrue(started.await(1, TimeUnit.MINUTES));
+            Future<String> queued = dispatcher.submit(frame, () -> "queued");
+            assertEquals(1, dispatcher.queued());
+            try {
+                dispatcher.dispatch(frame, () -> "rejected");
+                fail("Expected the dispatcher to be busy");
+            } catch (SdlsBusyException e) {
+                assertEquals(7, e.getRetryAfter());
+            }
+            release.countDown();
+            assertEquals("running", running.get(1, TimeUnit.MINUTES));
+            assertEquals("queued", queued.get(1, TimeUnit.MINUTES));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testExclusiveCallRunsAlone() throws Exception {
+        dispatcher = new SdlsDispatcher(4, 1024, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int client = 0; client < 8; client++) {
+                int id = client;
+                results.add(clients.submit(() -> {
+                    while (!done.get()) {
+                        dispatcher.dispatch(frame(0, 3, id, 0), () -> {
+                            running.incrementAndGet();
+                            Thread.yield();
+                            return running.decrementAndGet();
+                        });
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 20; i++) {
+                dispatcher.dispatchExclusive(() -> {
+                    if (running.get() != 0) {
+                        overlaps.incrementAndGet();
+                    }
+                    Thread.sleep(2);
+                    if (running.get() != 0) {
+                        overlaps.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            done.set(true);
+            for (Future<?> result : results) {
+                result.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            done.set(true);
+            clients.shutdownNow();
+        }
+        assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    public void testExclusiveCallWaitsForQueuedCalls() throws Exception {
+        dispatcher = new SdlsDispatcher(4, 16, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        ExecutorService admin = Executors.newSingleThreadExecutor();
+        try {
+            for (int vcid = 0; vcid < 4; vcid++) {
+                dispatcher.submit(frame(0, 3, vcid, 0), () -> {
+                    release.await();
+                    finished.set(true);
+                    return null;
+                });
+            }
+            Future<Boolean> exclusive = admin.submit(() -> dispatcher.dispatchExclusive(finished::get));
+            Thread.sleep(100);
+            assertFalse(exclusive.isDone());
+            release.countDown();
+            assertTrue(exclusive.get(1, TimeUnit.MINUTES));
+            assertEquals("after", dispatcher.dispatch(frame(0, 3, 1, 0), () -> "after"));
+        } finally {
+            release.countDown();
+            admin.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExclusiveCallBusy() throws Exception {
+        dispatcher = new SdlsDispatcher(2, 1, 1);
+        byte[] blocked = frame(0, 3, 0, 0);
+        byte[] other = null;
+        for (int vcid = 1; other == null; vcid++) {
+            if (dispatcher.laneOf(frame(0, 3, vcid, 0)) != dispatcher.laneOf(blocked)) {
+                other = frame(0, 3, vcid, 0);
+            }
+        }
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            dispatcher.submit(blocked, () -> {
+                started.countDown();
+                release.await();
+                return null;
+            });
+            assertTrue(started.await(1, TimeUnit.MINUTES));
+            dispatcher.submit(blocked, () -> "queued");
+            try {
+                dispatcher.dispatchExclusive(() -> "rejected");
+                fail("Expected the dispatcher to be busy");
+            } catch (SdlsBusyException e) {
+                assertEquals(1, e.getRetryAfter());
+            }
+            // the lane paused for the rejected call is released
+            assertEquals("other", dispatcher.dispatch(other, () -> "other"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testCallExceptionIsRethrown() throws Exception {
+        dispatcher = new SdlsDispatcher(1, 1, 1);
+        try {
+            dispatcher.dispatch(frame(0, 3, 0, 0), () -> {
+                throw new IOException("engine failure");
+            });
+            fail("Expected the call exception");
+        } catch (IOException e) {
+            assertEquals("engine failure", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSettings() {
+        new SdlsDispatcher(0, 1, 1);
+    }
+}
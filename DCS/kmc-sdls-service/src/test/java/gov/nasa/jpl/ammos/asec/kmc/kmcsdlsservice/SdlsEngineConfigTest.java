@@ -0,0 +1,143 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SdlsEngineConfigTest {
+
+    private static final String STARTUP = String.join("\n",
+            "server.port=8445",
+            "cryptolib.sadb.type=inmemory",
+            "cryptolib.crypto.type=libgcrypt",
+            "cryptolib.tc.vcid_bitmask=0x3f",
+            "cryptolib.process_tc.ignore_antireplay=true",
+            "cryptolib.tc.3.0.0.has_segmentation_header=true",
+            "cryptolib.tc.3.0.0.has_ecf=true",
+            "cryptolib.tc.3.0.0.max_frame_length=1024",
+            "cryptolib.tc.3.1.0.has_segmentation_header=false",
+            "cryptolib.tc.3.1.0.has_ecf=true");
+
+    private static Properties properties(String text) throws IOException {
+        Properties props = new Properties();
+        props.load(new StringReader(text));
+        return props;
+    }
+
+    private static void assertInvalid(SdlsEngineConfig config, String changes) throws IOException {
+        assertInvalid(config, changes, List.of("cryptolib.*"));
+    }
+
+    private static void assertInvalid(SdlsEngineConfig config, String changes, List<String> allowed)
+            throws IOException {
+        try {
+            config.update(properties(changes), allowed);
+            fail("Expected '" + changes + "' to be invalid");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStartupConfiguration() throws Exception {
+        SdlsEngineConfig config = SdlsEngineConfig.of(properties(STARTUP), 1);
+        assertEquals(1, config.getVersion());
+        assertNull(config.getProperties().getProperty("server.port"));
+        assertEquals("inmemory", config.getProperties().getProperty("cryptolib.sadb.type"));
+
+        List<?> gvcids = (List<?>) config.describe().get("gvcids");
+        assertEquals(2, gvcids.size());
+        Map<?, ?> vc1 = (Map<?, ?>) gvcids.get(1);
+        assertEquals(1, vc1.get("vcid"));
+        assertEquals(3, vc1.get("scid"));
+        assertEquals(false, vc1.get("has_segmentation_header"));
+        assertEquals(1024, vc1.get("max_frame_length"));
+    }
+
+    @Test
+    public void testGlobalChangeKeepsGvcids() throws Exception {
+        SdlsEngineConfig config = SdlsEngineConfig.of(properties(STARTUP), 1)
+                .update(properties("cryptolib.process_tc.ignore_antireplay=false"),
+                        List.of("cryptolib.process_tc.ignore_antireplay"));
+        assertEquals(2, config.getVersion());
+        assertEquals("false", config.getProperties().getProperty("cryptolib.process_tc.ignore_antireplay"));
+        assertEquals(2, config.getGvcids().size());
+    }
+
+    @Test
+    public void testGvcidChangeReplacesTable() throws Exception {
+        SdlsEngineConfig config = SdlsEngineConfig.of(properties(STARTUP), 1).update(properties(String.join("\n",
+                "cryptolib.tc.3.0.0.has_ecf=true",
+                "cryptolib.tc.3.2.0.has_ecf=false",
+                "cryptolib.tc.3.2.0.max_frame_length=512")));
+        assertEquals(2, config.getGvcids().size());
+        assertTrue(config.getGvcids().containsKey(SdlsDispatcher.gvcid(0, 3, 0)));
+        assertFalse(config.getGvcids().containsKey(SdlsDispatcher.gvcid(0, 3, 1)));
+        assertEquals(512, config.getGvcids().get(SdlsDispatcher.gvcid(0, 3, 2)).get("max_frame_length"));
+        // the segment header of 3.0.0 was not given again
+        assertNull(config.getProperties().getProperty("cryptolib.tc.3.0.0.has_segmentation_header"));
+    }
+
+    @Test
+    public void testProtectedChanges() throws Exception {
+        SdlsEngineConfig config = SdlsEngineConfig.of(properties(STARTUP), 1);
+        assertInvalid(config, "cryptolib.process_tc.ignore_antireplay=false", List.of());
+        assertInvalid(config, "cryptolib.process_tc.ignore_sa_state=true", List.of());
+        assertInvalid(config, "cryptolib.sadb.type=mariadb", List.of("cryptolib.crypto.*"));
+        assertInvalid(config, "cryptolib.crypto.type=kmccryptoservice", List.of("cryptolib.sadb.*"));
+        assertInvalid(config, "cryptolib.cam.enabled=true", List.of("cryptolib.cam.enabled.*"));
+
+        // unchanged values may be given, as in a copy of the properties file
+        assertEquals(2, config.update(properties(STARTUP.replace("server.port=8445\n", ""))).getVersion());
+        assertEquals("mariadb", config.update(properties("cryptolib.sadb.type=mariadb"), List.of("cryptolib.sadb.*"))
+                .getProperties().getProperty("cryptolib.sadb.type"));
+        assertEquals("true", config.update(properties("cryptolib.cam.enabled=true"), List.of("cryptolib.cam.enabled"))
+                .getProperties().getProperty("cryptolib.cam.enabled"));
+    }
+
+    @Test
+    public void testDiffersInGvcidsOnly() throws Exception {
+        SdlsEngineConfig config = SdlsEngineConfig.of(properties(STARTUP), 1);
+        assertTrue(config.update(properties("cryptolib.tc.3.2.0.has_ecf=true")).differsInGvcidsOnly(config));
+        assertFalse(config.update(properties("cryptolib.process_tc.check_fecf=true")).differsInGvcidsOnly(config));
+        assertFalse(config.update(properties("cryptolib.tc.3.2.0.has_ecf=true\ncryptolib.tc.vcid_bitmask=0x1f"))
+                .differsInGvcidsOnly(config));
+    }
+
+    @Test
+    public void testInvalidChanges() throws Exception {
+        SdlsEngineConfig config = SdlsEngineConfig.of(properties(STARTUP), 1);
+        assertInvalid(config, "");
+        assertInvalid(config, "server.port=8446");
+        assertInvalid(config, "cryptolib.sadb.type=postgres");
+        assertInvalid(config, "cryptolib.tc.vcid_bitmask=0x40");
+        assertInvalid(config, "cryptolib.process_tc.ignore_antireplay=yes");
+        assertInvalid(config, "cryptolib.sadb.mariadb.port=70000");
+        assertInvalid(config, "cryptolib.tc.3.64.0.has_ecf=true");
+        assertInvalid(config, "cryptolib.tc.3.1.4.has_ecf=true");
+        assertInvalid(config, "cryptolib.tc.3.01.0.has_ecf=true");
+        assertInvalid(config, "cryptolib.tc.3.1.0.has_ecf=ture");
+        assertInvalid(config, "cryptolib.tc.3.1.0.max_frame_length=1025");
+        assertInvalid(config, "cryptolib.tc.3.1.0.max_frame_len=1024\ncryptolib.tc.3.1.0.has_ecf=true");
+        // managed parameters of a GVCID are only registered with has_ecf
+        assertInvalid(config, "cryptolib.tc.3.1.0.has_segmentation_header=true");
+        // a configuration without GVCIDs would reject every frame
+        assertInvalid(SdlsEngineConfig.of(properties("cryptolib.tc.vcid_bitmask=0x3f"), 1),
+                "cryptolib.process_tc.ignore_antireplay=true");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingVcidBitmask() throws Exception {
+        SdlsEngineConfig.of(properties("cryptolib.tc.3.0.0.has_ecf=true"), 1);
+    }
+}
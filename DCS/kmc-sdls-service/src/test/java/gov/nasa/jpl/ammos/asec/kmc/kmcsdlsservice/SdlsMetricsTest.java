@@ -0,0 +1,159 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import gov.nasa.jpl.ammos.asec.kmc.KmcSdlsEngineException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SdlsMetricsTest {
+
+    // VC 0 of SCID 3 has a segment header, VC 1 has none
+    private static final String APPLIED_VC0 = "200300230000000100000000000000000000000080d2c70008197f0b00310000b1fefe0f";
+    private static final String APPLIED_VC1 = "2003041e0000020000000000000000000000000080d2c70008197f0b00310000b1fefe0f";
+
+    private SdlsDispatcher dispatcher;
+
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private static SdlsMetrics metrics() {
+        Properties props = new Properties();
+        props.setProperty("cryptolib.tc.vcid_bitmask", "0x3F");
+        props.setProperty("cryptolib.tc.3.0.0.has_segmentation_header", "true");
+        props.setProperty("cryptolib.tc.3.0.0.has_ecf", "true");
+        props.setProperty("cryptolib.tc.3.1.0.has_segmentation_header", "false");
+        props.setProperty("cryptolib.tc.3.1.0.has_ecf", "true");
+        SdlsMetrics metrics = new SdlsMetrics(true);
+        metrics.configure(SdlsEngineConfig.of(props, 1));
+        return metrics;
+    }
+
+    private static void assertLine(String exported, String line) {
+        assertTrue("Missing '" + line + "' in:\n" + exported, exported.contains("\n" + line + "\n"));
+    }
+
+    @Test
+    public void testCountersBySpiAndGvcid() throws Exception {
+        SdlsMetrics metrics = metrics();
+        metrics.record(SdlsMetrics.Operation.PROCESS, Hex.decodeHex(APPLIED_VC0), Hex.decodeHex(APPLIED_VC0), 0);
+        metrics.record(SdlsMetrics.Operation.PROCESS, Hex.decodeHex(APPLIED_VC1), Hex.decodeHex(APPLIED_VC1), 0);
+        metrics.record(SdlsMetrics.Operation.PROCESS, Hex.decodeHex(APPLIED_VC1), Hex.decodeHex(APPLIED_VC1), -9);
+        metrics.record(SdlsMetrics.Operation.PROCESS, new byte[]{0x20, 0x03}, new byte[]{0x20, 0x03}, -9);
+
+        String exported = metrics.export(status -> status == -9 ? "CRYPTO_LIB_ERR_EXAMPLE" : null, null);
+        assertLine(exported, "kmc_sdls_frames_total{operation=\"process\",gvcid=\"3.0.0\"} 1");
+        assertLine(exported, "kmc_sdls_frames_total{operation=\"process\",gvcid=\"3.1.0\"} 2");
+        assertLine(exported, "kmc_sdls_frames_total{operation=\"process\",gvcid=\"other\"} 1");
+        assertLine(exported, "kmc_sdls_frame_bytes_total{operation=\"process\",gvcid=\"3.1.0\"} 72");
+        assertLine(exported, "kmc_sdls_frame_errors_total{operation=\"process\",gvcid=\"3.1.0\"} 1");
+        // the SPI follows the segment header on VC 0 only
+        assertLine(exported, "kmc_sdls_spi_frames_total{operation=\"process\",spi=\"1\"} 1");
+        assertLine(exported, "kmc_sdls_spi_frames_total{operation=\"process\",spi=\"2\"} 2");
+        assertLine(exported, "kmc_sdls_spi_errors_total{operation=\"process\",spi=\"2\"} 1");
+        assertLine(exported, "kmc_sdls_errors_total{operation=\"process\",code=\"CRYPTO_LIB_ERR_EXAMPLE\"} 2");
+        assertFalse(exported.contains("operation=\"apply\",gvcid"));
+    }
+
+    @Test
+    public void testSeriesAreBounded() {
+        SdlsMetrics metrics = new SdlsMetrics(true);
+        for (int scid = 0; scid < 0x400; scid++) {
+            for (int vcid = 0; vcid < 2; vcid++) {
+                byte[] frame = {(byte) (scid >> 8), (byte) scid, (byte) (vcid << 2), 0x00, 0x10};
+                metrics.record(SdlsMetrics.Operation.APPLY, frame, null, 0);
+            }
+        }
+        String exported = metrics.export(null, null);
+        assertEquals(SdlsMetrics.MAX_SERIES + 1, exported.split("\nkmc_sdls_frames_total\\{").length - 1);
+        assertLine(exported, "kmc_sdls_frames_total{operation=\"apply\",gvcid=\"other\"} " +
+                (2 * 0x400 - SdlsMetrics.MAX_SERIES));
+        // unknown GVCID managed parameters, no SPI
+        assertFalse(exported.contains("kmc_sdls_spi_frames_total{"));
+    }
+
+    @Test
+    public void testDispatchRecordsStages() throws Exception {
+        SdlsMetrics metrics = metrics();
+        dispatcher = new SdlsDispatcher(1, 16, 1);
+        byte[] frame = Hex.decodeHex("20030015000080d2c70008197f0b00310000b1fe3128");
+        byte[] applied = Hex.decodeHex(APPLIED_VC0);
+
+        long received = System.nanoTime();
+        assertSame(applied, metrics.dispatch(dispatcher, SdlsMetrics.Operation.APPLY, frame, received, () -> {
+            Thread.sleep(5);
+            return applied;
+        }));
+        try {
+            metrics.dispatch(dispatcher, SdlsMetrics.Operation.APPLY, frame, received, () -> {
+                throw new KmcSdlsEngineException("failed", -9);
+            });
+            fail("Expected the engine exception");
+        } catch (KmcSdlsEngineException e) {
+            assertEquals(-9, e.getStatus());
+        }
+
+        long[] engine = metrics.histogram(SdlsMetrics.Operation.APPLY, SdlsMetrics.Stage.ENGINE).counts();
+        assertEquals(2, sum(engine));
+        // the sleeping call is above 5 ms
+        int fiveMs = Arrays.binarySearch(SdlsMetrics.Histogram.BOUNDS, 5_000_000L);
+        assertEquals(1, sum(Arrays.copyOfRange(engine, fiveMs + 1, engine.length)));
+        assertEquals(2, sum(metrics.histogram(SdlsMetrics.Operation.APPLY, SdlsMetrics.Stage.TOTAL).counts()));
+
+        String exported = metrics.export(status -> "CRYPTO_LIB_ERR_EXAMPLE", dispatcher);
+        assertLine(exported, "kmc_sdls_frames_total{operation=\"apply\",gvcid=\"3.0.0\"} 2");
+        assertLine(exported, "kmc_sdls_spi_frames_total{operation=\"apply\",spi=\"1\"} 1");
+        assertLine(exported, "kmc_sdls_errors_total{operation=\"apply\",code=\"CRYPTO_LIB_ERR_EXAMPLE\"} 1");
+        assertLine(exported, "kmc_sdls_stage_seconds_bucket{operation=\"apply\",stage=\"engine\",le=\"+Inf\"} 2");
+        assertLine(exported, "kmc_sdls_stage_seconds_count{operation=\"apply\",stage=\"queue\"} 2");
+        assertLine(exported, "kmc_sdls_dispatcher_queued 0");
+    }
+
+    @Test
+    public void testBatchRecorder() throws Exception {
+        SdlsMetrics metrics = metrics();
+        dispatcher = new SdlsDispatcher(1, 16, 1);
+        byte[] frame = Hex.decodeHex("20030015000080d2c70008197f0b00310000b1fe3128");
+        byte[] batch = SdlsBatch.writeFrames(List.of(frame, frame));
+
+        SdlsBatch.dispatch(dispatcher, batch, f -> true, frames -> SdlsBatch.writeResults(List.of(
+                new SdlsBatch.Result(0, Hex.decodeHex(APPLIED_VC0)), new SdlsBatch.Result(-9, "failed"))),
+                metrics.batchRecorder(SdlsMetrics.Operation.APPLY));
+
+        String exported = metrics.export(status -> "CRYPTO_LIB_ERR_EXAMPLE", null);
+        assertLine(exported, "kmc_sdls_frames_total{operation=\"apply\",gvcid=\"3.0.0\"} 2");
+        assertLine(exported, "kmc_sdls_frame_errors_total{operation=\"apply\",gvcid=\"3.0.0\"} 1");
+        assertLine(exported, "kmc_sdls_spi_frames_total{operation=\"apply\",spi=\"1\"} 1");
+        assertLine(exported, "kmc_sdls_errors_total{operation=\"apply\",code=\"CRYPTO_LIB_ERR_EXAMPLE\"} 1");
+        // batches record no stage latencies
+        assertLine(exported, "kmc_sdls_stage_seconds_count{operation=\"apply\",stage=\"engine\"} 0");
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        SdlsMetrics metrics = new SdlsMetrics(false);
+        metrics.record(SdlsMetrics.Operation.APPLY, Hex.decodeHex(APPLIED_VC0), null, -9);
+        assertEquals("", metrics.export(null, null));
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+}
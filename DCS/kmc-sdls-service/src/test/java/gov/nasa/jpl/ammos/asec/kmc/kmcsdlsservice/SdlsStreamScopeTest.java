@@ -0,0 +1,85 @@
+package gov.nasa.jpl.ammos.asec.kmc.kmcsdlsservice;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SdlsStreamScopeTest {
+
+    private static byte[] frame(int tfvn, int scid, int vcid) {
+        return new byte[]{(byte) ((tfvn << 6) | (scid >> 8)), (byte) scid, (byte) (vcid << 2), 0x00, 0x00};
+    }
+
+    @Test
+    public void testScope() {
+        SdlsStreamScope scope = SdlsStreamScope.parse("0:3:1, 0:0x2C:2,1:1023:63");
+        assertTrue(scope.test(frame(0, 3, 1)));
+        assertTrue(scope.test(frame(0, 44, 2)));
+        assertTrue(scope.test(frame(1, 1023, 63)));
+        assertFalse(scope.test(frame(0, 3, 2)));
+        assertFalse(scope.test(frame(0, 44, 1)));
+        assertFalse(scope.test(new byte[]{0x00, 0x03, 0x04}));
+        assertEquals("0:3:1,0:44:2,1:1023:63", scope.toString());
+    }
+
+    @Test
+    public void testClientScopes() {
+        Properties props = new Properties();
+        props.setProperty("sdls.stream.clients.ops1.subject", "CN=ops1, O=Example");
+        props.setProperty("sdls.stream.clients.ops1.gvcids", "0:3:1,0:3:2");
+        props.setProperty("sdls.stream.clients.ops.2.subject", "cn=ops2,o=Example");
+        props.setProperty("sdls.stream.clients.ops.2.gvcids", "0:44:0");
+        props.setProperty("sdls.stream.max_message_size", "1024");
+
+        Map<String, SdlsStreamScope> scopes = SdlsStreamScope.fromProperties(props);
+        assertEquals(2, scopes.size());
+        // keyed by the canonical DN, as read from client certificates
+        assertEquals("0:3:1,0:3:2", scopes.get("cn=ops1,o=example").toString());
+        assertEquals("0:44:0", scopes.get(KmcSdlsController.canonicalSubject("CN=ops2,O=Example")).toString());
+        assertTrue(SdlsStreamScope.fromProperties(new Properties()).isEmpty());
+    }
+
+    @Test
+    public void testInvalidClientScopes() {
+        String[][] invalid = {
+                {"sdls.stream.clients.ops1.gvcids", "0:3:1"},
+                {"sdls.stream.clients.ops1.subject", "CN=ops1"},
+                {"sdls.stream.clients.ops1.subject", "not a DN", "sdls.stream.clients.ops1.gvcids", "0:3:1"},
+                {"sdls.stream.clients.ops1.subject", "CN=ops1", "sdls.stream.clients.ops1.gvcids", "0:3"},
+                {"sdls.stream.clients.ops1.subject", "CN=ops1", "sdls.stream.clients.ops1.gvcid", "0:3:1"},
+                {"sdls.stream.clients.ops1", "CN=ops1"},
+                {"sdls.stream.clients.a.subject", "CN=ops1", "sdls.stream.clients.a.gvcids", "0:3:1",
+                        "sdls.stream.clients.b.subject", "cn=OPS1", "sdls.stream.clients.b.gvcids", "0:3:2"}};
+        for (String[] properties : invalid) {
+            Properties props = new Properties();
+            for (int i = 0; i < properties.length; i += 2) {
+                props.setProperty(properties[i], properties[i + 1]);
+            }
+            try {
+                SdlsStreamScope.fromProperties(props);
+                fail("Expected invalid client scopes for " + props);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidScope() {
+        for (String gvcids : new String[]{null, "", " ", "0:3", "0:3:1:0", "0:3:x", "4:3:1", "0:1024:1", "0:3:64",
+                "0:3:-1", "0:3:1,"}) {
+            try {
+                SdlsStreamScope.parse(gvcids);
+                fail("Expected an invalid scope for '" + gvcids + "'");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}